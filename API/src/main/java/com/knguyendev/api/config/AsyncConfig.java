@@ -0,0 +1,40 @@
+package com.knguyendev.api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Enables '@Async' methods, such as upgrading password hashes after a login. They run on Spring Boot's task executor,
+ * which is configured through 'spring.task.execution'.
+ * <p>
+ * Streamed responses, such as the user export, are written on their own small pool instead, so that a few long exports
+ * can't starve the '@Async' work, and vice versa.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${spring.custom.streaming.poolSize}")
+    private int streamingPoolSize;
+
+    @Value("${spring.custom.streaming.timeout}")
+    private Duration streamingTimeout;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamingPoolSize);
+        executor.setMaxPoolSize(streamingPoolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("streaming-");
+        executor.initialize();
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(streamingTimeout.toMillis());
+    }
+}
@@ -0,0 +1,12 @@
+package com.knguyendev.api.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the '@Scheduled' background jobs, such as the purger that removes deleted accounts and task lists.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
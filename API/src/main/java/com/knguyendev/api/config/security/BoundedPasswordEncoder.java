@@ -0,0 +1,134 @@
+package com.knguyendev.api.config.security;
+
+import com.knguyendev.api.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * PasswordEncoder that runs the hashing and verifying of another encoder (BCrypt) on a dedicated thread pool with a bounded
+ * queue. BCrypt is deliberately slow and CPU heavy, so without a limit a spike of logins or registrations uses up every CPU
+ * core and every other endpoint (like the task endpoints) slows down with it.
+ * <p>
+ * 1. **Bounded work**: At most 'poolSize' passwords are being hashed at a time, and at most 'queueCapacity' are waiting.
+ * <p>
+ * 2. **Backpressure**: When the queue is full, or a password waited longer than 'maxWait', we fail fast with a
+ * {@link ServiceUnavailableException} (a 503 with a 'Retry-After' header) rather than letting requests pile up.
+ * <p>
+ * NOTE: The request thread still waits for its result, but it's only ever waiting for a bounded amount of time and it isn't
+ * using the CPU while doing so. Everything that uses the PasswordEncoder bean goes through here, which includes
+ * the 'DaoAuthenticationProvider' during login, registration, changing passwords, and deleting accounts.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+    private static final String BUSY_MESSAGE = "The server is handling too many logins right now. Please try again shortly!";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int poolSize, int queueCapacity, Duration maxWait, Duration retryAfter, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        Gauge.builder("password.hashing.queue.size", executor, e -> e.getQueue().size())
+                .description("Number of passwords waiting to be hashed or verified")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Number of passwords currently being hashed or verified")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hashing.time")
+                .description("Time spent hashing or verifying a password, excluding time spent in the queue")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.time")
+                .description("Time spent hashing or verifying a password, excluding time spent in the queue")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Number of requests rejected because the password hashing queue was full or too slow")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.record(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Boolean result = submit(() -> matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword)));
+        return Boolean.TRUE.equals(result);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Runs the work on the hashing pool and waits for its result.
+     *
+     * @throws ServiceUnavailableException If the queue is full, or the work didn't finish within 'maxWait'.
+     */
+    private <T> T submit(Supplier<T> work) {
+        Future<T> future;
+        try {
+            future = executor.submit(work::get);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new ServiceUnavailableException(BUSY_MESSAGE, retryAfter);
+        }
+
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new ServiceUnavailableException(BUSY_MESSAGE, retryAfter);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(BUSY_MESSAGE, retryAfter);
+        } catch (ExecutionException e) {
+            // Rethrow whatever the underlying encoder threw, such as an IllegalArgumentException for a bad hash
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,144 @@
+package com.knguyendev.api.config.security;
+
+import com.knguyendev.api.domain.dto.User.UserDetailsImpl;
+import com.knguyendev.api.enumeration.UserRole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.*;
+
+/**
+ * Serializer for the values that Spring Session stores in Redis. Every request reads the session, and with 'on-save'
+ * every change writes it back, so the size and decoding cost of these values matters.
+ * <p>
+ * With JDK serialization, the SecurityContext alone was several KB, since it held the whole UserEntity along with class
+ * descriptions of everything inside it. Here the common values are written in a small binary format instead:
+ * <pre>
+ *     [FORMAT_MARKER][VERSION][type][payload]
+ * </pre>
+ * 1. **SecurityContext**: Only the ID, username, and role of the authenticated user are written. The authorities are
+ * derived from the role, and the request details (IP and session ID) aren't kept since nothing reads them.
+ * <p>
+ * 2. **Long, Integer, String**: Session metadata such as the creation time and max inactive interval.
+ * <p>
+ * Anything else is written with JDK serialization, which always starts with 0xAC, so the first byte tells us how to read
+ * a value. If the format ever changes, bump 'VERSION' and keep reading the older versions, since sessions that were saved
+ * before a deployment are read after it.
+ * <p>
+ * NOTE: Values that can't be read at all (e.g. a JDK-serialized class that has since changed) are read as null, so
+ * that user is logged out instead of every one of their requests failing.
+ */
+public class CompactSessionSerializer implements RedisSerializer<Object> {
+    private static final Logger logger = LoggerFactory.getLogger(CompactSessionSerializer.class);
+
+    static final byte FORMAT_MARKER = 0x53;
+    static final byte VERSION = 1;
+
+    private static final byte TYPE_SECURITY_CONTEXT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_STRING = 4;
+
+    private final JdkSerializationRedisSerializer fallback = new JdkSerializationRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte type = getType(value);
+        if (type == 0) {
+            return fallback.serialize(value);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_MARKER);
+            out.writeByte(VERSION);
+            out.writeByte(type);
+            switch (type) {
+                case TYPE_SECURITY_CONTEXT -> {
+                    UserDetailsImpl principal = (UserDetailsImpl) ((SecurityContext) value).getAuthentication().getPrincipal();
+                    out.writeLong(principal.getId());
+                    out.writeUTF(principal.getUsername());
+                    out.writeUTF(principal.getRole().name());
+                }
+                case TYPE_LONG -> out.writeLong((Long) value);
+                case TYPE_INTEGER -> out.writeInt((Integer) value);
+                case TYPE_STRING -> out.writeUTF((String) value);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Couldn't serialize session value", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != FORMAT_MARKER) {
+            return deserializeFallback(bytes);
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            in.readByte();
+            byte version = in.readByte();
+            if (version != VERSION) {
+                logger.warn("Session value has unknown format version {}, so it's ignored", version);
+                return null;
+            }
+            byte type = in.readByte();
+            return switch (type) {
+                case TYPE_SECURITY_CONTEXT -> {
+                    UserDetailsImpl principal = new UserDetailsImpl(in.readLong(), in.readUTF(), UserRole.valueOf(in.readUTF()));
+                    yield new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+                }
+                case TYPE_LONG -> in.readLong();
+                case TYPE_INTEGER -> in.readInt();
+                case TYPE_STRING -> in.readUTF();
+                default -> throw new IllegalArgumentException("Unknown session value type " + type);
+            };
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Couldn't deserialize session value, so it's ignored: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return Type to write the value as, or 0 if it should be written with JDK serialization.
+     */
+    private byte getType(Object value) {
+        if (value instanceof SecurityContext context) {
+            Authentication authentication = context.getAuthentication();
+            if (authentication instanceof UsernamePasswordAuthenticationToken
+                    && authentication.isAuthenticated()
+                    && authentication.getPrincipal() instanceof UserDetailsImpl) {
+                return TYPE_SECURITY_CONTEXT;
+            }
+            return 0;
+        }
+        if (value instanceof Long) return TYPE_LONG;
+        if (value instanceof Integer) return TYPE_INTEGER;
+        // Only short strings can be written with 'writeUTF'; it's limited to 65535 bytes
+        if (value instanceof String string && string.length() < 16384) return TYPE_STRING;
+        return 0;
+    }
+
+    private Object deserializeFallback(byte[] bytes) {
+        try {
+            return fallback.deserialize(bytes);
+        } catch (SerializationException e) {
+            logger.warn("Couldn't deserialize session value, so it's ignored: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.knguyendev.api.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.events.SessionDestroyedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Session repository that keeps a short-lived local copy of sessions in front of another repository (Redis). Without
+ * it, every authenticated request loads the session from Redis, and writes it back just to update its last access time.
+ * <p>
+ * 1. **Reads**: A session found in the local cache is handed to the request as its own copy, so it doesn't touch Redis.
+ * <p>
+ * 2. **Writes**: The first time a request changes a session (attributes, max inactive interval, or its ID), the session
+ * is 'promoted': the real session is loaded from Redis, and the change and everything after it is applied to that session.
+ * So changes are always made on top of the latest version in Redis.
+ * <p>
+ * 3. **Touches**: A request that only accessed the session would normally write the new last access time. Here it's only
+ * written once every 'touchInterval', which means Redis may expire an active session up to 'touchInterval' early, so
+ * keep it well below the session timeout. It can't be longer than 'timeToLive' either: the local copy, along with the
+ * last access time it was persisted with, is dropped after 'timeToLive', so a longer interval would never be reached.
+ * <p>
+ * Sessions are evicted from the local cache when they're deleted through this repository (logout), and on every instance
+ * when Redis reports that a session was deleted or expired, through the keyspace notifications that the
+ * RedisIndexedSessionRepository turns into 'SessionDestroyedEvent's. Other changes that are made on another instance are
+ * only seen here once the local copy expires after 'timeToLive', so keep it short.
+ *
+ * @param <S> Type of session stored by the underlying repository
+ */
+public class NearCacheSessionRepository<S extends Session> implements FindByIndexNameSessionRepository<NearCacheSessionRepository<S>.CachedSession> {
+
+    /**
+     * Locally cached copy of a session.
+     *
+     * @param snapshot Session as it was last loaded from or saved to the underlying repository
+     * @param persistedLastAccessedTime The last access time that the underlying repository knows about
+     */
+    private record Entry(MapSession snapshot, Instant persistedLastAccessedTime) {}
+
+    private final FindByIndexNameSessionRepository<S> delegate;
+    private final Cache<String, Entry> cache;
+    private final Duration touchInterval;
+
+    public NearCacheSessionRepository(FindByIndexNameSessionRepository<S> delegate, long maximumSize, Duration timeToLive, Duration touchInterval, MeterRegistry meterRegistry) {
+        if (touchInterval.compareTo(timeToLive) > 0) {
+            throw new IllegalArgumentException("The session cache's touchInterval (" + touchInterval +
+                    ") can't be longer than its timeToLive (" + timeToLive + ")");
+        }
+        this.delegate = delegate;
+        this.touchInterval = touchInterval;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sessions");
+    }
+
+    @Override
+    public CachedSession createSession() {
+        return new CachedSession(delegate.createSession());
+    }
+
+    @Override
+    public void save(CachedSession session) {
+        if (session.real == null && !session.gone) {
+            Entry entry = cache.getIfPresent(session.getId());
+            boolean touchDue = entry == null
+                    || Duration.between(entry.persistedLastAccessedTime(), session.getLastAccessedTime()).compareTo(touchInterval) >= 0;
+            if (!touchDue) {
+                return;
+            }
+            session.promote();
+        }
+
+        if (session.gone) {
+            cache.invalidate(session.originalId);
+            return;
+        }
+
+        delegate.save(session.real);
+        if (!session.originalId.equals(session.real.getId())) {
+            cache.invalidate(session.originalId);
+        }
+        cache.put(session.real.getId(), new Entry(copy(session.real), session.real.getLastAccessedTime()));
+    }
+
+    @Override
+    public CachedSession findById(String id) {
+        Entry entry = cache.getIfPresent(id);
+        if (entry != null) {
+            if (!entry.snapshot().isExpired()) {
+                return new CachedSession(copy(entry.snapshot()));
+            }
+            cache.invalidate(id);
+        }
+
+        S real = delegate.findById(id);
+        if (real == null) {
+            return null;
+        }
+        cache.put(id, new Entry(copy(real), real.getLastAccessedTime()));
+        return new CachedSession(real);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        cache.invalidate(id);
+        delegate.deleteById(id);
+    }
+
+    /**
+     * Index lookups (such as finding all sessions of a user) always go to the underlying repository, since they have to be
+     * accurate when enforcing the maximum number of sessions.
+     */
+    @Override
+    public Map<String, CachedSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        return delegate.findByIndexNameAndIndexValue(indexName, indexValue)
+                .entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> new CachedSession(e.getValue())));
+    }
+
+    /**
+     * Evicts sessions that were deleted or expired, which includes those deleted by another instance of the server.
+     */
+    @EventListener
+    public void onSessionDestroyed(SessionDestroyedEvent event) {
+        cache.invalidate(event.getSessionId());
+    }
+
+    /**
+     * Copies a session so that requests don't share it. The SecurityContext is copied as well, since Spring Security
+     * modifies it in place (e.g. on logout); the Authentication inside it isn't modified once authenticated.
+     */
+    private static MapSession copy(Session session) {
+        MapSession copy = new MapSession(session);
+        for (String attributeName : session.getAttributeNames()) {
+            if (session.getAttribute(attributeName) instanceof SecurityContext context) {
+                copy.setAttribute(attributeName, new SecurityContextImpl(context.getAuthentication()));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Session handed out by this repository. It starts out reading from a local copy, and is promoted to the real session
+     * from the underlying repository once it's changed.
+     */
+    public final class CachedSession implements Session {
+        private final String originalId;
+        private final MapSession local;
+        private S real;
+        // True if the session was promoted, but it no longer exists in the underlying repository
+        private boolean gone;
+
+        private CachedSession(MapSession local) {
+            this.originalId = local.getId();
+            this.local = local;
+        }
+
+        private CachedSession(S real) {
+            this.originalId = real.getId();
+            this.local = null;
+            this.real = real;
+        }
+
+        private Session current() {
+            return real != null ? real : local;
+        }
+
+        private void promote() {
+            if (real != null || gone) {
+                return;
+            }
+            real = delegate.findById(originalId);
+            if (real == null) {
+                gone = true;
+                return;
+            }
+            real.setLastAccessedTime(local.getLastAccessedTime());
+        }
+
+        @Override
+        public String getId() {
+            return current().getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            promote();
+            return current().changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return current().getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return current().getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            promote();
+            current().setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            promote();
+            current().removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return current().getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            current().setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return current().getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            promote();
+            current().setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return current().getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return current().isExpired();
+        }
+    }
+}
@@ -1,17 +1,72 @@
 package com.knguyendev.api.config.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Configuration class for setting up and creating the 'PasswordEncoder' bean
+ * <p>
+ * Hashes are stored with a prefix saying how they were made, such as '{bcrypt10}$2a$10$...'. New passwords are always
+ * hashed with the encoder for 'encodingId', but any of the encoders below can still verify older hashes. So to change the
+ * BCrypt cost or move to Argon2, change 'encodingId', and users are moved over the next time they log in (see
+ * 'PasswordUpgradeService'). Hashes from before prefixes were added have no prefix, and are verified as BCrypt with a cost of 10.
+ * <p>
+ * NOTE: Never remove an entry from the map while hashes using it still exist, otherwise those users can't log in. Run the
+ * 'PasswordHashBenchmarkTest' on the production hardware to pick a cost.
  */
 @Configuration
 public class PasswordConfig {
+
+    // Limits for the pool that hashes passwords; see 'BoundedPasswordEncoder'
+    @Value(value = "${spring.custom.passwordHashing.poolSize}")
+    private int poolSize;
+
+    @Value(value = "${spring.custom.passwordHashing.queueCapacity}")
+    private int queueCapacity;
+
+    @Value(value = "${spring.custom.passwordHashing.maxWait}")
+    private Duration maxWait;
+
+    @Value(value = "${spring.custom.passwordHashing.retryAfter}")
+    private Duration retryAfter;
+
+    // ID of the encoder that new hashes are made with, which must be one of the keys in 'createEncoders()'
+    @Value(value = "${spring.custom.passwordHashing.encodingId}")
+    private String encodingId;
+
+    /**
+     * @return Map of every encoder that we can verify passwords with, keyed by the ID stored in the hash's prefix
+     */
+    public static Map<String, PasswordEncoder> createEncoders() {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt10", new BCryptPasswordEncoder(10));
+        encoders.put("bcrypt12", new BCryptPasswordEncoder(12));
+        encoders.put("bcrypt14", new BCryptPasswordEncoder(14));
+        encoders.put("argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        return encoders;
+    }
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        Map<String, PasswordEncoder> encoders = createEncoders();
+        if (!encoders.containsKey(encodingId)) {
+            throw new IllegalStateException("Unknown password encodingId '" + encodingId + "'. Expected one of: " + encoders.keySet());
+        }
+        DelegatingPasswordEncoder delegatingPasswordEncoder = new DelegatingPasswordEncoder(encodingId, encoders);
+
+        // Hashes without a prefix were all made before prefixes existed, using BCrypt with a cost of 10
+        delegatingPasswordEncoder.setDefaultPasswordEncoderForMatches(encoders.get("bcrypt10"));
+
+        return new BoundedPasswordEncoder(delegatingPasswordEncoder, poolSize, queueCapacity, maxWait, retryAfter, meterRegistry);
     }
 }
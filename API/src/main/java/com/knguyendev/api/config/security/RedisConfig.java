@@ -1,14 +1,23 @@
 package com.knguyendev.api.config.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.security.web.session.HttpSessionEventPublisher;
+import org.springframework.session.data.redis.RedisIndexedSessionRepository;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisIndexedHttpSession;
 import org.springframework.session.web.context.AbstractHttpSessionApplicationInitializer;
 
+import java.time.Duration;
+
 /**
  * Configuration class sets up Redis-based session management for the application. It creates a bean for the necessary
  * Redis connection factory and some session management components.
@@ -18,6 +27,16 @@ import org.springframework.session.web.context.AbstractHttpSessionApplicationIni
 @EnableRedisIndexedHttpSession
 public class RedisConfig extends AbstractHttpSessionApplicationInitializer {
 
+    // Settings for the local session cache; see 'NearCacheSessionRepository'
+    @Value(value = "${spring.custom.sessionCache.maximumSize}")
+    private long sessionCacheMaximumSize;
+
+    @Value(value = "${spring.custom.sessionCache.timeToLive}")
+    private Duration sessionCacheTimeToLive;
+
+    @Value(value = "${spring.custom.sessionCache.touchInterval}")
+    private Duration sessionCacheTouchInterval;
+
     // Expecting 'RedisProperties' to be injected
     private final RedisProperties redisProperties;
     public RedisConfig(RedisProperties redisProperties) {
@@ -34,6 +53,31 @@ public class RedisConfig extends AbstractHttpSessionApplicationInitializer {
         return new LettuceConnectionFactory(config);
     }
 
+    /**
+     * Template for values that are stored as raw bytes, such as pre-serialized responses (see 'TaskListSnapshotCache').
+     * It shares the connection factory above, so it doesn't open connections of its own.
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> byteArrayRedisTemplate(LettuceConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * Listener container for the channels that server instances use to tell each other about changes that their local
+     * caches have to pick up right away (see 'AvailabilityServiceImpl'). Spring Session has a container of its own for
+     * the keyspace events, so this one is injected by name.
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheEventListenerContainer(LettuceConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     /**
      * Method allows for us to place constraints on the amount of sessions that a single user can have. After creating
      * this listener, we'll define the maximum amount of sessions a user can have in our SecurityFilterChain and SecurityConfig
@@ -42,4 +86,30 @@ public class RedisConfig extends AbstractHttpSessionApplicationInitializer {
     public HttpSessionEventPublisher httpSessionEventPublisher() {
         return new HttpSessionEventPublisher();
     }
+
+    /**
+     * Serializer that Spring Session uses for the values stored in a session; the bean's name is what Spring Session
+     * looks for. It writes the SecurityContext and session metadata compactly instead of with JDK serialization, which
+     * keeps sessions small and cheap to read on every request. See 'CompactSessionSerializer'.
+     */
+    @Bean(name = "springSessionDefaultRedisSerializer")
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        return new CompactSessionSerializer();
+    }
+
+    /**
+     * Session repository with a local cache in front of Redis. It's the primary session repository, so it's the one that
+     * Spring Session's filter loads and saves sessions with on every request.
+     */
+    @Bean
+    @Primary
+    public NearCacheSessionRepository<?> nearCacheSessionRepository(RedisIndexedSessionRepository redisIndexedSessionRepository, MeterRegistry meterRegistry) {
+        return new NearCacheSessionRepository<>(
+                redisIndexedSessionRepository,
+                sessionCacheMaximumSize,
+                sessionCacheTimeToLive,
+                sessionCacheTouchInterval,
+                meterRegistry
+        );
+    }
 }
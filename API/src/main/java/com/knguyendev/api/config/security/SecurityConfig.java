@@ -1,5 +1,6 @@
 package com.knguyendev.api.config.security;
 
+import com.knguyendev.api.config.security.ratelimit.AuthRateLimitFilter;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,11 +21,11 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.session.Session;
-import org.springframework.session.data.redis.RedisIndexedSessionRepository;
 import org.springframework.session.security.SpringSessionBackedSessionRegistry;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 
@@ -39,25 +40,28 @@ public class SecurityConfig {
     private int maxSession;
 
     // Expecting these four components to be obtained from beans injected outside of this
-    private final RedisIndexedSessionRepository redisIndexedSessionRepository;
+    private final NearCacheSessionRepository<?> sessionRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationEntryPoint authEntryPoint;
     private final UserDetailsService userDetailsService;
     private final LogoutHandler logoutHandler;
+    private final AuthRateLimitFilter authRateLimitFilter;
 
 
     public SecurityConfig(
-            RedisIndexedSessionRepository redisIndexedSessionRepository,
+            NearCacheSessionRepository<?> sessionRepository,
             PasswordEncoder passwordEncoder,
             @Qualifier(value="customAuthEntryPoint") AuthenticationEntryPoint authEntryPoint,
             @Qualifier(value="customUserDetailsService") UserDetailsService userDetailsService,
-            LogoutHandler logoutHandler
+            LogoutHandler logoutHandler,
+            AuthRateLimitFilter authRateLimitFilter
     ) {
-        this.redisIndexedSessionRepository = redisIndexedSessionRepository;
+        this.sessionRepository = sessionRepository;
         this.passwordEncoder = passwordEncoder;
         this.authEntryPoint = authEntryPoint;
         this.userDetailsService = userDetailsService;
         this.logoutHandler = logoutHandler;
+        this.authRateLimitFilter = authRateLimitFilter;
     }
 
     /**
@@ -94,7 +98,7 @@ public class SecurityConfig {
      */
     @Bean
     public SpringSessionBackedSessionRegistry<? extends Session> sessionRegistry() {
-        return new SpringSessionBackedSessionRegistry<>(this.redisIndexedSessionRepository);
+        return new SpringSessionBackedSessionRegistry<>(this.sessionRepository);
     }
 
     /*
@@ -129,6 +133,10 @@ public class SecurityConfig {
                     // Allow preflight requests to be sent without needing authentication. I think this is necessary?
                     auth.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll();
 
+                    // Health checks are public (e.g. for load balancers), but metrics and other actuator endpoints are for admins only
+                    auth.requestMatchers("/actuator/health").permitAll();
+                    auth.requestMatchers("/actuator/**").hasAnyAuthority("ADMIN", "SUPER_ADMIN");
+
                     auth.anyRequest().authenticated(); // Require authentication for all other routes
                 }).sessionManagement(sessionManagement -> sessionManagement
                         /*
@@ -146,6 +154,8 @@ public class SecurityConfig {
                         .maximumSessions(maxSession)
                         .sessionRegistry(sessionRegistry())
                 )
+                // Rate limit the login and registration endpoints before any of their (expensive) work is done
+                .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 // Pass in the 'AuthenticationEntryPoint' component that'll handle the AuthenticationExceptions
                 .exceptionHandling((ex) -> ex.authenticationEntryPoint(authEntryPoint))
 
@@ -0,0 +1,130 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knguyendev.api.exception.ServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Filter that rate limits the public auth endpoints, which are expensive to call since every login or registration does
+ * a database lookup and hashes a password. It's placed in the security filter chain, so excess requests are rejected
+ * before the 'AuthenticationManager' ever runs.
+ * <p>
+ * 1. **By IP**: Every login and registration takes a token from the bucket of the client's IP address.
+ * <p>
+ * 2. **By username**: Logins also take a token from the bucket of the username they're logging into, which limits
+ * credential stuffing against a single account even when it's spread out over many IPs.
+ * <p>
+ * Rejected requests get a 429 with a 'Retry-After' header, and are counted in the 'auth.ratelimit.rejected' metric.
+ * <p>
+ * NOTE: The IP is 'request.getRemoteAddr()'. When running behind a proxy, set 'server.forward-headers-strategy' so that
+ * it's the client's IP rather than the proxy's.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+    private static final String LOGIN_PATH = "/api/v1/auth/login";
+    private static final String REGISTER_PATH = "/api/v1/auth/register";
+    private static final Set<String> LIMITED_PATHS = Set.of(LOGIN_PATH, REGISTER_PATH);
+
+    private final RateLimiter rateLimiter;
+    private final HandlerExceptionResolver resolver;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+
+    private final long ipCapacity;
+    private final Duration ipRefillPeriod;
+    private final long usernameCapacity;
+    private final Duration usernameRefillPeriod;
+
+    public AuthRateLimitFilter(
+            RateLimiter rateLimiter,
+            HandlerExceptionResolver resolver,
+            MeterRegistry meterRegistry,
+            ObjectMapper objectMapper,
+            long ipCapacity,
+            Duration ipRefillPeriod,
+            long usernameCapacity,
+            Duration usernameRefillPeriod
+    ) {
+        this.rateLimiter = rateLimiter;
+        this.resolver = resolver;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPeriod = ipRefillPeriod;
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefillPeriod = usernameRefillPeriod;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || !LIMITED_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String endpoint = request.getServletPath().equals(LOGIN_PATH) ? "login" : "register";
+
+        // Check the IP first, since it doesn't need the body to be read
+        RateLimitDecision decision = rateLimiter.tryAcquire("auth:ip:" + request.getRemoteAddr(), ipCapacity, ipRefillPeriod);
+        if (!decision.allowed()) {
+            reject(request, response, decision, endpoint, "ip");
+            return;
+        }
+
+        if (endpoint.equals("login")) {
+            CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request);
+            String username = extractUsername(cachedRequest.getBody());
+            if (username != null) {
+                decision = rateLimiter.tryAcquire("auth:username:" + username, usernameCapacity, usernameRefillPeriod);
+                if (!decision.allowed()) {
+                    reject(request, response, decision, endpoint, "username");
+                    return;
+                }
+            }
+            request = cachedRequest;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Gets the username from a login request's JSON body, normalized the same way that 'UserLoginDTO' does it. If the body
+     * isn't valid, then null is returned, and the request is left for input validation to reject.
+     */
+    private String extractUsername(byte[] body) {
+        try {
+            JsonNode username = objectMapper.readTree(body).get("username");
+            if (username == null || !username.isTextual() || username.asText().isBlank()) {
+                return null;
+            }
+            return username.asText().toLowerCase().trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, RateLimitDecision decision, String endpoint, String limitedBy) {
+        meterRegistry.counter("auth.ratelimit.rejected", "endpoint", endpoint, "limitedBy", limitedBy).increment();
+
+        // Round up, since telling the client to retry too early will just get them rejected again
+        long retryAfterSeconds = Math.max(1, (decision.retryAfter().toMillis() + 999) / 1000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        resolver.resolveException(request, response, null, new ServiceException(
+                "Too many attempts! Please try again in " + retryAfterSeconds + " seconds.",
+                HttpStatus.TOO_MANY_REQUESTS
+        ));
+    }
+}
@@ -0,0 +1,65 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter that keeps its buckets in the memory of this server, so the limits apply per instance.
+ * <p>
+ * Requests never wait on a lock. The buckets are stored in a Caffeine cache, which is backed by a ConcurrentHashMap and
+ * so only locks the single bin of a key while a new bucket is being created. Taking a token is then a compare-and-set on
+ * the bucket's state, which is retried if another request got there first.
+ * <p>
+ * NOTE: The number of buckets is bounded, and buckets that aren't used expire, so spraying requests from many IPs can't
+ * use up the memory.
+ */
+public class LocalTokenBucketRateLimiter implements RateLimiter {
+
+    /**
+     * State of a bucket at a point in time; a new instance is swapped in whenever a token is taken.
+     *
+     * @param tokens Tokens in the bucket, which can be fractional since the bucket refills continuously
+     * @param updatedAtNanos When 'tokens' was last calculated
+     */
+    private record BucketState(double tokens, long updatedAtNanos) {}
+
+    private final Cache<String, AtomicReference<BucketState>> buckets;
+    private final LongSupplier nanoClock;
+
+    public LocalTokenBucketRateLimiter(long maximumBuckets, Duration idleExpiry) {
+        this(maximumBuckets, idleExpiry, System::nanoTime);
+    }
+
+    // Lets tests control time
+    LocalTokenBucketRateLimiter(long maximumBuckets, Duration idleExpiry, LongSupplier nanoClock) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumBuckets)
+                .expireAfterAccess(idleExpiry)
+                .build();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, long capacity, Duration refillPeriod) {
+        double tokensPerNano = (double) capacity / refillPeriod.toNanos();
+        AtomicReference<BucketState> bucket = buckets.get(key, k -> new AtomicReference<>(new BucketState(capacity, nanoClock.getAsLong())));
+
+        while (true) {
+            BucketState current = bucket.get();
+            long now = nanoClock.getAsLong();
+            double tokens = Math.min(capacity, current.tokens() + Math.max(0, now - current.updatedAtNanos()) * tokensPerNano);
+
+            if (tokens < 1) {
+                long nanosUntilToken = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                return RateLimitDecision.rejected(Duration.ofNanos(nanosUntilToken));
+            }
+            if (bucket.compareAndSet(current, new BucketState(tokens - 1, now))) {
+                return RateLimitDecision.ALLOWED;
+            }
+        }
+    }
+}
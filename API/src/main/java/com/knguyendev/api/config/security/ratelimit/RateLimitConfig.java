@@ -0,0 +1,70 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the rate limiting of the auth endpoints. The limits and whether buckets are kept in memory
+ * ('local') or in Redis ('redis') are configured under 'spring.custom.rateLimit'.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Value(value = "${spring.custom.rateLimit.mode}")
+    private String mode;
+
+    @Value(value = "${spring.custom.rateLimit.maximumLocalBuckets}")
+    private long maximumLocalBuckets;
+
+    @Value(value = "${spring.custom.rateLimit.ip.capacity}")
+    private long ipCapacity;
+
+    @Value(value = "${spring.custom.rateLimit.ip.refillPeriod}")
+    private Duration ipRefillPeriod;
+
+    @Value(value = "${spring.custom.rateLimit.username.capacity}")
+    private long usernameCapacity;
+
+    @Value(value = "${spring.custom.rateLimit.username.refillPeriod}")
+    private Duration usernameRefillPeriod;
+
+    @Bean
+    public RateLimiter rateLimiter(StringRedisTemplate redisTemplate) {
+        if ("redis".equals(mode)) {
+            return new RedisTokenBucketRateLimiter(redisTemplate);
+        }
+        // Buckets that are idle for the longest refill period are full again, so there's no reason to keep them around
+        Duration idleExpiry = ipRefillPeriod.compareTo(usernameRefillPeriod) > 0 ? ipRefillPeriod : usernameRefillPeriod;
+        return new LocalTokenBucketRateLimiter(maximumLocalBuckets, idleExpiry);
+    }
+
+    @Bean
+    public AuthRateLimitFilter authRateLimitFilter(
+            RateLimiter rateLimiter,
+            @Qualifier(value = "handlerExceptionResolver") HandlerExceptionResolver resolver,
+            MeterRegistry meterRegistry,
+            ObjectMapper objectMapper
+    ) {
+        return new AuthRateLimitFilter(rateLimiter, resolver, meterRegistry, objectMapper, ipCapacity, ipRefillPeriod, usernameCapacity, usernameRefillPeriod);
+    }
+
+    /**
+     * Filters that are beans get registered with the servlet container automatically, but this one is added to the
+     * security filter chain in 'SecurityConfig' instead, so it shouldn't be registered twice.
+     */
+    @Bean
+    public FilterRegistrationBean<AuthRateLimitFilter> authRateLimitFilterRegistration(AuthRateLimitFilter authRateLimitFilter) {
+        FilterRegistrationBean<AuthRateLimitFilter> registration = new FilterRegistrationBean<>(authRateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
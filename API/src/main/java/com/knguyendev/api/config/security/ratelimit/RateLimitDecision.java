@@ -0,0 +1,17 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Result of trying to take a token from a rate limiter's bucket.
+ *
+ * @param allowed Whether a token was taken, meaning the request can go ahead
+ * @param retryAfter If the request wasn't allowed, how long until the bucket has a token again. Otherwise it's zero.
+ */
+public record RateLimitDecision(boolean allowed, Duration retryAfter) {
+    public static final RateLimitDecision ALLOWED = new RateLimitDecision(true, Duration.ZERO);
+
+    public static RateLimitDecision rejected(Duration retryAfter) {
+        return new RateLimitDecision(false, retryAfter);
+    }
+}
@@ -0,0 +1,22 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Token bucket rate limiter. Every key has a bucket that holds up to 'capacity' tokens and is refilled at a steady rate,
+ * so that an empty bucket is full again after 'refillPeriod'. Every request takes a token, and is rejected when there are none.
+ * <p>
+ * This allows short bursts of up to 'capacity' requests, while limiting the average to 'capacity' requests per 'refillPeriod'.
+ */
+public interface RateLimiter {
+
+    /**
+     * Attempts to take a token from the bucket for the given key.
+     *
+     * @param key Identifies the bucket, such as an IP address or username along with what's being limited
+     * @param capacity Maximum number of tokens the bucket holds
+     * @param refillPeriod How long it takes for an empty bucket to be full again
+     * @return Whether the request is allowed, and if not, how long until a token is available
+     */
+    RateLimitDecision tryAcquire(String key, long capacity, Duration refillPeriod);
+}
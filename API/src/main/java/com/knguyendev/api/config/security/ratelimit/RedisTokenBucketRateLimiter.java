@@ -0,0 +1,50 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rate limiter that keeps its buckets in Redis, so the limits are shared by every instance of the server. Each check is
+ * a single round trip, which runs the 'redis/token_bucket.lua' script to refill and take from the bucket atomically.
+ * <p>
+ * NOTE: If Redis can't be reached, requests are allowed through. Sessions are stored in Redis too, so logins would be
+ * failing regardless, and we don't want the rate limiter to be the reason every request is rejected.
+ */
+public class RedisTokenBucketRateLimiter implements RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RedisTokenBucketRateLimiter.class);
+    private static final String KEY_PREFIX = "rateLimit:";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = RedisScript.of(new ClassPathResource("redis/token_bucket.lua"), List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisTokenBucketRateLimiter(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, long capacity, Duration refillPeriod) {
+        try {
+            List<?> result = redisTemplate.execute(
+                    TOKEN_BUCKET_SCRIPT,
+                    List.of(KEY_PREFIX + key),
+                    String.valueOf(capacity),
+                    String.valueOf(refillPeriod.toMillis())
+            );
+            if (result == null || ((Number) result.get(0)).longValue() == 1) {
+                return RateLimitDecision.ALLOWED;
+            }
+            return RateLimitDecision.rejected(Duration.ofMillis(((Number) result.get(1)).longValue()));
+        } catch (RuntimeException e) {
+            logger.warn("Rate limiter couldn't reach Redis, so the request is allowed: {}", e.getMessage());
+            return RateLimitDecision.ALLOWED;
+        }
+    }
+}
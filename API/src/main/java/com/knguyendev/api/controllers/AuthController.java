@@ -1,10 +1,13 @@
 package com.knguyendev.api.controllers;
 
+import com.knguyendev.api.domain.dto.User.AvailabilityDTO;
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserLoginDTO;
 import com.knguyendev.api.domain.dto.User.UserRegistrationDTO;
 import com.knguyendev.api.enumeration.UserRole;
+import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.services.AuthService;
+import com.knguyendev.api.services.AvailabilityService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -27,8 +30,10 @@ public class AuthController {
 
     // Setting up to receive beans for UserService and Mapper<UserEntity, UserDto>
     private final AuthService authService;
-    public AuthController(AuthService authService) {
+    private final AvailabilityService availabilityService;
+    public AuthController(AuthService authService, AvailabilityService availabilityService) {
         this.authService = authService;
+        this.availabilityService = availabilityService;
     }
 
 
@@ -61,6 +66,21 @@ public class AuthController {
 
 
 
+    /**
+     * Route for checking whether a username and/or email can still be registered, e.g. while the user types them.
+     * @param username Username to check
+     * @param email Email to check
+     * @return Whether each of the given values is available
+     */
+    @GetMapping("/available")
+    public ResponseEntity<AvailabilityDTO> checkAvailability(@RequestParam(required = false) String username, @RequestParam(required = false) String email) {
+        if (username == null && email == null) {
+            throw new ServiceException("A username or email to check is required!", HttpStatus.BAD_REQUEST);
+        }
+        AvailabilityDTO availabilityDTO = availabilityService.checkAvailability(username, email);
+        return new ResponseEntity<>(availabilityDTO, HttpStatus.OK);
+    }
+
     @GetMapping("/session")
     public ResponseEntity<Map<String, Object>> printSessionAttributes(HttpSession session) {
         Map<String, Object> response = new HashMap<>();
@@ -0,0 +1,37 @@
+package com.knguyendev.api.controllers;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.services.DeletionJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Lets admins monitor the progress of the background jobs that purge deleted accounts and task lists.
+ */
+@RestController
+@RequestMapping("/api/v1/deletionJobs")
+public class DeletionJobController {
+    private final DeletionJobService deletionJobService;
+    public DeletionJobController(DeletionJobService deletionJobService) {
+        this.deletionJobService = deletionJobService;
+    }
+
+    @GetMapping(path="")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SUPER_ADMIN')")
+    public ResponseEntity<List<DeletionJobDTO>> getDeletionJobs() {
+        return new ResponseEntity<>(deletionJobService.findAll(), HttpStatus.OK);
+    }
+
+    @GetMapping(path="/{id}")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SUPER_ADMIN')")
+    public ResponseEntity<DeletionJobDTO> getDeletionJobById(@PathVariable("id") Long id) {
+        return new ResponseEntity<>(deletionJobService.findById(id), HttpStatus.OK);
+    }
+}
@@ -2,8 +2,10 @@ package com.knguyendev.api.controllers;
 
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorCreateDTO;
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorSnapshot;
 import com.knguyendev.api.services.ItemColorService;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -41,9 +43,18 @@ public class ItemColorController {
         return new ResponseEntity<>(itemColorService.deleteById(id), HttpStatus.OK);
     }
 
+    /*
+     * The colors come with an ETag, so clients can send it back in 'If-None-Match' and get a 304 without a body when the
+     * colors haven't changed; Spring does that comparison for ResponseEntity's with an ETag. 'no-cache' lets clients keep
+     * the colors as long as they revalidate them, and also stops Spring Security from marking the response 'no-store'.
+     */
     @GetMapping(path="")
     public ResponseEntity<List<ItemColorDTO>> getItemColorList() {
-        return new ResponseEntity<>(itemColorService.findAll(), HttpStatus.OK);
+        ItemColorSnapshot snapshot = itemColorService.getSnapshot();
+        return ResponseEntity.ok()
+                .eTag(snapshot.getETag())
+                .cacheControl(CacheControl.noCache())
+                .body(snapshot.getItemColors());
     }
 
     @PostMapping(path="")
@@ -1,16 +1,23 @@
 package com.knguyendev.api.controllers;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.knguyendev.api.domain.dto.Task.TaskCreateRequest;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
-import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
+import com.knguyendev.api.domain.dto.Task.TaskTombstoneDTO;
 import com.knguyendev.api.repositories.TaskRepository;
 import com.knguyendev.api.services.ItemColorService;
 import com.knguyendev.api.services.TaskService;
+import com.knguyendev.api.utils.JsonMergePatch;
 import jakarta.validation.Valid;
 import lombok.Getter;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.ZonedDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/tasks")
 public class TaskController {
@@ -41,13 +48,13 @@ public class TaskController {
     }
 
     /*
-     * Updating a task's contents.
+     * Updating a task's contents. The body is a JSON Merge Patch, so it only needs the fields that are changing, and
+     * setting a field to null clears it.
      * PATCH /{taskId}
      */
-    @PatchMapping(path="/{id}")
-    public ResponseEntity<TaskDTO> updateTaskById(@PathVariable("id") Long id, @Valid @RequestBody TaskUpdateRequest taskUpdateRequest) {
-        taskUpdateRequest.normalizeData();
-        TaskDTO taskDTO = taskService.updateById(id, taskUpdateRequest);
+    @PatchMapping(path="/{id}", consumes = {JsonMergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<TaskDTO> updateTaskById(@PathVariable("id") Long id, @RequestBody JsonNode patch) {
+        TaskDTO taskDTO = taskService.updateById(id, patch);
         return new ResponseEntity<>(taskDTO, HttpStatus.OK);
     }
 
@@ -62,11 +69,26 @@ public class TaskController {
     }
 
     /*
-     * Reading an existing task
-     * GET /{taskId}
+     * Reading the tasks that were deleted since a given time, which lets delta-sync clients remove them locally.
+     * GET /deleted?since={ISO-8601 date-time}
+     */
+    @GetMapping(path="/deleted")
+    public ResponseEntity<List<TaskTombstoneDTO>> findDeletedTasks(
+            @RequestParam("since") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime since
+    ) {
+        List<TaskTombstoneDTO> tombstones = taskService.findDeletedSince(since);
+        return new ResponseEntity<>(tombstones, HttpStatus.OK);
+    }
+
+    /*
+     * Reading an existing task. With 'fields', only the picked fields are read and returned, e.g. '?fields=id,title'.
+     * GET /{taskId}?fields={comma separated field names}
      */
     @GetMapping(path="/{id}")
-    public ResponseEntity<TaskDTO> findTaskById(@PathVariable("id") Long id) {
+    public ResponseEntity<?> findTaskById(@PathVariable("id") Long id, @RequestParam(value = "fields", required = false) String fields) {
+        if (fields != null) {
+            return new ResponseEntity<>(taskService.findById(id, fields), HttpStatus.OK);
+        }
         TaskDTO taskDTO = taskService.findById(id);
         return new ResponseEntity<>(taskDTO, HttpStatus.OK);
     }
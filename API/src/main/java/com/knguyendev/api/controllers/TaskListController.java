@@ -1,11 +1,13 @@
 package com.knguyendev.api.controllers;
 
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListRequest;
 import com.knguyendev.api.services.TaskListService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -66,26 +68,43 @@ public class TaskListController {
      * Retrieve all task lists associated with the currently authenticated user.
      * Optionally include related tasks based on query parameter.
      *
-     * @param includeTasks Flag indicating whether to include related tasks in the response.
+     * @param includeTasks Flag indicating whether to include related tasks in the response. Task lists with their tasks
+     *                     are sent as a pre-serialized snapshot, so the body is written as is.
+     * @param fields Comma separated fields to read and return, e.g. 'id,name,taskCount' for a sidebar, or
+     *               'id,name,tasks.id,tasks.title' for a list view. Omitted for every field. The picked fields are
+     *               read from the database rather than the snapshot, since a snapshot only exists for the full JSON.
      * @return ResponseEntity with a list of task lists and optionally their tasks.
      */
     @GetMapping(path="")
-    public ResponseEntity<List<TaskListDTO>> getAllTaskLists(@RequestParam(value = "includeTasks", defaultValue = "false") boolean includeTasks) {
+    public ResponseEntity<?> getAllTaskLists(
+            @RequestParam(value = "includeTasks", defaultValue = "false") boolean includeTasks,
+            @RequestParam(value = "fields", required = false) String fields) {
+        if (fields != null) {
+            return new ResponseEntity<>(taskListService.findUserTaskLists(includeTasks, fields), HttpStatus.OK);
+        }
+        if (includeTasks) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(taskListService.findUserTaskListsJson());
+        }
         List<TaskListDTO> dtoList = taskListService.findUserTaskLists(includeTasks);
         return new ResponseEntity<>(dtoList, HttpStatus.OK);
     }
 
 
     /**
-     * Retrieve all task lists in the system.
+     * Retrieve a page of all task lists in the system.
      * This is typically used for debugging or administrative purposes.
      *
-     * @return ResponseEntity with a list of all task lists.
+     * @param after Cursor from the previous page ('nextCursor'); omitted for the first page.
+     * @param size Number of task lists in the page.
+     * @return ResponseEntity with a page of task lists.
      */
     @GetMapping(path="/all")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SUPER_ADMIN')")
-    public ResponseEntity<List<TaskListDTO>> getAllTaskListsForDebugging() {
-        List<TaskListDTO> dtoList = taskListService.findAll();
-        return new ResponseEntity<>(dtoList, HttpStatus.OK);
+    public ResponseEntity<KeysetPageDTO<TaskListDTO>> getAllTaskListsForDebugging(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        return new ResponseEntity<>(taskListService.findPage(after, size), HttpStatus.OK);
     }
 }
@@ -1,14 +1,24 @@
 package com.knguyendev.api.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.User.ChangePasswordDTO;
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserDeleteDTO;
-import com.knguyendev.api.domain.dto.User.UserProfileUpdateDTO;
+import com.knguyendev.api.domain.dto.User.UserFilterDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.services.UserSearchService;
+import com.knguyendev.api.enumeration.UserRole;
 import com.knguyendev.api.services.UserService;
+import com.knguyendev.api.utils.JsonMergePatch;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.BeanPropertyBindingResult;
@@ -16,6 +26,13 @@ import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
 import java.util.List;
 
 
@@ -23,16 +40,20 @@ import java.util.List;
 @RequestMapping("/api/v1/users")
 public class UserController {
     private final UserService userService;
-    public UserController(UserService userService) {
+    private final UserSearchService userSearchService;
+
+    // Writer for the export; it isn't allowed to close the response stream after each user
+    private final ObjectMapper objectMapper;
+    public UserController(UserService userService, UserSearchService userSearchService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.userSearchService = userSearchService;
+        this.objectMapper = objectMapper.copy().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
-    @PatchMapping("/my_profile")
-    public ResponseEntity<UserDTO> updateMyProfile(@RequestBody UserProfileUpdateDTO userProfileUpdateDTO) {
-
-        userProfileUpdateDTO.normalizeData();
-
-        return new ResponseEntity<>(userService.updateAccountProfile(userProfileUpdateDTO), HttpStatus.OK);
+    // The body is a JSON Merge Patch, so it only needs the profile fields that are changing
+    @PatchMapping(path = "/my_profile", consumes = {JsonMergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UserDTO> updateMyProfile(@RequestBody JsonNode patch) {
+        return new ResponseEntity<>(userService.updateAccountProfile(patch), HttpStatus.OK);
     }
 
     @GetMapping("/my_profile")
@@ -79,6 +100,17 @@ public class UserController {
     }
 
 
+    /**
+     * Route for finding users by the start of their username, e.g. to add them as a friend.
+     * @param prefix Start of the username
+     * @param limit Maximum number of users to return
+     * @return Matching users, in username order
+     */
+    @GetMapping(path="/search")
+    public ResponseEntity<List<UserSummaryDTO>> searchUsers(@RequestParam("prefix") String prefix, @RequestParam(required = false) Integer limit) {
+        return new ResponseEntity<>(userSearchService.searchByUsernamePrefix(prefix, limit), HttpStatus.OK);
+    }
+
     @GetMapping(path="/{id}")
     public ResponseEntity<UserDTO> getUserById(@PathVariable("id") Long id) {
         return new ResponseEntity<>(userService.findById(id), HttpStatus.OK);
@@ -90,8 +122,49 @@ public class UserController {
         return new ResponseEntity<>(userService.deleteById(id), HttpStatus.OK);
     }
 
+    /**
+     * Route for listing users page by page, e.g. for the admin dashboard.
+     * @param after Cursor from the previous page ('nextCursor'); omitted for the first page
+     * @param size Number of users in the page
+     * @return A page of users that match the filters
+     */
     @GetMapping(path="")
-    public ResponseEntity<List<UserDTO>> getUserList() {
-        return new ResponseEntity<>(userService.findAll(), HttpStatus.OK);
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SUPER_ADMIN')")
+    public ResponseEntity<KeysetPageDTO<UserDTO>> getUserList(
+            @RequestParam(required = false) UserRole role,
+            @RequestParam(required = false) Boolean isVerified,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdBefore,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size) {
+        UserFilterDTO filter = new UserFilterDTO(role, isVerified, createdAfter, createdBefore);
+        return new ResponseEntity<>(userService.findPage(filter, after, size), HttpStatus.OK);
+    }
+
+    /**
+     * Route for exporting every user that matches the filters as newline-delimited JSON (one user per line). The users
+     * are written out as they're read from the database, so the export isn't held in memory.
+     */
+    @GetMapping(path="/export", produces="application/x-ndjson")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SUPER_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(required = false) UserRole role,
+            @RequestParam(required = false) Boolean isVerified,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdBefore) {
+        UserFilterDTO filter = new UserFilterDTO(role, isVerified, createdAfter, createdBefore);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream bufferedStream = new BufferedOutputStream(outputStream);
+            userService.exportUsers(filter, user -> {
+                try {
+                    objectMapper.writeValue(bufferedStream, user);
+                    bufferedStream.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            bufferedStream.flush();
+        };
+        return new ResponseEntity<>(body, HttpStatus.OK);
     }
 }
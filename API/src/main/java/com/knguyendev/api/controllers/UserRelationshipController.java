@@ -1,7 +1,13 @@
 package com.knguyendev.api.controllers;
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.MutualFriendsDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipBatchRequest;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipBatchResultDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRequest;
+import com.knguyendev.api.enumeration.RelationshipFilter;
 import com.knguyendev.api.services.UserRelationshipService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
@@ -9,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/userRelationships")
@@ -54,12 +61,72 @@ public class UserRelationshipController {
         return new ResponseEntity<>(dto, HttpStatus.OK);
     }
 
+    /**
+     * Route for sending friend requests to several users at once, e.g. when importing contacts.
+     * @return The result for each user; a failure for one user doesn't stop the others
+     */
+    @PostMapping(path="/request/batch")
+    public ResponseEntity<List<UserRelationshipBatchResultDTO>> requestFriendships(@Valid @RequestBody UserRelationshipBatchRequest batchRequest) {
+        return new ResponseEntity<>(userRelationshipService.requestFriendships(batchRequest.getTargetUserIds()), HttpStatus.OK);
+    }
+
+    /**
+     * Route for blocking several users at once, e.g. from moderation tools.
+     * @return The result for each user; a failure for one user doesn't stop the others
+     */
+    @PutMapping(path="/block/batch")
+    public ResponseEntity<List<UserRelationshipBatchResultDTO>> blockUsers(@Valid @RequestBody UserRelationshipBatchRequest batchRequest) {
+        return new ResponseEntity<>(userRelationshipService.blockUsers(batchRequest.getTargetUserIds()), HttpStatus.OK);
+    }
+
+    /**
+     * Route for listing the authenticated user's relationships page by page.
+     * @param filter Which relationships to list (FRIENDS, INCOMING, OUTGOING or BLOCKED); omitted for all of them
+     * @param after Cursor from the previous page ('nextCursor'); omitted for the first page
+     * @param size Number of relationships in the page
+     * @param fields Comma separated fields to read and return, e.g. 'status,secondUser.username'; omitted for every field
+     * @return A page of relationships
+     */
     @GetMapping(path="")
-    public ResponseEntity<List<UserRelationshipDTO>> getRelationships() {
-        List<UserRelationshipDTO> relationships = userRelationshipService.getAuthUserRelationships();
+    public ResponseEntity<KeysetPageDTO<?>> getRelationships(
+            @RequestParam(required = false) RelationshipFilter filter,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return new ResponseEntity<>(userRelationshipService.getAuthUserRelationships(filter, after, size, fields), HttpStatus.OK);
+        }
+        KeysetPageDTO<UserRelationshipDTO> relationships = userRelationshipService.getAuthUserRelationships(filter, after, size);
         return new ResponseEntity<>(relationships, HttpStatus.OK);
     }
 
+    /**
+     * Route for the number of friend requests waiting on the authenticated user, e.g. for a badge.
+     */
+    @GetMapping(path="/incoming/count")
+    public ResponseEntity<Map<String, Long>> countIncomingRequests() {
+        return new ResponseEntity<>(Map.of("count", userRelationshipService.countIncomingRequests()), HttpStatus.OK);
+    }
+
+    /**
+     * Route for the friends that the authenticated user has in common with another user.
+     * @param userId ID of the other user
+     * @param limit Maximum number of mutual friends to list
+     */
+    @GetMapping(path="/mutual/{userId}")
+    public ResponseEntity<MutualFriendsDTO> getMutualFriends(@PathVariable Long userId, @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(userRelationshipService.getMutualFriends(userId, limit), HttpStatus.OK);
+    }
+
+    /**
+     * Route for "people you may know" suggestions for the authenticated user.
+     * @param limit Maximum number of suggestions
+     */
+    @GetMapping(path="/suggestions")
+    public ResponseEntity<List<UserSummaryDTO>> getFriendSuggestions(@RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(userRelationshipService.getFriendSuggestions(limit), HttpStatus.OK);
+    }
+
 
 
 
@@ -0,0 +1,25 @@
+package com.knguyendev.api.domain.dto.DeletionJob;
+
+import com.knguyendev.api.enumeration.DeletionJobStatus;
+import com.knguyendev.api.enumeration.DeletionTargetType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DeletionJobDTO {
+    private Long id;
+    private DeletionTargetType targetType;
+    private Long targetId;
+    private DeletionJobStatus status;
+    private Long rowsDeleted;
+    private ZonedDateTime createdAt;
+    private ZonedDateTime updatedAt;
+    private ZonedDateTime completedAt;
+}
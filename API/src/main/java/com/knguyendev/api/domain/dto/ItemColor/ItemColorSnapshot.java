@@ -0,0 +1,62 @@
+package com.knguyendev.api.domain.dto.ItemColor;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Every ItemColor at one point in time, with an ETag for it so clients can tell whether their copy is still current.
+ * <p>
+ * A snapshot is never modified; changes to the colors build a new one. The colors are shared by every request, so they
+ * must not be modified either.
+ */
+@Getter
+public class ItemColorSnapshot {
+    private final List<ItemColorDTO> itemColors;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, ItemColorDTO> itemColorsById;
+
+    // Strong ETag (quoted), derived from the colors alone so every server instance gives the same colors the same ETag
+    private final String eTag;
+
+    private ItemColorSnapshot(List<ItemColorDTO> itemColors, String eTag) {
+        this.itemColors = itemColors;
+        this.itemColorsById = itemColors.stream().collect(Collectors.toUnmodifiableMap(ItemColorDTO::getId, Function.identity()));
+        this.eTag = eTag;
+    }
+
+    /**
+     * Finds a color by its ID, e.g. to resolve the color of a task without joining ItemColor.
+     * @return The color, or null if the ID is null or there's no color with that ID
+     */
+    public ItemColorDTO findById(Long id) {
+        return id == null ? null : itemColorsById.get(id);
+    }
+
+    public static ItemColorSnapshot of(List<ItemColorDTO> itemColors) {
+        List<ItemColorDTO> sortedItemColors = itemColors.stream()
+                .sorted(Comparator.comparing(ItemColorDTO::getId))
+                .toList();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (ItemColorDTO itemColor : sortedItemColors) {
+            // Separate the fields with a character that can't appear in them, so different colors can't hash the same
+            String fields = itemColor.getId() + "\n" + itemColor.getName() + "\n" + itemColor.getHexCode() + "\n";
+            digest.update(fields.getBytes(StandardCharsets.UTF_8));
+        }
+        String eTag = "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        return new ItemColorSnapshot(sortedItemColors, eTag);
+    }
+}
@@ -0,0 +1,42 @@
+package com.knguyendev.api.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of results that's fetched by keyset (cursor) pagination. Rather than skipping an offset, which gets slower the
+ * further you page, the next page is fetched by passing 'nextCursor' back as the 'after' parameter, which is the id of
+ * the last item of this page.
+ *
+ * @param <T> Type of the items in the page
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class KeysetPageDTO<T> {
+    private List<T> items;
+
+    // Cursor for the next page, which is null if this is the last page
+    private Long nextCursor;
+
+    /**
+     * Creates a page out of the results of a query for up to 'size + 1' items, where the extra item only tells us that
+     * there's another page.
+     * @param results Results of the query, ordered by id
+     * @param size Size of the page
+     * @param idGetter Gets the id (the cursor) of an item
+     */
+    public static <T> KeysetPageDTO<T> of(List<T> results, int size, Function<T, Long> idGetter) {
+        if (results.size() <= size) {
+            return new KeysetPageDTO<>(results, null);
+        }
+        List<T> items = results.subList(0, size);
+        return new KeysetPageDTO<>(items, idGetter.apply(items.get(size - 1)));
+    }
+}
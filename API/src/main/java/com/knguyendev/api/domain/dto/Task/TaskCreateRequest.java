@@ -101,6 +101,12 @@ public class TaskCreateRequest {
      */
     private ZonedDateTime dueDate;
 
+    /**
+     * ID of the ItemColor to show the task with.
+     * This field is optional. If not provided, the task is shown with its task list's color.
+     */
+    private Long colorId;
+
     public void normalizeData() {
         title = title.trim();
         description = description.trim();
@@ -1,5 +1,6 @@
 package com.knguyendev.api.domain.dto.Task;
 
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -36,4 +37,7 @@ public class TaskDTO {
     private boolean isStarred;
     private boolean isAllDay;
     private ZonedDateTime dueDate;
+
+    // Color of the task, resolved from the palette in memory; null when it uses its task list's color
+    private ItemColorDTO color;
 }
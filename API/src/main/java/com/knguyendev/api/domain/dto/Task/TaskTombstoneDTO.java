@@ -0,0 +1,22 @@
+package com.knguyendev.api.domain.dto.Task;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+/**
+ * DTO for telling delta-sync clients that a task was deleted. Only the IDs and the time of deletion are sent back,
+ * since that's all a client needs to remove the task locally.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TaskTombstoneDTO {
+    private Long id;
+    private Long taskListId;
+    private ZonedDateTime deletedAt;
+}
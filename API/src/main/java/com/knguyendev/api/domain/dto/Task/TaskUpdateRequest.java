@@ -63,8 +63,16 @@ public class TaskUpdateRequest {
      */
     private ZonedDateTime dueDate;
 
+    /**
+     * ID of the ItemColor to show the task with.
+     * This field is optional. If not provided, the task is shown with its task list's color.
+     */
+    private Long colorId;
+
     public void normalizeData() {
         title = title.trim();
-        description = description.trim();
+        if (description != null) {
+            description = description.trim();
+        }
     }
 }
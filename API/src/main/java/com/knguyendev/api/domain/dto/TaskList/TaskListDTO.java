@@ -1,5 +1,6 @@
 package com.knguyendev.api.domain.dto.TaskList;
 
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,4 +19,7 @@ public class TaskListDTO {
     private String name;
     private List<TaskDTO> tasks;
     private boolean isDefault;
+
+    // Color of the task list, resolved from the palette in memory; null for the default color
+    private ItemColorDTO color;
 }
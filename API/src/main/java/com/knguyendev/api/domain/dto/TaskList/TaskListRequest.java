@@ -20,7 +20,8 @@ import lombok.NoArgsConstructor;
  *   created by the user will not be default. This simplifies the creation process and avoids unnecessary
  *   complexity in the user input.
  * <p>
- * The only field included is `name`, which is the title that the user will input for their new task list.
+ * The fields included are `name`, which is the title that the user will input for their new task list, and an
+ * optional `colorId`.
  */
 @Data
 @AllArgsConstructor
@@ -32,6 +33,9 @@ public class TaskListRequest {
     @NameConstraint
     private String name;
 
+    // ID of the ItemColor to show the task list with; null for the default color
+    private Long colorId;
+
     public void normalizeData() {
         // we want to trim any whitespace around the name
         this.name = name.trim();
@@ -0,0 +1,21 @@
+package com.knguyendev.api.domain.dto.User;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for telling the registration form whether a username and/or email can still be used. Only the fields that were
+ * asked about are included.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AvailabilityDTO {
+    private Boolean username;
+    private Boolean email;
+}
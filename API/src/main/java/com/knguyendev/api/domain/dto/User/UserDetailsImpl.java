@@ -1,24 +1,65 @@
 package com.knguyendev.api.domain.dto.User;
 
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.enumeration.UserRole;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
 
 
 /**
  * An implementation of the UserDetails instance. This will be returned from our implementation of the UserDetailsService,
  * and it'll be the Principal. The Principal is then contained in the Authentication object, and the Authentication object
  * is contained by the Spring Security Context.
- * @param user
+ * <p>
+ * The principal is stored in the user's session, so it's kept small: only the ID, username, and role of the user are
+ * kept (see 'CompactSessionSerializer'). The full UserEntity, including the password hash, is 'transient', so it's only
+ * available during the request that authenticated the user, and is never written to the session.
  */
-public record UserDetailsImpl(UserEntity user) implements UserDetails {
+public class UserDetailsImpl implements UserDetails {
+    private final Long id;
+    private final String username;
+    private final UserRole role;
+    private final transient UserEntity user;
+
+    /**
+     * Creates the principal for a user that's being authenticated.
+     * @param user The user loaded from the database
+     */
+    public UserDetailsImpl(UserEntity user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.role = user.getRole();
+        this.user = user;
+    }
+
+    /**
+     * Creates the principal for a user that was already authenticated, such as when it's read back from the session.
+     */
+    public UserDetailsImpl(Long id, String username, UserRole role) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.user = null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
 
     /**
      * Returns the UserEntity associated with the UserDetailsImpl instance
      *
-     * @return The UserEntity linked with the UserDetailsImpl instance
+     * @return The UserEntity linked with the UserDetailsImpl instance, which is only available in the request that
+     *         authenticated the user. Afterwards it's null, so use 'getId()' and look the user up instead.
      */
     public UserEntity getUser() {
         return user;
@@ -26,17 +67,17 @@ public record UserDetailsImpl(UserEntity user) implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return user.getAuthorities();
+        return Collections.singleton(new SimpleGrantedAuthority(role.name()));
     }
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return user == null ? null : user.getPassword();
     }
 
     @Override
     public String getUsername() {
-        return user.getUsername();
+        return username;
     }
 
     /**
@@ -69,4 +110,20 @@ public record UserDetailsImpl(UserEntity user) implements UserDetails {
     public boolean isEnabled() {
         return true;
     }
+
+    /**
+     * Two principals are the same if they're for the same user. Spring Security compares principals when tracking the
+     * sessions of a user, so this shouldn't depend on the transient UserEntity.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserDetailsImpl that)) return false;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
 }
@@ -0,0 +1,25 @@
+package com.knguyendev.api.domain.dto.User;
+
+import com.knguyendev.api.enumeration.UserRole;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Filters for listing users, such as on the admin dashboard. Any field that's null isn't filtered on.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserFilterDTO {
+    private UserRole role;
+    private Boolean isVerified;
+
+    // Range of creation times, where 'createdAfter' is inclusive and 'createdBefore' is exclusive
+    private ZonedDateTime createdAfter;
+    private ZonedDateTime createdBefore;
+}
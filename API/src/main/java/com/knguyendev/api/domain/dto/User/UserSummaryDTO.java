@@ -0,0 +1,21 @@
+package com.knguyendev.api.domain.dto.User;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Public summary of a user, used when listing other users such as in search results. Unlike the UserDTO it doesn't
+ * contain private details such as the user's email.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserSummaryDTO {
+    private Long id;
+    private String username;
+    private String firstName;
+    private String lastName;
+}
@@ -0,0 +1,22 @@
+package com.knguyendev.api.domain.dto.UserRelationship;
+
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The friends that the authenticated user has in common with another user. 'count' is the total, while 'users' may only
+ * contain some of them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MutualFriendsDTO {
+    private int count;
+    private List<UserSummaryDTO> users;
+}
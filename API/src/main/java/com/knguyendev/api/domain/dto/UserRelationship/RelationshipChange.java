@@ -0,0 +1,22 @@
+package com.knguyendev.api.domain.dto.UserRelationship;
+
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change to the status of a relationship that's only applied if the relationship still has 'fromStatus', for writing
+ * many relationships in a batch.
+ * - fromStatus: Status the relationship is expected to have, or null if there shouldn't be a relationship yet.
+ * - toStatus: Status to change it to, or null if the relationship should be deleted.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RelationshipChange {
+    private Long firstUserId;
+    private Long secondUserId;
+    private UserRelationshipStatus fromStatus;
+    private UserRelationshipStatus toStatus;
+}
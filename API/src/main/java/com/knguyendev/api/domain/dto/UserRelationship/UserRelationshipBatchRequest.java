@@ -0,0 +1,22 @@
+package com.knguyendev.api.domain.dto.UserRelationship;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request for applying the same relationship action (e.g. blocking) to several users at once.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserRelationshipBatchRequest {
+    @NotEmpty(message="The 'targetUserIds' are required!")
+    private List<@NotNull(message="The 'targetUserIds' can't contain null!") Long> targetUserIds;
+}
@@ -0,0 +1,26 @@
+package com.knguyendev.api.domain.dto.UserRelationship;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Result of a relationship action for one of the users in a batch. If the action was applied, 'status' is the status of
+ * the relationship afterwards. Otherwise, 'message' and 'httpStatus' are the error that the single-user route would've
+ * responded with.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserRelationshipBatchResultDTO {
+    private Long targetUserId;
+    private UserRelationshipStatus status;
+    private String message;
+    private HttpStatus httpStatus;
+}
@@ -0,0 +1,43 @@
+package com.knguyendev.api.domain.dto.UserRelationship;
+
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import com.knguyendev.api.enumeration.UserRole;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A relationship and the public columns of both of its users, read in a single query. This is a flat row because JPQL
+ * constructor expressions can't build nested objects; the mapper turns it into a UserRelationshipDTO. Unlike loading
+ * the entities, it doesn't read columns such as password hashes and tokens.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserRelationshipRow {
+    private Long id;
+
+    private Long firstUserId;
+    private String firstUsername;
+    private String firstEmail;
+    private String firstFirstName;
+    private String firstLastName;
+    private String firstBiography;
+    private Boolean firstIsVerified;
+    private ZonedDateTime firstCreatedAt;
+    private UserRole firstRole;
+
+    private Long secondUserId;
+    private String secondUsername;
+    private String secondEmail;
+    private String secondFirstName;
+    private String secondLastName;
+    private String secondBiography;
+    private Boolean secondIsVerified;
+    private ZonedDateTime secondCreatedAt;
+    private UserRole secondRole;
+
+    private UserRelationshipStatus status;
+}
@@ -0,0 +1,60 @@
+package com.knguyendev.api.domain.entities;
+
+import com.knguyendev.api.enumeration.DeletionJobStatus;
+import com.knguyendev.api.enumeration.DeletionTargetType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Represents a background job that purges a user or task list that has already been marked as deleted.
+ * <p>
+ * Deleting a heavy account in one request means running unbounded DELETE statements that hold locks for a long time.
+ * Instead, the request marks the target as deleted (hiding it immediately) and records one of these jobs in the same
+ * transaction. The purger then removes rows in bounded chunks, and every chunk updates 'rowsDeleted' in the same
+ * transaction as the rows it removed. Since the job row is durable and each chunk is idempotent, a crash in the middle
+ * of a purge is resumed from wherever the last committed chunk left off.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "DeletionJob", indexes = {
+        @Index(name = "idx_deletion_job_status", columnList = "status")
+})
+public class DeletionJobEntity {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name="targetType", nullable=false)
+    private DeletionTargetType targetType;
+
+    // ID of the user or task list being purged
+    @Column(name="targetId", nullable=false)
+    private Long targetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name="status", nullable=false)
+    private DeletionJobStatus status;
+
+    // Total number of rows purged so far, across every table touched by the job
+    @Column(name="rowsDeleted", columnDefinition="BIGINT NOT NULL DEFAULT 0")
+    private Long rowsDeleted;
+
+    @Column(name="createdAt", columnDefinition="TIMESTAMP NOT NULL")
+    private ZonedDateTime createdAt;
+
+    @Column(name="updatedAt", columnDefinition="TIMESTAMP NOT NULL")
+    private ZonedDateTime updatedAt;
+
+    @Column(name="completedAt", columnDefinition="TIMESTAMP")
+    private ZonedDateTime completedAt;
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Data
 @AllArgsConstructor
@@ -12,6 +14,8 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @Table(name="ItemColor")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "itemColor")
 public class ItemColorEntity {
     @Id
     @GeneratedValue(strategy=GenerationType.IDENTITY)
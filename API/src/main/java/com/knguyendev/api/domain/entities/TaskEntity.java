@@ -6,14 +6,31 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLRestriction;
+
 import java.time.ZonedDateTime;
 
+/**
+ * NOTE: Deleting a task only sets its 'deletedAt' tombstone; a background purger physically removes tombstoned rows
+ * later. The '@SQLRestriction' makes every JPQL query and 'findById' skip tombstones, which matters for correctness
+ * since a tombstone still holds its old prevTaskId/nextTaskId pointers. Native queries aren't filtered, which is how
+ * the purger and delta-sync queries are able to see tombstones.
+ * <p>
+ * NOTE: '@DynamicUpdate' makes an UPDATE only write the columns that changed, so rewiring a task's pointers doesn't
+ * also rewrite its (possibly long) description. It doesn't prevent lost updates: saving a task that was read earlier
+ * merges it, and every column that differs from the current row counts as changed, including the ones another request
+ * changed in the meantime. That's why content updates are written with 'TaskRepository.updateContentById', and pointers
+ * are only changed under 'TaskListLocks'.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity
 @Table(name = "Task")
+@DynamicUpdate
+@SQLRestriction("deletedAt IS NULL")
 public class TaskEntity {
 
     // Unique identifier for a given task
@@ -146,4 +163,13 @@ public class TaskEntity {
      */
     @Column(name="dueDate", columnDefinition="TIMESTAMP")
     private ZonedDateTime dueDate;
+
+    // ID of the ItemColor the task is shown with; null means the task uses its task list's color. Deleting a color clears it
+    // through the foreign key declared in db/indexes.sql (ON DELETE SET NULL).
+    @Column(name="colorId")
+    private Long colorId;
+
+    // When set, the task has been deleted and is only kept around so that delta-sync clients can see the removal.
+    @Column(name="deletedAt", columnDefinition="TIMESTAMP")
+    private ZonedDateTime deletedAt;
 }
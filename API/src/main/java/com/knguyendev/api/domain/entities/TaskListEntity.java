@@ -5,7 +5,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +18,8 @@ import java.util.List;
 @Builder
 @Entity
 @Table(name = "TaskList")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "taskList")
 public class TaskListEntity {
 
     // Unique identifier for a task list
@@ -34,6 +39,14 @@ public class TaskListEntity {
     @Column(name="isDefault", columnDefinition="BOOLEAN NOT NULL DEFAULT FALSE")
     boolean isDefault = false;
 
+    // ID of the ItemColor the task list is shown with; null means the default color. Deleting a color clears it
+    // through the foreign key declared in db/indexes.sql (ON DELETE SET NULL).
+    @Column(name="colorId")
+    private Long colorId;
+
+    // When set, the task list has been deleted and is waiting for a background deletion job to purge it and its tasks.
+    @Column(name="deletedAt", columnDefinition="TIMESTAMP")
+    private ZonedDateTime deletedAt;
 
 
 
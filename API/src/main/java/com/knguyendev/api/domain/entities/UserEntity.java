@@ -6,6 +6,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
@@ -31,14 +34,20 @@ import java.util.Objects;
  * <p>
  * By implementing Serializable, we make sure that UserEntity can be serialized for storage in Redis or other mechanisms
  * that require object serialization.
+ * <p>
+ * NOTE: '@DynamicUpdate' makes an UPDATE only write the columns that changed, e.g. a profile patch doesn't rewrite the
+ * password hash.
  */
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
 @Table(name="AppUser")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "appUser")
 public class UserEntity implements Serializable {
 
     @Id
@@ -73,7 +82,8 @@ public class UserEntity implements Serializable {
     @Column(name="verifyEmailTokenExpires", columnDefinition = "TIMESTAMP")
     private ZonedDateTime verifyEmailTokenExpires;
 
-    @Column(name="password", columnDefinition = "CHAR(60) NOT NULL")
+    // Stored as '{encodingId}hash' (e.g. '{bcrypt10}$2a$10$...'), so the length depends on the algorithm; see 'PasswordConfig'
+    @Column(name="password", columnDefinition = "VARCHAR(255) NOT NULL")
     private String password;
 
     @Column(name="passwordResetToken", columnDefinition = "CHAR(64)")
@@ -89,6 +99,11 @@ public class UserEntity implements Serializable {
     @Column(name="role", nullable=false)
     private UserRole role;
 
+    // When set, the account has been deleted and is waiting to be purged by a background deletion job. Until then the
+    // row still holds onto its username and email, but it should be treated as if it doesn't exist.
+    @Column(name="deletedAt", columnDefinition="TIMESTAMP")
+    private ZonedDateTime deletedAt;
+
     /**
      * Function for returning the authorities associated with a user
      * @return An immutable set that contains the single authority/role associated with the user.
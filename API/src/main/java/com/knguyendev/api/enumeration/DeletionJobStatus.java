@@ -0,0 +1,13 @@
+package com.knguyendev.api.enumeration;
+
+/**
+ * + DeletionJobStatus Enumerations:
+ * - PENDING: The target has been marked as deleted, but the purger hasn't picked up the job yet.
+ * - RUNNING: The purger is removing rows in chunks. If the server crashes in this state, the job is resumed on startup.
+ * - COMPLETED: Every row associated with the target has been purged.
+ */
+public enum DeletionJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,11 @@
+package com.knguyendev.api.enumeration;
+
+/**
+ * + DeletionTargetType Enumerations:
+ * - USER: The job purges a user account along with their relationships, task lists, and tasks.
+ * - TASK_LIST: The job purges a single task list along with its tasks.
+ */
+public enum DeletionTargetType {
+    USER,
+    TASK_LIST
+}
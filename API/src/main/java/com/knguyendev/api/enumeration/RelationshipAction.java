@@ -0,0 +1,115 @@
+package com.knguyendev.api.enumeration;
+
+import java.util.*;
+
+import static com.knguyendev.api.enumeration.UserRelationshipStatus.*;
+
+/**
+ * + RelationshipAction Enumerations: The actions a user can take on their relationship with another user, and the status
+ * changes each of them is allowed to make. This is the only place the allowed transitions are defined; the repository
+ * turns them into a single conditional statement, so a transition that isn't allowed (e.g. because of a concurrent
+ * request) simply changes nothing.
+ * - REQUEST: Send a friend request. Only allowed when there's no relationship.
+ * - ACCEPT: Accept a friend request that the other user sent.
+ * - DECLINE: Delete a pending friend request, whoever sent it.
+ * - UNFRIEND: Delete a friendship.
+ * - BLOCK: Block the other user, which replaces any pending request or friendship.
+ * - UNBLOCK: Unblock the other user. The relationship is deleted, unless the other user has blocked them too.
+ * <p>
+ * The transitions are written from the point of view of the acting user being the first user, where 'null' means that
+ * there's no relationship. When they're the second user, the statuses are mirrored.
+ */
+public enum RelationshipAction {
+    REQUEST(new UserRelationshipStatus[][]{
+            {null, PENDING_FIRST_SECOND}
+    }),
+    ACCEPT(new UserRelationshipStatus[][]{
+            {PENDING_SECOND_FIRST, FRIENDS}
+    }),
+    DECLINE(new UserRelationshipStatus[][]{
+            {PENDING_FIRST_SECOND, null},
+            {PENDING_SECOND_FIRST, null}
+    }),
+    UNFRIEND(new UserRelationshipStatus[][]{
+            {FRIENDS, null}
+    }),
+    BLOCK(new UserRelationshipStatus[][]{
+            {null, BLOCK_FIRST_SECOND},
+            {PENDING_FIRST_SECOND, BLOCK_FIRST_SECOND},
+            {PENDING_SECOND_FIRST, BLOCK_FIRST_SECOND},
+            {UserRelationshipStatus.FRIENDS, BLOCK_FIRST_SECOND},
+            {BLOCK_SECOND_FIRST, BLOCK_BOTH}
+    }),
+    UNBLOCK(new UserRelationshipStatus[][]{
+            {BLOCK_FIRST_SECOND, null},
+            {BLOCK_BOTH, BLOCK_SECOND_FIRST}
+    });
+
+    private final Transitions asFirstUser;
+    private final Transitions asSecondUser;
+
+    RelationshipAction(UserRelationshipStatus[][] transitions) {
+        this.asFirstUser = new Transitions(transitions, false);
+        this.asSecondUser = new Transitions(transitions, true);
+    }
+
+    /**
+     * Gets the transitions this action is allowed to make.
+     * @param actorIsFirstUser Whether the user taking the action is the first user of the relationship
+     */
+    public Transitions getTransitions(boolean actorIsFirstUser) {
+        return actorIsFirstUser ? asFirstUser : asSecondUser;
+    }
+
+    /**
+     * The transitions of an action for one of the users, split by what happens to the relationship.
+     */
+    public static class Transitions {
+        // Status of the relationship that's created when there isn't one, or null if it can't be created
+        private final UserRelationshipStatus insertStatus;
+        // New status for each status that can be changed
+        private final Map<UserRelationshipStatus, UserRelationshipStatus> updates = new EnumMap<>(UserRelationshipStatus.class);
+        // Statuses where the relationship is deleted
+        private final Set<UserRelationshipStatus> deletes = EnumSet.noneOf(UserRelationshipStatus.class);
+
+        private Transitions(UserRelationshipStatus[][] transitions, boolean mirrored) {
+            UserRelationshipStatus insertStatus = null;
+            for (UserRelationshipStatus[] transition : transitions) {
+                UserRelationshipStatus from = transition[0] != null && mirrored ? transition[0].mirror() : transition[0];
+                UserRelationshipStatus to = transition[1] != null && mirrored ? transition[1].mirror() : transition[1];
+                if (from == null) {
+                    insertStatus = to;
+                } else if (to == null) {
+                    deletes.add(from);
+                } else {
+                    updates.put(from, to);
+                }
+            }
+            // A statement can either insert-or-update, or update-or-delete a relationship, but not all three
+            if (insertStatus != null && !deletes.isEmpty()) {
+                throw new IllegalArgumentException("A relationship action can't both create and delete relationships!");
+            }
+            this.insertStatus = insertStatus;
+        }
+
+        public UserRelationshipStatus getInsertStatus() {
+            return insertStatus;
+        }
+
+        public Map<UserRelationshipStatus, UserRelationshipStatus> getUpdates() {
+            return Collections.unmodifiableMap(updates);
+        }
+
+        public Set<UserRelationshipStatus> getDeletes() {
+            return Collections.unmodifiableSet(deletes);
+        }
+
+        /**
+         * Whether the action can be taken when the relationship has a status.
+         * @param status Current status, or null if there's no relationship
+         */
+        public boolean isAllowedFrom(UserRelationshipStatus status) {
+            return status == null ? insertStatus != null : updates.containsKey(status) || deletes.contains(status);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.knguyendev.api.enumeration;
+
+import java.util.List;
+
+import static com.knguyendev.api.enumeration.UserRelationshipStatus.*;
+
+/**
+ * + RelationshipFilter Enumerations: Filters for listing the relationships of a user, from that user's point of view.
+ * - FRIENDS: Users they're friends with.
+ * - INCOMING: Friend requests other users have sent them.
+ * - OUTGOING: Friend requests they've sent to other users.
+ * - BLOCKED: Users they've blocked.
+ * <p>
+ * Since a relationship stores its users in id order, which statuses match depends on whether the user is the first or
+ * second user of the relationship.
+ */
+public enum RelationshipFilter {
+    FRIENDS(List.of(UserRelationshipStatus.FRIENDS), List.of(UserRelationshipStatus.FRIENDS)),
+    INCOMING(List.of(PENDING_SECOND_FIRST), List.of(PENDING_FIRST_SECOND)),
+    OUTGOING(List.of(PENDING_FIRST_SECOND), List.of(PENDING_SECOND_FIRST)),
+    BLOCKED(List.of(BLOCK_FIRST_SECOND, BLOCK_BOTH), List.of(BLOCK_SECOND_FIRST, BLOCK_BOTH));
+
+    private final List<UserRelationshipStatus> statusesAsFirstUser;
+    private final List<UserRelationshipStatus> statusesAsSecondUser;
+
+    RelationshipFilter(List<UserRelationshipStatus> statusesAsFirstUser, List<UserRelationshipStatus> statusesAsSecondUser) {
+        this.statusesAsFirstUser = statusesAsFirstUser;
+        this.statusesAsSecondUser = statusesAsSecondUser;
+    }
+
+    // Statuses that match when the user is the first user of the relationship
+    public List<UserRelationshipStatus> getStatusesAsFirstUser() {
+        return statusesAsFirstUser;
+    }
+
+    // Statuses that match when the user is the second user of the relationship
+    public List<UserRelationshipStatus> getStatusesAsSecondUser() {
+        return statusesAsSecondUser;
+    }
+}
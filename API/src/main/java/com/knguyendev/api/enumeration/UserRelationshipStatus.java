@@ -15,5 +15,19 @@ public enum UserRelationshipStatus {
     FRIENDS,
     BLOCK_FIRST_SECOND,
     BLOCK_SECOND_FIRST,
-    BLOCK_BOTH
+    BLOCK_BOTH;
+
+    /**
+     * Gets the same status with the first and second users swapped, e.g. PENDING_FIRST_SECOND becomes PENDING_SECOND_FIRST.
+     * Statuses that are the same for both users (FRIENDS and BLOCK_BOTH) are returned as they are.
+     */
+    public UserRelationshipStatus mirror() {
+        return switch (this) {
+            case PENDING_FIRST_SECOND -> PENDING_SECOND_FIRST;
+            case PENDING_SECOND_FIRST -> PENDING_FIRST_SECOND;
+            case BLOCK_FIRST_SECOND -> BLOCK_SECOND_FIRST;
+            case BLOCK_SECOND_FIRST -> BLOCK_FIRST_SECOND;
+            case FRIENDS, BLOCK_BOTH -> this;
+        };
+    }
 }
@@ -11,12 +11,14 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import javax.naming.AuthenticationException;
 import java.nio.file.AccessDeniedException;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.HashMap;
@@ -35,6 +37,31 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(exceptionDetails, e.getHttpStatus());
     }
 
+    /**
+     * Handles 'ServiceUnavailableException' exceptions. These are also service exceptions, but the response needs a
+     * 'Retry-After' header, so that clients back off instead of retrying immediately.
+     */
+    @ExceptionHandler(value = {ServiceUnavailableException.class})
+    public ResponseEntity<ExceptionDetails> handleServiceUnavailableException(ServiceUnavailableException e) {
+        ExceptionDetails exceptionDetails = ExceptionDetails.builder()
+                .message(e.getMessage())
+                .httpStatus(e.getHttpStatus())
+                .timestamp(ZonedDateTime.now(ZoneId.of("UTC")))
+                .build();
+        return ResponseEntity.status(e.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(exceptionDetails);
+    }
+
+    /**
+     * Handles 'TaskRejectedException' exceptions, which are thrown when a streamed response can't start because every
+     * streaming thread is busy.
+     */
+    @ExceptionHandler(value = {TaskRejectedException.class})
+    public ResponseEntity<ExceptionDetails> handleTaskRejectedException(TaskRejectedException e) {
+        return handleServiceUnavailableException(new ServiceUnavailableException("Server is busy, please try again later!", Duration.ofSeconds(30)));
+    }
+
     /**
      * Handles 'MethodArgumentNotValidException' exceptions. It should be noted that 'ResponseEntityExceptionHandler'
      * provides its own '@ExceptionHandler' we have to get creative. We can override one of its methods 'handleMethodArgumentNotValid'
@@ -0,0 +1,22 @@
+package com.knguyendev.api.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * Service exception for when the server is temporarily too busy to handle a request, such as when there's a spike in
+ * logins and too many passwords are waiting to be hashed. It's always a 503, and the 'GlobalExceptionHandler' uses
+ * 'retryAfter' to tell clients when they should try again via the 'Retry-After' header.
+ *
+ * @see ServiceException
+ */
+@Getter
+public class ServiceUnavailableException extends ServiceException {
+    private final Duration retryAfter;
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE);
+        this.retryAfter = retryAfter;
+    }
+}
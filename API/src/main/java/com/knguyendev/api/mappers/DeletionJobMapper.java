@@ -0,0 +1,14 @@
+package com.knguyendev.api.mappers;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.domain.entities.DeletionJobEntity;
+
+public interface DeletionJobMapper {
+
+    /**
+     * Maps a DeletionJobEntity into a DeletionJobDTO, which lets admins track the progress of a purge.
+     * @param entity DeletionJobEntity that's being mapped.
+     * @return The response dto used to send back information about a deletion job.
+     */
+    DeletionJobDTO toDTO(DeletionJobEntity entity);
+}
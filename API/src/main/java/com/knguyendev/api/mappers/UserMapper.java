@@ -2,6 +2,7 @@ package com.knguyendev.api.mappers;
 
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserRegistrationDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
 import com.knguyendev.api.domain.entities.UserEntity;
 
 public interface UserMapper {
@@ -24,4 +25,5 @@ public interface UserMapper {
     UserDTO toDTO(UserEntity entity);
 
 
+    UserSummaryDTO toSummaryDTO(UserEntity entity);
 }
@@ -1,8 +1,11 @@
 package com.knguyendev.api.mappers;
 
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
 
 public interface UserRelationshipMapper {
     UserRelationshipDTO toDTO(UserRelationshipEntity entity);
+
+    UserRelationshipDTO toDTO(UserRelationshipRow row);
 }
@@ -0,0 +1,23 @@
+package com.knguyendev.api.mappers.impl;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.domain.entities.DeletionJobEntity;
+import com.knguyendev.api.mappers.DeletionJobMapper;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DeletionJobMapperImpl implements DeletionJobMapper {
+    @Override
+    public DeletionJobDTO toDTO(DeletionJobEntity entity) {
+        return DeletionJobDTO.builder()
+                .id(entity.getId())
+                .targetType(entity.getTargetType())
+                .targetId(entity.getTargetId())
+                .status(entity.getStatus())
+                .rowsDeleted(entity.getRowsDeleted())
+                .createdAt(entity.getCreatedAt())
+                .updatedAt(entity.getUpdatedAt())
+                .completedAt(entity.getCompletedAt())
+                .build();
+    }
+}
@@ -3,10 +3,17 @@ package com.knguyendev.api.mappers.impl;
 import com.knguyendev.api.domain.dto.TaskList.TaskListDTO;
 import com.knguyendev.api.domain.entities.TaskListEntity;
 import com.knguyendev.api.mappers.TaskListMapper;
+import com.knguyendev.api.services.ItemColorService;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TaskListMapperImpl implements TaskListMapper {
+    private final ItemColorService itemColorService;
+
+    public TaskListMapperImpl(ItemColorService itemColorService) {
+        this.itemColorService = itemColorService;
+    }
+
     @Override
     public TaskListDTO toDTO(TaskListEntity entity) {
         return TaskListDTO.builder()
@@ -14,6 +21,7 @@ public class TaskListMapperImpl implements TaskListMapper {
                 .userId(entity.getUserId())
                 .name(entity.getName())
                 .isDefault(entity.isDefault())
+                .color(itemColorService.getSnapshot().findById(entity.getColorId()))
                 .build();
     }
 }
@@ -1,12 +1,20 @@
 package com.knguyendev.api.mappers.impl;
 
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
+import com.knguyendev.api.domain.dto.Task.TaskTombstoneDTO;
 import com.knguyendev.api.domain.entities.TaskEntity;
 import com.knguyendev.api.mappers.TaskMapper;
+import com.knguyendev.api.services.ItemColorService;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TaskMapperImpl implements TaskMapper {
+    private final ItemColorService itemColorService;
+
+    public TaskMapperImpl(ItemColorService itemColorService) {
+        this.itemColorService = itemColorService;
+    }
+
     @Override
     public TaskDTO toDTO(TaskEntity entity) {
         return TaskDTO.builder()
@@ -23,6 +31,17 @@ public class TaskMapperImpl implements TaskMapper {
                 .isStarred(entity.isStarred())
                 .isAllDay(entity.isAllDay())
                 .dueDate(entity.getDueDate())
+                // Colors are looked up in the palette held in memory, so listing tasks doesn't join ItemColor
+                .color(itemColorService.getSnapshot().findById(entity.getColorId()))
+                .build();
+    }
+
+    @Override
+    public TaskTombstoneDTO toTombstoneDTO(TaskEntity entity) {
+        return TaskTombstoneDTO.builder()
+                .id(entity.getId())
+                .taskListId(entity.getTaskListId())
+                .deletedAt(entity.getDeletedAt())
                 .build();
     }
 }
@@ -2,6 +2,7 @@ package com.knguyendev.api.mappers.impl;
 
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserRegistrationDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.mappers.UserMapper;
 import org.springframework.stereotype.Component;
@@ -41,4 +42,14 @@ public class UserMapperImpl implements UserMapper {
                 .role(userEntity.getRole())
                 .build();
     }
+
+    @Override
+    public UserSummaryDTO toSummaryDTO(UserEntity userEntity) {
+        return UserSummaryDTO.builder()
+                .id(userEntity.getId())
+                .username(userEntity.getUsername())
+                .firstName(userEntity.getFirstName())
+                .lastName(userEntity.getLastName())
+                .build();
+    }
 }
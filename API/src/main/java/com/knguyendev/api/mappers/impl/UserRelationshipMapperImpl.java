@@ -3,6 +3,7 @@ package com.knguyendev.api.mappers.impl;
 
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
 import com.knguyendev.api.mappers.UserMapper;
 import com.knguyendev.api.mappers.UserRelationshipMapper;
@@ -26,4 +27,35 @@ public class UserRelationshipMapperImpl implements UserRelationshipMapper {
                 .status(entity.getStatus())
                 .build();
     }
+
+    @Override
+    public UserRelationshipDTO toDTO(UserRelationshipRow row) {
+        UserDTO firstUserDTO = UserDTO.builder()
+                .id(row.getFirstUserId())
+                .username(row.getFirstUsername())
+                .email(row.getFirstEmail())
+                .firstName(row.getFirstFirstName())
+                .lastName(row.getFirstLastName())
+                .biography(row.getFirstBiography())
+                .isVerified(row.getFirstIsVerified())
+                .createdAt(row.getFirstCreatedAt())
+                .role(row.getFirstRole())
+                .build();
+        UserDTO secondUserDTO = UserDTO.builder()
+                .id(row.getSecondUserId())
+                .username(row.getSecondUsername())
+                .email(row.getSecondEmail())
+                .firstName(row.getSecondFirstName())
+                .lastName(row.getSecondLastName())
+                .biography(row.getSecondBiography())
+                .isVerified(row.getSecondIsVerified())
+                .createdAt(row.getSecondCreatedAt())
+                .role(row.getSecondRole())
+                .build();
+        return UserRelationshipDTO.builder()
+                .firstUser(firstUserDTO)
+                .secondUser(secondUserDTO)
+                .status(row.getStatus())
+                .build();
+    }
 }
@@ -0,0 +1,69 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.domain.entities.DeletionJobEntity;
+import com.knguyendev.api.enumeration.DeletionJobStatus;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DeletionJobRepository extends CrudRepository<DeletionJobEntity, Long> {
+
+    /**
+     * Finds all jobs in the given statuses, oldest first. Used by the purger to pick up pending jobs as well as jobs that
+     * were interrupted while running.
+     * @param statuses Statuses that we're looking for
+     * @return List of deletion jobs ordered by their id
+     */
+    @Query("SELECT j FROM DeletionJobEntity j WHERE j.status IN :statuses ORDER BY j.id")
+    List<DeletionJobEntity> findByStatusIn(@Param("statuses") Collection<DeletionJobStatus> statuses);
+
+    /**
+     * Finds all deletion jobs, with the most recent ones first.
+     */
+    @Query("SELECT j FROM DeletionJobEntity j ORDER BY j.id DESC")
+    List<DeletionJobEntity> findAllNewestFirst();
+
+    /**
+     * Claims a job, so that only one server instance runs it at a time. A pending job can always be claimed, but a running
+     * one only if it hasn't made progress since 'staleBefore', which means the instance running it has crashed.
+     * @param id ID of the job
+     * @param now Time of the claim, which counts as the job's latest progress
+     * @param staleBefore A running job that was last updated before this can be taken over
+     * @return 1 if the job was claimed, or 0 if another instance has it
+     */
+    @Modifying
+    @Query("UPDATE DeletionJobEntity j SET j.status = com.knguyendev.api.enumeration.DeletionJobStatus.RUNNING, j.updatedAt = :now " +
+            "WHERE j.id = :id AND (j.status = com.knguyendev.api.enumeration.DeletionJobStatus.PENDING " +
+            "OR (j.status = com.knguyendev.api.enumeration.DeletionJobStatus.RUNNING AND j.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") ZonedDateTime now, @Param("staleBefore") ZonedDateTime staleBefore);
+
+    /**
+     * Updates the status of a job without touching its progress counter.
+     */
+    @Modifying
+    @Query("UPDATE DeletionJobEntity j SET j.status = :status, j.updatedAt = :now WHERE j.id = :id")
+    void updateStatus(@Param("id") Long id, @Param("status") DeletionJobStatus status, @Param("now") ZonedDateTime now);
+
+    /**
+     * Adds to the progress counter of a job. This should run in the same transaction as the chunk that deleted the rows,
+     * so that the counter never drifts from what was actually purged.
+     */
+    @Modifying
+    @Query("UPDATE DeletionJobEntity j SET j.rowsDeleted = j.rowsDeleted + :rows, j.updatedAt = :now WHERE j.id = :id")
+    void incrementRowsDeleted(@Param("id") Long id, @Param("rows") long rows, @Param("now") ZonedDateTime now);
+
+    /**
+     * Marks a job as completed.
+     */
+    @Modifying
+    @Query("UPDATE DeletionJobEntity j SET j.status = com.knguyendev.api.enumeration.DeletionJobStatus.COMPLETED, " +
+            "j.updatedAt = :now, j.completedAt = :now WHERE j.id = :id")
+    void markCompleted(@Param("id") Long id, @Param("now") ZonedDateTime now);
+}
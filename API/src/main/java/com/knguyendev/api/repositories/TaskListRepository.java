@@ -1,25 +1,61 @@
 package com.knguyendev.api.repositories;
 
 import com.knguyendev.api.domain.entities.TaskListEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface TaskListRepository extends CrudRepository<TaskListEntity, Long> {
+public interface TaskListRepository extends CrudRepository<TaskListEntity, Long>, TaskListRepositoryCustom {
 
 
     /**
      * Gets all taskLists associated with a given user. Mainly used when you want to load
      * in the task lists associated with a user.
      * @param userId ID of the user being referenced in the taskList
-     * @return A list of TaskList entities that reference the user.
+     * @return A list of TaskList entities that reference the user. Task lists that are waiting to be purged are excluded.
      */
-    List<TaskListEntity> findByUserId(Long userId);
+    @Query("SELECT tl FROM TaskListEntity tl WHERE tl.userId = :userId AND tl.deletedAt IS NULL")
+    List<TaskListEntity> findByUserId(@Param("userId") Long userId);
+
+    /**
+     * Finds a page of task lists, in id order. Task lists that are waiting to be purged are excluded.
+     * @param afterId Only task lists with an id greater than this are returned; 0 for the first page
+     * @param limit Maximum number of task lists to return
+     * @return Task lists, ordered by id
+     */
+    @Query("SELECT tl FROM TaskListEntity tl WHERE tl.id > :afterId AND tl.deletedAt IS NULL ORDER BY tl.id")
+    List<TaskListEntity> findPage(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Finds a task list and locks its row until the end of the transaction (SELECT ... FOR UPDATE), which serializes
+     * changes to its tasks across server instances. See 'TaskListLocks'.
+     * @param id ID of the task list
+     * @return Optional containing the task list, including ones that are waiting to be purged
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT tl FROM TaskListEntity tl WHERE tl.id = :id")
+    Optional<TaskListEntity> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Sets how long statements in the current transaction wait for a row lock before failing, such as the one taken by
+     * 'findByIdForUpdate'. Postgres ignores the lock timeout hint of FOR UPDATE, so it's set with lock_timeout instead.
+     * @param timeout Timeout in milliseconds; it's reset when the transaction ends
+     * @return The new value of lock_timeout
+     */
+    @Query(value = "SELECT set_config('lock_timeout', :timeout, true)", nativeQuery = true)
+    String setLocalLockTimeout(@Param("timeout") String timeout);
 
 
     /*
@@ -43,6 +79,25 @@ public interface TaskListRepository extends CrudRepository<TaskListEntity, Long>
     @Query("DELETE FROM TaskListEntity t WHERE t.userId = :userId")
     void deleteByUserId(Long userId);
 
+    /**
+     * Purges a bounded chunk of the task lists owned by a user. The tasks within those lists should be purged first.
+     * @param userId ID of the user whose task lists are being purged
+     * @param limit Maximum number of rows to delete
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "TaskList"))
+    @Query(value = "DELETE FROM TaskList WHERE id IN (SELECT tl.id FROM TaskList tl WHERE tl.userId = :userId LIMIT :limit)", nativeQuery = true)
+    int purgeChunkByUserId(@Param("userId") Long userId, @Param("limit") int limit);
 
+    /**
+     * Purges a single task list row. The tasks within the list should be purged first.
+     * @param id ID of the task list
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "TaskList"))
+    @Query(value = "DELETE FROM TaskList WHERE id = :id", nativeQuery = true)
+    int purgeById(@Param("id") Long id);
 
 }
@@ -0,0 +1,37 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.utils.SparseFieldset;
+
+import java.util.List;
+
+/**
+ * Queries on TaskList whose select list depends on the request. Implemented by 'TaskListRepositoryCustomImpl'.
+ */
+public interface TaskListRepositoryCustom {
+
+    /**
+     * Fields that a task list can be projected to, named like in the JSON of 'TaskListDTO', with 'tl' being the task
+     * list. The 'color' field reads the color's ID, which is resolved from the palette after the query.
+     * <p>
+     * The counts aren't in 'TaskListDTO'; they're only returned when they're picked, e.g. for a sidebar that shows how
+     * many tasks are left without loading the tasks. Each is a subquery on the '(taskListId) WHERE deletedAt IS NULL'
+     * index, and tombstoned tasks aren't counted.
+     */
+    SparseFieldset.Definition FIELDS = new SparseFieldset.Definition("a task list")
+            .field("id", "tl.id")
+            .field("userId", "tl.userId")
+            .field("name", "tl.name")
+            .field("default", "tl.isDefault")
+            .field("color", "tl.colorId")
+            .field("taskCount", "(SELECT COUNT(t) FROM TaskEntity t WHERE t.taskListId = tl.id)")
+            .field("completedTaskCount", "(SELECT COUNT(t) FROM TaskEntity t WHERE t.taskListId = tl.id AND t.isComplete = true)")
+            .nested("tasks", TaskRepositoryCustom.FIELDS);
+
+    /**
+     * Reads some of the fields of every task list of a user. Task lists that are waiting to be purged are excluded.
+     * @param userId ID of the user
+     * @param fields Fields to read
+     * @return A row for each task list, with the fields in the order of 'fields.selectList()'
+     */
+    List<Object[]> findFieldsByUserId(Long userId, SparseFieldset fields);
+}
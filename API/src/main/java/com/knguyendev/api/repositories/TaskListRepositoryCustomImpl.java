@@ -0,0 +1,21 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.utils.SparseFieldset;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+
+public class TaskListRepositoryCustomImpl implements TaskListRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Object[]> findFieldsByUserId(Long userId, SparseFieldset fields) {
+        return entityManager.createQuery("SELECT " + fields.selectList() + " FROM TaskListEntity tl " +
+                        "WHERE tl.userId = :userId AND tl.deletedAt IS NULL", Object[].class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+}
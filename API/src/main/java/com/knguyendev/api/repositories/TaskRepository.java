@@ -1,17 +1,21 @@
 package com.knguyendev.api.repositories;
 
 import com.knguyendev.api.domain.entities.TaskEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TaskRepository extends CrudRepository<TaskEntity, Long> {
+public interface TaskRepository extends CrudRepository<TaskEntity, Long>, TaskRepositoryCustom {
 
     @Query("SELECT t FROM TaskEntity t WHERE t.taskListId = :taskListId")
     List<TaskEntity> findByTaskListId(Long taskListId);
@@ -35,9 +39,51 @@ public interface TaskRepository extends CrudRepository<TaskEntity, Long> {
     @Query("SELECT t FROM TaskEntity t WHERE t.id = :id OR t.parentTaskId = :id")
     List<TaskEntity> findTaskAndSubtasksById(@Param("id") Long id);
 
+    /**
+     * Finds the ID of the task list that a task is in, without loading the task itself. Used to lock the task list before
+     * the task's pointers are read.
+     * @param id ID of the task
+     * @return Optional containing the ID of the task list, or empty if the task doesn't exist
+     */
+    @Query("SELECT t.taskListId FROM TaskEntity t WHERE t.id = :id")
+    Optional<Long> findTaskListIdById(@Param("id") Long id);
+
     @Query("SELECT t FROM TaskEntity t WHERE t.id IN :ids")
     List<TaskEntity> findAllByIds(@Param("ids") List<Long> ids);
 
+    /**
+     * Tombstones a task along with its subtasks (if it's a parent task), in a single statement. The rows are physically
+     * removed later by the background purger.
+     * @param id ID of the task being deleted
+     * @param deletedAt Time of the deletion
+     */
+    @Modifying
+    @Query("UPDATE TaskEntity t SET t.deletedAt = :deletedAt WHERE t.id = :id OR t.parentTaskId = :id")
+    void tombstoneTaskAndSubTasksById(@Param("id") Long id, @Param("deletedAt") ZonedDateTime deletedAt);
+
+    /**
+     * Finds the tombstones of a user's tasks that were deleted after a given time. Used by delta-sync clients to see
+     * which tasks were removed since they last synced. This is a native query since tombstones are otherwise filtered out.
+     * @param userId ID of the user whose tasks we're looking for
+     * @param since Only tombstones created after this time are returned
+     * @return List of tombstoned tasks, oldest deletion first
+     */
+    @Query(value = "SELECT t.* FROM Task t JOIN TaskList tl ON t.taskListId = tl.id " +
+            "WHERE tl.userId = :userId AND t.deletedAt IS NOT NULL AND t.deletedAt > :since ORDER BY t.deletedAt",
+            nativeQuery = true)
+    List<TaskEntity> findTombstonesByUserIdSince(@Param("userId") Long userId, @Param("since") ZonedDateTime since);
+
+    /**
+     * Physically removes a bounded chunk of tombstones that are older than the cutoff.
+     * @param cutoff Tombstones created before this time are purged
+     * @param limit Maximum number of rows to delete
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "Task"))
+    @Query(value = "DELETE FROM Task WHERE id IN (SELECT t.id FROM Task t WHERE t.deletedAt IS NOT NULL AND t.deletedAt < :cutoff LIMIT :limit)", nativeQuery = true)
+    int purgeTombstonesChunk(@Param("cutoff") ZonedDateTime cutoff, @Param("limit") int limit);
+
     // Deletes a parentTask and its subTasks
     @Modifying
     @Query("DELETE FROM TaskEntity t WHERE t.parentTaskId = :id OR t.id = :id")
@@ -55,9 +101,31 @@ public interface TaskRepository extends CrudRepository<TaskEntity, Long> {
     @Query("DELETE FROM TaskEntity t WHERE t.taskListId IN (SELECT tl.id FROM TaskListEntity tl WHERE tl.userId = :userId)")
     void deleteByUserId(Long userId);
 
-    @Query("SELECT t from TaskEntity t WHERE t.taskListId IN (SELECT tl.id FROM TaskListEntity tl WHERE tl.userId = :userId)")
+    @Query("SELECT t from TaskEntity t WHERE t.taskListId IN (SELECT tl.id FROM TaskListEntity tl WHERE tl.userId = :userId AND tl.deletedAt IS NULL)")
     List<TaskEntity> findByUserId(Long userId);
 
+    /**
+     * Purges a bounded chunk of the tasks within a task list. Used by the background deletion jobs, so that
+     * deleting a large task list never holds locks on every one of its rows at once.
+     * @param taskListId ID of the task list whose tasks are being purged
+     * @param limit Maximum number of rows to delete
+     * @return Number of rows that were deleted; anything lower than 'limit' means the task list has no tasks left.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "Task"))
+    @Query(value = "DELETE FROM Task WHERE id IN (SELECT t.id FROM Task t WHERE t.taskListId = :taskListId LIMIT :limit)", nativeQuery = true)
+    int purgeChunkByTaskListId(@Param("taskListId") Long taskListId, @Param("limit") int limit);
+
+    /**
+     * Purges a bounded chunk of the tasks owned by a user, across all of their task lists.
+     * @param userId ID of the user whose tasks are being purged
+     * @param limit Maximum number of rows to delete
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "Task"))
+    @Query(value = "DELETE FROM Task WHERE id IN (SELECT t.id FROM Task t JOIN TaskList tl ON t.taskListId = tl.id WHERE tl.userId = :userId LIMIT :limit)", nativeQuery = true)
+    int purgeChunkByUserId(@Param("userId") Long userId, @Param("limit") int limit);
 
 }
 /*
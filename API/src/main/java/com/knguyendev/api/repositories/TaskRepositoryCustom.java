@@ -0,0 +1,64 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.utils.SparseFieldset;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Queries on Task whose select list (or set clause) depends on the request. Implemented by 'TaskRepositoryCustomImpl'.
+ */
+public interface TaskRepositoryCustom {
+
+    /**
+     * Fields that a task can be projected to, named like in the JSON of 'TaskDTO', with 't' being the task. The 'color'
+     * field reads the color's ID, which is resolved from the palette after the query.
+     */
+    SparseFieldset.Definition FIELDS = new SparseFieldset.Definition("a task")
+            .field("id", "t.id")
+            .field("taskListId", "t.taskListId")
+            .field("parentTaskId", "t.parentTaskId")
+            .field("prevTaskId", "t.prevTaskId")
+            .field("nextTaskId", "t.nextTaskId")
+            .field("title", "t.title")
+            .field("description", "t.description")
+            .field("complete", "t.isComplete")
+            .field("starred", "t.isStarred")
+            .field("allDay", "t.isAllDay")
+            .field("dueDate", "t.dueDate")
+            .field("color", "t.colorId");
+
+    /**
+     * Reads some of the fields of a task.
+     * @param id ID of the task
+     * @param fields Fields to read
+     * @return Optional containing the row, with the fields in the order of 'fields.selectList()'
+     */
+    Optional<Object[]> findFieldsById(Long id, SparseFieldset fields);
+
+    /**
+     * Reads some of the fields of every task of a user. Tasks in task lists that are waiting to be purged are excluded.
+     * @param userId ID of the user
+     * @param fields Fields to read
+     * @return A row for each task, with the fields in the order of 'fields.selectList()'
+     */
+    List<Object[]> findFieldsByUserId(Long userId, SparseFieldset fields);
+
+    /**
+     * Attributes of TaskEntity that make up a task's content (everything but its position), which 'updateContentById'
+     * can write.
+     */
+    Set<String> CONTENT_ATTRIBUTES = Set.of("title", "description", "isComplete", "isAllDay", "isStarred", "dueDate", "colorId");
+
+    /**
+     * Updates some of the content of a task, without loading it first. Used for content updates, whether they're written
+     * right away or held back by 'TaskWriteBehindBuffer'. Only the given attributes are written, so it can't undo a
+     * concurrent move, or a concurrent update of other attributes.
+     * @param id ID of the task
+     * @param changes New values by attribute name; each one has to be in 'CONTENT_ATTRIBUTES'
+     * @return Number of rows that were updated, which is 0 if the task was deleted in the meantime
+     */
+    int updateContentById(Long id, Map<String, Object> changes);
+}
@@ -0,0 +1,55 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.utils.SparseFieldset;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Object[]> findFieldsById(Long id, SparseFieldset fields) {
+        return entityManager.createQuery("SELECT " + fields.selectList() + " FROM TaskEntity t WHERE t.id = :id", Object[].class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Object[]> findFieldsByUserId(Long userId, SparseFieldset fields) {
+        return entityManager.createQuery("SELECT " + fields.selectList() + " FROM TaskEntity t WHERE t.taskListId IN " +
+                        "(SELECT tl.id FROM TaskListEntity tl WHERE tl.userId = :userId AND tl.deletedAt IS NULL)", Object[].class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int updateContentById(Long id, Map<String, Object> changes) {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        for (String attribute : changes.keySet()) {
+            if (!CONTENT_ATTRIBUTES.contains(attribute)) {
+                throw new IllegalArgumentException("'" + attribute + "' isn't part of a task's content");
+            }
+        }
+        // The attribute names double as the parameter names, and are safe to put in the query since they're checked above
+        String assignments = changes.keySet().stream()
+                .map(attribute -> "t." + attribute + " = :" + attribute)
+                .collect(Collectors.joining(", "));
+        Query query = entityManager.createQuery("UPDATE TaskEntity t SET " + assignments + " WHERE t.id = :id")
+                .setParameter("id", id);
+        changes.forEach(query::setParameter);
+        return query.executeUpdate();
+    }
+}
@@ -1,18 +1,23 @@
 package com.knguyendev.api.repositories;
 
 
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 @Repository
-public interface UserRelationshipRepository extends CrudRepository<UserRelationshipEntity, Long> {
+public interface UserRelationshipRepository extends CrudRepository<UserRelationshipEntity, Long>, UserRelationshipRepositoryCustom {
 
     /**
      * Find a UserRelationship using the ID values of the first and second user
@@ -20,18 +25,101 @@ public interface UserRelationshipRepository extends CrudRepository<UserRelations
      * @param secondUserId ID of the second user
      * @return An Optional containing the UserRelationshipEntity if found, otherwise empty
      */
-    @Query("SELECT ur FROM UserRelationshipEntity ur WHERE ur.firstUser.id = :firstUserId AND ur.secondUser.id = :secondUserId")
+    @Query("SELECT ur FROM UserRelationshipEntity ur JOIN FETCH ur.firstUser JOIN FETCH ur.secondUser " +
+            "WHERE ur.firstUser.id = :firstUserId AND ur.secondUser.id = :secondUserId")
     Optional<UserRelationshipEntity> findByFirstUserIdAndSecondUserId(Long firstUserId, Long secondUserId);
 
 
     /**
      * Finds all relationships that involve the user. This is where 'userId' is either the firstUserId or secondUserId.
+     * <p>
+     * NOTE: Both users are fetched in the same query. Otherwise, since they're eager, Hibernate loads each of them with
+     * its own select after the query.
      * @param userId The id of the user that we're looking relationships for
-     * @return A list of user relationships
+     * @return A list of user relationships. Relationships with users that are waiting to be purged are excluded.
      */
-    @Query("SELECT ur FROM UserRelationshipEntity ur WHERE ur.firstUser.id = :userId OR ur.secondUser.id = :userId")
+    @Query("SELECT ur FROM UserRelationshipEntity ur JOIN FETCH ur.firstUser fu JOIN FETCH ur.secondUser su " +
+            "WHERE (fu.id = :userId OR su.id = :userId) AND fu.deletedAt IS NULL AND su.deletedAt IS NULL")
     List<UserRelationshipEntity> findByUserId(Long userId);
 
+    /**
+     * Finds a page of the relationships of a user, reading only the public columns of the users in a single query. Use
+     * this for listing relationships, where the entities aren't needed.
+     * <p>
+     * NOTE: Each side of the OR is served by the '(firstUserId, status)' and '(secondUserId, status)' indexes.
+     * @param userId The id of the user that we're looking relationships for
+     * @param statusesAsFirstUser Statuses to include where the user is the first user
+     * @param statusesAsSecondUser Statuses to include where the user is the second user
+     * @param afterId Only relationships with an id greater than this are returned; 0 for the first page
+     * @param limit Maximum number of relationships to return
+     * @return A row for each relationship, ordered by id. Relationships with users that are waiting to be purged are excluded.
+     */
+    @Query("SELECT new com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow(ur.id, " +
+            "fu.id, fu.username, fu.email, fu.firstName, fu.lastName, fu.biography, fu.isVerified, fu.createdAt, fu.role, " +
+            "su.id, su.username, su.email, su.firstName, su.lastName, su.biography, su.isVerified, su.createdAt, su.role, " +
+            "ur.status) " +
+            "FROM UserRelationshipEntity ur JOIN ur.firstUser fu JOIN ur.secondUser su " +
+            "WHERE ((fu.id = :userId AND ur.status IN :statusesAsFirstUser) OR (su.id = :userId AND ur.status IN :statusesAsSecondUser)) " +
+            "AND ur.id > :afterId AND fu.deletedAt IS NULL AND su.deletedAt IS NULL ORDER BY ur.id")
+    List<UserRelationshipRow> findRowPageByUserId(@Param("userId") Long userId,
+                                                  @Param("statusesAsFirstUser") Collection<UserRelationshipStatus> statusesAsFirstUser,
+                                                  @Param("statusesAsSecondUser") Collection<UserRelationshipStatus> statusesAsSecondUser,
+                                                  @Param("afterId") Long afterId,
+                                                  Limit limit);
+
+    /**
+     * Counts the relationships of a user that have the given statuses, e.g. for the number of incoming friend requests.
+     * Relationships with users that are waiting to be purged aren't counted.
+     */
+    @Query("SELECT COUNT(ur) FROM UserRelationshipEntity ur JOIN ur.firstUser fu JOIN ur.secondUser su " +
+            "WHERE ((fu.id = :userId AND ur.status IN :statusesAsFirstUser) OR (su.id = :userId AND ur.status IN :statusesAsSecondUser)) " +
+            "AND fu.deletedAt IS NULL AND su.deletedAt IS NULL")
+    long countByUserId(@Param("userId") Long userId,
+                       @Param("statusesAsFirstUser") Collection<UserRelationshipStatus> statusesAsFirstUser,
+                       @Param("statusesAsSecondUser") Collection<UserRelationshipStatus> statusesAsSecondUser);
+
+
+    /**
+     * Finds the relationships of a user where either of the users has blocked the other, for loading the block index.
+     * @param userId ID of the user
+     * @return Triples of [firstUserId, secondUserId, status]
+     */
+    @Query("SELECT ur.firstUser.id, ur.secondUser.id, ur.status FROM UserRelationshipEntity ur " +
+            "WHERE (ur.firstUser.id = :userId OR ur.secondUser.id = :userId) AND ur.status IN (" +
+            "com.knguyendev.api.enumeration.UserRelationshipStatus.BLOCK_FIRST_SECOND, " +
+            "com.knguyendev.api.enumeration.UserRelationshipStatus.BLOCK_SECOND_FIRST, " +
+            "com.knguyendev.api.enumeration.UserRelationshipStatus.BLOCK_BOTH)")
+    List<Object[]> findBlocksByUserId(@Param("userId") Long userId);
+
+    /**
+     * Finds the relationships between a user and each of several other users, for applying an action to many of them.
+     * @param userId ID of the user
+     * @param otherUserIds IDs of the other users
+     * @return Triples of [firstUserId, secondUserId, status], one for each of the other users that has a relationship with the user
+     */
+    @Query("SELECT ur.firstUser.id, ur.secondUser.id, ur.status FROM UserRelationshipEntity ur " +
+            "WHERE (ur.firstUser.id = :userId AND ur.secondUser.id IN :otherUserIds) " +
+            "OR (ur.secondUser.id = :userId AND ur.firstUser.id IN :otherUserIds)")
+    List<Object[]> findStatusesWithUsers(@Param("userId") Long userId, @Param("otherUserIds") Collection<Long> otherUserIds);
+
+    /**
+     * Finds the friendships of several users, for loading the friend graph.
+     * @param userIds IDs of the users
+     * @return Pairs of [firstUserId, secondUserId], one for each friendship that involves one of the users
+     */
+    @Query("SELECT ur.firstUser.id, ur.secondUser.id FROM UserRelationshipEntity ur " +
+            "WHERE ur.status = com.knguyendev.api.enumeration.UserRelationshipStatus.FRIENDS " +
+            "AND (ur.firstUser.id IN :userIds OR ur.secondUser.id IN :userIds)")
+    List<Object[]> findFriendIdPairs(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Finds the ids of every user that a user has a relationship with, whatever its status.
+     * @param userId ID of the user
+     * @return IDs of the other users
+     */
+    @Query("SELECT CASE WHEN ur.firstUser.id = :userId THEN ur.secondUser.id ELSE ur.firstUser.id END FROM UserRelationshipEntity ur " +
+            "WHERE ur.firstUser.id = :userId OR ur.secondUser.id = :userId")
+    List<Long> findRelatedUserIds(@Param("userId") Long userId);
 
     /**
      * Deletes all relationships involving the specified user.
@@ -46,4 +134,14 @@ public interface UserRelationshipRepository extends CrudRepository<UserRelations
     @Modifying
     @Query("DELETE FROM UserRelationshipEntity ur WHERE ur.firstUser.id = :userId OR ur.secondUser.id = :userId")
     void deleteByUserId(Long userId);
+
+    /**
+     * Purges a bounded chunk of the relationships involving a user. Used by the background deletion jobs.
+     * @param userId ID of the user whose relationships are being purged
+     * @param limit Maximum number of rows to delete
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM UserRelationship WHERE id IN (SELECT ur.id FROM UserRelationship ur WHERE ur.firstUserId = :userId OR ur.secondUserId = :userId LIMIT :limit)", nativeQuery = true)
+    int purgeChunkByUserId(@Param("userId") Long userId, @Param("limit") int limit);
 }
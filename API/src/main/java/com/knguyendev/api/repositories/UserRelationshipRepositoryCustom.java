@@ -0,0 +1,77 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.domain.dto.UserRelationship.RelationshipChange;
+import com.knguyendev.api.enumeration.RelationshipAction;
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import com.knguyendev.api.utils.SparseFieldset;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Queries on UserRelationship that can't be written as a single '@Query'. Implemented by 'UserRelationshipRepositoryCustomImpl'.
+ */
+public interface UserRelationshipRepositoryCustom {
+
+    /**
+     * Fields that a relationship can be projected to, named like in the JSON of 'UserRelationshipDTO', with 'ur' being
+     * the relationship and 'fu' and 'su' its first and second users. The relationship's own ID isn't returned, but it's
+     * read for the cursor of the next page.
+     */
+    SparseFieldset.Definition FIELDS = new SparseFieldset.Definition("a relationship")
+            .internal("id", "ur.id")
+            .field("firstUser.id", "fu.id")
+            .field("firstUser.username", "fu.username")
+            .field("firstUser.email", "fu.email")
+            .field("firstUser.firstName", "fu.firstName")
+            .field("firstUser.lastName", "fu.lastName")
+            .field("firstUser.biography", "fu.biography")
+            .field("firstUser.isVerified", "fu.isVerified")
+            .field("firstUser.createdAt", "fu.createdAt")
+            .field("firstUser.role", "fu.role")
+            .field("secondUser.id", "su.id")
+            .field("secondUser.username", "su.username")
+            .field("secondUser.email", "su.email")
+            .field("secondUser.firstName", "su.firstName")
+            .field("secondUser.lastName", "su.lastName")
+            .field("secondUser.biography", "su.biography")
+            .field("secondUser.isVerified", "su.isVerified")
+            .field("secondUser.createdAt", "su.createdAt")
+            .field("secondUser.role", "su.role")
+            .field("status", "ur.status");
+
+    /**
+     * Same as 'UserRelationshipRepository.findRowPageByUserId', but only reads the given fields.
+     * @param fields Fields to read, which must include the internal 'id' field
+     * @return A row for each relationship, ordered by id, with the fields in the order of 'fields.selectList()'
+     */
+    List<Object[]> findFieldPageByUserId(Long userId,
+                                         Collection<UserRelationshipStatus> statusesAsFirstUser,
+                                         Collection<UserRelationshipStatus> statusesAsSecondUser,
+                                         Long afterId,
+                                         int limit,
+                                         SparseFieldset fields);
+
+    /**
+     * Applies an action to the relationship between two users in a single statement. The statement only changes the
+     * relationship if the action is allowed from its current status, so concurrent requests can't race each other into
+     * an invalid state or a unique constraint violation.
+     * @param action Action being taken
+     * @param firstUserId ID of the first user of the relationship
+     * @param secondUserId ID of the second user of the relationship
+     * @param actorIsFirstUser Whether the user taking the action is the first user
+     * @return The status of the relationship after the action; when the action deletes the relationship, this is the
+     *         status it had before being deleted. Empty if the action isn't allowed, or it would create a relationship
+     *         with a user that doesn't exist.
+     */
+    Optional<UserRelationshipStatus> applyAction(RelationshipAction action, Long firstUserId, Long secondUserId, boolean actorIsFirstUser);
+
+    /**
+     * Applies many relationship changes with batched writes, one batch each for inserts, updates and deletes. Each change
+     * is a compare-and-set: it's only applied if the relationship still has the status it's expected to have.
+     * @param changes Changes to apply
+     * @return Whether each change was applied, in the same order as the changes
+     */
+    boolean[] applyChanges(List<RelationshipChange> changes);
+}
@@ -0,0 +1,186 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.domain.dto.UserRelationship.RelationshipChange;
+import com.knguyendev.api.enumeration.RelationshipAction;
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import com.knguyendev.api.utils.SparseFieldset;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the statement for each relationship action once, from the transitions in 'RelationshipAction':
+ * <p>
+ * 1. Actions that can create a relationship are an 'INSERT ... ON CONFLICT DO UPDATE ... WHERE status IN (...)'. The
+ * insert only happens if both users exist and haven't been deleted.
+ * <p>
+ * 2. Other actions are a conditional 'UPDATE' and/or 'DELETE'. When an action can do both (e.g. unblocking), they're
+ * combined with data-modifying CTEs; their status conditions don't overlap, so at most one of them changes the row.
+ * <p>
+ * NOTE: The statuses are enum names, so they're written into the SQL instead of being bound as parameters.
+ * <p>
+ * Batches of changes are written through JDBC, since JPA can't batch native statements. Like the single statements,
+ * they run in the surrounding transaction.
+ */
+public class UserRelationshipRepositoryCustomImpl implements UserRelationshipRepositoryCustom {
+    private static final String MATCH_RELATIONSHIP = "firstUserId = :firstUserId AND secondUserId = :secondUserId";
+
+    private static final String BATCH_INSERT_SQL = "INSERT INTO UserRelationship (firstUserId, secondUserId, status) VALUES (?, ?, ?) " +
+            "ON CONFLICT (firstUserId, secondUserId) DO NOTHING";
+    private static final String BATCH_UPDATE_SQL = "UPDATE UserRelationship SET status = ? WHERE firstUserId = ? AND secondUserId = ? AND status = ?";
+    private static final String BATCH_DELETE_SQL = "DELETE FROM UserRelationship WHERE firstUserId = ? AND secondUserId = ? AND status = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<RelationshipAction, String> sqlAsFirstUser = new EnumMap<>(RelationshipAction.class);
+    private final Map<RelationshipAction, String> sqlAsSecondUser = new EnumMap<>(RelationshipAction.class);
+
+    public UserRelationshipRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (RelationshipAction action : RelationshipAction.values()) {
+            sqlAsFirstUser.put(action, buildSql(action.getTransitions(true)));
+            sqlAsSecondUser.put(action, buildSql(action.getTransitions(false)));
+        }
+    }
+
+    @Override
+    @Transactional
+    public Optional<UserRelationshipStatus> applyAction(RelationshipAction action, Long firstUserId, Long secondUserId, boolean actorIsFirstUser) {
+        String sql = actorIsFirstUser ? sqlAsFirstUser.get(action) : sqlAsSecondUser.get(action);
+        List<?> result = entityManager.createNativeQuery(sql)
+                .setParameter("firstUserId", firstUserId)
+                .setParameter("secondUserId", secondUserId)
+                .getResultList();
+        return result.stream()
+                .findFirst()
+                .map(status -> UserRelationshipStatus.valueOf(status.toString()));
+    }
+
+    @Override
+    public List<Object[]> findFieldPageByUserId(Long userId,
+                                                Collection<UserRelationshipStatus> statusesAsFirstUser,
+                                                Collection<UserRelationshipStatus> statusesAsSecondUser,
+                                                Long afterId,
+                                                int limit,
+                                                SparseFieldset fields) {
+        return entityManager.createQuery("SELECT " + fields.selectList() + " " +
+                        "FROM UserRelationshipEntity ur JOIN ur.firstUser fu JOIN ur.secondUser su " +
+                        "WHERE ((fu.id = :userId AND ur.status IN :statusesAsFirstUser) OR (su.id = :userId AND ur.status IN :statusesAsSecondUser)) " +
+                        "AND ur.id > :afterId AND fu.deletedAt IS NULL AND su.deletedAt IS NULL ORDER BY ur.id", Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("statusesAsFirstUser", statusesAsFirstUser)
+                .setParameter("statusesAsSecondUser", statusesAsSecondUser)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public boolean[] applyChanges(List<RelationshipChange> changes) {
+        /*
+         * Write the relationships in (firstUserId, secondUserId) order, so that concurrent batches lock the rows they
+         * share in the same order instead of deadlocking.
+         */
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < changes.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing((Integer i) -> changes.get(i).getFirstUserId())
+                .thenComparing(i -> changes.get(i).getSecondUserId()));
+
+        List<Integer> inserts = new ArrayList<>();
+        List<Integer> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (Integer i : order) {
+            RelationshipChange change = changes.get(i);
+            if (change.getFromStatus() == null) {
+                inserts.add(i);
+            } else if (change.getToStatus() == null) {
+                deletes.add(i);
+            } else {
+                updates.add(i);
+            }
+        }
+
+        boolean[] applied = new boolean[changes.size()];
+        executeBatch(BATCH_INSERT_SQL, changes, inserts, applied, change -> new Object[]{
+                change.getFirstUserId(), change.getSecondUserId(), change.getToStatus().name()});
+        executeBatch(BATCH_UPDATE_SQL, changes, updates, applied, change -> new Object[]{
+                change.getToStatus().name(), change.getFirstUserId(), change.getSecondUserId(), change.getFromStatus().name()});
+        executeBatch(BATCH_DELETE_SQL, changes, deletes, applied, change -> new Object[]{
+                change.getFirstUserId(), change.getSecondUserId(), change.getFromStatus().name()});
+        return applied;
+    }
+
+    /**
+     * Runs one statement for each of the changes at 'indexes', in a single batch, and records which of them changed a row.
+     */
+    private void executeBatch(String sql, List<RelationshipChange> changes, List<Integer> indexes, boolean[] applied,
+                              Function<RelationshipChange, Object[]> toArgs) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(indexes.size());
+        for (Integer i : indexes) {
+            batchArgs.add(toArgs.apply(changes.get(i)));
+        }
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, batchArgs);
+        for (int j = 0; j < updateCounts.length; j++) {
+            applied[indexes.get(j)] = updateCounts[j] > 0;
+        }
+    }
+
+    static String buildSql(RelationshipAction.Transitions transitions) {
+        Map<UserRelationshipStatus, UserRelationshipStatus> updates = transitions.getUpdates();
+        Set<UserRelationshipStatus> deletes = transitions.getDeletes();
+
+        if (transitions.getInsertStatus() != null) {
+            String sql = "INSERT INTO UserRelationship (firstUserId, secondUserId, status) " +
+                    "SELECT :firstUserId, :secondUserId, " + literal(transitions.getInsertStatus()) + " " +
+                    "WHERE (SELECT COUNT(*) FROM AppUser WHERE id IN (:firstUserId, :secondUserId) AND deletedAt IS NULL) = 2 " +
+                    "ON CONFLICT (firstUserId, secondUserId) DO ";
+            if (updates.isEmpty()) {
+                return sql + "NOTHING RETURNING status";
+            }
+            return sql + "UPDATE SET status = " + caseExpression("UserRelationship.status", updates) + " " +
+                    "WHERE UserRelationship.status IN " + literals(updates.keySet()) + " RETURNING status";
+        }
+
+        String update = updates.isEmpty() ? null : "UPDATE UserRelationship SET status = " + caseExpression("status", updates) + " " +
+                "WHERE " + MATCH_RELATIONSHIP + " AND status IN " + literals(updates.keySet()) + " RETURNING status";
+        String delete = deletes.isEmpty() ? null : "DELETE FROM UserRelationship " +
+                "WHERE " + MATCH_RELATIONSHIP + " AND status IN " + literals(deletes) + " RETURNING status";
+        if (update == null) {
+            return delete;
+        }
+        if (delete == null) {
+            return update;
+        }
+        return "WITH updated AS (" + update + "), deleted AS (" + delete + ") " +
+                "SELECT status FROM updated UNION ALL SELECT status FROM deleted";
+    }
+
+    private static String caseExpression(String column, Map<UserRelationshipStatus, UserRelationshipStatus> updates) {
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        updates.forEach((from, to) -> sql.append(" WHEN ").append(literal(from)).append(" THEN ").append(literal(to)));
+        return sql.append(" END").toString();
+    }
+
+    private static String literals(Collection<UserRelationshipStatus> statuses) {
+        return statuses.stream()
+                .map(UserRelationshipRepositoryCustomImpl::literal)
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static String literal(UserRelationshipStatus status) {
+        return "'" + status.name() + "'";
+    }
+}
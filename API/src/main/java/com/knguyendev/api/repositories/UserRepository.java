@@ -2,19 +2,33 @@ package com.knguyendev.api.repositories;
 
 
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.enumeration.UserRole;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  *
  */
 @Repository
-public interface UserRepository extends CrudRepository<UserEntity, Long> {
+public interface UserRepository extends CrudRepository<UserEntity, Long>, UserRepositoryCustom {
+
+    String USER_FILTER = "AND (:role IS NULL OR u.role = :role) AND (:isVerified IS NULL OR u.isVerified = :isVerified) " +
+            "AND (:createdAfter IS NULL OR u.createdAt >= :createdAfter) AND (:createdBefore IS NULL OR u.createdAt < :createdBefore)";
+
+    String EXPORT_FETCH_SIZE = "500";
 
     // We are expecting only one user here; it's crucial that you put the correct return types
     Optional<UserEntity> findByEmail(String email);
@@ -33,11 +47,79 @@ public interface UserRepository extends CrudRepository<UserEntity, Long> {
     // Find a user by their username or email (good for checking when username and email are unique)
     Optional<UserEntity> findByUsernameOrEmail(String username, String email);
 
+    /**
+     * Finds a user by ID, always reading the row from the database. Unlike 'findById', which is answered from the
+     * second-level cache when the user is there, queries don't read the entity cache, so this can't return a copy that
+     * is stale because another server instance changed the user. Used before changing a user.
+     */
+    @Query("SELECT u FROM UserEntity u WHERE u.id = :id")
+    Optional<UserEntity> findFreshById(@Param("id") Long id);
+
     /*
-     * Finds all users where the ID is in our list of ids
+     * Finds all users where the ID is in our list of ids. Users that are waiting to be purged are excluded.
      * @param ids An array of user ids that we want to check
      * @return
      */
-    @Query("SELECT u FROM UserEntity u WHERE u.id IN :ids")
+    @Query("SELECT u FROM UserEntity u WHERE u.id IN :ids AND u.deletedAt IS NULL")
     List<UserEntity> findByIds(@Param("ids") List<Long> ids);
+
+    /*
+     * Every username and email that's in use, including those of deleted users that haven't been purged yet. Used for
+     * building the availability filters. Like 'streamByFilter', they're read through a cursor, so they have to be read
+     * inside a transaction, and the stream must be closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("SELECT u.username FROM UserEntity u")
+    Stream<String> streamAllUsernames();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("SELECT u.email FROM UserEntity u")
+    Stream<String> streamAllEmails();
+
+    /**
+     * Finds a page of live users that match the filters, in id order. Filters that are null aren't applied.
+     * @param afterId Only users with an id greater than this are returned; 0 for the first page
+     * @param limit Maximum number of users to return
+     * @return Matching users, ordered by id
+     */
+    @Query("SELECT u FROM UserEntity u WHERE u.id > :afterId AND u.deletedAt IS NULL " + USER_FILTER + " ORDER BY u.id")
+    List<UserEntity> findPageByFilter(@Param("afterId") Long afterId, @Param("role") UserRole role,
+                                      @Param("isVerified") Boolean isVerified, @Param("createdAfter") ZonedDateTime createdAfter,
+                                      @Param("createdBefore") ZonedDateTime createdBefore, Limit limit);
+
+    /**
+     * Streams every live user that matches the filters, in id order. The rows are read through a database cursor
+     * 'EXPORT_FETCH_SIZE' rows at a time rather than all at once, so this must be called inside a transaction, and the
+     * stream must be closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("SELECT u FROM UserEntity u WHERE u.deletedAt IS NULL " + USER_FILTER + " ORDER BY u.id")
+    Stream<UserEntity> streamByFilter(@Param("role") UserRole role, @Param("isVerified") Boolean isVerified,
+                                      @Param("createdAfter") ZonedDateTime createdAfter, @Param("createdBefore") ZonedDateTime createdBefore);
+
+    /**
+     * Purges a user row. Used by the background deletion jobs once everything that references the user is gone.
+     * @param id ID of the user
+     * @return Number of rows that were deleted
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "AppUser"))
+    @Query(value = "DELETE FROM AppUser WHERE id = :id", nativeQuery = true)
+    int purgeById(@Param("id") Long id);
+
+    /**
+     * Replaces a user's password hash, but only if it hasn't changed since we read it. This is used to upgrade hashes in
+     * the background, where the user may have changed their password in the meantime, which we must not overwrite. It's
+     * also how a password change is written, since the new hash is computed outside a transaction.
+     * <p>
+     * NOTE: It's transactional by itself, so callers don't have to hold a transaction (and a connection) while hashing.
+     * @param id ID of the user
+     * @param currentPassword The hash we expect the user to currently have
+     * @param newPassword The new hash
+     * @return Number of rows updated, which is 0 if the hash had already changed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserEntity u SET u.password = :newPassword WHERE u.id = :id AND u.password = :currentPassword")
+    int updatePasswordIfUnchanged(@Param("id") Long id, @Param("currentPassword") String currentPassword, @Param("newPassword") String newPassword);
 }
@@ -0,0 +1,23 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+
+import java.util.List;
+
+/**
+ * Queries on AppUser that can't be written as a single '@Query'. Implemented by 'UserRepositoryCustomImpl'.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Finds live users whose username starts with a prefix, in username order. The prefix is given as the range
+     * [lowerBound, upperBound) so that the query is an ordered scan of the 'idx_app_user_username_prefix' index which
+     * stops after 'limit' rows, no matter how many users match. Only the columns of the summary are read, so password
+     * hashes and tokens never leave the database.
+     * @param lowerBound The prefix itself
+     * @param upperBound The prefix with its last character incremented
+     * @param limit Maximum number of users to return
+     * @return Summaries of the matching users, ordered by username
+     */
+    List<UserSummaryDTO> findSummariesByUsernamePrefix(String lowerBound, String upperBound, int limit);
+}
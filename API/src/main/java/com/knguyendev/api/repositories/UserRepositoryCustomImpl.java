@@ -0,0 +1,29 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+
+/**
+ * NOTE: The prefix search compares usernames in the "C" collation to match its index. Hibernate supports that with the
+ * 'collate' function, but Spring Data's '@Query' parser doesn't, so the query is created here instead.
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    private static final String USERNAME_C = "collate(u.username as `C`)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserSummaryDTO> findSummariesByUsernamePrefix(String lowerBound, String upperBound, int limit) {
+        return entityManager.createQuery("SELECT new com.knguyendev.api.domain.dto.User.UserSummaryDTO(u.id, u.username, u.firstName, u.lastName) " +
+                        "FROM UserEntity u WHERE " + USERNAME_C + " >= :lowerBound AND " + USERNAME_C + " < :upperBound " +
+                        "AND u.deletedAt IS NULL ORDER BY " + USERNAME_C, UserSummaryDTO.class)
+                .setParameter("lowerBound", lowerBound)
+                .setParameter("upperBound", upperBound)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
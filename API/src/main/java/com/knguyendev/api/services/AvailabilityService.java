@@ -0,0 +1,35 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.domain.dto.User.AvailabilityDTO;
+
+/**
+ * Service for checking whether usernames and emails are available, which the registration form does as the user types.
+ * <p>
+ * Taken usernames and emails are kept in in-memory Bloom filters, so most checks for an available name never reach the
+ * database. Only when the filter says a name might be taken is the database asked to confirm it.
+ * <p>
+ * NOTE: The filters are per server instance and can't remove names. When a user registers or changes their username or
+ * email, every instance adds the names to its filters, through a Redis channel. The filters are also rebuilt from the
+ * database at startup and periodically, which drops the names of purged users and catches up on any messages that were
+ * missed. So an answer of 'available' is only a hint; registering still checks the database.
+ */
+public interface AvailabilityService {
+
+    /**
+     * Checks whether a username and/or email are available. Either can be null, in which case it isn't checked.
+     * @param username Username to check
+     * @param email Email to check
+     * @return DTO with the result of each value that was checked
+     */
+    AvailabilityDTO checkAvailability(String username, String email);
+
+    /**
+     * Records a username and email as taken, after a user registers or changes them. Either can be null.
+     */
+    void markTaken(String username, String email);
+
+    /**
+     * Rebuilds the filters from every username and email in the database.
+     */
+    void rebuild();
+}
@@ -0,0 +1,38 @@
+package com.knguyendev.api.services;
+
+/**
+ * Service for answering "has A blocked B?", which every read of another user's data needs to ask.
+ * <p>
+ * For each user, the ids of the users they've blocked and the users who have blocked them are kept in memory, so a
+ * check is a hash lookup instead of a query. A user's ids are loaded the first time they're needed, and the least
+ * recently used users are evicted when there are too many.
+ * <p>
+ * NOTE: The index is per server instance. Blocking and unblocking must call {@link #invalidate(Long, Long)}, which
+ * takes effect right away on this instance and is broadcast to the other instances over Redis. Entries also expire some
+ * time after being loaded, which bounds how stale an instance can be if it missed a broadcast.
+ */
+public interface BlockIndexService {
+
+    /**
+     * Checks whether a user has blocked another user.
+     * @param userId ID of the user who may have blocked the other user
+     * @param otherUserId ID of the other user
+     */
+    boolean hasBlocked(Long userId, Long otherUserId);
+
+    /**
+     * Checks whether either of two users has blocked the other, e.g. for hiding their content from each other.
+     */
+    boolean isBlockedEitherWay(Long userId, Long otherUserId);
+
+    /**
+     * Counts the users who have blocked a user.
+     */
+    int countBlockers(Long userId);
+
+    /**
+     * Drops what's known about two users, after one of them blocked or unblocked the other. They're loaded again the
+     * next time they're checked.
+     */
+    void invalidate(Long userId, Long otherUserId);
+}
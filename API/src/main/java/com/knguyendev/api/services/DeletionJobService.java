@@ -0,0 +1,52 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.enumeration.DeletionTargetType;
+import com.knguyendev.api.exception.ServiceException;
+
+import java.util.List;
+
+/**
+ * Service for purging deleted users and task lists in the background.
+ * <p>
+ * Deleting an account or task list used to run unbounded DELETE statements inside the request transaction. Now the
+ * request only marks the target as deleted and enqueues a job, and the purger removes the rows in bounded chunks with
+ * pauses between them, so that a heavy account never holds locks long enough to time out other requests.
+ */
+public interface DeletionJobService {
+
+    /**
+     * Records a new deletion job for a target that has already been marked as deleted. This should be called inside the
+     * same transaction that marks the target, so that a target is never hidden without a job to purge it.
+     * @param targetType Whether a user or a task list is being purged
+     * @param targetId ID of the user or task list
+     * @return DTO representing the job that was created
+     */
+    DeletionJobDTO enqueue(DeletionTargetType targetType, Long targetId);
+
+    /**
+     * Finds all deletion jobs, with the most recent ones first. Used by admins to monitor the progress of purges.
+     */
+    List<DeletionJobDTO> findAll();
+
+    /**
+     * Finds a deletion job by its ID.
+     * @param id ID of the deletion job
+     * @return DTO representing the job
+     * @throws ServiceException Thrown when a job with that ID wasn't found
+     */
+    DeletionJobDTO findById(Long id) throws ServiceException;
+
+    /**
+     * Runs every job that's pending or was interrupted while running. Each chunk is committed in its own transaction
+     * along with the job's progress, so a job that's interrupted by a crash simply resumes on the next run.
+     */
+    void processPendingJobs();
+
+    /**
+     * Physically removes task tombstones that are older than the retention period, in bounded chunks with pauses. This
+     * is scheduled off-peak, since deleting a task interactively only sets its 'deletedAt' tombstone.
+     * @return Number of tombstones that were purged
+     */
+    int purgeDeletedTasks();
+}
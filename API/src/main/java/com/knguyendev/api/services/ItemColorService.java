@@ -2,6 +2,7 @@ package com.knguyendev.api.services;
 
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorCreateDTO;
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorSnapshot;
 import com.knguyendev.api.exception.ServiceException;
 
 import java.util.List;
@@ -19,6 +20,19 @@ public interface ItemColorService {
     // NOTE: There won't be a lot of colors, at most 25. So this doesn't need pagination.
     List<ItemColorDTO> findAll();
 
+    /**
+     * Gets every ItemColor along with an ETag for them. The colors are kept in memory and only read from the database
+     * again after they're changed, or when they're refreshed, so this is cheap enough to call on every page load.
+     */
+    ItemColorSnapshot getSnapshot();
+
+    /**
+     * Reads the colors from the database again, which picks up changes made through other server instances. This runs
+     * every 'spring.custom.itemColor.refreshInterval', which bounds how long an instance can serve colors that are out of
+     * date.
+     */
+    void refreshSnapshot();
+
     /**
      * Attempts to find an existing ItemColor based on its ID value.
      * @param id ID of the ItemColor that you want to do an existence check on.
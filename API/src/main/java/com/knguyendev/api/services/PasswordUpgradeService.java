@@ -0,0 +1,19 @@
+package com.knguyendev.api.services;
+
+/**
+ * Service for upgrading password hashes that were made with an older encoder or cost (see 'PasswordConfig').
+ * <p>
+ * A hash can only be remade from the plain-text password, and the only time we have that is when the user logs in. So
+ * after a successful login the hash is re-encoded in the background, which keeps the extra hashing off the login request.
+ */
+public interface PasswordUpgradeService {
+
+    /**
+     * Re-encodes a user's password with the current encoder, and saves it if the user's hash hasn't changed since login.
+     * This runs asynchronously, and failures are only logged since the upgrade will be tried again on the next login.
+     * @param userId ID of the user that logged in
+     * @param currentHash The user's hash that was just verified
+     * @param rawPassword The plain-text password that was just verified
+     */
+    void upgrade(Long userId, String currentHash, String rawPassword);
+}
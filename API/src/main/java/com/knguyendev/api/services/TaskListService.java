@@ -1,9 +1,12 @@
 package com.knguyendev.api.services;
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListDTO;
+import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.domain.dto.TaskList.TaskListRequest;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TaskListService {
 
@@ -36,12 +39,32 @@ public interface TaskListService {
      */
     List<TaskListDTO> findUserTaskLists(boolean includeTasks);
 
+    /**
+     * Finds all task lists associated with the authenticated user, with their tasks, already serialized. The JSON is
+     * the same as 'findUserTaskLists(true)', but it usually comes from a snapshot that's shared by every server instance.
+     * @return JSON array of the task lists
+     */
+    byte[] findUserTaskListsJson();
 
     /**
-     * Finds all task lists in the database. Mainly used for debugging.
-     *
+     * Finds all task lists associated with the authenticated user, with only the fields that were picked. Only those
+     * fields are read from the database; see 'SparseFieldset'.
+     * @param includeTasks Whether to include the tasks (with all of their fields, unless some were picked)
+     * @param fields Value of the '?fields=' parameter, e.g. 'id,name,taskCount' or 'id,name,tasks.title'. Picking a
+     *               field of the tasks includes them too.
+     * @return The task lists, each as a JSON object with the picked fields
+     * @throws ServiceException If a field doesn't exist, or none were picked
+     */
+    List<Map<String, Object>> findUserTaskLists(boolean includeTasks, String fields) throws ServiceException;
+
+
+    /**
+     * Finds a page of all task lists in the database, in id order. Mainly used for debugging.
+     * @param afterId Cursor of the page, which is the id of the last task list of the previous page; null for the first page
+     * @param size Number of task lists in the page
+     * @throws ServiceException If the page size is out of range
      */
-    List<TaskListDTO> findAll();
+    KeysetPageDTO<TaskListDTO> findPage(Long afterId, int size) throws ServiceException;
 
 
     //    void createDefaultTaskListForUser(Long userId);
@@ -1,10 +1,15 @@
 package com.knguyendev.api.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
+import com.knguyendev.api.domain.dto.Task.TaskTombstoneDTO;
 import com.knguyendev.api.domain.dto.Task.TaskCreateRequest;
-import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
 import com.knguyendev.api.exception.ServiceException;
 
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
 public interface TaskService {
 
     /**
@@ -19,11 +24,12 @@ public interface TaskService {
      * Service for updating the contents of an existing task. Note: If you want to update indentation, ordering,
      * or any referential key related things, then use the other functions.
      * @param id ID of the existing task that's being updated.
-     * @param taskUpdateRequest DTO that contains information for updating the task
+     * @param patch JSON Merge Patch with the fields of a 'TaskUpdateRequest' that are changing; see 'JsonMergePatch'
      * @return DTO representing the newly updated task
-     * @throws ServiceException An exception thrown in the service layer when we have problems updating a task.
+     * @throws ServiceException An exception thrown in the service layer when we have problems updating a task, or when
+     *                          the patched task isn't valid.
      */
-    TaskDTO updateById(Long id, TaskUpdateRequest taskUpdateRequest) throws ServiceException;
+    TaskDTO updateById(Long id, JsonNode patch) throws ServiceException;
 
     /**
      * Toggles whether a task was being indented
@@ -47,4 +53,22 @@ public interface TaskService {
      * @throws ServiceException An exception if there was an error finding the task
      */
     TaskDTO findById(Long id) throws ServiceException;
+
+    /**
+     * Finds a task via its ID, with only the fields that were picked. Only those fields are read from the database; see
+     * 'SparseFieldset'.
+     * @param id ID of the task being fetched
+     * @param fields Value of the '?fields=' parameter, e.g. 'id,title,complete'
+     * @return The task, as a JSON object with the picked fields
+     * @throws ServiceException If the task wasn't found, or a field doesn't exist
+     */
+    Map<String, Object> findById(Long id, String fields) throws ServiceException;
+
+    /**
+     * Finds the tasks of the authenticated user that were deleted after a given time. This lets delta-sync clients
+     * remove tasks locally without having to re-fetch every task list.
+     * @param since Only deletions after this time are returned
+     * @return List of tombstones, oldest deletion first
+     */
+    List<TaskTombstoneDTO> findDeletedSince(ZonedDateTime since);
 }
@@ -1,8 +1,15 @@
 package com.knguyendev.api.services;
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.MutualFriendsDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipBatchResultDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
+import com.knguyendev.api.enumeration.RelationshipFilter;
+import com.knguyendev.api.exception.ServiceException;
 
 import java.util.List;
+import java.util.Map;
 
 public interface UserRelationshipService {
 
@@ -62,5 +69,64 @@ public interface UserRelationshipService {
      */
     UserRelationshipDTO unblockUser(Long targetUserId);
 
-    List<UserRelationshipDTO> getAuthUserRelationships();
+    /**
+     * Sends friend requests to several users at once, e.g. when importing contacts. Each request succeeds or fails
+     * on its own, for the same reasons as 'requestFriendship'.
+     * @param targetUserIds IDs of the users; duplicates are only requested once
+     * @return The result for each of the users, in the order they were given
+     * @throws ServiceException If there are too many users
+     */
+    List<UserRelationshipBatchResultDTO> requestFriendships(List<Long> targetUserIds) throws ServiceException;
+
+    /**
+     * Blocks several users at once, e.g. for moderation tools. Each block succeeds or fails on its own, for the same
+     * reasons as 'blockUser'.
+     * @param targetUserIds IDs of the users; duplicates are only blocked once
+     * @return The result for each of the users, in the order they were given
+     * @throws ServiceException If there are too many users
+     */
+    List<UserRelationshipBatchResultDTO> blockUsers(List<Long> targetUserIds) throws ServiceException;
+
+    /**
+     * Finds a page of the authenticated user's relationships, in the order they were created.
+     * @param filter Which relationships to include; null for all of them
+     * @param afterId Cursor of the page, which is the 'nextCursor' of the previous page; null for the first page
+     * @param size Number of relationships in the page
+     * @return The page of relationships
+     * @throws ServiceException If the page size is out of range
+     */
+    KeysetPageDTO<UserRelationshipDTO> getAuthUserRelationships(RelationshipFilter filter, Long afterId, int size) throws ServiceException;
+
+    /**
+     * Finds a page of the authenticated user's relationships, with only the fields that were picked. Only those fields
+     * are read from the database; see 'SparseFieldset'.
+     * @param fields Value of the '?fields=' parameter, e.g. 'status,firstUser.username,secondUser.username'. Picking
+     *               'firstUser' or 'secondUser' picks all of the user's fields.
+     * @return The page of relationships, each as a JSON object with the picked fields
+     * @throws ServiceException If the page size is out of range, or a field doesn't exist
+     */
+    KeysetPageDTO<Map<String, Object>> getAuthUserRelationships(RelationshipFilter filter, Long afterId, int size, String fields) throws ServiceException;
+
+    /**
+     * Counts the friend requests that other users have sent to the authenticated user.
+     */
+    long countIncomingRequests();
+
+    /**
+     * Finds the friends that the authenticated user has in common with another user.
+     * @param targetUserId ID of the other user
+     * @param limit Maximum number of mutual friends to include in the result; the count covers all of them
+     * @return The mutual friends
+     * @throws ServiceException If the other user doesn't exist or has blocked the authenticated user, or the limit is out of range
+     */
+    MutualFriendsDTO getMutualFriends(Long targetUserId, int limit) throws ServiceException;
+
+    /**
+     * Suggests users that the authenticated user may know: friends of their friends, ranked by how many mutual friends
+     * they have. Users they already have a relationship with (including pending requests and blocks) aren't suggested.
+     * @param limit Maximum number of suggestions
+     * @return Suggested users, best first
+     * @throws ServiceException If the limit is out of range
+     */
+    List<UserSummaryDTO> getFriendSuggestions(int limit) throws ServiceException;
 }
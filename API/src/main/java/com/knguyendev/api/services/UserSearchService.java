@@ -0,0 +1,22 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.exception.ServiceException;
+
+import java.util.List;
+
+/**
+ * Service for finding other users by the start of their username, e.g. as the user types a name when adding friends.
+ */
+public interface UserSearchService {
+
+    /**
+     * Finds users whose username starts with a prefix, in username order. The authenticated user, and users who have
+     * blocked them, aren't included.
+     * @param prefix Start of the username, which is case-insensitive
+     * @param limit Maximum number of users to return; can be null for the configured maximum
+     * @return Matching users
+     * @throws ServiceException If the prefix can't be part of a username, or the limit is out of range
+     */
+    List<UserSummaryDTO> searchByUsernamePrefix(String prefix, Integer limit) throws ServiceException;
+}
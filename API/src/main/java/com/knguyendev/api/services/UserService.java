@@ -1,14 +1,16 @@
 package com.knguyendev.api.services;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.User.ChangePasswordDTO;
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserDeleteDTO;
-import com.knguyendev.api.domain.dto.User.UserProfileUpdateDTO;
+import com.knguyendev.api.domain.dto.User.UserFilterDTO;
 import com.knguyendev.api.exception.ServiceException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Let's define an interface for our UserService. With this you can define some
@@ -21,9 +23,22 @@ import java.util.List;
 public interface UserService {
 
     /**
-     * Finds all users and returns them as a list of UserDTOs.
+     * Finds a page of users that match the filters, in id order.
+     * @param filter Filters for the users
+     * @param afterId Cursor of the page, which is the id of the last user of the previous page; null for the first page
+     * @param size Number of users in the page
+     * @return The page of users
+     * @throws ServiceException If the page size is out of range
      */
-    List<UserDTO> findAll();
+    KeysetPageDTO<UserDTO> findPage(UserFilterDTO filter, Long afterId, int size) throws ServiceException;
+
+    /**
+     * Passes every user that matches the filters to a consumer, in id order, for exporting them. Users are read from the
+     * database in batches as they're consumed, so there's no limit to how many users can be exported.
+     * @param filter Filters for the users
+     * @param consumer Consumer that's called with each user
+     */
+    void exportUsers(UserFilterDTO filter, Consumer<UserDTO> consumer);
 
     /**
      * Updates a user by its ID. This should be used for updating a user's profile information
@@ -38,10 +53,11 @@ public interface UserService {
 
     /**
      * Updates the profile of the currently authenticated user
-     * @param userProfileUpdateDTO DTO that contains all the profile information that's being updated.
+     * @param patch JSON Merge Patch with the fields of a 'UserProfileUpdateDTO' that are changing; see 'JsonMergePatch'
      * @return Returns the DTO of the authenticated user after their profile has been updated.
+     * @throws ServiceException If the patched profile isn't valid, or the new username or email is taken.
      */
-    UserDTO updateAccountProfile(UserProfileUpdateDTO userProfileUpdateDTO);
+    UserDTO updateAccountProfile(JsonNode patch) throws ServiceException;
 
 
     /**
@@ -1,5 +1,6 @@
 package com.knguyendev.api.services.impl;
 
+import com.knguyendev.api.config.security.NearCacheSessionRepository;
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserDetailsImpl;
 import com.knguyendev.api.domain.dto.User.UserLoginDTO;
@@ -12,9 +13,14 @@ import com.knguyendev.api.mappers.UserMapper;
 import com.knguyendev.api.repositories.TaskListRepository;
 import com.knguyendev.api.repositories.UserRepository;
 import com.knguyendev.api.services.AuthService;
+import com.knguyendev.api.services.AvailabilityService;
+import com.knguyendev.api.services.PasswordUpgradeService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -28,7 +34,6 @@ import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.context.SecurityContextRepository;
-import org.springframework.session.data.redis.RedisIndexedSessionRepository;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -41,6 +46,7 @@ import java.util.Optional;
 
 @Service
 public class AuthServiceImpl implements AuthService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthServiceImpl.class);
 
     @Value(value = "${spring.custom.maxSession}")
     private int maxSession;
@@ -51,10 +57,12 @@ public class AuthServiceImpl implements AuthService {
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authManager;
-    private final RedisIndexedSessionRepository redisIndexedSessionRepository;
+    private final NearCacheSessionRepository<?> sessionRepository;
     private final SessionRegistry sessionRegistry;
     private final SecurityContextRepository securityContextRepository;
     private final SecurityContextHolderStrategy securityContextHolderStrategy;
+    private final PasswordUpgradeService passwordUpgradeService;
+    private final AvailabilityService availabilityService;
 
     public AuthServiceImpl(
             UserRepository userRepository,
@@ -62,19 +70,23 @@ public class AuthServiceImpl implements AuthService {
             UserMapper userMapper,
             PasswordEncoder passwordEncoder,
             AuthenticationManager authManager,
-            RedisIndexedSessionRepository redisIndexedSessionRepository,
+            NearCacheSessionRepository<?> sessionRepository,
             SessionRegistry sessionRegistry,
-            SecurityContextRepository securityContextRepository
+            SecurityContextRepository securityContextRepository,
+            PasswordUpgradeService passwordUpgradeService,
+            AvailabilityService availabilityService
     ) {
         this.userRepository = userRepository;
         this.taskListRepository = taskListRepository;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
         this.authManager = authManager;
-        this.redisIndexedSessionRepository = redisIndexedSessionRepository;
+        this.sessionRepository = sessionRepository;
         this.sessionRegistry = sessionRegistry;
         this.securityContextRepository = securityContextRepository;
         this.securityContextHolderStrategy = SecurityContextHolder.getContextHolderStrategy();
+        this.passwordUpgradeService = passwordUpgradeService;
+        this.availabilityService = availabilityService;
     }
 
 
@@ -104,6 +116,7 @@ public class AuthServiceImpl implements AuthService {
         // Save the user and create the default task list for said user
         newUser = userRepository.save(newUser);
         createDefaultTaskList(newUser.getId());
+        availabilityService.markTaken(newUser.getUsername(), newUser.getEmail());
 
         return userMapper.toDTO(newUser);
     }
@@ -148,6 +161,7 @@ public class AuthServiceImpl implements AuthService {
         UserDTO userDTO = null;
         if (principal instanceof UserDetailsImpl userDetails) {
             UserEntity loggedInUser = userDetails.getUser();
+            upgradePasswordIfNeeded(loggedInUser, userLoginDTO.getPassword());
             userDTO = userMapper.toDTO(loggedInUser);
         }
 
@@ -155,6 +169,25 @@ public class AuthServiceImpl implements AuthService {
     }
 
 
+    /**
+     * If the user's hash was made with an older encoder or cost, then re-encode it in the background. The check itself is
+     * cheap, since it only looks at the hash's prefix and cost.
+     *
+     * @param user User that just logged in
+     * @param rawPassword Plain-text password that the user just logged in with
+     */
+    private void upgradePasswordIfNeeded(UserEntity user, String rawPassword) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+            return;
+        }
+        try {
+            passwordUpgradeService.upgrade(user.getId(), user.getPassword(), rawPassword);
+        } catch (TaskRejectedException e) {
+            // Background queue is full, which shouldn't stop the login; we'll try again on their next login
+            logger.debug("Skipped upgrading the password hash of user {}, since the task queue is full", user.getId());
+        }
+    }
+
     private void createDefaultTaskList(Long userId) {
         TaskListEntity defaultTaskList = TaskListEntity.builder()
                 .userId(userId) // Set the user to the newly saved user
@@ -200,7 +233,7 @@ public class AuthServiceImpl implements AuthService {
         if (sessions.size() >= maxSession) {
             sessions.stream()
                     .min(Comparator.comparing(SessionInformation::getLastRequest))
-                    .ifPresent(sessionInfo -> this.redisIndexedSessionRepository.deleteById(sessionInfo.getSessionId()));
+                    .ifPresent(sessionInfo -> this.sessionRepository.deleteById(sessionInfo.getSessionId()));
         }
     }
 }
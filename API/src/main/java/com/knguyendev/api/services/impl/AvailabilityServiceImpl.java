@@ -0,0 +1,158 @@
+package com.knguyendev.api.services.impl;
+
+import com.knguyendev.api.domain.dto.User.AvailabilityDTO;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.AvailabilityService;
+import com.knguyendev.api.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * NOTE: A name that's marked taken is published on the 'TAKEN_CHANNEL' Redis channel, and every instance (this one
+ * included) adds it to its filters when the message arrives. Without that, an instance would report a name that was
+ * just registered through another instance as available until its next rebuild. Messages published while an instance
+ * is disconnected from Redis are lost, so the periodic rebuild still catches those up.
+ */
+@Service
+public class AvailabilityServiceImpl implements AvailabilityService {
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityServiceImpl.class);
+
+    public static final String TAKEN_CHANNEL = "availability:taken";
+
+    // Prefixes of the messages on 'TAKEN_CHANNEL', followed by the normalized name
+    private static final String USERNAME_PREFIX = "username:";
+    private static final String EMAIL_PREFIX = "email:";
+
+    @Value(value = "${spring.custom.availability.expectedUsers}")
+    private long expectedUsers;
+
+    @Value(value = "${spring.custom.availability.falsePositiveRate}")
+    private double falsePositiveRate;
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    /*
+     * The filters being used, which are swapped out as a whole on a rebuild. While a rebuild is running, names that are
+     * marked taken are also added to the filters being built, so that they aren't lost when the filters are swapped.
+     * Until the first build finishes, the filters are null, and every check goes to the database.
+     */
+    private volatile BloomFilter usernameFilter;
+    private volatile BloomFilter emailFilter;
+    private volatile BloomFilter buildingUsernameFilter;
+    private volatile BloomFilter buildingEmailFilter;
+
+    public AvailabilityServiceImpl(UserRepository userRepository, StringRedisTemplate redisTemplate,
+                                   @Qualifier("cacheEventListenerContainer") RedisMessageListenerContainer listenerContainer) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this::onTakenMessage, new ChannelTopic(TAKEN_CHANNEL));
+    }
+
+    @Override
+    public AvailabilityDTO checkAvailability(String username, String email) {
+        AvailabilityDTO availabilityDTO = new AvailabilityDTO();
+        if (username != null) {
+            String normalizedUsername = username.toLowerCase().trim();
+            BloomFilter filter = usernameFilter;
+            boolean mightBeTaken = filter == null || filter.mightContain(normalizedUsername);
+            availabilityDTO.setUsername(!mightBeTaken || userRepository.findByUsername(normalizedUsername).isEmpty());
+        }
+        if (email != null) {
+            String normalizedEmail = email.toLowerCase().trim();
+            BloomFilter filter = emailFilter;
+            boolean mightBeTaken = filter == null || filter.mightContain(normalizedEmail);
+            availabilityDTO.setEmail(!mightBeTaken || userRepository.findByEmail(normalizedEmail).isEmpty());
+        }
+        return availabilityDTO;
+    }
+
+    @Override
+    public void markTaken(String username, String email) {
+        if (username != null) {
+            String normalizedUsername = username.toLowerCase().trim();
+            add(usernameFilter, buildingUsernameFilter, normalizedUsername);
+            publish(USERNAME_PREFIX + normalizedUsername);
+        }
+        if (email != null) {
+            String normalizedEmail = email.toLowerCase().trim();
+            add(emailFilter, buildingEmailFilter, normalizedEmail);
+            publish(EMAIL_PREFIX + normalizedEmail);
+        }
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(TAKEN_CHANNEL, message);
+        } catch (RuntimeException e) {
+            // The name is already in this instance's filters; other instances pick it up on their next rebuild
+            logger.warn("Couldn't tell other instances that '{}' is taken: {}", message, e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a name that was marked taken on any instance to the filters.
+     */
+    private void onTakenMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(USERNAME_PREFIX)) {
+            add(usernameFilter, buildingUsernameFilter, body.substring(USERNAME_PREFIX.length()));
+        } else if (body.startsWith(EMAIL_PREFIX)) {
+            add(emailFilter, buildingEmailFilter, body.substring(EMAIL_PREFIX.length()));
+        }
+    }
+
+    private void add(BloomFilter filter, BloomFilter buildingFilter, String value) {
+        if (filter != null) {
+            filter.add(value);
+        }
+        if (buildingFilter != null) {
+            buildingFilter.add(value);
+        }
+    }
+
+    /*
+     * NOTE: The names are streamed through a cursor rather than loaded into a list, so a rebuild doesn't hold every
+     * username and email in memory at once. That needs a (read-only) transaction for as long as the rebuild runs.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${spring.custom.availability.rebuildInterval}", fixedDelayString = "${spring.custom.availability.rebuildInterval}")
+    public synchronized void rebuild() {
+        // Size for the configured number of users, or twice the number we have if we've outgrown it
+        long userCount = userRepository.count();
+        long capacity = Math.max(expectedUsers, userCount * 2);
+        BloomFilter newUsernameFilter = new BloomFilter(capacity, falsePositiveRate);
+        BloomFilter newEmailFilter = new BloomFilter(capacity, falsePositiveRate);
+        buildingUsernameFilter = newUsernameFilter;
+        buildingEmailFilter = newEmailFilter;
+        try {
+            try (Stream<String> usernames = userRepository.streamAllUsernames()) {
+                usernames.forEach(username -> newUsernameFilter.add(username.toLowerCase()));
+            }
+            try (Stream<String> emails = userRepository.streamAllEmails()) {
+                emails.forEach(email -> newEmailFilter.add(email.toLowerCase()));
+            }
+            usernameFilter = newUsernameFilter;
+            emailFilter = newEmailFilter;
+        } finally {
+            buildingUsernameFilter = null;
+            buildingEmailFilter = null;
+        }
+    }
+}
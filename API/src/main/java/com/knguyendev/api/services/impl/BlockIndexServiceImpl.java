@@ -0,0 +1,123 @@
+package com.knguyendev.api.services.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import com.knguyendev.api.services.BlockIndexService;
+import com.knguyendev.api.utils.LongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static com.knguyendev.api.enumeration.UserRelationshipStatus.*;
+
+/**
+ * NOTE: Invalidations are published on the 'INVALIDATE_CHANNEL' Redis channel, and every other instance drops the two
+ * users when the message arrives, so a block is enforced everywhere within moments. Messages published while an instance
+ * is disconnected from Redis are lost; for those, 'expireAfterWrite' bounds how long the instance can miss the change.
+ */
+@Service
+public class BlockIndexServiceImpl implements BlockIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(BlockIndexServiceImpl.class);
+
+    public static final String INVALIDATE_CHANNEL = "blockIndex:invalidate";
+
+    /**
+     * The blocks involving one user. The sets are never modified after being loaded, so they can be read by any
+     * number of threads.
+     * - blocked: IDs of the users they've blocked
+     * - blockedBy: IDs of the users who have blocked them
+     */
+    private record UserBlocks(LongHashSet blocked, LongHashSet blockedBy) {}
+
+    private final UserRelationshipRepository userRelationshipRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final LoadingCache<Long, UserBlocks> blocksByUserId;
+
+    public BlockIndexServiceImpl(
+            UserRelationshipRepository userRelationshipRepository,
+            StringRedisTemplate redisTemplate,
+            @Qualifier("cacheEventListenerContainer") RedisMessageListenerContainer listenerContainer,
+            @Value("${spring.custom.blockIndex.maximumSize}") long maximumSize,
+            @Value("${spring.custom.blockIndex.expireAfterWrite}") Duration expireAfterWrite) {
+        this.userRelationshipRepository = userRelationshipRepository;
+        this.redisTemplate = redisTemplate;
+        this.blocksByUserId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build(this::loadBlocks);
+        listenerContainer.addMessageListener(this::onInvalidateMessage, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @Override
+    public boolean hasBlocked(Long userId, Long otherUserId) {
+        return blocksByUserId.get(userId).blocked().contains(otherUserId);
+    }
+
+    @Override
+    public boolean isBlockedEitherWay(Long userId, Long otherUserId) {
+        UserBlocks blocks = blocksByUserId.get(userId);
+        return blocks.blocked().contains(otherUserId) || blocks.blockedBy().contains(otherUserId);
+    }
+
+    @Override
+    public int countBlockers(Long userId) {
+        return blocksByUserId.get(userId).blockedBy().size();
+    }
+
+    @Override
+    public void invalidate(Long userId, Long otherUserId) {
+        blocksByUserId.invalidate(userId);
+        blocksByUserId.invalidate(otherUserId);
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, userId + ":" + otherUserId);
+        } catch (RuntimeException e) {
+            // Other instances pick up the change once their entries expire
+            logger.warn("Couldn't tell other instances to invalidate the blocks of users {} and {}: {}", userId, otherUserId, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the two users of an invalidation that was published by any instance (this one included, which is harmless).
+     */
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String[] userIds = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+        for (String userId : userIds) {
+            blocksByUserId.invalidate(Long.valueOf(userId));
+        }
+    }
+
+    private UserBlocks loadBlocks(Long userId) {
+        List<Object[]> rows = userRelationshipRepository.findBlocksByUserId(userId);
+        LongHashSet blocked = new LongHashSet(rows.size());
+        LongHashSet blockedBy = new LongHashSet(rows.size());
+        for (Object[] row : rows) {
+            Long firstUserId = (Long) row[0];
+            Long secondUserId = (Long) row[1];
+            UserRelationshipStatus status = (UserRelationshipStatus) row[2];
+
+            // Look at the status from the user's point of view, as if they were the first user
+            boolean isFirstUser = userId.equals(firstUserId);
+            long otherUserId = isFirstUser ? secondUserId : firstUserId;
+            UserRelationshipStatus statusAsFirstUser = isFirstUser ? status : status.mirror();
+            if (statusAsFirstUser == BLOCK_FIRST_SECOND || statusAsFirstUser == BLOCK_BOTH) {
+                blocked.add(otherUserId);
+            }
+            if (statusAsFirstUser == BLOCK_SECOND_FIRST || statusAsFirstUser == BLOCK_BOTH) {
+                blockedBy.add(otherUserId);
+            }
+        }
+        return new UserBlocks(blocked, blockedBy);
+    }
+}
@@ -0,0 +1,245 @@
+package com.knguyendev.api.services.impl;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.domain.entities.DeletionJobEntity;
+import com.knguyendev.api.enumeration.DeletionJobStatus;
+import com.knguyendev.api.enumeration.DeletionTargetType;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.mappers.DeletionJobMapper;
+import com.knguyendev.api.repositories.DeletionJobRepository;
+import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskRepository;
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.DeletionJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+@Service
+public class DeletionJobServiceImpl implements DeletionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeletionJobServiceImpl.class);
+
+    // Maximum number of rows that are deleted in a single transaction
+    @Value(value = "${spring.custom.deletion.chunkSize}")
+    private int chunkSize;
+
+    // How long the purger waits between chunks, which gives other transactions a chance to grab the locks they need
+    @Value(value = "${spring.custom.deletion.pauseMillis}")
+    private long pauseMillis;
+
+    // How long a running job can go without making progress before another instance may take it over
+    @Value(value = "${spring.custom.deletion.leaseTimeout}")
+    private Duration leaseTimeout;
+
+    // How long task tombstones are kept before being purged, which is how far back delta-sync clients can look
+    @Value(value = "${spring.custom.deletion.taskRetention}")
+    private Duration taskRetention;
+
+    private final DeletionJobRepository deletionJobRepository;
+    private final UserRepository userRepository;
+    private final TaskListRepository taskListRepository;
+    private final TaskRepository taskRepository;
+    private final UserRelationshipRepository userRelationshipRepository;
+    private final DeletionJobMapper deletionJobMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public DeletionJobServiceImpl(
+            DeletionJobRepository deletionJobRepository,
+            UserRepository userRepository,
+            TaskListRepository taskListRepository,
+            TaskRepository taskRepository,
+            UserRelationshipRepository userRelationshipRepository,
+            DeletionJobMapper deletionJobMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.deletionJobRepository = deletionJobRepository;
+        this.userRepository = userRepository;
+        this.taskListRepository = taskListRepository;
+        this.taskRepository = taskRepository;
+        this.userRelationshipRepository = userRelationshipRepository;
+        this.deletionJobMapper = deletionJobMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Returns the purge steps for a job, in the order they need to run. Each step deletes at most one chunk of rows and
+     * returns how many it deleted. Children are always purged before the rows they reference.
+     * @param job The job being processed
+     * @return List of steps, where each step is repeated until it deletes fewer rows than a full chunk.
+     */
+    private List<IntSupplier> getPurgeSteps(DeletionJobEntity job) {
+        Long targetId = job.getTargetId();
+        if (job.getTargetType() == DeletionTargetType.USER) {
+            return List.of(
+                    () -> taskRepository.purgeChunkByUserId(targetId, chunkSize),
+                    () -> taskListRepository.purgeChunkByUserId(targetId, chunkSize),
+                    () -> userRelationshipRepository.purgeChunkByUserId(targetId, chunkSize),
+                    () -> userRepository.purgeById(targetId)
+            );
+        }
+        return List.of(
+                () -> taskRepository.purgeChunkByTaskListId(targetId, chunkSize),
+                () -> taskListRepository.purgeById(targetId)
+        );
+    }
+
+    /**
+     * Claims a job for this instance; see 'DeletionJobRepository.claim'.
+     * @return Whether the job was claimed, which is false if another instance is running it
+     */
+    private boolean claim(DeletionJobEntity job) {
+        ZonedDateTime now = now();
+        Integer claimed = transactionTemplate.execute(status ->
+                deletionJobRepository.claim(job.getId(), now, now.minus(leaseTimeout)));
+        return claimed != null && claimed > 0;
+    }
+
+    /**
+     * Puts a job that this instance couldn't finish back to 'PENDING', so any instance can retry it on its next run.
+     * If that fails too, the job is taken over once its lease times out.
+     */
+    private void release(DeletionJobEntity job) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    deletionJobRepository.updateStatus(job.getId(), DeletionJobStatus.PENDING, now()));
+        } catch (RuntimeException e) {
+            logger.warn("Deletion job '{}' couldn't be released, so it's retried once its lease times out: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a single job, that this instance has claimed, until all of its rows are purged. Every chunk updates the
+     * job, which keeps the claim from timing out.
+     * @param job The job being processed
+     * @throws InterruptedException Thrown when the purger is interrupted during a pause.
+     */
+    private void runJob(DeletionJobEntity job) throws InterruptedException {
+        Long jobId = job.getId();
+        for (IntSupplier step : getPurgeSteps(job)) {
+            int rowsDeleted;
+            do {
+                // Delete one chunk and record the progress in the same transaction
+                Integer result = transactionTemplate.execute(status -> {
+                    int deleted = step.getAsInt();
+                    if (deleted > 0) {
+                        deletionJobRepository.incrementRowsDeleted(jobId, deleted, now());
+                    }
+                    return deleted;
+                });
+                rowsDeleted = result == null ? 0 : result;
+                if (rowsDeleted > 0 && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (rowsDeleted >= chunkSize);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> deletionJobRepository.markCompleted(jobId, now()));
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+
+    @Override
+    public DeletionJobDTO enqueue(DeletionTargetType targetType, Long targetId) {
+        ZonedDateTime now = now();
+        DeletionJobEntity job = DeletionJobEntity.builder()
+                .targetType(targetType)
+                .targetId(targetId)
+                .status(DeletionJobStatus.PENDING)
+                .rowsDeleted(0L)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        return deletionJobMapper.toDTO(deletionJobRepository.save(job));
+    }
+
+    @Override
+    public List<DeletionJobDTO> findAll() {
+        return deletionJobRepository.findAllNewestFirst()
+                .stream()
+                .map(deletionJobMapper::toDTO)
+                .toList();
+    }
+
+    @Override
+    public DeletionJobDTO findById(Long id) throws ServiceException {
+        DeletionJobEntity job = deletionJobRepository.findById(id)
+                .orElseThrow(() -> new ServiceException("Deletion job with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND));
+        return deletionJobMapper.toDTO(job);
+    }
+
+    /*
+     * NOTE: Every server instance polls for jobs, so each job is claimed first with a conditional update, and an instance
+     * only runs the jobs it claimed. Jobs left in the 'RUNNING' state by a crash can be claimed again once they haven't
+     * made progress for 'leaseTimeout', which is how a purge resumes. Every chunk is idempotent (it only deletes rows that
+     * still exist), so a job that's run again, or briefly run twice after a takeover, is always safe.
+     */
+    @Override
+    @Scheduled(
+            initialDelayString = "${spring.custom.deletion.pollInterval}",
+            fixedDelayString = "${spring.custom.deletion.pollInterval}"
+    )
+    public void processPendingJobs() {
+        List<DeletionJobEntity> jobs = deletionJobRepository.findByStatusIn(
+                List.of(DeletionJobStatus.PENDING, DeletionJobStatus.RUNNING)
+        );
+        for (DeletionJobEntity job : jobs) {
+            try {
+                if (!claim(job)) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Deletion job '{}' couldn't be claimed: {}", job.getId(), e.getMessage());
+                continue;
+            }
+            try {
+                runJob(job);
+            } catch (InterruptedException e) {
+                // The server is shutting down; the job is released so another instance can pick it up
+                Thread.currentThread().interrupt();
+                release(job);
+                return;
+            } catch (RuntimeException e) {
+                // Release the job so that it's retried on the next run
+                logger.error("Deletion job '{}' failed, and will be retried", job.getId(), e);
+                release(job);
+            }
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "${spring.custom.deletion.taskPurgeCron}")
+    public int purgeDeletedTasks() {
+        ZonedDateTime cutoff = now().minus(taskRetention);
+        int totalDeleted = 0;
+        int rowsDeleted;
+        try {
+            do {
+                Integer result = transactionTemplate.execute(status -> taskRepository.purgeTombstonesChunk(cutoff, chunkSize));
+                rowsDeleted = result == null ? 0 : result;
+                totalDeleted += rowsDeleted;
+                if (rowsDeleted > 0 && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (rowsDeleted >= chunkSize);
+        } catch (InterruptedException e) {
+            // Whatever wasn't purged is simply picked up on the next run
+            Thread.currentThread().interrupt();
+        }
+        return totalDeleted;
+    }
+}
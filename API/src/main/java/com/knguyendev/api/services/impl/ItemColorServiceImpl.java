@@ -2,25 +2,56 @@ package com.knguyendev.api.services.impl;
 
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorCreateDTO;
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorSnapshot;
 import com.knguyendev.api.domain.entities.ItemColorEntity;
+import com.knguyendev.api.domain.entities.TaskListEntity;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.ItemColorMapper;
 import com.knguyendev.api.repositories.ItemColorRepository;
 import com.knguyendev.api.services.ItemColorService;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
 
+/**
+ * Manages ItemColors, the palette that users pick from for their tasks.
+ * <p>
+ * The palette is read on every page load but rarely changes, so it's kept in memory as an immutable snapshot. Every
+ * change made through this service builds a new snapshot from the database and swaps it in, so readers never wait on a
+ * lock or see a half-applied change.
+ * <p>
+ * Tasks and task lists only store the ID of their color, and their mappers resolve it through the snapshot, so they
+ * carry their colors without joining ItemColor. Snapshots of users' task lists embed the colors too, so changing or
+ * deleting a color invalidates all of them.
+ * <p>
+ * NOTE: The snapshot is per server instance, so a change made on another instance is only seen once this one refreshes
+ * its snapshot, which it does every 'refreshInterval'. Task list snapshots built here in the meantime embed the old
+ * colors, so a refresh that finds a different palette invalidates them as well.
+ */
 @Service
 public class ItemColorServiceImpl implements ItemColorService {
     private final ItemColorRepository itemColorRepository;
     private final ItemColorMapper itemColorMapper;
-    public ItemColorServiceImpl(ItemColorRepository itemColorRepository, ItemColorMapper itemColorMapper) {
+    private final TaskListSnapshotCache taskListSnapshotCache;
+    private final EntityManagerFactory entityManagerFactory;
+
+    // Loaded on the first read, rather than at startup, since the colors are seeded after the beans are created
+    private volatile ItemColorSnapshot snapshot;
+
+    public ItemColorServiceImpl(ItemColorRepository itemColorRepository, ItemColorMapper itemColorMapper, TaskListSnapshotCache taskListSnapshotCache, EntityManagerFactory entityManagerFactory) {
         this.itemColorRepository = itemColorRepository;
         this.itemColorMapper = itemColorMapper;
+        this.taskListSnapshotCache = taskListSnapshotCache;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
@@ -41,15 +72,65 @@ public class ItemColorServiceImpl implements ItemColorService {
         }
 
         ItemColorEntity newItemColor = itemColorMapper.toEntity(itemColorCreateDTO);
-        return itemColorMapper.toDTO(itemColorRepository.save(newItemColor));
+        ItemColorDTO itemColor = itemColorMapper.toDTO(itemColorRepository.save(newItemColor));
+        rebuildSnapshotAfterCommit();
+        return itemColor;
     }
 
     @Override
     public List<ItemColorDTO> findAll() {
-        List<ItemColorEntity> itemColors = StreamSupport
+        return getSnapshot().getItemColors();
+    }
+
+    @Override
+    public ItemColorSnapshot getSnapshot() {
+        ItemColorSnapshot current = snapshot;
+        return current != null ? current : rebuildSnapshot();
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${spring.custom.itemColor.refreshInterval}", fixedDelayString = "${spring.custom.itemColor.refreshInterval}")
+    public void refreshSnapshot() {
+        ItemColorSnapshot previous = snapshot;
+        if (previous == null) {
+            // Nothing has been read yet, and the first read loads the current colors
+            return;
+        }
+        ItemColorSnapshot current = rebuildSnapshot();
+        if (!current.getETag().equals(previous.getETag())) {
+            taskListSnapshotCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot once the current transaction commits, so the rebuild reads the change. Without a
+     * transaction, the change is already committed and the snapshot is rebuilt right away.
+     */
+    private void rebuildSnapshotAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuildSnapshot();
+                }
+            });
+        } else {
+            rebuildSnapshot();
+        }
+    }
+
+    /**
+     * Reads the colors from the database and swaps in a snapshot of them. Rebuilds are done one at a time, so a rebuild
+     * that started before a change can't replace the snapshot of a rebuild that started after it.
+     */
+    private synchronized ItemColorSnapshot rebuildSnapshot() {
+        List<ItemColorDTO> itemColors = StreamSupport
                 .stream(itemColorRepository.findAll().spliterator(), false)
+                .map(itemColorMapper::toDTO)
                 .toList();
-        return itemColors.stream().map(itemColorMapper::toDTO).toList();
+        ItemColorSnapshot newSnapshot = ItemColorSnapshot.of(itemColors);
+        snapshot = newSnapshot;
+        return newSnapshot;
     }
 
 
@@ -101,16 +182,42 @@ public class ItemColorServiceImpl implements ItemColorService {
         // Apply any potential changes and save it to the database
         existingItemColor.setName(itemColorCreateDTO.getName());
         existingItemColor.setHexCode(itemColorCreateDTO.getHexCode());
-        return itemColorMapper.toDTO(itemColorRepository.save(existingItemColor));
+        ItemColorDTO itemColor = itemColorMapper.toDTO(itemColorRepository.save(existingItemColor));
+        rebuildSnapshotAfterCommit();
+        taskListSnapshotCache.invalidateAll();
+        return itemColor;
     }
 
     @Override
+    @Transactional
     public ItemColorDTO deleteById(Long id) throws ServiceException{
         Optional<ItemColorEntity> result = itemColorRepository.findById(id);
         if (result.isEmpty()) {
             throw new ServiceException("ItemColor with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND);
         }
+        // Anything shown with the color goes back to its default color, which the foreign keys do as part of the delete
         itemColorRepository.deleteById(id);
+        rebuildSnapshotAfterCommit();
+        evictTaskListsAfterCommit();
+        taskListSnapshotCache.invalidateAll();
         return itemColorMapper.toDTO(result.get());
     }
+
+    /**
+     * Evicts task lists from Hibernate's second-level cache once the current transaction commits. The foreign key clears
+     * their color in the database, which Hibernate doesn't see, so a cached task list would keep the deleted color (and
+     * saving it would then fail on the foreign key).
+     */
+    private void evictTaskListsAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entityManagerFactory.getCache().evict(TaskListEntity.class);
+                }
+            });
+        } else {
+            entityManagerFactory.getCache().evict(TaskListEntity.class);
+        }
+    }
 }
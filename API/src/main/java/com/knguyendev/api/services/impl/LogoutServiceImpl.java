@@ -1,5 +1,6 @@
 package com.knguyendev.api.services.impl;
 
+import com.knguyendev.api.config.security.NearCacheSessionRepository;
 import com.knguyendev.api.services.LogoutService;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,18 +10,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.session.FindByIndexNameSessionRepository;
 import org.springframework.session.Session;
-import org.springframework.session.data.redis.RedisIndexedSessionRepository;
 import org.springframework.stereotype.Service;
 
 @Service
 public class LogoutServiceImpl implements LogoutService {
-    private final FindByIndexNameSessionRepository<? extends Session> redisIndexedSessionRepository;
+    private final FindByIndexNameSessionRepository<? extends Session> sessionRepository;
     @Value("${server.servlet.session.cookie.name}")
     private String sessionCookieName;
 
-    // Expecting the RedisIndexSessionRepository bean
-    public LogoutServiceImpl(RedisIndexedSessionRepository redisIndexedSessionRepository) {
-        this.redisIndexedSessionRepository = redisIndexedSessionRepository;
+    // Expecting the session repository bean, which caches sessions in front of Redis; deleting through it also evicts the local copy
+    public LogoutServiceImpl(NearCacheSessionRepository<?> sessionRepository) {
+        this.sessionRepository = sessionRepository;
     }
 
     @Override
@@ -33,8 +33,8 @@ public class LogoutServiceImpl implements LogoutService {
         if (userSession != null) {
             // Delete the session id from redis
             String sessionID = userSession.getId();
-            if (sessionID != null && this.redisIndexedSessionRepository.findById(sessionID) != null) {
-                this.redisIndexedSessionRepository.deleteById(sessionID);
+            if (sessionID != null && this.sessionRepository.findById(sessionID) != null) {
+                this.sessionRepository.deleteById(sessionID);
             }
 
             // Invalidates the session locally; as a result it will no longer be valid server-side and subsequent requests
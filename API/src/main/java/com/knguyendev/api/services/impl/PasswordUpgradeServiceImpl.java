@@ -0,0 +1,46 @@
+package com.knguyendev.api.services.impl;
+
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.PasswordUpgradeService;
+import com.knguyendev.api.utils.UserEntityCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PasswordUpgradeServiceImpl implements PasswordUpgradeService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordUpgradeServiceImpl.class);
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final UserEntityCache userEntityCache;
+
+    public PasswordUpgradeServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, UserEntityCache userEntityCache) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.userEntityCache = userEntityCache;
+    }
+
+    /*
+     * NOTE: This isn't '@Transactional' on purpose. The hash is computed without holding a db connection, and the update
+     * runs in a transaction of its own, so the cached user is only evicted once the new hash has been committed.
+     */
+    @Override
+    @Async
+    public void upgrade(Long userId, String currentHash, String rawPassword) {
+        try {
+            String newHash = passwordEncoder.encode(rawPassword);
+
+            // If the user changed their password since logging in, then the update matches nothing, which is what we want
+            int rowsUpdated = userRepository.updatePasswordIfUnchanged(userId, currentHash, newHash);
+            if (rowsUpdated > 0) {
+                userEntityCache.evict(userId);
+            }
+        } catch (RuntimeException e) {
+            // E.g. the hashing pool is busy; the hash stays as it is and is upgraded on the next login instead
+            logger.warn("Couldn't upgrade the password hash of user {}: {}", userId, e.getMessage());
+        }
+    }
+}
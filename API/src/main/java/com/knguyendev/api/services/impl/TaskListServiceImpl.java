@@ -1,25 +1,35 @@
 package com.knguyendev.api.services.impl;
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListRequest;
 import com.knguyendev.api.domain.entities.TaskEntity;
 import com.knguyendev.api.domain.entities.TaskListEntity;
+import com.knguyendev.api.enumeration.DeletionTargetType;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.TaskListMapper;
 import com.knguyendev.api.mappers.TaskMapper;
 import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskListRepositoryCustom;
 import com.knguyendev.api.repositories.TaskRepository;
+import com.knguyendev.api.repositories.TaskRepositoryCustom;
+import com.knguyendev.api.services.DeletionJobService;
 import com.knguyendev.api.services.TaskListService;
 import com.knguyendev.api.utils.AuthUtils;
 import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.SparseFieldset;
+import com.knguyendev.api.utils.TaskListLocks;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.function.Function;
 
 
 @Service
@@ -28,16 +38,26 @@ public class TaskListServiceImpl implements TaskListService {
     private final TaskRepository taskRepository;
     private final TaskListMapper taskListMapper;
     private final TaskMapper taskMapper;
+    private final DeletionJobService deletionJobService;
 
     private final AuthUtils authUtils;
     private final ServiceUtils serviceUtils;
-    public TaskListServiceImpl(TaskListRepository taskListRepository, TaskRepository taskRepository, TaskListMapper taskListMapper, TaskMapper taskMapper, AuthUtils authUtils, ServiceUtils serviceUtils) {
+    private final TaskListSnapshotCache taskListSnapshotCache;
+    private final TaskListLocks taskListLocks;
+
+    @Value("${spring.custom.pagination.maxPageSize}")
+    private int maxPageSize;
+
+    public TaskListServiceImpl(TaskListRepository taskListRepository, TaskRepository taskRepository, TaskListMapper taskListMapper, TaskMapper taskMapper, DeletionJobService deletionJobService, AuthUtils authUtils, ServiceUtils serviceUtils, TaskListSnapshotCache taskListSnapshotCache, TaskListLocks taskListLocks) {
         this.taskListRepository = taskListRepository;
         this.taskRepository = taskRepository;
+        this.deletionJobService = deletionJobService;
         this.taskListMapper = taskListMapper;
         this.taskMapper = taskMapper;
         this.authUtils = authUtils;
         this.serviceUtils = serviceUtils;
+        this.taskListSnapshotCache = taskListSnapshotCache;
+        this.taskListLocks = taskListLocks;
     }
 
 
@@ -50,7 +70,7 @@ public class TaskListServiceImpl implements TaskListService {
     private TaskListEntity validateModifyTaskList(Long taskListId, boolean isUpdate) throws ServiceException {
         // Attempt to find the taskList and throw error if it's not found
         Optional<TaskListEntity> result = taskListRepository.findById(taskListId);
-        if (result.isEmpty()) {
+        if (result.isEmpty() || result.get().getDeletedAt() != null) {
             throw new ServiceException("The task list with id '" + taskListId + "' wasn't found!", HttpStatus.NOT_FOUND);
         }
         TaskListEntity taskList = result.get();
@@ -80,21 +100,29 @@ public class TaskListServiceImpl implements TaskListService {
 
 
     private List<TaskDTO> sortTasks(List<TaskDTO> tasks) {
+        return sortTasks(tasks, TaskDTO::getId, TaskDTO::getPrevTaskId, TaskDTO::getNextTaskId);
+    }
+
+    /**
+     * Sorts the tasks of a task list by following their prevTaskId/nextTaskId pointers from the head.
+     * @param tasks Tasks of the task list, in any representation
+     */
+    private <T> List<T> sortTasks(List<T> tasks, Function<T, Long> getId, Function<T, Long> getPrevTaskId, Function<T, Long> getNextTaskId) {
         // Dictionary with key being ID and value being the associated task
-        Map<Long, TaskDTO> taskMap = new HashMap<>();
-        tasks.forEach(t -> taskMap.put(t.getId(), t));
+        Map<Long, T> taskMap = new HashMap<>();
+        tasks.forEach(t -> taskMap.put(getId.apply(t), t));
         // Find the head task (the one with no previous task)
-        TaskDTO headTask = tasks.stream()
-                .filter(t -> t.getPrevTaskId() == null)
+        T headTask = tasks.stream()
+                .filter(t -> getPrevTaskId.apply(t) == null)
                 .findFirst()
                 .orElseThrow(() -> new ServiceException("Task in task list didn't have a head!", HttpStatus.INTERNAL_SERVER_ERROR));
 
         // List to hold the sorted tasks
-        List<TaskDTO> sortedTasks = new ArrayList<>();
-        TaskDTO currentTask = headTask;
+        List<T> sortedTasks = new ArrayList<>();
+        T currentTask = headTask;
         while (currentTask != null) {
             sortedTasks.add(currentTask);
-            Long nextTaskId = currentTask.getNextTaskId();
+            Long nextTaskId = getNextTaskId.apply(currentTask);
             // If nextTaskId exists, fetch the full representation from the taskMap
             if (nextTaskId != null) {
                 currentTask = taskMap.get(nextTaskId);
@@ -111,17 +139,21 @@ public class TaskListServiceImpl implements TaskListService {
         // Get the ID if teh authenticated user; I think we can just assume they're logged in, but we need a failsafe for data-integrity
         Long authUserId = authUtils.getAuthUserId();
 
-        // Ensure that the authenticated user still exists in the database
+        // Ensure that the authenticated user still exists in the database, and that the color is in the palette
         serviceUtils.getUserById(authUserId);
+        serviceUtils.checkItemColorExists(taskListRequest.getColorId());
 
         // Create a new task list with isDefault = false
         TaskListEntity newTaskList = TaskListEntity.builder()
                 .userId(authUserId)
                 .name(taskListRequest.getName())
                 .isDefault(false)
+                .colorId(taskListRequest.getColorId())
                 .build();
 
-        return taskListMapper.toDTO(taskListRepository.save(newTaskList));
+        TaskListDTO taskList = taskListMapper.toDTO(taskListRepository.save(newTaskList));
+        taskListSnapshotCache.invalidate(authUserId);
+        return taskList;
     }
 
     @Override
@@ -130,29 +162,49 @@ public class TaskListServiceImpl implements TaskListService {
         // Check if the authenticated user owns this taskList
         TaskListEntity taskList = validateModifyTaskList(id, true);
 
-        // If the name didn't change, then return the dto early
-        if (taskList.getName().equals(taskListRequest.getName())) {
+        // If neither the name nor the color changed, then return the dto early
+        if (taskList.getName().equals(taskListRequest.getName()) && Objects.equals(taskList.getColorId(), taskListRequest.getColorId())) {
             return taskListMapper.toDTO(taskList);
         }
 
-        // At this point we know the name has changed, so we'll need to apply changes
+        // At this point we know something has changed, so we'll need to apply changes
         // And then save it to the database.
+        serviceUtils.checkItemColorExists(taskListRequest.getColorId());
         taskList.setName(taskListRequest.getName());
-        return taskListMapper.toDTO(taskListRepository.save(taskList));
+        taskList.setColorId(taskListRequest.getColorId());
+        TaskListDTO updatedTaskList = taskListMapper.toDTO(taskListRepository.save(taskList));
+        taskListSnapshotCache.invalidate(taskList.getUserId());
+        return updatedTaskList;
     }
 
     @Override
-    @Transactional
     public void delete(Long id) {
-        TaskListEntity taskList = validateModifyTaskList(id, false);
-        // Delete the tasks associated with the task list, and then the task lists themselves.
-        taskRepository.deleteByTaskListId(taskList.getId());
-        taskListRepository.deleteById(taskList.getId());
+        // Wait for changes to the list's tasks to finish, and keep new ones out until it's marked as deleted
+        taskListLocks.runLocked(id, () -> {
+            TaskListEntity taskList = validateModifyTaskList(id, false);
+            /*
+             * Mark the task list as deleted, which hides it immediately. The task list and its tasks are then purged in
+             * bounded chunks by a background deletion job, which is enqueued in the same transaction.
+             */
+            taskList.setDeletedAt(ZonedDateTime.now(ZoneId.of("UTC")));
+            taskListRepository.save(taskList);
+            deletionJobService.enqueue(DeletionTargetType.TASK_LIST, taskList.getId());
+            taskListSnapshotCache.invalidate(taskList.getUserId());
+        });
     }
 
     @Override
     public List<TaskListDTO> findUserTaskLists(boolean includeTasks) {
+        return loadUserTaskLists(authUtils.getAuthUserId(), includeTasks);
+    }
+
+    @Override
+    public byte[] findUserTaskListsJson() {
         Long authUserId = authUtils.getAuthUserId();
+        return taskListSnapshotCache.get(authUserId, () -> loadUserTaskLists(authUserId, true));
+    }
+
+    private List<TaskListDTO> loadUserTaskLists(Long authUserId, boolean includeTasks) {
         List<TaskListDTO> taskLists =
                 taskListRepository.findByUserId(authUserId)
                         .stream()
@@ -183,11 +235,73 @@ public class TaskListServiceImpl implements TaskListService {
         return taskLists;
     }
 
-    public List<TaskListDTO> findAll() {
-        Iterable<TaskListEntity> taskLists = taskListRepository.findAll();
-        return StreamSupport.stream(taskLists.spliterator(), false)
+    @Override
+    public List<Map<String, Object>> findUserTaskLists(boolean includeTasks, String fields) {
+        Long authUserId = authUtils.getAuthUserId();
+        SparseFieldset taskListFields = TaskListRepositoryCustom.FIELDS.parse(fields);
+        SparseFieldset taskFields = taskListFields.getNested("tasks");
+        if (taskFields == null && includeTasks) {
+            taskFields = TaskRepositoryCustom.FIELDS.all();
+        }
+
+        // The ids are read even if they weren't picked, since the tasks are grouped into their task lists by them
+        taskListFields = taskListFields.withAlso("id");
+        Map<Long, List<Map<String, Object>>> tasksByTaskListId = taskFields == null ? null : findUserTaskFields(authUserId, taskFields);
+
+        List<Map<String, Object>> taskLists = new ArrayList<>();
+        for (Object[] row : taskListRepository.findFieldsByUserId(authUserId, taskListFields)) {
+            Map<String, Object> taskList = taskListFields.toMap(row);
+            serviceUtils.resolveItemColor(taskList);
+            if (tasksByTaskListId != null) {
+                // Like the full response, a task list without tasks has null 'tasks'
+                taskList.put("tasks", tasksByTaskListId.get((Long) taskListFields.get(row, "id")));
+            }
+            taskLists.add(taskList);
+        }
+        return taskLists;
+    }
+
+    /**
+     * Reads the picked fields of a user's tasks, grouped by task list and in order. The pointers are read even if they
+     * weren't picked, since the tasks are sorted by them.
+     */
+    private Map<Long, List<Map<String, Object>>> findUserTaskFields(Long authUserId, SparseFieldset taskFields) {
+        SparseFieldset fields = taskFields.withAlso("id", "taskListId", "prevTaskId", "nextTaskId");
+        Map<Long, List<Object[]>> rowsByTaskListId = new HashMap<>();
+        for (Object[] row : taskRepository.findFieldsByUserId(authUserId, fields)) {
+            rowsByTaskListId
+                    .computeIfAbsent((Long) fields.get(row, "taskListId"), k -> new ArrayList<>())
+                    .add(row);
+        }
+
+        Map<Long, List<Map<String, Object>>> tasksByTaskListId = new HashMap<>();
+        rowsByTaskListId.forEach((taskListId, rows) -> {
+            List<Object[]> sortedRows = sortTasks(rows,
+                    row -> (Long) fields.get(row, "id"),
+                    row -> (Long) fields.get(row, "prevTaskId"),
+                    row -> (Long) fields.get(row, "nextTaskId"));
+            List<Map<String, Object>> tasks = new ArrayList<>(sortedRows.size());
+            for (Object[] row : sortedRows) {
+                Map<String, Object> task = fields.toMap(row);
+                serviceUtils.resolveItemColor(task);
+                tasks.add(task);
+            }
+            tasksByTaskListId.put(taskListId, tasks);
+        });
+        return tasksByTaskListId;
+    }
+
+    @Override
+    public KeysetPageDTO<TaskListDTO> findPage(Long afterId, int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ServiceException("Page size must be between 1 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
+        // Fetch one extra task list to know whether there's a next page
+        List<TaskListDTO> taskLists = taskListRepository.findPage(afterId == null ? 0L : afterId, Limit.of(size + 1))
+                .stream()
                 .map(taskListMapper::toDTO)
-                .collect(Collectors.toList());
+                .toList();
+        return KeysetPageDTO.of(taskLists, size, TaskListDTO::getId);
     }
 
 }
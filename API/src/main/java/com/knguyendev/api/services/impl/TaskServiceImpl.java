@@ -1,6 +1,10 @@
 package com.knguyendev.api.services.impl;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
+import com.knguyendev.api.domain.dto.Task.TaskTombstoneDTO;
 import com.knguyendev.api.domain.dto.Task.TaskCreateRequest;
 import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
 import com.knguyendev.api.domain.entities.TaskEntity;
@@ -8,11 +12,20 @@ import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.TaskMapper;
 import com.knguyendev.api.repositories.TaskListRepository;
 import com.knguyendev.api.repositories.TaskRepository;
+import com.knguyendev.api.repositories.TaskRepositoryCustom;
 import com.knguyendev.api.services.TaskService;
+import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.JsonMergePatch;
+import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.SparseFieldset;
+import com.knguyendev.api.utils.TaskListLocks;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import com.knguyendev.api.utils.TaskWriteBehindBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,10 +35,45 @@ public class TaskServiceImpl implements TaskService {
     private final TaskListRepository taskListRepository;
     private final TaskRepository taskRepository;
     private final TaskMapper taskMapper;
-    public TaskServiceImpl(TaskListRepository taskListRepository, TaskRepository taskRepository, TaskMapper taskMapper) {
+    private final AuthUtils authUtils;
+    private final ServiceUtils serviceUtils;
+    private final TaskListSnapshotCache taskListSnapshotCache;
+    private final TaskListLocks taskListLocks;
+    private final TaskWriteBehindBuffer taskWriteBehindBuffer;
+    private final JsonMergePatch jsonMergePatch;
+    private final ObjectMapper objectMapper;
+    public TaskServiceImpl(TaskListRepository taskListRepository, TaskRepository taskRepository, TaskMapper taskMapper, AuthUtils authUtils, ServiceUtils serviceUtils, TaskListSnapshotCache taskListSnapshotCache, TaskListLocks taskListLocks, TaskWriteBehindBuffer taskWriteBehindBuffer, JsonMergePatch jsonMergePatch, ObjectMapper objectMapper) {
         this.taskListRepository = taskListRepository;
         this.taskRepository = taskRepository;
         this.taskMapper = taskMapper;
+        this.authUtils = authUtils;
+        this.serviceUtils = serviceUtils;
+        this.taskListSnapshotCache = taskListSnapshotCache;
+        this.taskListLocks = taskListLocks;
+        this.taskWriteBehindBuffer = taskWriteBehindBuffer;
+        this.jsonMergePatch = jsonMergePatch;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Finds the task list that a task is in, so a change to the task can lock it before its transaction begins. A change
+     * to the list's pointers has to run through 'TaskListLocks', and read the pointers only once it holds the lock.
+     *
+     * @param id ID of the task
+     * @return ID of the task list to lock
+     */
+    private Long findTaskListIdOfTask(Long id) {
+        return taskRepository.findTaskListIdById(id)
+                .orElseThrow(() -> new ServiceException("Task with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Marks the task lists snapshot of the user that owns a task list as outdated, after a task in it changed. Inside a
+     * transaction this takes effect once the transaction commits; see 'TaskListSnapshotCache'.
+     */
+    private void invalidateSnapshot(Long taskListId) {
+        taskListRepository.findById(taskListId)
+                .ifPresent(taskList -> taskListSnapshotCache.invalidate(taskList.getUserId()));
     }
 
     private TaskEntity getTaskEntity(Long id) {
@@ -36,6 +84,16 @@ public class TaskServiceImpl implements TaskService {
         return result.get();
     }
 
+    /**
+     * Gets a task, including any update of its content that hasn't been written yet. The task must not be managed (i.e.
+     * this is only for use outside of transactions), otherwise the pending update would be written when it commits.
+     */
+    private TaskEntity getTaskEntityWithPendingUpdate(Long id) {
+        TaskEntity task = getTaskEntity(id);
+        taskWriteBehindBuffer.applyPending(task);
+        return task;
+    }
+
     /**
      * Filters out null tasks and removes duplicates by their ID, ensuring only unique tasks are included.
      *
@@ -124,8 +182,8 @@ public class TaskServiceImpl implements TaskService {
         List<TaskEntity> tasksToSave = filterUniqueNonNullTasks(Arrays.asList(prevTask, nextTask));
         taskRepository.saveAll(tasksToSave);
 
-        // Delete the parent task and all subtasks
-        taskRepository.deleteTaskAndSubTasksById(targetTask.getId());
+        // Tombstone the parent task and all subtasks in one statement
+        taskRepository.tombstoneTaskAndSubTasksById(targetTask.getId(), ZonedDateTime.now(ZoneId.of("UTC")));
     }
 
     /**
@@ -172,8 +230,8 @@ public class TaskServiceImpl implements TaskService {
         List<TaskEntity> tasksToSave = filterUniqueNonNullTasks(Arrays.asList(prevTask, nextTask));
         taskRepository.saveAll(tasksToSave);
 
-        // Now at all the pointer logic is settled, deleted the target task
-        taskRepository.deleteById(targetTask.getId());
+        // Now at all the pointer logic is settled, tombstone the target task
+        taskRepository.tombstoneTaskAndSubTasksById(targetTask.getId(), ZonedDateTime.now(ZoneId.of("UTC")));
     }
 
     /**
@@ -184,6 +242,7 @@ public class TaskServiceImpl implements TaskService {
     private TaskEntity createTaskAtTopOfTaskList(TaskCreateRequest taskRequest) {
         // Check that the task list exists and throw an error when it doesn't
         taskListRepository.findById(taskRequest.getTaskListId())
+                .filter(taskList -> taskList.getDeletedAt() == null)
                 .orElseThrow(() -> new ServiceException("Task list with id '"
                         + taskRequest.getTaskListId() + "' wasn't found!", HttpStatus.NOT_FOUND));
         // Build the new task entity
@@ -195,6 +254,7 @@ public class TaskServiceImpl implements TaskService {
                 .isAllDay(taskRequest.isAllDay())
                 .isStarred(taskRequest.isStarred())
                 .dueDate(taskRequest.getDueDate())
+                .colorId(taskRequest.getColorId())
                 .build();
         /*
          * Link the new task to the current head of the task list, if it exists:
@@ -246,6 +306,7 @@ public class TaskServiceImpl implements TaskService {
                 .isAllDay(taskCreateRequest.isAllDay())
                 .isStarred(taskCreateRequest.isStarred())
                 .dueDate(taskCreateRequest.getDueDate())
+                .colorId(taskCreateRequest.getColorId())
                 .build();
         newTask = taskRepository.save(newTask);
 
@@ -427,6 +488,10 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public TaskDTO toggleTaskIndentationById(Long id) throws ServiceException {
+        return taskListLocks.callLocked(findTaskListIdOfTask(id), () -> toggleTaskIndentation(id));
+    }
+
+    private TaskDTO toggleTaskIndentation(Long id) {
         // Do query, and allocate the potential tasks
         List<TaskEntity> tasks = taskRepository.findTaskPrevNext(id);
         TaskEntity targetTask = null;
@@ -446,6 +511,7 @@ public class TaskServiceImpl implements TaskService {
         if (targetTask == null) {
             throw new ServiceException("Task with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND);
         }
+        invalidateSnapshot(targetTask.getTaskListId());
 
         // targetTask is guaranteed; if parentTaskId is defined, we'll find all subtasks for the target task's parent
         Long parentTaskId = targetTask.getParentTaskId();
@@ -537,8 +603,11 @@ public class TaskServiceImpl implements TaskService {
     }
 
     @Override
-    @Transactional
     public void deleteById(Long id) throws ServiceException {
+        taskListLocks.runLocked(findTaskListIdOfTask(id), () -> deleteTask(id));
+    }
+
+    private void deleteTask(Long id) {
         /*
          * + Algorithm for deleting a task:
          *
@@ -566,6 +635,8 @@ public class TaskServiceImpl implements TaskService {
          *         - If `nextTask` is null, no update needed on `nextTask`.
          *
          * 4. **Finally, delete the target task.**
+         *    - The task (and its subtasks) only get a 'deletedAt' tombstone here. They're physically removed later by
+         *      the background purger, and until then delta-sync clients can see the removal.
          */
 
         // Fetch target task and any subtasks
@@ -587,11 +658,16 @@ public class TaskServiceImpl implements TaskService {
             // There exists a list of subtasks, so the targetTask being deleted is a parent task
             deleteParentTask(targetTask, subTasks);
         }
+        invalidateSnapshot(targetTask.getTaskListId());
     }
 
     @Override
-    @Transactional
     public TaskDTO create(TaskCreateRequest taskCreateRequest) throws ServiceException {
+        serviceUtils.checkItemColorExists(taskCreateRequest.getColorId());
+        return taskListLocks.callLocked(taskCreateRequest.getTaskListId(), () -> createTask(taskCreateRequest));
+    }
+
+    private TaskDTO createTask(TaskCreateRequest taskCreateRequest) {
         /*
          * Algorithm for creating a task in a task list:
          *
@@ -619,6 +695,7 @@ public class TaskServiceImpl implements TaskService {
          *    - Save the updated tasks to the repository.
          * 7. Return the newly created task as a DTO.
          */
+        invalidateSnapshot(taskCreateRequest.getTaskListId());
 
         // If prevTaskId is null, we're creating a new task at the top of the list
         if (taskCreateRequest.getPrevTaskId() == null) {
@@ -636,6 +713,10 @@ public class TaskServiceImpl implements TaskService {
                 .filter(t -> t.getId().equals(taskCreateRequest.getPrevTaskId()))
                 .findFirst()
                 .orElseThrow(() -> new ServiceException("Task with id '" + taskCreateRequest.getPrevTaskId() + "' wasn't found!", HttpStatus.NOT_FOUND));
+        // Only the requested task list is locked, so the previous task has to be in it
+        if (!prevTask.getTaskListId().equals(taskCreateRequest.getTaskListId())) {
+            throw new ServiceException("Task with id '" + taskCreateRequest.getPrevTaskId() + "' isn't in the task list with id '" + taskCreateRequest.getTaskListId() + "'!", HttpStatus.BAD_REQUEST);
+        }
         List<TaskEntity> subTasks = tasks.stream()
                 .filter(t -> !t.getId().equals(taskCreateRequest.getPrevTaskId()))
                 .toList();
@@ -716,6 +797,7 @@ public class TaskServiceImpl implements TaskService {
                 .isAllDay(taskCreateRequest.isAllDay())
                 .isStarred(taskCreateRequest.isStarred())
                 .dueDate(taskCreateRequest.getDueDate())
+                .colorId(taskCreateRequest.getColorId())
                 .build();
 
         /*
@@ -740,30 +822,77 @@ public class TaskServiceImpl implements TaskService {
     }
 
     @Override
-    public TaskDTO updateById(Long id, TaskUpdateRequest taskUpdateRequest) throws ServiceException {
-        TaskEntity targetTask = getTaskEntity(id);
+    public TaskDTO updateById(Long id, JsonNode patch) throws ServiceException {
+        TaskEntity targetTask = getTaskEntityWithPendingUpdate(id);
+
+        // Start from the task's current content, so fields that aren't in the patch are left as they are
+        TaskUpdateRequest taskUpdateRequest = jsonMergePatch.apply(patch, TaskUpdateRequest.builder()
+                .title(targetTask.getTitle())
+                .description(targetTask.getDescription())
+                .isComplete(targetTask.isComplete())
+                .isAllDay(targetTask.isAllDay())
+                .isStarred(targetTask.isStarred())
+                .dueDate(targetTask.getDueDate())
+                .colorId(targetTask.getColorId())
+                .build());
+        taskUpdateRequest.normalizeData();
 
         // Check if any of the task 'content' related properties have changed; if they have we update them
-        if (!Objects.equals(targetTask.getTitle(), taskUpdateRequest.getTitle()) ||
-                !Objects.equals(targetTask.getDescription(), taskUpdateRequest.getDescription()) ||
-                targetTask.isComplete() != taskUpdateRequest.isComplete() ||
-                targetTask.isAllDay() != taskUpdateRequest.isAllDay() ||
-                targetTask.isStarred() != taskUpdateRequest.isStarred() ||
-                !Objects.equals(targetTask.getDueDate(), taskUpdateRequest.getDueDate())) {
+        Map<String, Object> changes = TaskWriteBehindBuffer.changesBetween(targetTask, taskUpdateRequest);
+        if (!changes.isEmpty()) {
+            serviceUtils.checkItemColorExists(taskUpdateRequest.getColorId());
+            /*
+             * The task was read without a lock, so its pointers may have been changed by a create, move or delete since.
+             * Saving the whole task would write those old pointers back, so only the fields that changed are written.
+             * Autosaves can update a task many times in a row, so they may be coalesced and written later instead.
+             */
+            if (taskWriteBehindBuffer.isEnabled()) {
+                taskWriteBehindBuffer.enqueue(targetTask, taskUpdateRequest);
+            } else {
+                if (taskRepository.updateContentById(id, changes) == 0) {
+                    throw new ServiceException("Task with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND);
+                }
+                invalidateSnapshot(targetTask.getTaskListId());
+            }
             targetTask.setTitle(taskUpdateRequest.getTitle());
             targetTask.setDescription(taskUpdateRequest.getDescription());
             targetTask.setComplete(taskUpdateRequest.isComplete());
             targetTask.setAllDay(taskUpdateRequest.isAllDay());
             targetTask.setStarred(taskUpdateRequest.isStarred());
             targetTask.setDueDate(taskUpdateRequest.getDueDate());
-            taskRepository.save(targetTask);
+            targetTask.setColorId(taskUpdateRequest.getColorId());
         }
         return taskMapper.toDTO(targetTask);
     }
 
     @Override
     public TaskDTO findById(Long id) throws ServiceException {
-        TaskEntity task = getTaskEntity(id);
+        TaskEntity task = getTaskEntityWithPendingUpdate(id);
         return taskMapper.toDTO(task);
     }
+
+    @Override
+    public Map<String, Object> findById(Long id, String fields) throws ServiceException {
+        SparseFieldset taskFields = TaskRepositoryCustom.FIELDS.parse(fields);
+
+        // The task's latest content is only held in memory, so the fields are picked from the full task instead
+        if (taskWriteBehindBuffer.hasPending(id)) {
+            return taskFields.retain(objectMapper.convertValue(findById(id), new TypeReference<Map<String, Object>>() {}));
+        }
+
+        Object[] row = taskRepository.findFieldsById(id, taskFields)
+                .orElseThrow(() -> new ServiceException("Task with id '" + id + "' wasn't found!", HttpStatus.NOT_FOUND));
+        Map<String, Object> task = taskFields.toMap(row);
+        serviceUtils.resolveItemColor(task);
+        return task;
+    }
+
+    @Override
+    public List<TaskTombstoneDTO> findDeletedSince(ZonedDateTime since) {
+        Long authUserId = authUtils.getAuthUserId();
+        return taskRepository.findTombstonesByUserIdSince(authUserId, since)
+                .stream()
+                .map(taskMapper::toTombstoneDTO)
+                .toList();
+    }
 }
@@ -32,7 +32,8 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         Optional<UserEntity> result = userRepository.findByUsername(username);
-        if (result.isEmpty()) {
+        // Accounts that are waiting to be purged can't be logged into
+        if (result.isEmpty() || result.get().getDeletedAt() != null) {
             throw new UsernameNotFoundException("User with username '" + username + "' wasn't found!");
         }
         return new UserDetailsImpl(result.get());
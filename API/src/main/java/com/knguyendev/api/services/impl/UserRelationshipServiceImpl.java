@@ -1,22 +1,36 @@
 package com.knguyendev.api.services.impl;
 
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.MutualFriendsDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.RelationshipChange;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipBatchResultDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
+import com.knguyendev.api.enumeration.RelationshipAction;
+import com.knguyendev.api.enumeration.RelationshipFilter;
 import com.knguyendev.api.enumeration.UserRelationshipStatus;
 import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.mappers.UserMapper;
 import com.knguyendev.api.mappers.UserRelationshipMapper;
 import com.knguyendev.api.repositories.UserRelationshipRepository;
+import com.knguyendev.api.repositories.UserRelationshipRepositoryCustom;
 import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.BlockIndexService;
 import com.knguyendev.api.services.UserRelationshipService;
 import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.FriendGraph;
+import com.knguyendev.api.utils.SparseFieldset;
+import com.knguyendev.api.utils.UserEntityCache;
 import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 
 import static com.knguyendev.api.enumeration.UserRelationshipStatus.*;
 
@@ -27,16 +41,35 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
     private final UserRelationshipRepository userRelationshipRepository;
     private final AuthUtils authUtils;
     private final UserRelationshipMapper userRelationshipMapper;
+    private final UserMapper userMapper;
+    private final FriendGraph friendGraph;
+    private final UserEntityCache userEntityCache;
+    private final BlockIndexService blockIndexService;
+
+    @Value("${spring.custom.pagination.maxPageSize}")
+    private int maxPageSize;
+
+    @Value("${spring.custom.userRelationship.maxBatchSize}")
+    private int maxBatchSize;
+
     public UserRelationshipServiceImpl(
             UserRepository userRepository,
             UserRelationshipRepository userRelationshipRepository,
             AuthUtils authUtils,
-            UserRelationshipMapper userRelationshipMapper
+            UserRelationshipMapper userRelationshipMapper,
+            UserMapper userMapper,
+            FriendGraph friendGraph,
+            UserEntityCache userEntityCache,
+            BlockIndexService blockIndexService
             ) {
         this.userRepository = userRepository;
         this.userRelationshipRepository = userRelationshipRepository;
         this.authUtils = authUtils;
         this.userRelationshipMapper = userRelationshipMapper;
+        this.userMapper = userMapper;
+        this.friendGraph = friendGraph;
+        this.userEntityCache = userEntityCache;
+        this.blockIndexService = blockIndexService;
     }
 
 
@@ -76,49 +109,117 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
 
 
     /**
-     * Creates a new relationship in the UserRelationship table. It's a helper function that assumes that there doesn't
-     * already exist a relationship between the users with these ID values.
-     * @param firstUserId ID of the first user in the UserRelationship
-     * @param secondUserId ID of the second user in the UserRelationship
+     * Applies an action to the relationship between the authenticated user and the other user, in a single conditional
+     * statement. See 'RelationshipAction' for the status changes each action is allowed to make.
+     * @return The status of the relationship after the action, or empty if the action wasn't allowed. When the action
+     *         deletes the relationship, it's the status the relationship had before being deleted.
+     */
+    private Optional<UserRelationshipStatus> applyAction(RelationshipAction action, UserRelationshipContext relationshipContext) {
+        return userRelationshipRepository.applyAction(
+                action,
+                relationshipContext.getFirstUserId(),
+                relationshipContext.getSecondUserId(),
+                relationshipContext.isAuthUserIsFirstUser()
+        );
+    }
+
+    /**
+     * Creates the DTO of a relationship that was just changed. Its users are read through the user cache, so the
+     * relationship never has to be loaded with both of its users.
      * @param status Status of the relationship
-     * @return An entity representing the newly created relationship
-     * @throws ServiceException An error that's thrown when the users with the specified user ID values don't exist.
+     * @return A DTO representing the relationship
+     * @throws ServiceException An error that's thrown when one of the users doesn't exist.
      */
-    private UserRelationshipEntity createRelationship(Long firstUserId, Long secondUserId, UserRelationshipStatus status) throws ServiceException {
-
-        // Attempt to find the two users in the relationship. If there are less than 2, then we couldn't get both of the users
-        List<Long> expectedIds = List.of(firstUserId, secondUserId);
-        List<UserEntity> users = userRepository.findByIds(expectedIds);
-
-        // If one of the user's wasn't found, we can't create a UserRelationship, so throw an error for the first id that didn't correlate to a user
-        if (users.size() < 2) {
-            List<Long> foundIds = users.stream()
-                    .map(UserEntity::getId)
-                    .toList();
-            for (Long expectedId : expectedIds) {
-                if (!foundIds.contains(expectedId)) {
-                    throw new ServiceException("User with ID '" + expectedId + "' wasn't found!", HttpStatus.NOT_FOUND);
-                }
-            }
-        }
+    private UserRelationshipDTO toDTO(UserRelationshipContext relationshipContext, UserRelationshipStatus status) throws ServiceException {
+        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
+                .firstUser(findUser(relationshipContext.getFirstUserId()))
+                .secondUser(findUser(relationshipContext.getSecondUserId()))
+                .status(status)
+                .build();
+        return userRelationshipMapper.toDTO(relationship);
+    }
 
-        // At this both users were found, so assign the firstUser and secondUser variables; both are guaranteed to be updated.
-        UserEntity firstUser = null;
-        UserEntity secondUser = null;
-        for (UserEntity user: users) {
-            if (user.getId().equals(firstUserId)) {
-                firstUser = user;
-            } else {
-                secondUser = user;
-            }
+    private UserEntity findUser(Long userId) throws ServiceException {
+        return userEntityCache.findById(userId)
+                .orElseThrow(() -> new ServiceException("User with ID '" + userId + "' wasn't found!", HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Gets the error for when an action that creates a relationship wasn't applied, but there's no relationship between
+     * the users. Either the other user doesn't exist, or the relationship was deleted by a request that ran at the same time.
+     */
+    private ServiceException noRelationshipException(Long targetUserId) {
+        if (userEntityCache.findById(targetUserId).filter(user -> user.getDeletedAt() == null).isEmpty()) {
+            return new ServiceException("User with ID '" + targetUserId + "' wasn't found!", HttpStatus.NOT_FOUND);
         }
+        return relationshipChangedException();
+    }
 
-        UserRelationshipEntity relationshipEntity = UserRelationshipEntity.builder()
-                .firstUser(firstUser)
-                .secondUser(secondUser)
-                .status(status)
-                .build();
-        return userRelationshipRepository.save(relationshipEntity);
+    /**
+     * Gets the error for when an action wasn't applied, but the relationship is now in a state where it's allowed. This
+     * only happens when another request changed the relationship at the same time.
+     */
+    private ServiceException relationshipChangedException() {
+        return new ServiceException("Your relationship with this user was changed by another request. Please try again!", HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Gets the reason the authenticated user can't send a friend request to a user that they already have a relationship with.
+     * @param status Status of their relationship
+     * @param authUserIsFirstUser Whether the authenticated user is the first user of the relationship
+     * @param otherUsername Username of the other user
+     */
+    private String requestRejectedMessage(UserRelationshipStatus status, boolean authUserIsFirstUser, String otherUsername) {
+        String errorMessage;
+
+        // Possible error messages
+        String pendingRequestMessage = "A pending friend request has already been sent to '" + otherUsername + "'!";
+        String receivedPendingRequestMessage = "You already have a pending friend request from '" + otherUsername + "'! Please accept or decline that request!";
+        String alreadyFriendsMessage = "Can't send a friend request since you are already friends with this user!";
+        String authBlockedTargetMessage = "You have blocked '" + otherUsername + "'. Unblock them to send a friend request!";
+        String targetBlockedAuthMessage = "'" + otherUsername + "' has blocked you. They must unblock you before you can send a friend request.";
+
+        switch (status) {
+            case PENDING_FIRST_SECOND:
+                if (authUserIsFirstUser) {
+                    errorMessage = pendingRequestMessage;
+                } else {
+                    errorMessage = receivedPendingRequestMessage;
+                }
+                break;
+            case PENDING_SECOND_FIRST:
+                if (authUserIsFirstUser) {
+                    errorMessage = receivedPendingRequestMessage;
+                } else {
+                    errorMessage = pendingRequestMessage;
+                }
+                break;
+            case FRIENDS:
+                errorMessage = alreadyFriendsMessage;
+                break;
+            case BLOCK_FIRST_SECOND:
+                if (authUserIsFirstUser) {
+                    errorMessage = authBlockedTargetMessage;
+                } else {
+                    errorMessage = targetBlockedAuthMessage;
+                }
+                break;
+            case BLOCK_SECOND_FIRST:
+                if (authUserIsFirstUser) {
+                    errorMessage = targetBlockedAuthMessage;
+                } else {
+                    errorMessage = authBlockedTargetMessage;
+                }
+                break;
+            case BLOCK_BOTH:
+                // If both users have blocked each other, just tell the auth. user that they have the other one blocked
+                errorMessage = authBlockedTargetMessage;
+                break;
+            default:
+                errorMessage = "Unrecognized relationship status: " + status;
+                break;
+        }
+        return errorMessage;
     }
 
     @Override
@@ -131,83 +232,35 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("Can't send friend request to yourself!", HttpStatus.BAD_REQUEST);
         }
 
-        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                relationshipContext.getFirstUserId(),
-                relationshipContext.getSecondUserId()
-        );
-
-        if (relationshipResult.isPresent()) {
-            // Can't create a friend request so throw an error
-            UserRelationshipEntity relationship = relationshipResult.get();
-            String otherUsername = relationshipContext.isAuthUserIsFirstUser()
-                    ? relationship.getSecondUser().getUsername()
-                    : relationship.getFirstUser().getUsername();
-            String errorMessage;
-
-            // Possible error messages
-            String pendingRequestMessage = "A pending friend request has already been sent to '" + otherUsername + "'!";
-            String receivedPendingRequestMessage = "You already have a pending friend request from '" + otherUsername + "'! Please accept or decline that request!";
-            String alreadyFriendsMessage = "Can't send a friend request since you are already friends with this user!";
-            String authBlockedTargetMessage = "You have blocked '" + otherUsername + "'. Unblock them to send a friend request!";
-            String targetBlockedAuthMessage = "'" + otherUsername + "' has blocked you. They must unblock you before you can send a friend request.";
-
-            switch (relationship.getStatus()) {
-                case PENDING_FIRST_SECOND:
-                    if (relationshipContext.isAuthUserIsFirstUser()) {
-                        errorMessage = pendingRequestMessage;
-                    } else {
-                        errorMessage = receivedPendingRequestMessage;
-                    }
-                    break;
-                case PENDING_SECOND_FIRST:
-                    if (relationshipContext.isAuthUserIsFirstUser()) {
-                        errorMessage = receivedPendingRequestMessage;
-                    } else {
-                        errorMessage = pendingRequestMessage;
-                    }
-                    break;
-                case FRIENDS:
-                    errorMessage = alreadyFriendsMessage;
-                    break;
-                case BLOCK_FIRST_SECOND:
-                    if (relationshipContext.isAuthUserIsFirstUser()) {
-                        errorMessage = authBlockedTargetMessage;
-                    } else {
-                        errorMessage = targetBlockedAuthMessage;
-                    }
-                    break;
-                case BLOCK_SECOND_FIRST:
-                    if (relationshipContext.isAuthUserIsFirstUser()) {
-                        errorMessage = targetBlockedAuthMessage;
-                    } else {
-                        errorMessage = authBlockedTargetMessage;
-                    }
-                    break;
-                case BLOCK_BOTH:
-                    // If both users have blocked each other, just tell the auth. user that they have the other one blocked
-                    errorMessage = authBlockedTargetMessage;
-                    break;
-                default:
-                    errorMessage = "Unrecognized relationship status: " + relationship.getStatus();
-                    break;
-            }
-            throw new ServiceException(errorMessage, HttpStatus.BAD_REQUEST);
-        }
-
         /*
-         * + At this point no relationship exists between the users, create a UserRelationship to store a friend request
-         * from the authenticated user to the other user.
+         * + Create a UserRelationship to store a friend request from the authenticated user to the other user. This only
+         * happens when no relationship exists between the users, and both of them exist.
          *
          * Remember the auth. user is the one sending the request. So if they are the first user, then
          * we would do PENDING_FIRST_SECOND, to indicate the first user has sent a request to the second user, and
          * are awaiting the latter's response. Conversely, if they are the secondUser, then PENDING_SECOND_FIRST.
          */
-        UserRelationshipEntity relationship = createRelationship(
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.REQUEST, relationshipContext);
+        if (result.isPresent()) {
+            return toDTO(relationshipContext, result.get());
+        }
+
+        // The friend request wasn't created, so find out why to tell the user
+        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
                 relationshipContext.getFirstUserId(),
-                relationshipContext.getSecondUserId(),
-                relationshipContext.isAuthUserIsFirstUser() ? PENDING_FIRST_SECOND : PENDING_SECOND_FIRST
+                relationshipContext.getSecondUserId()
         );
-        return userRelationshipMapper.toDTO(relationship);
+        if (relationshipResult.isEmpty()) {
+            throw noRelationshipException(targetUserId);
+        }
+
+        UserRelationshipEntity relationship = relationshipResult.get();
+        String otherUsername = relationshipContext.isAuthUserIsFirstUser()
+                ? relationship.getSecondUser().getUsername()
+                : relationship.getFirstUser().getUsername();
+        throw new ServiceException(
+                requestRejectedMessage(relationship.getStatus(), relationshipContext.isAuthUserIsFirstUser(), otherUsername),
+                HttpStatus.BAD_REQUEST);
     }
 
     @Override
@@ -220,56 +273,52 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("You cannot accept a friend request from yourself.", HttpStatus.BAD_REQUEST);
         }
 
+        /*
+         * + When can the user accept the friend request:
+         * The status of the relationship must be pending, which is either PENDING_FIRST_SECOND or PENDING_SECOND_FIRST.
+         * Any other statuses aren't indicative of a pending friend request.
+         *
+         * In the case where the relationship is pending, in order for the auth. user to be able to accept the friend request,
+         * they must be the person receiving the friend request. So if they're the first user, the status must be
+         * PENDING_SECOND_FIRST, and if they're the second user, it must be PENDING_FIRST_SECOND.
+         */
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.ACCEPT, userRelationshipContext);
+        if (result.isPresent()) {
+            friendGraph.addFriendship(authUserId, targetUserId);
+            return toDTO(userRelationshipContext, result.get());
+        }
+
+        // The friend request wasn't accepted, so find out why to tell the user
         String notFoundErrMessage = "A pending friend request wasn't found!";
         String invalidBlockErrMessage = "You cannot accept this friend request since you're the one who sent it!";
-
-        // Check if a UserRelationship even exists
         Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
                 userRelationshipContext.getFirstUserId(),
                 userRelationshipContext.getSecondUserId()
         );
-
         if (relationshipResult.isEmpty()) {
             throw new ServiceException(notFoundErrMessage, HttpStatus.NOT_FOUND);
         }
-        UserRelationshipEntity relationship = relationshipResult.get();
-
-        // Given that the UserRelationship does exist, is it in a pending state? If not then it doesn't count as a friend request
-        if (relationship.getStatus() != PENDING_FIRST_SECOND && relationship.getStatus() != PENDING_SECOND_FIRST) {
-            throw new ServiceException(notFoundErrMessage, HttpStatus.NOT_FOUND);
-        }
 
         /*
-         * + When can the user accept the friend request:
-         * The status of the relationship must be pending, which is either PENDING_FIRST_SECOND or PENDING_SECOND_FIRST.
-         * Any other statuses aren't indicative of a pending friend request, so we'll throw an error.
-         *
-         * In the case where the relationship is pending, in order for the auth. user to be able to accept the friend request,
-         * they must be the person receiving the friend request.
-         *
          * If status is PENDING_FIRST_SECOND, and authUserIsFirstUser, that means that the auth. user sent the friend request,
          * and now they're trying to accept the same request they sent. So reject this process. Conversely, if the status
          * is PENDING_SECOND_FIRST and !authUserIsFirstUser, it means the same thing.
          */
-        switch (relationship.getStatus()) {
+        switch (relationshipResult.get().getStatus()) {
             case PENDING_FIRST_SECOND:
-                // if the authenticated user sent the friend request, then they can't accept it on behalf of the other user.
                 if (userRelationshipContext.isAuthUserIsFirstUser()) {
                     throw new ServiceException(invalidBlockErrMessage, HttpStatus.FORBIDDEN);
                 }
-                relationship.setStatus(FRIENDS);
-                break;
+                throw relationshipChangedException();
             case PENDING_SECOND_FIRST:
                 if (!userRelationshipContext.isAuthUserIsFirstUser()) {
                     throw new ServiceException(invalidBlockErrMessage, HttpStatus.FORBIDDEN);
                 }
-                relationship.setStatus(FRIENDS);
-                break;
+                throw relationshipChangedException();
             default:
-                throw new RuntimeException("Unrecognized UserRelationship status: " + relationship.getStatus());
+                // The relationship isn't in a pending state, so it doesn't count as a friend request
+                throw new ServiceException(notFoundErrMessage, HttpStatus.NOT_FOUND);
         }
-
-        return userRelationshipMapper.toDTO(userRelationshipRepository.save(relationship));
     }
 
     @Override
@@ -282,34 +331,21 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("You cannot delete a friend request from yourself.", HttpStatus.BAD_REQUEST);
         }
 
-        // Check if a UserRelationship even exists
-        String errMessage = "A pending friend request wasn't found!";
-        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                userRelationshipContext.getFirstUserId(),
-                userRelationshipContext.getSecondUserId()
-        );
-        if (relationshipResult.isEmpty()) {
-            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
-        }
-
-        // Given that the UserRelationship does exist, is it in a pending state? If not then it doesn't count as a friend request
-        UserRelationshipEntity relationship = relationshipResult.get();
-        if (relationship.getStatus() != PENDING_FIRST_SECOND && relationship.getStatus() != PENDING_SECOND_FIRST) {
-            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
-        }
-
         /*
-         * At this point we know that there's a pending friend request between the authenticated user and another user.
+         * The relationship is deleted if there's a pending friend request between the authenticated user and the other user.
          * Regardless of whether the authenticated user sent the friend request or received it, they should be able to
          * delete it. This is because there are two valid scenarios:
          *
          * 1. Authenticated user received the friend request, they can delete it to indicate that they declined it.
          * 2. Authenticated user sent the friend request, so they can delete it as it's the idea of revoking a friend request.
          *
-         * - Summary: At this point we know a pending friend request exists, so the authenticated user can delete it.
+         * - Summary: If nothing was deleted, then the relationship doesn't exist or isn't pending, so it doesn't count as a friend request.
          */
-        userRelationshipRepository.delete(relationship);
-        return userRelationshipMapper.toDTO(relationship);
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.DECLINE, userRelationshipContext);
+        if (result.isEmpty()) {
+            throw new ServiceException("A pending friend request wasn't found!", HttpStatus.NOT_FOUND);
+        }
+        return toDTO(userRelationshipContext, result.get());
     }
 
     @Override
@@ -322,29 +358,17 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("You cannot delete a friendship with yourself.", HttpStatus.BAD_REQUEST);
         }
 
-        // Check if a UserRelationship even exists
-        String errMessage = "Friendship being deleted wasn't found!";
-        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                userRelationshipContext.getFirstUserId(),
-                userRelationshipContext.getSecondUserId()
-        );
-        if (relationshipResult.isEmpty()) {
-            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
-        }
-
-        // Given the UserRelationship exist, if it doesn't have the 'FRIENDS' status it isn't a friendship
-        UserRelationshipEntity relationship = relationshipResult.get();
-        if (relationship.getStatus() != FRIENDS) {
-            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
-        }
-
         /*
-         * At this point, a UserRelationship was found, and it was a friendship. Regardless of whether
-         * the authenticated user is the first or secondUser, they should be able to delete the friendship. This is the idea
-         * that both users are able to delete the friendship between them.
+         * The relationship is deleted if it has the 'FRIENDS' status. Regardless of whether the authenticated user is the
+         * first or secondUser, they should be able to delete the friendship. This is the idea that both users are able to
+         * delete the friendship between them.
          */
-        userRelationshipRepository.delete(relationship);
-        return userRelationshipMapper.toDTO(relationship);
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.UNFRIEND, userRelationshipContext);
+        if (result.isEmpty()) {
+            throw new ServiceException("Friendship being deleted wasn't found!", HttpStatus.NOT_FOUND);
+        }
+        friendGraph.removeFriendship(authUserId, targetUserId);
+        return toDTO(userRelationshipContext, result.get());
     }
 
     @Override
@@ -356,32 +380,6 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("You cannot block yourself.", HttpStatus.BAD_REQUEST);
         }
 
-        /*
-         * - Handling the existence of user relationships:
-         *
-         * 1. If a relationship doesn't exist, so we can simply just create a new UserRelationship
-         * between the two users which is either BLOCK_FIRST_SECOND or BLOCK_SECOND_FIRST. We know it wouldn't be
-         * BLOCK_BOTH because we would have found a UserRelationship if that was the case.
-         *
-         * 2. Else, a relationship already exists, we can use that existing relationship and update the status
-         * to blocked. This is like the idea of already being friends with a person, but then blocking them, or
-         * the idea of when a friend request is pending, but then one of the users block the other. Regardless of the status of
-         * the relationship, it will now be overridden with a block state.
-         * In this case the blocked state could be BLOCK_FIRST_SECOND, or BLOCK_BOTH. You still need to make sure to
-         * see if the user is even allowed to block the other user.
-         */
-        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository
-                .findByFirstUserIdAndSecondUserId(userRelationshipContext.getFirstUserId(), userRelationshipContext.getSecondUserId());
-        if (relationshipResult.isEmpty()) {
-            UserRelationshipEntity relationship = createRelationship(
-                    userRelationshipContext.getFirstUserId(),
-                    userRelationshipContext.getSecondUserId(),
-                    userRelationshipContext.isAuthUserIsFirstUser() ? BLOCK_FIRST_SECOND : BLOCK_SECOND_FIRST
-            );
-            return userRelationshipMapper.toDTO(relationship);
-        }
-        UserRelationshipEntity relationship = relationshipResult.get();
-
         /*
          * + Situations where the auth. user can block the other user:
          * 1. When there is no relationship between the users. If there's no relationship between the users, the auth. user
@@ -394,42 +392,39 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
          * has blocked the other user in the status field.
          *
          * 3. When the relationship has a blocked status, we have to check if the auth. user has already blocked the other
-         * user. If that's the case, then they can't 'block' them again, so we'll cancel the request. Let's look at the scenarios:
+         * user. If that's the case, then they can't 'block' them again. Let's look at the scenarios:
          *
-         *      1. BLOCK_FIRST_SECOND: Throw an error when the authenticated user is the first user since it just means the auth. user is trying to block
+         *      1. BLOCK_FIRST_SECOND: Rejected when the authenticated user is the first user since it just means the auth. user is trying to block
          *                             someone that they already have blocked. However, if the auth. user is the second user, this just represents
          *                             a case when the other user has the auth. user blocked, and now the auth. user is going to block the other user.
          *                             This leads to a case where they've blocked each other, so we'll do BLOCK_BOTH
-         *      2. BLOCK_SECOND_FIRST: Throw an error when the authenticated user is the second user since it means they're trying to block the other user
+         *      2. BLOCK_SECOND_FIRST: Rejected when the authenticated user is the second user since it means they're trying to block the other user
          *                             when they already had them blocked in the first place.
-         *      3. BLOCK_BOTH: Throw an error when this happens because it would mean they both have each other blocked, so having
+         *      3. BLOCK_BOTH: Rejected because it would mean they both have each other blocked, so having
          *                     the auth. user try to block again would be redundant and not make sense.
          */
-        String errMessage = "You already have this user blocked!";
-        switch (relationship.getStatus()) {
-            case PENDING_FIRST_SECOND:
-            case PENDING_SECOND_FIRST:
-            case FRIENDS:
-                relationship.setStatus(userRelationshipContext.isAuthUserIsFirstUser() ? BLOCK_FIRST_SECOND : BLOCK_SECOND_FIRST);
-                break;
-            case BLOCK_FIRST_SECOND:
-                if (userRelationshipContext.isAuthUserIsFirstUser()) {
-                    throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-                }
-                relationship.setStatus(BLOCK_BOTH);
-                break;
-            case BLOCK_SECOND_FIRST:
-                if (!userRelationshipContext.isAuthUserIsFirstUser()) {
-                    throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-                }
-                relationship.setStatus(BLOCK_BOTH);
-                break;
-            case BLOCK_BOTH:
-                throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-            default:
-                throw new RuntimeException("Unrecognized UserRelationship status: " + relationship.getStatus());
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.BLOCK, userRelationshipContext);
+        if (result.isPresent()) {
+            // Blocking a friend also ends the friendship
+            friendGraph.removeFriendship(authUserId, targetUserId);
+            blockIndexService.invalidate(authUserId, targetUserId);
+            return toDTO(userRelationshipContext, result.get());
+        }
+
+        // The user wasn't blocked, so find out why to tell the user
+        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository
+                .findByFirstUserIdAndSecondUserId(userRelationshipContext.getFirstUserId(), userRelationshipContext.getSecondUserId());
+        if (relationshipResult.isEmpty()) {
+            throw noRelationshipException(targetUserId);
         }
-        return userRelationshipMapper.toDTO(userRelationshipRepository.save(relationship));
+        UserRelationshipStatus status = relationshipResult.get().getStatus();
+        boolean authUserHasBlocked = status == BLOCK_BOTH ||
+                (status == BLOCK_FIRST_SECOND && userRelationshipContext.isAuthUserIsFirstUser()) ||
+                (status == BLOCK_SECOND_FIRST && !userRelationshipContext.isAuthUserIsFirstUser());
+        if (authUserHasBlocked) {
+            throw new ServiceException("You already have this user blocked!", HttpStatus.BAD_REQUEST);
+        }
+        throw relationshipChangedException();
     }
 
     @Override
@@ -441,74 +436,237 @@ public class UserRelationshipServiceImpl implements UserRelationshipService {
             throw new ServiceException("You cannot unblock yourself.", HttpStatus.BAD_REQUEST);
         }
 
-        String errMessage = "You haven't blocked this user, so you can't unblock them!";
-        Optional<UserRelationshipEntity> relationshipResult = userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                userRelationshipContext.getFirstUserId(),
-                userRelationshipContext.getSecondUserId()
-        );
-        if (relationshipResult.isEmpty()) {
-            throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-        }
-
-        UserRelationshipEntity relationship = relationshipResult.get();
-
         /*
          * + There are only two scenarios where letting the auth. user unblock another user is valid:
          * 1. (authUserIsFirstUser && status == BLOCK_FIRST_SECOND) || (!authUserIsFirstUser && status == BLOCK_SECOND_FIRST):
          *    This case describes when our authenticated user has blocked the other user. Therefore, they are able to unblock the other user.
          *    To do this, simply delete the relationship between them, because unblocking leads to a blank slate, indicating that
          *    there's no relationship between these users anymore. This is the default behavior in the application. If they haven't
-         *    friended or requested each other, then no relationship should exist. This is covered in the first two switch
-         *    cases' conditionals.
+         *    friended or requested each other, then no relationship should exist.
          * 2. status == BLOCK_BOTH:
          *    This indicates that both users have blocked each other. Since the auth. user is unblocking the other user,
          *    update the status of the relationship to show that only the other user has the auth. user blocked now.
          *    If the auth. user is the firstUser, set the status to 'BLOCK_SECOND_FIRST' to indicate that only the secondUser (other user)
          *    has the firstUser (auth. user) blocked. Conversely, if the auth. user is the secondUser, set the status to 'BLOCK_FIRST_SECOND'.
-         *    This is covered in the third switch case.
          *
          *  + Invalid cases:
-         * You can't unblock someone that you don't already have blocked. So if the relationship does not have  a 'blocked'
-         * status. So the status of the relationship could be one of the pending enumerations, or friends. In any case, the
-         *  auth. user won't be able to  'unblock' the other user because the relationship isn't in a blocked status in the first place.
-         * You can't 'unblock' something that isn't blocked in the first place.
+         * You can't unblock someone that you don't already have blocked. So if there's no relationship, or it has one of
+         * the pending statuses, the friends status, or the other user is the only one who blocked, nothing changes.
          */
-        switch(relationship.getStatus()) {
-            case BLOCK_FIRST_SECOND:
-                // Indicates that the other user has blocked the auth. user in this relationship, terminate the unblocking process.
-                if (!userRelationshipContext.isAuthUserIsFirstUser()) {
-                    throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-                }
-                userRelationshipRepository.delete(relationship);
-                break;
-            case BLOCK_SECOND_FIRST:
-                // Again, this means the relationship has a 'blocked' status because the other user has blocked the auth. user
-                if (userRelationshipContext.isAuthUserIsFirstUser()) {
-                    throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-                }
-                userRelationshipRepository.delete(relationship);
-                break;
-            case BLOCK_BOTH:
-                relationship.setStatus(
-                        userRelationshipContext.isAuthUserIsFirstUser() ? BLOCK_SECOND_FIRST : BLOCK_FIRST_SECOND
-                );
-                userRelationshipRepository.save(relationship);
-                break;
-            case PENDING_FIRST_SECOND:
-            case PENDING_SECOND_FIRST:
-            case FRIENDS:
-                throw new ServiceException(errMessage, HttpStatus.BAD_REQUEST);
-            default:
-                throw new RuntimeException("Unrecognized UserRelationship status: " + relationship.getStatus());
+        Optional<UserRelationshipStatus> result = applyAction(RelationshipAction.UNBLOCK, userRelationshipContext);
+        if (result.isEmpty()) {
+            throw new ServiceException("You haven't blocked this user, so you can't unblock them!", HttpStatus.BAD_REQUEST);
         }
+        blockIndexService.invalidate(authUserId, targetUserId);
+        return toDTO(userRelationshipContext, result.get());
+    }
 
-        return userRelationshipMapper.toDTO(relationship);
+    @Override
+    public List<UserRelationshipBatchResultDTO> requestFriendships(List<Long> targetUserIds) {
+        return applyActionToMany(RelationshipAction.REQUEST, targetUserIds, "Can't send friend request to yourself!", this::requestRejectedMessage);
+    }
+
+    @Override
+    public List<UserRelationshipBatchResultDTO> blockUsers(List<Long> targetUserIds) {
+        // Blocking is allowed from every status, except those where the authenticated user has already blocked the other user
+        return applyActionToMany(RelationshipAction.BLOCK, targetUserIds, "You cannot block yourself.",
+                (status, authUserIsFirstUser, otherUsername) -> "You already have this user blocked!");
+    }
+
+    /**
+     * Gets the reason an action isn't allowed on a relationship, for the results of a batch.
+     */
+    @FunctionalInterface
+    private interface RejectionMessage {
+        String get(UserRelationshipStatus status, boolean authUserIsFirstUser, String otherUsername);
+    }
+
+    /**
+     * Applies an action to the relationships between the authenticated user and several other users, with a fixed number
+     * of queries however many users there are:
+     * <p>
+     * 1. The users are found in one query, and their relationships with the authenticated user in another.
+     * <p>
+     * 2. The transitions allowed by the action are checked against each relationship in memory.
+     * <p>
+     * 3. The allowed ones are written in batches. Each write only applies if the relationship hasn't changed since it was
+     * read, so a relationship that was changed by another request in between is reported as a conflict instead of being
+     * overwritten.
+     * @param selfMessage Error for when the authenticated user is one of the targets
+     * @param rejectionMessage Error for when the action isn't allowed from the relationship's status
+     */
+    private List<UserRelationshipBatchResultDTO> applyActionToMany(RelationshipAction action, List<Long> targetUserIds,
+                                                                   String selfMessage, RejectionMessage rejectionMessage) {
+        if (targetUserIds.size() > maxBatchSize) {
+            throw new ServiceException("At most " + maxBatchSize + " users can be given at once!", HttpStatus.BAD_REQUEST);
+        }
+        Long authUserId = authUtils.getAuthUserId();
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(targetUserIds));
+
+        Map<Long, UserEntity> usersById = new HashMap<>();
+        userRepository.findByIds(distinctIds).forEach(user -> usersById.put(user.getId(), user));
+        Map<Long, UserRelationshipStatus> statusesByUserId = new HashMap<>();
+        for (Object[] row : userRelationshipRepository.findStatusesWithUsers(authUserId, distinctIds)) {
+            Long firstUserId = (Long) row[0];
+            Long secondUserId = (Long) row[1];
+            statusesByUserId.put(authUserId.equals(firstUserId) ? secondUserId : firstUserId, (UserRelationshipStatus) row[2]);
+        }
+
+        // Decide the result for each user, and which relationships need to be written
+        List<UserRelationshipBatchResultDTO> results = new ArrayList<>(distinctIds.size());
+        List<RelationshipChange> changes = new ArrayList<>();
+        List<UserRelationshipBatchResultDTO> changedResults = new ArrayList<>();
+        for (Long targetUserId : distinctIds) {
+            UserRelationshipBatchResultDTO result = UserRelationshipBatchResultDTO.builder().targetUserId(targetUserId).build();
+            results.add(result);
+            if (authUserId.equals(targetUserId)) {
+                result.setMessage(selfMessage);
+                result.setHttpStatus(HttpStatus.BAD_REQUEST);
+                continue;
+            }
+            UserEntity targetUser = usersById.get(targetUserId);
+            if (targetUser == null) {
+                result.setMessage("User with ID '" + targetUserId + "' wasn't found!");
+                result.setHttpStatus(HttpStatus.NOT_FOUND);
+                continue;
+            }
+
+            UserRelationshipContext relationshipContext = new UserRelationshipContext(authUserId, targetUserId, authUserId);
+            RelationshipAction.Transitions transitions = action.getTransitions(relationshipContext.isAuthUserIsFirstUser());
+            UserRelationshipStatus status = statusesByUserId.get(targetUserId);
+            if (!transitions.isAllowedFrom(status)) {
+                result.setMessage(rejectionMessage.get(status, relationshipContext.isAuthUserIsFirstUser(), targetUser.getUsername()));
+                result.setHttpStatus(HttpStatus.BAD_REQUEST);
+                continue;
+            }
+            UserRelationshipStatus newStatus = status == null ? transitions.getInsertStatus() : transitions.getUpdates().get(status);
+            changes.add(new RelationshipChange(relationshipContext.getFirstUserId(), relationshipContext.getSecondUserId(), status, newStatus));
+            changedResults.add(result);
+        }
+        if (changes.isEmpty()) {
+            return results;
+        }
+
+        boolean[] applied = userRelationshipRepository.applyChanges(changes);
+        for (int i = 0; i < changes.size(); i++) {
+            RelationshipChange change = changes.get(i);
+            UserRelationshipBatchResultDTO result = changedResults.get(i);
+            if (!applied[i]) {
+                ServiceException conflict = relationshipChangedException();
+                result.setMessage(conflict.getMessage());
+                result.setHttpStatus(conflict.getHttpStatus());
+                continue;
+            }
+            // Deleted relationships report the status they had, like the single-user routes
+            result.setStatus(change.getToStatus() != null ? change.getToStatus() : change.getFromStatus());
+            if (change.getFromStatus() == FRIENDS && change.getToStatus() != FRIENDS) {
+                friendGraph.removeFriendship(authUserId, result.getTargetUserId());
+            }
+            if (action == RelationshipAction.BLOCK) {
+                blockIndexService.invalidate(authUserId, result.getTargetUserId());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public KeysetPageDTO<UserRelationshipDTO> getAuthUserRelationships(RelationshipFilter filter, Long afterId, int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ServiceException("Page size must be between 1 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
+        Long authUserId = authUtils.getAuthUserId();
+        List<UserRelationshipStatus> allStatuses = List.of(UserRelationshipStatus.values());
+
+        // Only reads the columns we return, in one query; one extra relationship is fetched to know whether there's a next page
+        List<UserRelationshipRow> rows = userRelationshipRepository.findRowPageByUserId(
+                authUserId,
+                filter == null ? allStatuses : filter.getStatusesAsFirstUser(),
+                filter == null ? allStatuses : filter.getStatusesAsSecondUser(),
+                afterId == null ? 0L : afterId,
+                Limit.of(size + 1));
+        KeysetPageDTO<UserRelationshipRow> page = KeysetPageDTO.of(rows, size, UserRelationshipRow::getId);
+        List<UserRelationshipDTO> relationships = page.getItems().stream().map(userRelationshipMapper::toDTO).toList();
+        return new KeysetPageDTO<>(relationships, page.getNextCursor());
+    }
+
+    @Override
+    public KeysetPageDTO<Map<String, Object>> getAuthUserRelationships(RelationshipFilter filter, Long afterId, int size, String fields) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ServiceException("Page size must be between 1 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
+        // The relationship's id is read even though it isn't returned, since it's the cursor of the next page
+        SparseFieldset relationshipFields = UserRelationshipRepositoryCustom.FIELDS.parse(fields).withAlso("id");
+        Long authUserId = authUtils.getAuthUserId();
+        List<UserRelationshipStatus> allStatuses = List.of(UserRelationshipStatus.values());
+
+        List<Object[]> rows = userRelationshipRepository.findFieldPageByUserId(
+                authUserId,
+                filter == null ? allStatuses : filter.getStatusesAsFirstUser(),
+                filter == null ? allStatuses : filter.getStatusesAsSecondUser(),
+                afterId == null ? 0L : afterId,
+                size + 1,
+                relationshipFields);
+        KeysetPageDTO<Object[]> page = KeysetPageDTO.of(rows, size, row -> (Long) relationshipFields.get(row, "id"));
+        List<Map<String, Object>> relationships = page.getItems().stream().map(relationshipFields::toMap).toList();
+        return new KeysetPageDTO<>(relationships, page.getNextCursor());
+    }
+
+    @Override
+    public long countIncomingRequests() {
+        Long authUserId = authUtils.getAuthUserId();
+        return userRelationshipRepository.countByUserId(
+                authUserId,
+                RelationshipFilter.INCOMING.getStatusesAsFirstUser(),
+                RelationshipFilter.INCOMING.getStatusesAsSecondUser());
+    }
+
+    @Override
+    public MutualFriendsDTO getMutualFriends(Long targetUserId, int limit) {
+        if (limit < 0 || limit > maxPageSize) {
+            throw new ServiceException("Limit must be between 0 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
+        Long authUserId = authUtils.getAuthUserId();
+
+        // Users that have blocked the authenticated user are treated as if they don't exist
+        String errMessage = "User with ID '" + targetUserId + "' wasn't found!";
+        if (blockIndexService.hasBlocked(targetUserId, authUserId)) {
+            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
+        }
+        if (userRepository.findById(targetUserId).filter(user -> user.getDeletedAt() == null).isEmpty()) {
+            throw new ServiceException(errMessage, HttpStatus.NOT_FOUND);
+        }
+
+        long[] mutualFriendIds = friendGraph.getMutualFriendIds(authUserId, targetUserId);
+        List<Long> shownIds = new ArrayList<>();
+        for (int i = 0; i < mutualFriendIds.length && i < limit; i++) {
+            shownIds.add(mutualFriendIds[i]);
+        }
+        return new MutualFriendsDTO(mutualFriendIds.length, findUserSummaries(shownIds));
     }
 
     @Override
-    public List<UserRelationshipDTO> getAuthUserRelationships() {
+    public List<UserSummaryDTO> getFriendSuggestions(int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ServiceException("Limit must be between 1 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
         Long authUserId = authUtils.getAuthUserId();
-        List<UserRelationshipEntity> relationships = userRelationshipRepository.findByUserId(authUserId);
-        return relationships.stream().map(userRelationshipMapper::toDTO).toList();
+        Set<Long> relatedUserIds = new HashSet<>(userRelationshipRepository.findRelatedUserIds(authUserId));
+        return findUserSummaries(friendGraph.suggestFriendIds(authUserId, relatedUserIds, limit));
+    }
+
+    /**
+     * Finds the summaries of users, in the order of their ids. Users that are waiting to be purged are left out.
+     */
+    private List<UserSummaryDTO> findUserSummaries(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, UserEntity> usersById = new HashMap<>();
+        userRepository.findByIds(userIds).forEach(user -> usersById.put(user.getId(), user));
+        return userIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .map(userMapper::toSummaryDTO)
+                .toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.knguyendev.api.services.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.BlockIndexService;
+import com.knguyendev.api.services.UserSearchService;
+import com.knguyendev.api.utils.AuthUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Searches users by username prefix.
+ * <p>
+ * Short prefixes are what's typed first and by the most users, and they match the most usernames, so the results for
+ * prefixes up to 'hotPrefixLength' characters are cached for a short time. Results are cached before users who blocked
+ * the searcher are removed, so one cached result serves everyone. To still be able to return 'limit' results after
+ * removing those users, we fetch one extra candidate for each user that's excluded.
+ * <p>
+ * NOTE: Cached results can be stale for up to 'cacheTimeToLive', e.g. still list a user that was just deleted.
+ */
+@Service
+public class UserSearchServiceImpl implements UserSearchService {
+
+    // Usernames are alphanumeric, so any other prefix can't match. This also means the prefix never contains characters
+    // that are special in SQL patterns.
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("^[a-z0-9]{1,32}$");
+
+    private final UserRepository userRepository;
+    private final BlockIndexService blockIndexService;
+    private final AuthUtils authUtils;
+
+    private final int maxResults;
+    private final int hotPrefixLength;
+    private final int cachedResults;
+    private final Cache<String, List<UserSummaryDTO>> hotPrefixCache;
+
+    public UserSearchServiceImpl(
+            UserRepository userRepository,
+            BlockIndexService blockIndexService,
+            AuthUtils authUtils,
+            @Value("${spring.custom.userSearch.maxResults}") int maxResults,
+            @Value("${spring.custom.userSearch.hotPrefixLength}") int hotPrefixLength,
+            @Value("${spring.custom.userSearch.cachedResults}") int cachedResults,
+            @Value("${spring.custom.userSearch.cacheSize}") long cacheSize,
+            @Value("${spring.custom.userSearch.cacheTimeToLive}") Duration cacheTimeToLive) {
+        this.userRepository = userRepository;
+        this.blockIndexService = blockIndexService;
+        this.authUtils = authUtils;
+        this.maxResults = maxResults;
+        this.hotPrefixLength = hotPrefixLength;
+        this.cachedResults = cachedResults;
+        this.hotPrefixCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTimeToLive)
+                .build();
+    }
+
+    @Override
+    public List<UserSummaryDTO> searchByUsernamePrefix(String prefix, Integer limit) throws ServiceException {
+        String normalizedPrefix = prefix == null ? "" : prefix.toLowerCase().trim();
+        if (!PREFIX_PATTERN.matcher(normalizedPrefix).matches()) {
+            throw new ServiceException("Prefix must be between 1 to 32 alphanumeric characters!", HttpStatus.BAD_REQUEST);
+        }
+        int resultLimit = limit == null ? maxResults : limit;
+        if (resultLimit < 1 || resultLimit > maxResults) {
+            throw new ServiceException("Limit must be between 1 and " + maxResults + "!", HttpStatus.BAD_REQUEST);
+        }
+
+        // Don't list the user themselves, or anyone who has blocked them
+        Long authUserId = authUtils.getAuthUserId();
+        int candidatesNeeded = resultLimit + blockIndexService.countBlockers(authUserId) + 1;
+        List<UserSummaryDTO> candidates = null;
+        if (normalizedPrefix.length() <= hotPrefixLength) {
+            List<UserSummaryDTO> cached = hotPrefixCache.get(normalizedPrefix, p -> findCandidates(p, cachedResults));
+            // Usable if it has enough candidates, or has every user matching the prefix
+            if (cached.size() >= candidatesNeeded || cached.size() < cachedResults) {
+                candidates = cached;
+            }
+        }
+        if (candidates == null) {
+            candidates = findCandidates(normalizedPrefix, candidatesNeeded);
+        }
+
+        return candidates.stream()
+                .filter(user -> !user.getId().equals(authUserId) && !blockIndexService.hasBlocked(user.getId(), authUserId))
+                .limit(resultLimit)
+                .toList();
+    }
+
+    private List<UserSummaryDTO> findCandidates(String prefix, int limit) {
+        // Usernames are in [a-z0-9], so incrementing the last character gives the first string after every match
+        char last = prefix.charAt(prefix.length() - 1);
+        String upperBound = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        return userRepository.findSummariesByUsernamePrefix(prefix, upperBound, limit);
+    }
+}
@@ -1,60 +1,78 @@
 package com.knguyendev.api.services.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.User.*;
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.enumeration.DeletionTargetType;
 import com.knguyendev.api.enumeration.UserRole;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.UserMapper;
-import com.knguyendev.api.repositories.TaskListRepository;
-import com.knguyendev.api.repositories.TaskRepository;
-import com.knguyendev.api.repositories.UserRelationshipRepository;
 import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.AvailabilityService;
+import com.knguyendev.api.services.DeletionJobService;
 import com.knguyendev.api.services.LogoutService;
 import com.knguyendev.api.services.UserService;
 import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.JsonMergePatch;
 import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.UserEntityCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.Optional;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Create a class that implements the UserService interface. So this class actually contains the implementation and code
  * for the methods and whatnot.
  * <p>
  *
- * NOTE: Now you need to include the deletion of UserRelationships when a User themselves is deleted
+ * NOTE: Deleting a user only marks their account as deleted. Their relationships, task lists, and tasks are purged
+ * afterwards by a background deletion job.
  */
 @Service
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
-    private final TaskListRepository taskListRepository;
-    private final TaskRepository taskRepository;
-
-    private final UserRelationshipRepository userRelationshipRepository;
+    private final DeletionJobService deletionJobService;
     private final UserMapper userMapper;
     private final LogoutService logoutService;
     private final PasswordEncoder passwordEncoder;
     private final AuthUtils authUtils;
     private final ServiceUtils serviceUtils;
+    private final UserEntityCache userEntityCache;
+    private final AvailabilityService availabilityService;
+    private final JsonMergePatch jsonMergePatch;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.custom.pagination.maxPageSize}")
+    private int maxPageSize;
 
-    public UserServiceImpl(UserRepository userRepository, TaskListRepository taskListRepository, TaskRepository taskRepository, UserRelationshipRepository userRelationshipRepository, LogoutService logoutService, UserMapper userMapper, PasswordEncoder passwordEncoder, AuthUtils authUtils, ServiceUtils serviceUtils) {
+    public UserServiceImpl(UserRepository userRepository, DeletionJobService deletionJobService, LogoutService logoutService, UserMapper userMapper, PasswordEncoder passwordEncoder, AuthUtils authUtils, ServiceUtils serviceUtils, UserEntityCache userEntityCache, AvailabilityService availabilityService, JsonMergePatch jsonMergePatch) {
         this.userRepository = userRepository;
-        this.taskListRepository = taskListRepository;
-        this.taskRepository = taskRepository;
-        this.userRelationshipRepository = userRelationshipRepository;
+        this.deletionJobService = deletionJobService;
         this.logoutService = logoutService;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
         this.authUtils = authUtils;
         this.serviceUtils = serviceUtils;
+        this.userEntityCache = userEntityCache;
+        this.availabilityService = availabilityService;
+        this.jsonMergePatch = jsonMergePatch;
     }
 
     /**
@@ -64,20 +82,16 @@ public class UserServiceImpl implements UserService {
      * Applying @Transactional directly to the method handling the high-level logic (such as deleteById) ensures that the entire operation, including the calls to inner methods (like deleteUserAndAssociatedData), is executed within a single transaction.
      * <p>
      * If @Transactional is placed only on the inner method (deleteUserAndAssociatedData), it may not handle transactions as expected because the calling method (if not transactional) won't support proper transaction management.
-     * @param userId ID of the user being deleted
+     * <p>
+     * The user is only marked as deleted here, which hides them immediately. Their relationships, task lists, and tasks
+     * are purged in bounded chunks by a background deletion job, which is enqueued in the same transaction as the mark.
+     * @param user The user being deleted
      */
-    private void deleteUserAndAssociatedData(Long userId) {
-        // Delete the user
-        userRepository.deleteById(userId);
-
-        // Delete their relationships
-        userRelationshipRepository.deleteByUserId(userId);
-
-        // Delete the tasks first
-        taskRepository.deleteByUserId(userId);
-
-        // Delete then delete the task lists
-        taskListRepository.deleteByUserId(userId);
+    private void deleteUserAndAssociatedData(UserEntity user) {
+        user.setDeletedAt(ZonedDateTime.now(ZoneId.of("UTC")));
+        userRepository.save(user);
+        userEntityCache.evict(user.getId());
+        deletionJobService.enqueue(DeletionTargetType.USER, user.getId());
     }
 
     @Override
@@ -87,9 +101,38 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<UserDTO> findAll() {
-        List<UserEntity> users = StreamSupport.stream(userRepository.findAll().spliterator(), false).toList();
-        return users.stream().map(userMapper::toDTO).collect(Collectors.toList());
+    public KeysetPageDTO<UserDTO> findPage(UserFilterDTO filter, Long afterId, int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new ServiceException("Page size must be between 1 and " + maxPageSize + "!", HttpStatus.BAD_REQUEST);
+        }
+        // Fetch one extra user to know whether there's a next page
+        List<UserDTO> users = userRepository.findPageByFilter(
+                        afterId == null ? 0L : afterId,
+                        filter.getRole(),
+                        filter.getIsVerified(),
+                        filter.getCreatedAfter(),
+                        filter.getCreatedBefore(),
+                        Limit.of(size + 1))
+                .stream()
+                .map(userMapper::toDTO)
+                .toList();
+        return KeysetPageDTO.of(users, size, UserDTO::getId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(UserFilterDTO filter, Consumer<UserDTO> consumer) {
+        try (Stream<UserEntity> users = userRepository.streamByFilter(
+                filter.getRole(),
+                filter.getIsVerified(),
+                filter.getCreatedAfter(),
+                filter.getCreatedBefore())) {
+            users.forEach(user -> {
+                consumer.accept(userMapper.toDTO(user));
+                // Detach each user once it's been exported, otherwise the persistence context keeps every one of them
+                entityManager.detach(user);
+            });
+        }
     }
 
     @Override
@@ -100,10 +143,22 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public UserDTO updateAccountProfile(UserProfileUpdateDTO userProfileUpdateDTO) {
+    @Transactional
+    public UserDTO updateAccountProfile(JsonNode patch) {
         Long userId = authUtils.getAuthUserId();
 
-        UserEntity user = serviceUtils.getUserById(userId);
+        // Read the user from the db rather than the cache, so a stale copy is never written back
+        UserEntity user = serviceUtils.getUserForUpdate(userId);
+
+        // Start from the current profile, so fields that aren't in the patch are left as they are
+        UserProfileUpdateDTO userProfileUpdateDTO = jsonMergePatch.apply(patch, UserProfileUpdateDTO.builder()
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .biography(user.getBiography())
+                .build());
+        userProfileUpdateDTO.normalizeData();
 
         boolean isDiff = false;
         /*
@@ -150,6 +205,9 @@ public class UserServiceImpl implements UserService {
         // If the update applied new data changes, update the user in the database
         if (isDiff) {
             userRepository.save(user);
+            userEntityCache.evict(userId);
+            // The old username or email stay in the availability filters until they're rebuilt, which only costs a db lookup
+            availabilityService.markTaken(user.getUsername(), user.getEmail());
         }
         return userMapper.toDTO(user);
     }
@@ -158,7 +216,7 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public UserDTO deleteAccount(HttpServletRequest request, HttpServletResponse response, UserDeleteDTO userDeleteDTO) {
         Long userId = authUtils.getAuthUserId();
-        UserEntity user = serviceUtils.getUserById(userId);
+        UserEntity user = serviceUtils.getUserForUpdate(userId);
 
         // if they're an administrator, prevent them from deleting their own account
         if (user.getRole() == UserRole.ADMIN || user.getRole() == UserRole.SUPER_ADMIN) {
@@ -173,7 +231,7 @@ public class UserServiceImpl implements UserService {
             throw new ServiceException("Password you entered is incorrect, and doesn't match your current password!", HttpStatus.BAD_REQUEST);
         }
 
-        deleteUserAndAssociatedData(userId);
+        deleteUserAndAssociatedData(user);
 
         logoutService.logout(request, response);
         return userMapper.toDTO(user);
@@ -190,7 +248,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // Get the target user being deleted.
-        UserEntity user = serviceUtils.getUserById(id);
+        UserEntity user = serviceUtils.getUserForUpdate(id);
 
         // If the user being deleted is a 'Super Admin', then stop that request immediately
         if (user.getRole() == UserRole.SUPER_ADMIN) {
@@ -209,7 +267,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // Delete the user and any corresponding relationships
-        deleteUserAndAssociatedData(user.getId());
+        deleteUserAndAssociatedData(user);
 
         return userMapper.toDTO(user);
     }
@@ -221,18 +279,26 @@ public class UserServiceImpl implements UserService {
             throw new ServiceException("Your new password needs to be different from your current one!", HttpStatus.BAD_REQUEST);
         }
 
-        // Get the ID of the authenticated user and fetch the user from the database
+        // Get the ID of the authenticated user and fetch the user from the database; not the cache, which may have an old hash
         Long userId = authUtils.getAuthUserId();
-        UserEntity user = serviceUtils.getUserById(userId);
+        UserEntity user = serviceUtils.getUserForUpdate(userId);
 
         // Check that the passwords hash; ensure the user entered their correct current password
         if (!passwordEncoder.matches(changePasswordDTO.getPassword(), user.getPassword())) {
             throw new ServiceException("Password you entered is incorrect, and doesn't match your current password!", HttpStatus.BAD_REQUEST);
         }
 
-        // Apply new password and ensure it's hashed, then save it into the database
-        user.setPassword(passwordEncoder.encode(changePasswordDTO.getNewPassword()));
-        userRepository.save(user);
+        /*
+         * Apply new password and ensure it's hashed, then save it into the database. Only the password is written, and only
+         * if it's still the hash we checked against, so a concurrent change (or a background hash upgrade) isn't overwritten.
+         */
+        String newHash = passwordEncoder.encode(changePasswordDTO.getNewPassword());
+        int rowsUpdated = userRepository.updatePasswordIfUnchanged(userId, user.getPassword(), newHash);
+        if (rowsUpdated == 0) {
+            throw new ServiceException("Your password was changed by another request! Please try again.", HttpStatus.CONFLICT);
+        }
+        user.setPassword(newHash);
+        userEntityCache.evict(userId);
 
         // Do a logout on the authenticated user
         logoutService.logout(request, response);
@@ -28,6 +28,6 @@ public class AuthUtils {
         if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl userDetails)) {
             throw new ServiceException("User is not authenticated!", HttpStatus.UNAUTHORIZED);
         }
-        return userDetails.getUser().getId();
+        return userDetails.getId();
     }
 }
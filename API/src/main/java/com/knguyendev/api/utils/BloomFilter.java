@@ -0,0 +1,91 @@
+package com.knguyendev.api.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter for strings: a compact set that can answer "definitely not added" or "possibly added". It never gives
+ * false negatives, but it can give false positives at roughly the rate it was sized for. Items can't be removed, so
+ * filters are rebuilt from scratch when items should be dropped.
+ * <p>
+ * Adding and checking are thread-safe and don't lock, since the bits are set with compare-and-set.
+ */
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for the given number of items and false positive rate.
+     *
+     * @param expectedItems How many items the filter is expected to hold
+     * @param falsePositiveRate Chance of 'mightContain' returning true for an item that wasn't added, e.g. 0.01 for 1%.
+     *                          The rate goes up if more than 'expectedItems' are added.
+     */
+    public BloomFilter(long expectedItems, double falsePositiveRate) {
+        long items = Math.max(1, expectedItems);
+        long optimalBits = (long) Math.ceil(-items * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / items * Math.log(2)));
+    }
+
+    public void add(String item) {
+        long hash = hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            setBit(index(h1, h2, i));
+        }
+    }
+
+    public boolean mightContain(String item) {
+        long hash = hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(h1, h2, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Derives the i-th bit index from two hashes (Kirsch-Mitzenmacher), so that each item is only hashed once.
+     */
+    private long index(int h1, int h2, int i) {
+        long combined = (h1 + (long) i * h2) & Long.MAX_VALUE;
+        return combined % bitCount;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the string's characters, followed by the MurmurHash3 finalizer to spread the bits.
+     */
+    private static long hash(String item) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            hash ^= item.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,227 @@
+package com.knguyendev.api.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * In-memory graph of friendships, for answering mutual friends and friend suggestions without joining UserRelationship
+ * against itself on every profile view.
+ * <p>
+ * Each user's friends are kept as a sorted array of ids, which is loaded from the database the first time it's needed.
+ * Sorted arrays are compact (8 bytes per friend) and make intersections a linear merge. The arrays are never modified;
+ * a friendship being added or removed replaces the arrays of both users, so readers never see a half-updated array.
+ * <p>
+ * NOTE: The graph is per server instance. Changes made through this instance are applied right away, and entries expire
+ * some time after being written, which bounds how stale changes made on another instance can be. Deleted users aren't
+ * removed from the graph, so callers should filter them out of results (e.g. through 'UserRepository.findByIds').
+ */
+@Component
+public class FriendGraph {
+    private static final long[] NO_FRIENDS = new long[0];
+
+    // Upper bound on the number of ids passed to one query when loading several users at once
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final UserRelationshipRepository userRelationshipRepository;
+    private final Cache<Long, long[]> friends;
+
+    public FriendGraph(
+            UserRelationshipRepository userRelationshipRepository,
+            @Value("${spring.custom.friendGraph.maximumSize}") long maximumSize,
+            @Value("${spring.custom.friendGraph.expireAfterWrite}") Duration expireAfterWrite) {
+        this.userRelationshipRepository = userRelationshipRepository;
+        this.friends = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    /**
+     * Gets the ids of a user's friends.
+     * @param userId ID of the user
+     * @return Sorted ids of their friends. The array is shared, so it must not be modified.
+     */
+    public long[] getFriendIds(Long userId) {
+        return friends.get(userId, id -> loadFriendIds(List.of(id)).get(id));
+    }
+
+    /**
+     * Gets the ids of the friends that two users have in common.
+     * @return Sorted ids of the mutual friends
+     */
+    public long[] getMutualFriendIds(Long userId, Long otherUserId) {
+        return intersect(getFriendIds(userId), getFriendIds(otherUserId));
+    }
+
+    /**
+     * Suggests users that a user may know, which are the friends of their friends. Suggestions are ranked by how many
+     * mutual friends they have with the user, then by id.
+     * @param userId ID of the user
+     * @param excludedIds IDs of users that can't be suggested, e.g. users they already have a pending request with or
+     *                    have blocked. The user themselves and their friends are always excluded.
+     * @param limit Maximum number of suggestions
+     * @return IDs of the suggested users, best first
+     */
+    public List<Long> suggestFriendIds(Long userId, Set<Long> excludedIds, int limit) {
+        long[] userFriends = getFriendIds(userId);
+        if (userFriends.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        List<Long> friendIds = new ArrayList<>(userFriends.length);
+        for (long friendId : userFriends) {
+            friendIds.add(friendId);
+        }
+        Map<Long, long[]> friendsOfFriends = friends.getAll(friendIds, this::loadFriendIds);
+
+        // Gather every friend of a friend that can be suggested. Someone that appears 'n' times has 'n' mutual friends.
+        int total = 0;
+        for (long[] ids : friendsOfFriends.values()) {
+            total += ids.length;
+        }
+        long[] candidates = new long[total];
+        int candidateCount = 0;
+        for (long[] ids : friendsOfFriends.values()) {
+            for (long candidateId : ids) {
+                if (candidateId != userId && Arrays.binarySearch(userFriends, candidateId) < 0 && !excludedIds.contains(candidateId)) {
+                    candidates[candidateCount++] = candidateId;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        /*
+         * Count each distinct candidate, and pack the count and the candidate's position into one long so they can be
+         * ranked with a primitive sort: the count goes in the high bits, and the position is inverted so that, between
+         * equal counts, the lower id (which comes first) ranks higher.
+         */
+        long[] distinctIds = new long[candidateCount];
+        long[] rankings = new long[candidateCount];
+        int distinctCount = 0;
+        for (int i = 0; i < candidateCount; ) {
+            int j = i;
+            while (j < candidateCount && candidates[j] == candidates[i]) {
+                j++;
+            }
+            distinctIds[distinctCount] = candidates[i];
+            rankings[distinctCount] = ((long) (j - i) << 32) | (0xFFFFFFFFL - distinctCount);
+            distinctCount++;
+            i = j;
+        }
+        Arrays.sort(rankings, 0, distinctCount);
+
+        List<Long> suggestions = new ArrayList<>(Math.min(limit, distinctCount));
+        for (int i = distinctCount - 1; i >= 0 && suggestions.size() < limit; i--) {
+            int position = (int) (0xFFFFFFFFL - (rankings[i] & 0xFFFFFFFFL));
+            suggestions.add(distinctIds[position]);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Records that two users became friends. Users whose friends aren't loaded are skipped; they'll be loaded with the
+     * friendship when they're needed.
+     */
+    public void addFriendship(Long userId, Long otherUserId) {
+        friends.asMap().computeIfPresent(userId, (id, ids) -> insert(ids, otherUserId));
+        friends.asMap().computeIfPresent(otherUserId, (id, ids) -> insert(ids, userId));
+    }
+
+    /**
+     * Records that two users are no longer friends.
+     */
+    public void removeFriendship(Long userId, Long otherUserId) {
+        friends.asMap().computeIfPresent(userId, (id, ids) -> remove(ids, otherUserId));
+        friends.asMap().computeIfPresent(otherUserId, (id, ids) -> remove(ids, userId));
+    }
+
+    /**
+     * Loads the friends of several users from the database.
+     * @return Sorted friend ids for each of the users, including those without friends
+     */
+    private Map<Long, long[]> loadFriendIds(Collection<? extends Long> userIds) {
+        Map<Long, List<Long>> friendLists = new HashMap<>();
+        List<Long> ids = new ArrayList<>(userIds);
+        for (int start = 0; start < ids.size(); start += LOAD_BATCH_SIZE) {
+            List<Long> batch = ids.subList(start, Math.min(ids.size(), start + LOAD_BATCH_SIZE));
+            Set<Long> batchIds = new HashSet<>(batch);
+            for (Object[] pair : userRelationshipRepository.findFriendIdPairs(batch)) {
+                Long firstUserId = (Long) pair[0];
+                Long secondUserId = (Long) pair[1];
+                if (batchIds.contains(firstUserId)) {
+                    friendLists.computeIfAbsent(firstUserId, k -> new ArrayList<>()).add(secondUserId);
+                }
+                if (batchIds.contains(secondUserId)) {
+                    friendLists.computeIfAbsent(secondUserId, k -> new ArrayList<>()).add(firstUserId);
+                }
+            }
+        }
+
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long userId : ids) {
+            List<Long> friendList = friendLists.get(userId);
+            if (friendList == null) {
+                result.put(userId, NO_FRIENDS);
+                continue;
+            }
+            long[] friendIds = new long[friendList.size()];
+            for (int i = 0; i < friendIds.length; i++) {
+                friendIds[i] = friendList.get(i);
+            }
+            Arrays.sort(friendIds);
+            result.put(userId, friendIds);
+        }
+        return result;
+    }
+
+    /**
+     * Intersects two sorted arrays of ids.
+     */
+    static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+}
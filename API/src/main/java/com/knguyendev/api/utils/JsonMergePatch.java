@@ -0,0 +1,68 @@
+package com.knguyendev.api.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knguyendev.api.exception.ServiceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Applies JSON Merge Patches (RFC 7386) to request DTOs. A patch only lists the fields that change: a field with a value
+ * replaces the current value, a field that's null clears it, and fields that aren't in the patch stay as they are.
+ * <p>
+ * Services build the request DTO from the current state of the entity, apply the patch to it, and then handle the DTO
+ * like a full update, so only the fields that actually changed end up being written.
+ * <p>
+ * NOTE: The request DTOs are flat, so a nested object in a patch replaces the field as a whole rather than being merged.
+ */
+@Component
+public class JsonMergePatch {
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public JsonMergePatch(ObjectMapper objectMapper, Validator validator) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    /**
+     * Applies a patch to a DTO, and validates the result.
+     *
+     * @param patch The patch, which has to be a JSON object
+     * @param target The DTO with the current values, which is modified in place
+     * @return The patched DTO
+     * @throws ServiceException If the patch isn't an object, has values of the wrong type, or the patched DTO isn't valid
+     */
+    public <T> T apply(JsonNode patch, T target) throws ServiceException {
+        // A patch that isn't an object would replace the whole resource, which none of our resources allow
+        if (patch == null || !patch.isObject()) {
+            throw new ServiceException("The patch must be a JSON object!", HttpStatus.BAD_REQUEST);
+        }
+        T patched;
+        try {
+            patched = objectMapper.readerForUpdating(target).readValue(patch);
+        } catch (IOException e) {
+            String reason = e instanceof JsonProcessingException jsonException ? jsonException.getOriginalMessage() : e.getMessage();
+            throw new ServiceException("The patch has an invalid value: " + reason, HttpStatus.BAD_REQUEST);
+        }
+
+        Set<ConstraintViolation<T>> violations = validator.validate(patched);
+        if (!violations.isEmpty()) {
+            String errorMessages = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            throw new ServiceException("Validation failed: " + errorMessages, HttpStatus.BAD_REQUEST);
+        }
+        return patched;
+    }
+}
@@ -0,0 +1,99 @@
+package com.knguyendev.api.utils;
+
+/**
+ * Set of longs (e.g. user ids) backed by a single primitive array, with open addressing and linear probing. Compared to a
+ * 'HashSet<Long>' it doesn't box its values or allocate a node per value, so it's several times smaller and checking
+ * whether it contains a value doesn't allocate.
+ * <p>
+ * NOTE: It isn't thread-safe. Build it on one thread, then only read from it once it's shared.
+ */
+public class LongHashSet {
+    // Marks an empty slot; since 0 could be a value too, whether the set contains 0 is tracked on its own
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * @param expectedSize Number of values the set is expected to hold, so it doesn't have to grow while being built
+     */
+    public LongHashSet(int expectedSize) {
+        // Keep the set at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.slots = new long[capacity];
+    }
+
+    /**
+     * @return Whether the value was added, which is false if it was already in the set
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        long[] oldSlots = slots;
+        slots = new long[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (long value : oldSlots) {
+            if (value == EMPTY) {
+                continue;
+            }
+            int index = hash(value) & mask;
+            while (slots[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = value;
+        }
+    }
+
+    // Ids are mostly sequential, so they're mixed (Fibonacci hashing) to spread them over the table
+    private static int hash(long value) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -3,17 +3,23 @@ package com.knguyendev.api.utils;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.ItemColorService;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.Optional;
 
 
 @Component
 public class ServiceUtils {
+    private final UserEntityCache userEntityCache;
     private final UserRepository userRepository;
-    public ServiceUtils(UserRepository userRepository) {
+    private final ItemColorService itemColorService;
+    public ServiceUtils(UserEntityCache userEntityCache, UserRepository userRepository, ItemColorService itemColorService) {
+        this.userEntityCache = userEntityCache;
         this.userRepository = userRepository;
+        this.itemColorService = itemColorService;
     }
 
 
@@ -22,20 +28,67 @@ public class ServiceUtils {
      *
      * @param id The ID of the user to be retrieved.
      * @return The UserEntity associated with the given ID.
-     * @throws ServiceException If no user is found with the given ID.
+     * @throws ServiceException If no user is found with the given ID, or the user has been deleted and is waiting to be purged.
      *         This exception is thrown with a {@link HttpStatus#NOT_FOUND} status to indicate that the user could not be located in the database.
      * <p>
-     * This method uses the {@link UserRepository} to find the user by the provided ID. If the user exists, the method returns the
+     * This method uses the {@link UserEntityCache} to find the user by the provided ID, so repeated lookups of the same user
+     * (such as the authenticated user) usually don't hit the database. If the user exists, the method returns the
      * corresponding {@link UserEntity} object. If the user does not exist, it throws a {@link ServiceException} with a 404 status code,
      * indicating that the user was not found. This ensures that the calling method can handle the case where the user does not exist in
      * a consistent manner.
      * </p>
      */
     public UserEntity getUserById(Long id) throws ServiceException {
-        Optional<UserEntity> result = userRepository.findById(id);
-        if (result.isEmpty()) {
+        Optional<UserEntity> result = userEntityCache.findById(id);
+        if (result.isEmpty() || result.get().getDeletedAt() != null) {
             throw new ServiceException("User with ID '" + id + "' not found!", HttpStatus.NOT_FOUND);
         }
         return result.get();
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves a UserEntity by its ID for changing it. Unlike {@link #getUserById(Long)}, this always reads the user from
+     * the database, bypassing both the {@link UserEntityCache} and Hibernate's second-level cache, since a cached copy can
+     * be stale: saving it would write the stale columns back (e.g. an old password hash), and a user that was deleted on
+     * another server instance would still look live.
+     * <p>
+     * NOTE: Call this inside a transaction, so the user is managed and only the columns that were changed are written
+     * when it's flushed.
+     *
+     * @param id The ID of the user to be changed.
+     * @return The UserEntity associated with the given ID.
+     * @throws ServiceException If no user is found with the given ID, or the user has been deleted, with a
+     *         {@link HttpStatus#NOT_FOUND} status.
+     */
+    public UserEntity getUserForUpdate(Long id) throws ServiceException {
+        Optional<UserEntity> result = userRepository.findFreshById(id);
+        if (result.isEmpty() || result.get().getDeletedAt() != null) {
+            throw new ServiceException("User with ID '" + id + "' not found!", HttpStatus.NOT_FOUND);
+        }
+        return result.get();
+    }
+
+    /**
+     * Checks that a color chosen for a task or task list is in the palette.
+     *
+     * @param colorId ID of the ItemColor; null (the default color) is always valid.
+     * @throws ServiceException If there's no ItemColor with the given ID, with a {@link HttpStatus#BAD_REQUEST} status.
+     */
+    public void checkItemColorExists(Long colorId) throws ServiceException {
+        if (colorId != null && itemColorService.getSnapshot().findById(colorId) == null) {
+            throw new ServiceException("ItemColor with id '" + colorId + "' wasn't found!", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Replaces the color ID that a sparse fieldset read for the 'color' field of a task or task list with the color
+     * itself, the same way the mappers resolve it from the palette.
+     *
+     * @param fields The requested fields of a task or task list; left as is if 'color' wasn't requested.
+     */
+    public void resolveItemColor(Map<String, Object> fields) {
+        if (fields.containsKey("color")) {
+            fields.put("color", itemColorService.getSnapshot().findById((Long) fields.get("color")));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.exception.ServiceException;
+import org.springframework.http.HttpStatus;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of a resource that a client picked with a '?fields=' parameter (a sparse fieldset), e.g. '?fields=id,name'.
+ * Only the columns of those fields are put in the query's select list, so a field that's left out is neither read from
+ * the database nor sent over the wire.
+ * <p>
+ * A resource declares the fields it can be projected to in a 'Definition', each with the JPQL expression that reads it.
+ * The field names are the same as in the resource's full JSON, so a sparse response is just the full response with
+ * fields left out:
+ * <p>
+ * 1. **Nested objects**: Their fields are named with a dot (e.g. 'firstUser.username'), and picking the object itself
+ * (e.g. 'firstUser') picks all of its fields.
+ * <p>
+ * 2. **Nested resources**: A list that's loaded with its own query (e.g. a task list's 'tasks') has a definition of its
+ * own. Picking 'tasks.title' picks the 'title' of the nested resource, and picking 'tasks' picks all of its fields.
+ * <p>
+ * NOTE: The server may need fields that the client didn't pick, like the id for the next page's cursor. Those are added
+ * with 'withAlso', which puts them in the select list but leaves them out of the response.
+ * <p>
+ * NOTE: Each combination of fields is a different JPQL string. Hibernate parses it once and keeps it in its query plan
+ * cache, so only the first request with a given combination pays for parsing it.
+ */
+public final class SparseFieldset {
+
+    /**
+     * The fields that a resource can be projected to.
+     */
+    public static final class Definition {
+        private final String resource;
+        private final Map<String, String> expressions = new LinkedHashMap<>();
+        private final Map<String, Definition> nestedResources = new LinkedHashMap<>();
+        private final Set<String> internalFields = new HashSet<>();
+
+        /**
+         * @param resource Name of the resource, for error messages
+         */
+        public Definition(String resource) {
+            this.resource = resource;
+        }
+
+        /**
+         * Declares a field. Fields are returned in the order they're declared.
+         * @param name Name of the field in the JSON; a dotted name puts it in a nested object
+         * @param expression JPQL expression that reads the field
+         */
+        public Definition field(String name, String expression) {
+            expressions.put(name, expression);
+            return this;
+        }
+
+        /**
+         * Declares a field that the server reads for its own use (see 'withAlso'), which clients can't pick.
+         */
+        public Definition internal(String name, String expression) {
+            internalFields.add(name);
+            return field(name, expression);
+        }
+
+        /**
+         * Declares a list of another resource that's loaded with its own query.
+         * @param name Name of the list in the JSON
+         * @param definition Fields of the nested resource
+         */
+        public Definition nested(String name, Definition definition) {
+            nestedResources.put(name, definition);
+            return this;
+        }
+
+        /**
+         * @return A fieldset with every (non-nested) field of the resource
+         */
+        public SparseFieldset all() {
+            return new SparseFieldset(this, publicFields(), Map.of());
+        }
+
+        /**
+         * Parses the value of a '?fields=' parameter.
+         * @param fields Comma separated field names, e.g. 'id,name,tasks.title'
+         * @return The fieldset
+         * @throws ServiceException If a field doesn't exist, or no field was picked
+         */
+        public SparseFieldset parse(String fields) throws ServiceException {
+            Set<String> picked = new HashSet<>();
+            Map<String, List<String>> pickedNested = new LinkedHashMap<>();
+            Set<String> wholeNested = new HashSet<>();
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                int dot = name.indexOf('.');
+                String head = dot < 0 ? name : name.substring(0, dot);
+                if (nestedResources.containsKey(head)) {
+                    List<String> nestedFields = pickedNested.computeIfAbsent(head, k -> new ArrayList<>());
+                    if (dot < 0) {
+                        wholeNested.add(head);
+                    } else {
+                        nestedFields.add(name.substring(dot + 1));
+                    }
+                    continue;
+                }
+                List<String> matches = publicFields().stream()
+                        .filter(f -> f.equals(name) || f.startsWith(name + "."))
+                        .toList();
+                if (matches.isEmpty()) {
+                    throw new ServiceException("Unknown field '" + name + "' for " + resource + "! The fields are: " +
+                            String.join(", ", fieldNames()), HttpStatus.BAD_REQUEST);
+                }
+                picked.addAll(matches);
+            }
+            if (picked.isEmpty() && pickedNested.isEmpty()) {
+                throw new ServiceException("At least one field of " + resource + " has to be picked!", HttpStatus.BAD_REQUEST);
+            }
+
+            Map<String, SparseFieldset> nested = new LinkedHashMap<>();
+            pickedNested.forEach((name, nestedFields) -> {
+                Definition definition = nestedResources.get(name);
+                nested.put(name, wholeNested.contains(name) ? definition.all() : definition.parse(String.join(",", nestedFields)));
+            });
+            return new SparseFieldset(this, picked, nested);
+        }
+
+        private List<String> publicFields() {
+            return expressions.keySet().stream().filter(f -> !internalFields.contains(f)).toList();
+        }
+
+        private List<String> fieldNames() {
+            List<String> names = new ArrayList<>(publicFields());
+            nestedResources.forEach((name, definition) ->
+                    definition.fieldNames().forEach(nestedName -> names.add(name + "." + nestedName)));
+            return names;
+        }
+    }
+
+    private final Definition definition;
+    // Fields that are returned, and fields that are read; both in the order they were declared
+    private final List<String> requested;
+    private final List<String> selected;
+    private final Map<String, SparseFieldset> nested;
+
+    private SparseFieldset(Definition definition, Collection<String> requested, Map<String, SparseFieldset> nested) {
+        this(definition, requested, requested, nested);
+    }
+
+    private SparseFieldset(Definition definition, Collection<String> requested, Collection<String> selected,
+                           Map<String, SparseFieldset> nested) {
+        this.definition = definition;
+        this.requested = definition.expressions.keySet().stream().filter(requested::contains).toList();
+        this.selected = definition.expressions.keySet().stream().filter(selected::contains).toList();
+        this.nested = nested;
+    }
+
+    /**
+     * Adds fields that the server needs to the select list, without returning them.
+     * @param fields Names of declared fields
+     */
+    public SparseFieldset withAlso(String... fields) {
+        Set<String> selectedFields = new HashSet<>(selected);
+        for (String field : fields) {
+            if (!definition.expressions.containsKey(field)) {
+                throw new IllegalArgumentException("Field '" + field + "' isn't declared for " + definition.resource);
+            }
+            selectedFields.add(field);
+        }
+        return new SparseFieldset(definition, requested, selectedFields, nested);
+    }
+
+    /**
+     * @return Whether the field is returned
+     */
+    public boolean contains(String field) {
+        return requested.contains(field);
+    }
+
+    /**
+     * @return The fields picked for a nested resource, or null if none were picked
+     */
+    public SparseFieldset getNested(String name) {
+        return nested.get(name);
+    }
+
+    /**
+     * @return The select list of the query, e.g. 't.id, t.title'. Each row of the query has the fields in this order.
+     */
+    public String selectList() {
+        if (selected.isEmpty()) {
+            throw new IllegalStateException("No fields of " + definition.resource + " are read; use 'withAlso' to read its id");
+        }
+        return selected.stream()
+                .map(definition.expressions::get)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Gets the value of a field from a row of the query, whether it's returned or not.
+     */
+    public Object get(Object[] row, String field) {
+        int index = selected.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException("Field '" + field + "' isn't read");
+        }
+        return row[index];
+    }
+
+    /**
+     * Turns a row of the query into the JSON object that's returned, with only the requested fields.
+     */
+    public Map<String, Object> toMap(Object[] row) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < selected.size(); i++) {
+            String field = selected.get(i);
+            if (requested.contains(field)) {
+                put(result, field, row[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks the requested fields out of a full JSON object, for when the resource was already read in full.
+     * @param full The resource as a map, e.g. from 'ObjectMapper.convertValue'
+     */
+    public Map<String, Object> retain(Map<String, ?> full) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String field : requested) {
+            Object value = full;
+            for (String part : field.split("\\.")) {
+                value = value instanceof Map<?, ?> map ? map.get(part) : null;
+            }
+            put(result, field, value);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> result, String field, Object value) {
+        int dot = field.indexOf('.');
+        if (dot < 0) {
+            result.put(field, value);
+            return;
+        }
+        Map<String, Object> object = (Map<String, Object>) result.computeIfAbsent(field.substring(0, dot), k -> new LinkedHashMap<>());
+        put(object, field.substring(dot + 1), value);
+    }
+}
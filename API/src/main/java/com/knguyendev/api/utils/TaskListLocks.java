@@ -0,0 +1,175 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.domain.entities.TaskListEntity;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.exception.ServiceUnavailableException;
+import com.knguyendev.api.repositories.TaskListRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes changes to the tasks of a task list. Tasks are kept in order through their prevTaskId/nextTaskId pointers,
+ * and two changes that rewire the same pointers at the same time would leave the list broken, so a change has to hold
+ * its task list's lock from before it reads the pointers until its transaction ends.
+ * <p>
+ * There are two levels:
+ * <p>
+ * 1. **Local**: A striped lock, taken before the change's transaction begins and released after it ends. Changes to the
+ * same task list on this instance wait in memory without holding a database connection, so a burst of them can't use up
+ * the connection pool. Task lists are spread over the stripes by their ID, so changes to different task lists almost
+ * never wait on each other.
+ * <p>
+ * 2. **Database**: The task list's row is locked with SELECT ... FOR UPDATE at the start of the transaction, which
+ * serializes changes made on different instances. It's held until the transaction commits or rolls back, and waiting for
+ * it is bounded by 'rowLockTimeout' (Postgres' lock_timeout), since the wait does hold a connection.
+ * <p>
+ * That's why the change runs through {@link #callLocked(Long, Supplier)}, which starts the transaction itself, rather than
+ * in a @Transactional method; by the time a @Transactional method runs, its connection is already taken.
+ * <p>
+ * NOTE: A change should only lock one task list, since locking several in different orders could deadlock.
+ */
+@Component
+public class TaskListLocks {
+    private static final String BUSY_MESSAGE = "This task list is being changed by another request. Please try again shortly!";
+
+    private final TaskListRepository taskListRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock[] stripes;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final String rowLockTimeout;
+
+    private final Timer localWaitTimer;
+    private final Timer databaseWaitTimer;
+    private final Counter contendedCounter;
+    private final Counter timedOutCounter;
+
+    public TaskListLocks(
+            TaskListRepository taskListRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${spring.custom.taskListLocks.stripes}") int stripeCount,
+            @Value("${spring.custom.taskListLocks.maxWait}") Duration maxWait,
+            @Value("${spring.custom.taskListLocks.retryAfter}") Duration retryAfter,
+            @Value("${spring.custom.taskListLocks.rowLockTimeout}") Duration rowLockTimeout) {
+        this.taskListRepository = taskListRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        // lock_timeout is in milliseconds when it has no unit
+        this.rowLockTimeout = String.valueOf(rowLockTimeout.toMillis());
+
+        this.localWaitTimer = Timer.builder("taskLists.lock.wait")
+                .description("Time spent waiting for a task list's lock")
+                .tag("level", "local")
+                .register(meterRegistry);
+        this.databaseWaitTimer = Timer.builder("taskLists.lock.wait")
+                .description("Time spent waiting for a task list's lock")
+                .tag("level", "database")
+                .register(meterRegistry);
+        this.contendedCounter = Counter.builder("taskLists.lock.contended")
+                .description("Number of times a task list's local lock was already held and had to be waited for")
+                .register(meterRegistry);
+        this.timedOutCounter = Counter.builder("taskLists.lock.timedOut")
+                .description("Number of changes rejected because a task list's lock wasn't acquired in time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a change to a task list's tasks in its own transaction, while holding the task list's locks.
+     *
+     * @param taskListId ID of the task list whose tasks are about to be changed
+     * @param change The change; it runs inside the transaction, after the task list's row is locked
+     * @return What the change returned
+     * @throws ServiceUnavailableException If the local lock wasn't acquired within 'maxWait', or the row lock within
+     *         'rowLockTimeout'
+     * @throws ServiceException If the task list doesn't exist, or it's waiting to be purged, with a
+     *         {@link HttpStatus#NOT_FOUND} status. This is checked after the row is locked, so a change can't add tasks
+     *         to a task list whose deletion job is already running.
+     * @throws IllegalStateException If a transaction is already active, since its connection would be held while waiting
+     *         on the local lock
+     */
+    public <T> T callLocked(Long taskListId, Supplier<T> change) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("A task list has to be locked before the transaction begins!");
+        }
+        ReentrantLock lock = stripes[stripeIndex(taskListId)];
+        acquire(lock);
+        try {
+            return transactionTemplate.execute(status -> {
+                lockRow(taskListId);
+                return change.get();
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #callLocked(Long, Supplier)}, for changes that don't return anything.
+     */
+    public void runLocked(Long taskListId, Runnable change) {
+        callLocked(taskListId, () -> {
+            change.run();
+            return null;
+        });
+    }
+
+    private void acquire(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        contendedCounter.increment();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        localWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            timedOutCounter.increment();
+            throw new ServiceUnavailableException(BUSY_MESSAGE, retryAfter);
+        }
+    }
+
+    private void lockRow(Long taskListId) {
+        // The timeout only lasts until the end of this transaction
+        taskListRepository.setLocalLockTimeout(rowLockTimeout);
+        Optional<TaskListEntity> taskList;
+        try {
+            taskList = databaseWaitTimer.record(() -> taskListRepository.findByIdForUpdate(taskListId));
+        } catch (PessimisticLockingFailureException e) {
+            // Another instance has been changing the task list for longer than 'rowLockTimeout'
+            timedOutCounter.increment();
+            throw new ServiceUnavailableException(BUSY_MESSAGE, retryAfter);
+        }
+        if (taskList.isEmpty() || taskList.get().getDeletedAt() != null) {
+            throw new ServiceException("Task list with id '" + taskListId + "' wasn't found!", HttpStatus.NOT_FOUND);
+        }
+    }
+
+    private int stripeIndex(Long taskListId) {
+        return Math.floorMod(Long.hashCode(taskListId), stripes.length);
+    }
+}
@@ -0,0 +1,165 @@
+package com.knguyendev.api.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knguyendev.api.exception.ServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cache of each user's task lists (with their tasks), stored in Redis as the JSON that's sent to the client. Every server
+ * instance shares the cache, and a hit is served as is, without loading anything from the database or running Jackson.
+ * <p>
+ * Snapshots are versioned rather than deleted. Each user has a version counter, and there's a global one for changes that
+ * affect everyone (e.g. the color palette). A snapshot records the versions it was built at, and is only used while both
+ * still match, so changing something is a single increment. Versions are read before the database is, so a snapshot that
+ * was built while a change was being made is stored under the old version and never served.
+ * <p>
+ * NOTE: Anything that changes a user's task lists or tasks must call {@link #invalidate(Long)} afterwards. The version
+ * counters don't expire (they're a few bytes per user), since a counter starting over could match an old snapshot. If
+ * Redis can't be reached, snapshots are built from the database every time, and a change that couldn't increment its
+ * version is visible once the snapshot expires.
+ */
+@Component
+public class TaskListSnapshotCache {
+    private static final Logger logger = LoggerFactory.getLogger(TaskListSnapshotCache.class);
+
+    private static final String GLOBAL_VERSION_KEY = "taskLists:version";
+    private static final String VERSION_KEY_PREFIX = "taskLists:version:";
+    private static final String SNAPSHOT_KEY_PREFIX = "taskLists:snapshot:";
+
+    // Snapshots start with the user's version and the global version they were built at, followed by the JSON
+    private static final int HEADER_LENGTH = 2 * Long.BYTES;
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration timeToLive;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public TaskListSnapshotCache(
+            RedisTemplate<String, byte[]> redisTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${spring.custom.taskListSnapshot.timeToLive}") Duration timeToLive) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.timeToLive = timeToLive;
+        this.hitCounter = meterRegistry.counter("taskLists.snapshot.requests", "result", "hit");
+        this.missCounter = meterRegistry.counter("taskLists.snapshot.requests", "result", "miss");
+    }
+
+    /**
+     * Gets a user's snapshot, building and storing it if there isn't a current one.
+     *
+     * @param userId ID of the user
+     * @param loader Loads the user's task lists from the database; the result is serialized with Jackson
+     * @return The snapshot as JSON
+     */
+    public byte[] get(Long userId, Supplier<?> loader) {
+        String snapshotKey = SNAPSHOT_KEY_PREFIX + userId;
+        List<byte[]> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(List.of(VERSION_KEY_PREFIX + userId, GLOBAL_VERSION_KEY, snapshotKey));
+        } catch (RuntimeException e) {
+            logger.warn("Task list snapshot cache couldn't reach Redis, so the snapshot is built from the database: {}", e.getMessage());
+            missCounter.increment();
+            return serialize(loader.get());
+        }
+        if (values == null) {
+            missCounter.increment();
+            return serialize(loader.get());
+        }
+
+        long userVersion = parseVersion(values.get(0));
+        long globalVersion = parseVersion(values.get(1));
+        byte[] snapshot = values.get(2);
+        if (snapshot != null && snapshot.length >= HEADER_LENGTH) {
+            ByteBuffer header = ByteBuffer.wrap(snapshot, 0, HEADER_LENGTH);
+            if (header.getLong() == userVersion && header.getLong() == globalVersion) {
+                hitCounter.increment();
+                return Arrays.copyOfRange(snapshot, HEADER_LENGTH, snapshot.length);
+            }
+        }
+
+        missCounter.increment();
+        byte[] json = serialize(loader.get());
+        byte[] newSnapshot = ByteBuffer.allocate(HEADER_LENGTH + json.length)
+                .putLong(userVersion)
+                .putLong(globalVersion)
+                .put(json)
+                .array();
+        try {
+            redisTemplate.opsForValue().set(snapshotKey, newSnapshot, timeToLive);
+        } catch (RuntimeException e) {
+            logger.warn("Task list snapshot cache couldn't store the snapshot of user '{}': {}", userId, e.getMessage());
+        }
+        return json;
+    }
+
+    /**
+     * Marks a user's snapshot as outdated. If this is called inside a transaction, it's done once the transaction commits,
+     * so that a snapshot can't be rebuilt from the data before the change under the new version.
+     *
+     * @param userId ID of the user whose task lists or tasks changed
+     */
+    public void invalidate(Long userId) {
+        incrementAfterCommit(VERSION_KEY_PREFIX + userId);
+    }
+
+    /**
+     * Marks every user's snapshot as outdated, for changes that show up in everyone's task lists.
+     */
+    public void invalidateAll() {
+        incrementAfterCommit(GLOBAL_VERSION_KEY);
+    }
+
+    private void incrementAfterCommit(String versionKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(versionKey);
+                }
+            });
+        } else {
+            increment(versionKey);
+        }
+    }
+
+    private void increment(String versionKey) {
+        try {
+            redisTemplate.opsForValue().increment(versionKey);
+        } catch (RuntimeException e) {
+            logger.warn("Task list snapshot cache couldn't increment '{}', so the change shows up once the snapshot expires: {}", versionKey, e.getMessage());
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("Task lists couldn't be serialized!", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Versions are written by INCR, so they're stored as decimal strings; a missing version hasn't been incremented yet
+    private static long parseVersion(byte[] value) {
+        return value == null ? 0L : Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,267 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
+import com.knguyendev.api.domain.entities.TaskEntity;
+import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds back updates to the content of tasks (title, description, etc.) for a short window, so that a burst of updates
+ * to the same task, like the editor autosaving while someone types, is written to the database once. The fields changed
+ * by each update are merged, the latest value winning, and only those columns are written with a single UPDATE.
+ * <p>
+ * It's opt-in through 'spring.custom.taskWriteBehind.enabled'. While it's disabled, updates are saved right away.
+ * <p>
+ * NOTE: Durability. An update is acknowledged to the client before it's written, and is held in this instance's memory
+ * for up to 'window' (plus one flush interval). Pending updates are flushed when the server shuts down gracefully, but
+ * they're lost if the process is killed or crashes before then. A flush that fails is retried with an exponential
+ * backoff, starting at 'retryBackoff', until it has been failing for 'retryBudget'; then the update is dropped.
+ * <p>
+ * NOTE: Consistency. Reading a task through 'TaskService' on this instance includes its pending update. Everything else
+ * (other instances, task list snapshots, delta-sync) sees the update once it's flushed. When instances update the same
+ * task at once, fields that only one of them changed are all kept, and for a field that both changed, the last flush wins.
+ */
+@Component
+public class TaskWriteBehindBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(TaskWriteBehindBuffer.class);
+
+    /**
+     * The changes to a task that haven't been written yet.
+     * @param changes New values of the changed fields, by TaskEntity attribute name (see 'TaskRepositoryCustom')
+     * @param firstQueuedAt When the oldest update that was merged into this one was queued (System.nanoTime()), which is
+     *                      what the window is measured from, so that a task that's updated constantly is still written.
+     * @param attempts Number of times writing the changes failed; the rest is only set when this isn't 0
+     * @param failingSince When writing the changes first failed
+     * @param retryAt When writing the changes may be retried
+     */
+    private record PendingUpdate(Long taskListId, Map<String, Object> changes, long firstQueuedAt,
+                                 int attempts, long failingSince, long retryAt) {
+
+        /**
+         * @return This update with newer changes applied over its own
+         */
+        PendingUpdate merge(Map<String, Object> newerChanges) {
+            Map<String, Object> merged = new LinkedHashMap<>(changes);
+            merged.putAll(newerChanges);
+            return new PendingUpdate(taskListId, Collections.unmodifiableMap(merged), firstQueuedAt, attempts, failingSince, retryAt);
+        }
+    }
+
+    private final TaskRepository taskRepository;
+    private final TaskListRepository taskListRepository;
+    private final TaskListSnapshotCache taskListSnapshotCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final long retryBackoffNanos;
+    private final long retryBudgetNanos;
+
+    private final Map<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final Counter coalescedCounter;
+    private final Counter flushedCounter;
+    private final Counter failedCounter;
+    private final Counter droppedCounter;
+
+    public TaskWriteBehindBuffer(
+            TaskRepository taskRepository,
+            TaskListRepository taskListRepository,
+            TaskListSnapshotCache taskListSnapshotCache,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${spring.custom.taskWriteBehind.enabled}") boolean enabled,
+            @Value("${spring.custom.taskWriteBehind.window}") Duration window,
+            @Value("${spring.custom.taskWriteBehind.retryBackoff}") Duration retryBackoff,
+            @Value("${spring.custom.taskWriteBehind.retryBudget}") Duration retryBudget) {
+        this.taskRepository = taskRepository;
+        this.taskListRepository = taskListRepository;
+        this.taskListSnapshotCache = taskListSnapshotCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.retryBudgetNanos = retryBudget.toNanos();
+
+        Gauge.builder("tasks.writeBehind.pending", pending, Map::size)
+                .description("Number of tasks with an update that hasn't been written yet")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("tasks.writeBehind.coalesced")
+                .description("Number of task updates that were merged into a pending update, saving a write")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("tasks.writeBehind.flushed")
+                .description("Number of pending task updates that were written")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("tasks.writeBehind.failed")
+                .description("Number of times writing a pending task update failed")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("tasks.writeBehind.dropped")
+                .description("Number of pending task updates that were dropped after failing for the whole retry budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Whether updates should be queued here rather than saved right away
+     */
+    public boolean isEnabled() {
+        return enabled && !closed;
+    }
+
+    /**
+     * Queues the fields of a task that an update changes, merging them into any update of the task that's still pending.
+     * @param task The task, as it was before the update (including its pending update)
+     * @param content New content of the task, which has already been validated
+     */
+    public void enqueue(TaskEntity task, TaskUpdateRequest content) {
+        Map<String, Object> changes = changesBetween(task, content);
+        if (changes.isEmpty()) {
+            return;
+        }
+        PendingUpdate update = pending.compute(task.getId(), (id, previous) -> {
+            if (previous == null) {
+                return new PendingUpdate(task.getTaskListId(), changes, System.nanoTime(), 0, 0L, 0L);
+            }
+            coalescedCounter.increment();
+            return previous.merge(changes);
+        });
+
+        // The buffer was closed while this was being queued, so nothing would flush it later
+        if (closed && pending.remove(task.getId(), update)) {
+            write(task.getId(), update);
+        }
+    }
+
+    /**
+     * @return Whether the task has an update that hasn't been written yet
+     */
+    public boolean hasPending(Long taskId) {
+        return pending.containsKey(taskId);
+    }
+
+    /**
+     * Applies the pending update of a task (if there is one) to a copy of it that was just read from the database.
+     */
+    public void applyPending(TaskEntity task) {
+        PendingUpdate update = pending.get(task.getId());
+        if (update == null) {
+            return;
+        }
+        update.changes().forEach((attribute, value) -> {
+            switch (attribute) {
+                case "title" -> task.setTitle((String) value);
+                case "description" -> task.setDescription((String) value);
+                case "isComplete" -> task.setComplete((Boolean) value);
+                case "isAllDay" -> task.setAllDay((Boolean) value);
+                case "isStarred" -> task.setStarred((Boolean) value);
+                case "dueDate" -> task.setDueDate((ZonedDateTime) value);
+                case "colorId" -> task.setColorId((Long) value);
+                default -> throw new IllegalStateException("Unexpected attribute '" + attribute + "'");
+            }
+        });
+    }
+
+    /**
+     * Writes the pending updates that have been waiting for at least the window, and aren't backing off after a failure.
+     */
+    @Scheduled(fixedDelayString = "${spring.custom.taskWriteBehind.flushInterval}")
+    public void flushDue() {
+        flush(false);
+    }
+
+    /**
+     * Writes every pending update, and makes later updates be saved right away. Called when the server shuts down, before
+     * the database connections are closed.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        flush(true);
+    }
+
+    /*
+     * Flushes are done one at a time, so an older update of a task can't be written after a newer one. An update is only
+     * removed if it wasn't changed in the meantime; a merged update keeps the same 'firstQueuedAt', so it's written next.
+     */
+    private synchronized void flush(boolean all) {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, PendingUpdate> entry : pending.entrySet()) {
+            PendingUpdate update = entry.getValue();
+            if (!all && (now - update.firstQueuedAt() < windowNanos || (update.attempts() > 0 && now - update.retryAt() < 0))) {
+                continue;
+            }
+            if (pending.remove(entry.getKey(), update)) {
+                write(entry.getKey(), update);
+            }
+        }
+    }
+
+    private void write(Long taskId, PendingUpdate update) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                taskRepository.updateContentById(taskId, update.changes());
+                taskListRepository.findById(update.taskListId())
+                        .ifPresent(taskList -> taskListSnapshotCache.invalidate(taskList.getUserId()));
+            });
+            flushedCounter.increment();
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            long now = System.nanoTime();
+            int attempts = update.attempts() + 1;
+            long failingSince = update.attempts() == 0 ? now : update.failingSince();
+            if (closed || now - failingSince >= retryBudgetNanos) {
+                droppedCounter.increment();
+                logger.error("Pending update of task '{}' couldn't be written after {} attempt(s), so it's dropped", taskId, attempts, e);
+                return;
+            }
+            // Double the backoff after each failure, but never wait past the end of the budget
+            long backoff = Math.min(retryBackoffNanos << Math.min(attempts - 1, 30), retryBudgetNanos - (now - failingSince));
+            logger.warn("Pending update of task '{}' couldn't be written, and will be retried in {} ms: {}",
+                    taskId, Duration.ofNanos(backoff).toMillis(), e.getMessage());
+            PendingUpdate retry = new PendingUpdate(update.taskListId(), update.changes(), update.firstQueuedAt(),
+                    attempts, failingSince, now + backoff);
+            // A newer update of the task may have been queued in the meantime; its changes are applied over these
+            pending.merge(taskId, retry, (newer, failed) -> failed.merge(newer.changes()));
+        }
+    }
+
+    /**
+     * @return New values of the content fields that differ between a task and its new content, by attribute name, as
+     * 'TaskRepository.updateContentById' takes them
+     */
+    public static Map<String, Object> changesBetween(TaskEntity task, TaskUpdateRequest content) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        putIfChanged(changes, "title", task.getTitle(), content.getTitle());
+        putIfChanged(changes, "description", task.getDescription(), content.getDescription());
+        putIfChanged(changes, "isComplete", task.isComplete(), content.isComplete());
+        putIfChanged(changes, "isAllDay", task.isAllDay(), content.isAllDay());
+        putIfChanged(changes, "isStarred", task.isStarred(), content.isStarred());
+        putIfChanged(changes, "dueDate", task.getDueDate(), content.getDueDate());
+        putIfChanged(changes, "colorId", task.getColorId(), content.getColorId());
+        return Collections.unmodifiableMap(changes);
+    }
+
+    private static void putIfChanged(Map<String, Object> changes, String attribute, Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            changes.put(attribute, newValue);
+        }
+    }
+}
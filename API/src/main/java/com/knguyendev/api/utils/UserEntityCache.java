@@ -0,0 +1,114 @@
+package com.knguyendev.api.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Cache for looking up users by their ID, which happens on most authenticated requests. There are two layers:
+ * <p>
+ * 1. **Per-request**: The first lookup in a request is remembered as a request attribute, so calling it several times
+ * during the same request only does the work once.
+ * <p>
+ * 2. **Cross-request**: A bounded cache, where entries expire some time after being written. If there are multiple instances
+ * of the server, then the expiration is what bounds how stale another instance's entry can be.
+ * <p>
+ * NOTE: Callers get their own copy of the user, so modifying the returned entity (e.g. before saving it) never changes what's
+ * cached. Anything that changes a user (profile, password, role, or deletion) must call {@link #evict(Long)} afterwards.
+ * <p>
+ * NOTE: This is only for reads. A copy can be stale, so code that changes a user reads them from the database with
+ * {@link ServiceUtils#getUserForUpdate(Long)} instead, otherwise saving the copy would write its stale columns back.
+ */
+@Component
+public class UserEntityCache {
+    private static final String REQUEST_ATTRIBUTE_PREFIX = UserEntityCache.class.getName() + ".";
+
+    private final UserRepository userRepository;
+    private final Cache<Long, UserEntity> cache;
+
+    public UserEntityCache(
+            UserRepository userRepository,
+            @Value("${spring.custom.userCache.maximumSize}") long maximumSize,
+            @Value("${spring.custom.userCache.expireAfterWrite}") Duration expireAfterWrite) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    /**
+     * Finds a user by their ID, checking the request and then the shared cache before going to the database.
+     *
+     * @param id ID of the user
+     * @return Optional containing a copy of the user, or empty if the user doesn't exist. Users that have been deleted are
+     *         returned as well (though never cached), so it's up to the caller to check 'deletedAt'.
+     */
+    public Optional<UserEntity> findById(Long id) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        String attributeName = REQUEST_ATTRIBUTE_PREFIX + id;
+        if (requestAttributes != null) {
+            UserEntity memoized = (UserEntity) requestAttributes.getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+            if (memoized != null) {
+                return Optional.of(memoized.toBuilder().build());
+            }
+        }
+
+        UserEntity user = cache.getIfPresent(id);
+        if (user == null) {
+            Optional<UserEntity> result = userRepository.findById(id);
+            if (result.isEmpty()) {
+                return Optional.empty();
+            }
+            user = result.get();
+
+            // Deleted users are going to be purged, so there's no point in caching them
+            if (user.getDeletedAt() != null) {
+                return Optional.of(user);
+            }
+            user = user.toBuilder().build();
+            cache.put(id, user);
+        }
+
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(attributeName, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(user.toBuilder().build());
+    }
+
+    /**
+     * Removes a user from the cache. If this is called inside a transaction, the user is evicted again once the transaction
+     * commits, so that a request that ran in between can't leave the old version of the user in the cache.
+     *
+     * @param id ID of the user that was changed
+     */
+    public void evict(Long id) {
+        evictNow(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(id);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Long id) {
+        cache.invalidate(id);
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.removeAttribute(REQUEST_ATTRIBUTE_PREFIX + id, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
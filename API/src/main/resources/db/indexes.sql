@@ -0,0 +1,35 @@
+-- Indexes that can't be declared through JPA annotations. This runs after Hibernate creates the schema.
+
+-- Task: Every hot-path query skips tombstoned tasks, so the lookup indexes only cover live rows. This keeps them small,
+-- and tombstoning a task removes it from these indexes without touching the rows around it.
+CREATE INDEX IF NOT EXISTS idx_task_active_task_list ON Task (taskListId) WHERE deletedAt IS NULL;
+CREATE INDEX IF NOT EXISTS idx_task_active_parent ON Task (parentTaskId) WHERE deletedAt IS NULL;
+CREATE INDEX IF NOT EXISTS idx_task_active_prev ON Task (prevTaskId) WHERE deletedAt IS NULL;
+CREATE INDEX IF NOT EXISTS idx_task_active_next ON Task (nextTaskId) WHERE deletedAt IS NULL;
+
+-- Task: Tombstones only, used by delta-sync queries and the background purger.
+CREATE INDEX IF NOT EXISTS idx_task_tombstone ON Task (deletedAt) WHERE deletedAt IS NOT NULL;
+
+-- AppUser: Username prefix search. The "C" collation orders usernames byte by byte, so a prefix is a contiguous range
+-- of the index that's already in the order the results are returned in. Only live users are searchable.
+CREATE INDEX IF NOT EXISTS idx_app_user_username_prefix ON AppUser (username COLLATE "C") WHERE deletedAt IS NULL;
+
+-- UserRelationship: Relationships are looked up by one of their users and a status, such as listing a user's friends,
+-- counting their incoming friend requests, or finding who blocked them. Since a user can be on either side of a
+-- relationship, there's an index for each side.
+CREATE INDEX IF NOT EXISTS idx_user_relationship_first_user_status ON UserRelationship (firstUserId, status);
+CREATE INDEX IF NOT EXISTS idx_user_relationship_second_user_status ON UserRelationship (secondUserId, status);
+
+-- Task and TaskList: A color is referenced by ID, and deleting it resets everything shown with it back to the default
+-- color. The database does that itself with 'ON DELETE SET NULL', in the same statement as the delete, so a task that's
+-- given the color while it's being deleted can't be left pointing at it. The constraints are dropped first, since
+-- Postgres has no 'ADD CONSTRAINT IF NOT EXISTS'.
+ALTER TABLE Task DROP CONSTRAINT IF EXISTS fk_task_color;
+ALTER TABLE Task ADD CONSTRAINT fk_task_color FOREIGN KEY (colorId) REFERENCES ItemColor (id) ON DELETE SET NULL;
+ALTER TABLE TaskList DROP CONSTRAINT IF EXISTS fk_task_list_color;
+ALTER TABLE TaskList ADD CONSTRAINT fk_task_list_color FOREIGN KEY (colorId) REFERENCES ItemColor (id) ON DELETE SET NULL;
+
+-- Task and TaskList: The foreign keys above look up the rows shown with a deleted color. Most rows use the default color
+-- (null), so only rows with a color are indexed.
+CREATE INDEX IF NOT EXISTS idx_task_color ON Task (colorId) WHERE colorId IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_task_list_color ON TaskList (colorId) WHERE colorId IS NOT NULL;
@@ -0,0 +1,30 @@
+-- Token bucket for 'RedisTokenBucketRateLimiter'. Running it as a script makes the read, refill, and take atomic.
+-- KEYS[1]: Key of the bucket's hash
+-- ARGV[1]: Capacity of the bucket
+-- ARGV[2]: Milliseconds it takes for an empty bucket to be full again
+-- Returns: {1, 0} if a token was taken, otherwise {0, milliseconds until a token is available}
+
+local capacity = tonumber(ARGV[1])
+local refillMillis = tonumber(ARGV[2])
+
+-- Use Redis' clock, so that servers with different clocks still agree on the bucket
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'updatedAt')
+local tokens = tonumber(bucket[1])
+local updatedAt = tonumber(bucket[2])
+if tokens == nil or updatedAt == nil then
+    tokens = capacity
+    updatedAt = now
+end
+
+tokens = math.min(capacity, tokens + math.max(0, now - updatedAt) * capacity / refillMillis)
+if tokens < 1 then
+    return {0, math.ceil((1 - tokens) * refillMillis / capacity)}
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens - 1), 'updatedAt', now)
+-- A bucket that isn't touched for a full refill period is full again anyway, so it can be dropped
+redis.call('PEXPIRE', KEYS[1], refillMillis)
+return {1, 0}
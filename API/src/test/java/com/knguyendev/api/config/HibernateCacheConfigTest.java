@@ -0,0 +1,57 @@
+package com.knguyendev.api.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.knguyendev.api.domain.entities.ItemColorEntity;
+import com.knguyendev.api.domain.entities.TaskListEntity;
+import com.knguyendev.api.domain.entities.UserEntity;
+import org.hibernate.annotations.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the regions of Hibernate's second-level cache in 'hibernate-cache.conf' against the entities that use them,
+ * without needing a database.
+ */
+public class HibernateCacheConfigTest {
+
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void setUp() throws URISyntaxException {
+        // Hibernate looks up 'hibernate.javax.cache.uri' on the classpath, and hands the resource's URI to the provider
+        URL resource = getClass().getClassLoader().getResource("hibernate-cache.conf");
+        assertNotNull(resource);
+        cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(resource.toURI(), getClass().getClassLoader());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testEveryCachedEntityHasABoundedRegion() {
+        for (Class<?> entityClass : List.of(ItemColorEntity.class, TaskListEntity.class, UserEntity.class)) {
+            Cache cache = entityClass.getAnnotation(Cache.class);
+            assertNotNull(cache, entityClass.getSimpleName() + " isn't cached");
+
+            // A region that's missing from the file would still be created by Hibernate, but with the default settings
+            javax.cache.Cache<Object, Object> region = cacheManager.getCache(cache.region());
+            assertNotNull(region, "Region '" + cache.region() + "' isn't configured");
+            CaffeineConfiguration<?, ?> configuration = region.getConfiguration(CaffeineConfiguration.class);
+            assertTrue(configuration.getMaximumSize().isPresent());
+            assertTrue(configuration.getExpireAfterWrite().isPresent());
+        }
+    }
+}
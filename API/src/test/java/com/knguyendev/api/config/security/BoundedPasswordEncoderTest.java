@@ -0,0 +1,215 @@
+package com.knguyendev.api.config.security;
+
+import com.knguyendev.api.controllers.TaskController;
+import com.knguyendev.api.domain.dto.Task.TaskDTO;
+import com.knguyendev.api.exception.ServiceUnavailableException;
+import com.knguyendev.api.services.TaskService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for the BoundedPasswordEncoder class. The delegate encoders either sleep or burn a fixed amount of CPU time,
+ * which lets us simulate slow hashing and a spike of logins without the tests depending on how fast BCrypt is on the
+ * machine.
+ */
+public class BoundedPasswordEncoderTest {
+
+    // Request threads of the simulated server, which the logins and other requests share
+    private static final int REQUEST_THREADS = 8;
+
+    // Keeps the CPU burning loop from being optimized away
+    private static volatile long cpuSink;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder boundedPasswordEncoder;
+    private ExecutorService requestThreads;
+
+    /**
+     * Creates a fake PasswordEncoder where every operation takes 'hashMillis' and a password only matches itself.
+     */
+    private PasswordEncoder createSlowEncoder(long hashMillis) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                sleep(hashMillis);
+                return "hashed:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                sleep(hashMillis);
+                return ("hashed:" + rawPassword).equals(encodedPassword);
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (boundedPasswordEncoder != null) {
+            boundedPasswordEncoder.destroy();
+        }
+        if (requestThreads != null) {
+            requestThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEncodeAndMatches() {
+        // Arrange
+        boundedPasswordEncoder = new BoundedPasswordEncoder(createSlowEncoder(0), 1, 1, Duration.ofSeconds(5), Duration.ofSeconds(2), meterRegistry);
+
+        // Act
+        String hash = boundedPasswordEncoder.encode("Password123");
+
+        // Assert
+        assertEquals("hashed:Password123", hash);
+        assertTrue(boundedPasswordEncoder.matches("Password123", hash));
+        assertFalse(boundedPasswordEncoder.matches("WrongPassword123", hash));
+        assertEquals(1, meterRegistry.get("password.hashing.time").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("password.hashing.time").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    public void testMatchesWhenTooSlow() {
+        // Arrange, a single hash takes longer than we're willing to wait
+        boundedPasswordEncoder = new BoundedPasswordEncoder(createSlowEncoder(500), 1, 1, Duration.ofMillis(50), Duration.ofSeconds(2), meterRegistry);
+
+        // Act
+        ServiceUnavailableException exception = assertThrows(ServiceUnavailableException.class, () -> boundedPasswordEncoder.matches("Password123", "hashed:Password123"));
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+        assertEquals(Duration.ofSeconds(2), exception.getRetryAfter());
+        assertEquals(1, meterRegistry.get("password.hashing.rejected").counter().count());
+    }
+
+    /**
+     * Creates a fake PasswordEncoder where every operation burns 'cpuMillis' of CPU time, like BCrypt does. Unlike
+     * sleeping, this competes for the CPU with everything else, so it slows other requests down the way real hashing does.
+     */
+    private PasswordEncoder createCpuBoundEncoder(long cpuMillis) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                burnCpu(cpuMillis);
+                return "hashed:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                burnCpu(cpuMillis);
+                return ("hashed:" + rawPassword).equals(encodedPassword);
+            }
+        };
+    }
+
+    private static void burnCpu(long cpuMillis) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long end = threadMXBean.getCurrentThreadCpuTime() + TimeUnit.MILLISECONDS.toNanos(cpuMillis);
+        long x = 0;
+        while (threadMXBean.getCurrentThreadCpuTime() < end && !Thread.currentThread().isInterrupted()) {
+            for (int i = 0; i < 10_000; i++) {
+                x = x * 31 + i;
+            }
+        }
+        cpuSink = x;
+    }
+
+    /**
+     * Fires 'logins' concurrent logins at a pool of request threads, and sends a request to a task endpoint right after
+     * them on the same pool, like Tomcat handles requests in the order they arrive.
+     * @return How long the task request took, from being sent until its response
+     */
+    private long timeTaskRequestDuringLoginSpike(PasswordEncoder passwordEncoder, int logins, AtomicInteger succeeded,
+                                                 AtomicInteger rejected) throws Exception {
+        TaskService taskService = mock(TaskService.class);
+        when(taskService.findById(1L)).thenReturn(TaskDTO.builder().id(1L).title("My Task").build());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new TaskController(taskService)).build();
+        // Warm up, so the first request's setup isn't counted
+        mockMvc.perform(get("/api/v1/tasks/1")).andExpect(status().isOk());
+
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+        List<Future<?>> loginRequests = new ArrayList<>();
+        for (int i = 0; i < logins; i++) {
+            loginRequests.add(requestThreads.submit(() -> {
+                try {
+                    passwordEncoder.matches("Password123", "hashed:Password123");
+                    succeeded.incrementAndGet();
+                } catch (ServiceUnavailableException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+
+        long taskRequestStart = System.nanoTime();
+        requestThreads.submit(() -> mockMvc.perform(get("/api/v1/tasks/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("My Task"))).get(30, TimeUnit.SECONDS);
+        long taskRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - taskRequestStart);
+
+        for (Future<?> loginRequest : loginRequests) {
+            loginRequest.get(30, TimeUnit.SECONDS);
+        }
+        requestThreads.shutdownNow();
+        return taskRequestMillis;
+    }
+
+    /**
+     * Simulates a spike of 40 concurrent logins, each hash taking 50ms of CPU, on 8 request threads (Tomcat has at most
+     * 200, so a real spike can outnumber them just the same) and a hashing pool of 2 threads and a queue of 2. The logins
+     * beyond what the pool and queue can hold should fail fast, freeing their request threads, so a task request that
+     * arrives during the spike is still served promptly. The same spike against the unbounded encoder shows that the task
+     * request would otherwise wait for the logins.
+     */
+    @Test
+    public void testLoginSpikeFailsFastAndOtherRequestsStayResponsive() throws Exception {
+        // Arrange
+        int logins = 40;
+        PasswordEncoder cpuBoundEncoder = createCpuBoundEncoder(50);
+        boundedPasswordEncoder = new BoundedPasswordEncoder(cpuBoundEncoder, 2, 2, Duration.ofSeconds(5), Duration.ofSeconds(2), meterRegistry);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+
+        // Act
+        long unboundedMillis = timeTaskRequestDuringLoginSpike(cpuBoundEncoder, logins, new AtomicInteger(), new AtomicInteger());
+        long boundedMillis = timeTaskRequestDuringLoginSpike(boundedPasswordEncoder, logins, succeeded, rejected);
+
+        // Assert that only what the pool and queue could hold got hashed, and the rest were told to retry later
+        assertTrue(succeeded.get() >= 2 && succeeded.get() <= 4, "Expected between 2 and 4 successful logins, got " + succeeded.get());
+        assertEquals(logins, succeeded.get() + rejected.get());
+        assertEquals(rejected.get(), (int) meterRegistry.get("password.hashing.rejected").counter().count());
+
+        // Without the bound, the task request waits behind at least (40 - 8) / 8 rounds of hashing; with it, it doesn't
+        assertTrue(unboundedMillis >= 4 * 50, "Unbounded task request took only " + unboundedMillis + "ms");
+        assertTrue(boundedMillis < unboundedMillis / 2,
+                "Task request took " + boundedMillis + "ms during the login spike, and " + unboundedMillis + "ms without the bound");
+    }
+}
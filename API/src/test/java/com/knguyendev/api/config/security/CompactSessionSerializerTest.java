@@ -0,0 +1,128 @@
+package com.knguyendev.api.config.security;
+
+import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.User.UserDetailsImpl;
+import com.knguyendev.api.domain.entities.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CompactSessionSerializer class
+ */
+public class CompactSessionSerializerTest {
+
+    private final CompactSessionSerializer serializer = new CompactSessionSerializer();
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    private SecurityContext createSecurityContext(Object principal) {
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(principal, null, new UserDetailsImpl(TestUtil.createSavedUserA()).getAuthorities()));
+    }
+
+    @Test
+    public void testSecurityContextRoundTrip() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        SecurityContext context = createSecurityContext(new UserDetailsImpl(userA));
+
+        // Act
+        SecurityContext result = (SecurityContext) serializer.deserialize(serializer.serialize(context));
+
+        // Assert that everything that identifies the user survived, but the password hash and entity didn't
+        assertNotNull(result);
+        UserDetailsImpl principal = (UserDetailsImpl) result.getAuthentication().getPrincipal();
+        assertTrue(result.getAuthentication().isAuthenticated());
+        assertEquals(userA.getId(), principal.getId());
+        assertEquals(userA.getUsername(), principal.getUsername());
+        assertEquals(userA.getRole(), principal.getRole());
+        assertEquals(context.getAuthentication().getAuthorities(), result.getAuthentication().getAuthorities());
+        assertNull(principal.getPassword());
+        assertNull(principal.getUser());
+    }
+
+    @Test
+    public void testSessionMetadataRoundTrip() {
+        // Act and Assert
+        assertEquals(1723000000000L, serializer.deserialize(serializer.serialize(1723000000000L)));
+        assertEquals(900, serializer.deserialize(serializer.serialize(900)));
+        assertEquals("value", serializer.deserialize(serializer.serialize("value")));
+        assertEquals(11, serializer.serialize(1723000000000L).length);
+    }
+
+    @Test
+    public void testOtherValuesUseJdkSerialization() {
+        // Arrange
+        Map<String, String> value = new HashMap<>(Map.of("key", "value"));
+
+        // Act
+        byte[] bytes = serializer.serialize(value);
+
+        // Assert
+        assertEquals((byte) 0xAC, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testUnreadableValuesAreIgnored() {
+        // Act and Assert
+        assertNull(serializer.deserialize(new byte[] {(byte) 0xAC, (byte) 0xED, 0, 5, 1, 2, 3}));
+        assertNull(serializer.deserialize(new byte[] {CompactSessionSerializer.FORMAT_MARKER, 99, 1}));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void testSecurityContextIsSmallerThanJdkSerialization() {
+        // Arrange, the previous layout stored the whole UserEntity in the principal
+        UserEntity userA = TestUtil.createSavedUserA();
+        byte[] previous = jdkSerializer.serialize(createSecurityContext(userA));
+
+        // Act
+        byte[] compact = serializer.serialize(createSecurityContext(new UserDetailsImpl(userA)));
+
+        // Assert
+        assertTrue(compact.length < 64, "Compact security context was " + compact.length + " bytes");
+        assertTrue(compact.length * 10 < previous.length, "Compact: " + compact.length + " bytes, previous: " + previous.length + " bytes");
+    }
+
+    /**
+     * Compares bytes per session and the time to read a session, which happens on every authenticated request. Run with:
+     * <pre>
+     *     mvn test -Dtest=CompactSessionSerializerTest -Dbenchmark=true
+     * </pre>
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkSessionSerialization() {
+        UserEntity userA = TestUtil.createSavedUserA();
+        byte[] previous = jdkSerializer.serialize(createSecurityContext(userA));
+        byte[] compact = serializer.serialize(createSecurityContext(new UserDetailsImpl(userA)));
+
+        int iterations = 200_000;
+        long previousNanos = timeDeserialization(() -> jdkSerializer.deserialize(previous), iterations);
+        long compactNanos = timeDeserialization(() -> serializer.deserialize(compact), iterations);
+
+        System.out.printf("%-8s %14s %20s%n", "format", "bytes/session", "ns/deserialization");
+        System.out.printf("%-8s %14d %20d%n", "jdk", previous.length, previousNanos / iterations);
+        System.out.printf("%-8s %14d %20d%n", "compact", compact.length, compactNanos / iterations);
+    }
+
+    private long timeDeserialization(Runnable deserialization, int iterations) {
+        // Warm up so that the JIT has compiled both paths before we measure
+        for (int i = 0; i < iterations; i++) {
+            deserialization.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            deserialization.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,71 @@
+package com.knguyendev.api.config.security;
+
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory stand-in for the RedisIndexedSessionRepository, for tests that can't connect to Redis. Like Redis, it hands
+ * out copies of the stored sessions, and it counts the calls made to it so tests can check how often Redis would be hit.
+ */
+public class InMemoryIndexedSessionRepository implements FindByIndexNameSessionRepository<MapSession> {
+    private final Map<String, MapSession> sessions = new ConcurrentHashMap<>();
+    private int findByIdCount;
+    private int saveCount;
+
+    @Override
+    public MapSession createSession() {
+        return new MapSession();
+    }
+
+    @Override
+    public void save(MapSession session) {
+        saveCount++;
+        if (!session.getId().equals(session.getOriginalId())) {
+            sessions.remove(session.getOriginalId());
+        }
+        sessions.put(session.getId(), new MapSession(session));
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        findByIdCount++;
+        MapSession session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        if (session.isExpired()) {
+            sessions.remove(id);
+            return null;
+        }
+        return new MapSession(session);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public Map<String, MapSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        return sessions.values()
+                .stream()
+                .filter(session -> indexValue.equals(session.getAttribute(PRINCIPAL_NAME_INDEX_NAME)))
+                .collect(Collectors.toMap(MapSession::getId, MapSession::new));
+    }
+
+    public MapSession getStored(String id) {
+        return sessions.get(id);
+    }
+
+    public int getFindByIdCount() {
+        return findByIdCount;
+    }
+
+    public int getSaveCount() {
+        return saveCount;
+    }
+}
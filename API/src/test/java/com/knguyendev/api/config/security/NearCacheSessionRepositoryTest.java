@@ -0,0 +1,154 @@
+package com.knguyendev.api.config.security;
+
+import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.User.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.session.MapSession;
+import org.springframework.session.events.SessionDeletedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the NearCacheSessionRepository class, using an in-memory stand-in for Redis.
+ */
+public class NearCacheSessionRepositoryTest {
+    private static final String SECURITY_CONTEXT_ATTRIBUTE = "SPRING_SECURITY_CONTEXT";
+
+    private InMemoryIndexedSessionRepository redis;
+    private NearCacheSessionRepository<MapSession> sessionRepository;
+
+    @BeforeEach
+    public void setUp() {
+        redis = new InMemoryIndexedSessionRepository();
+        sessionRepository = new NearCacheSessionRepository<>(redis, 100, Duration.ofMinutes(10), Duration.ofSeconds(60), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates and saves a session for an authenticated user, like a login does.
+     */
+    private String createLoggedInSession(Instant now) {
+        NearCacheSessionRepository<MapSession>.CachedSession session = sessionRepository.createSession();
+        session.setLastAccessedTime(now);
+        UserDetailsImpl principal = new UserDetailsImpl(TestUtil.createSavedUserA());
+        session.setAttribute(SECURITY_CONTEXT_ATTRIBUTE, new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities())
+        ));
+        sessionRepository.save(session);
+        return session.getId();
+    }
+
+    @Test
+    public void testSteadyStateRequestsRarelyHitRedis() {
+        // Arrange
+        Instant now = Instant.now();
+        String sessionId = createLoggedInSession(now);
+        int loadsBefore = redis.getFindByIdCount();
+        int savesBefore = redis.getSaveCount();
+
+        // Act, simulate 120 requests a second apart, each loading, touching, and saving the session like Spring Session does
+        int requests = 120;
+        for (int i = 1; i <= requests; i++) {
+            NearCacheSessionRepository<MapSession>.CachedSession session = sessionRepository.findById(sessionId);
+            assertNotNull(session);
+            assertNotNull(session.getAttribute(SECURITY_CONTEXT_ATTRIBUTE));
+            session.setLastAccessedTime(now.plusSeconds(i));
+            sessionRepository.save(session);
+        }
+
+        // Assert that the access time was only written once every touch interval (and loaded again to do so)
+        int loads = redis.getFindByIdCount() - loadsBefore;
+        int saves = redis.getSaveCount() - savesBefore;
+        assertEquals(2, saves);
+        assertTrue((double) loads / requests < 0.05, "Expected few loads per request, got " + loads + " loads for " + requests + " requests");
+        assertEquals(now.plusSeconds(120), redis.getStored(sessionId).getLastAccessedTime());
+    }
+
+    @Test
+    public void testChangesArePromotedAndSaved() {
+        // Arrange
+        String sessionId = createLoggedInSession(Instant.now());
+
+        // Act
+        NearCacheSessionRepository<MapSession>.CachedSession session = sessionRepository.findById(sessionId);
+        session.setAttribute("key", "value");
+        sessionRepository.save(session);
+
+        // Assert that the change reached Redis, and that the cache has the new version
+        assertEquals("value", redis.getStored(sessionId).getAttribute("key"));
+        int loadsBefore = redis.getFindByIdCount();
+        assertEquals("value", sessionRepository.findById(sessionId).getAttribute("key"));
+        assertEquals(loadsBefore, redis.getFindByIdCount());
+    }
+
+    @Test
+    public void testChangeSessionId() {
+        // Arrange
+        String sessionId = createLoggedInSession(Instant.now());
+
+        // Act
+        NearCacheSessionRepository<MapSession>.CachedSession session = sessionRepository.findById(sessionId);
+        String newSessionId = session.changeSessionId();
+        sessionRepository.save(session);
+
+        // Assert
+        assertNotEquals(sessionId, newSessionId);
+        assertNull(sessionRepository.findById(sessionId));
+        assertNotNull(sessionRepository.findById(newSessionId));
+    }
+
+    @Test
+    public void testDeleteByIdEvicts() {
+        // Arrange
+        String sessionId = createLoggedInSession(Instant.now());
+
+        // Act
+        sessionRepository.deleteById(sessionId);
+
+        // Assert
+        assertNull(sessionRepository.findById(sessionId));
+    }
+
+    @Test
+    public void testSessionDestroyedEventEvicts() {
+        // Arrange, simulate another instance deleting the session directly in Redis
+        String sessionId = createLoggedInSession(Instant.now());
+        MapSession deletedSession = redis.getStored(sessionId);
+        redis.deleteById(sessionId);
+        assertNotNull(sessionRepository.findById(sessionId));
+
+        // Act
+        sessionRepository.onSessionDestroyed(new SessionDeletedEvent(this, deletedSession));
+
+        // Assert
+        assertNull(sessionRepository.findById(sessionId));
+    }
+
+    @Test
+    public void testRequestsGetTheirOwnSecurityContext() {
+        // Arrange
+        String sessionId = createLoggedInSession(Instant.now());
+
+        // Act, simulate one request logging out, which clears its SecurityContext in place
+        SecurityContext first = sessionRepository.findById(sessionId).getAttribute(SECURITY_CONTEXT_ATTRIBUTE);
+        first.setAuthentication(null);
+        SecurityContext second = sessionRepository.findById(sessionId).getAttribute(SECURITY_CONTEXT_ATTRIBUTE);
+
+        // Assert
+        assertNotNull(second.getAuthentication());
+    }
+
+    @Test
+    public void testTouchIntervalLongerThanTimeToLiveIsRejected() {
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> new NearCacheSessionRepository<>(redis, 100,
+                Duration.ofSeconds(30), Duration.ofSeconds(60), new SimpleMeterRegistry()));
+    }
+}
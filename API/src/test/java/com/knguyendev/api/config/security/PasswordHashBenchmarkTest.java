@@ -0,0 +1,51 @@
+package com.knguyendev.api.config.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Benchmark for picking the 'spring.custom.passwordHashing.encodingId'. For every encoder in 'PasswordConfig' it reports
+ * how many hashes a single core can do per second, and roughly how many logins per second the whole machine can handle.
+ * <p>
+ * It's slow, so it only runs when asked for, which should be done on the production hardware:
+ * <pre>
+ *     mvn test -Dtest=PasswordHashBenchmarkTest -Dbenchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PasswordHashBenchmarkTest {
+
+    private static final String PASSWORD = "Benchmark_Password123";
+    private static final long MEASURE_MILLIS = 3000;
+
+    @Test
+    public void benchmarkPasswordEncoders() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Password hashing benchmark (%d cores)%n", cores);
+        System.out.printf("%-10s %12s %16s %18s%n", "encoder", "ms/hash", "hashes/s/core", "hashes/s (total)");
+
+        for (Map.Entry<String, PasswordEncoder> entry : new TreeMap<>(PasswordConfig.createEncoders()).entrySet()) {
+            PasswordEncoder encoder = entry.getValue();
+            String hash = encoder.encode(PASSWORD);
+
+            // Warm up, then time verifications (which is what a login does) for a fixed amount of time on one thread
+            encoder.matches(PASSWORD, hash);
+            int count = 0;
+            long start = System.nanoTime();
+            long elapsedNanos;
+            do {
+                encoder.matches(PASSWORD, hash);
+                count++;
+                elapsedNanos = System.nanoTime() - start;
+            } while (elapsedNanos < MEASURE_MILLIS * 1_000_000);
+
+            double millisPerHash = elapsedNanos / 1_000_000.0 / count;
+            double hashesPerSecondPerCore = 1000.0 / millisPerHash;
+            System.out.printf("%-10s %12.1f %16.1f %18.1f%n", entry.getKey(), millisPerHash, hashesPerSecondPerCore, hashesPerSecondPerCore * cores);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knguyendev.api.exception.ServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the AuthRateLimitFilter class
+ */
+@ExtendWith(MockitoExtension.class)
+public class AuthRateLimitFilterTest {
+
+    @Mock
+    private HandlerExceptionResolver resolver;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AuthRateLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        // 3 requests per IP and 2 logins per username, both refilling slowly enough to not matter during the test
+        filter = new AuthRateLimitFilter(
+                new LocalTokenBucketRateLimiter(100, Duration.ofHours(1)),
+                resolver,
+                meterRegistry,
+                new ObjectMapper(),
+                3,
+                Duration.ofHours(1),
+                2,
+                Duration.ofHours(1)
+        );
+    }
+
+    private MockHttpServletRequest createRequest(String path, String remoteAddr, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddr);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockFilterChain doFilter(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return chain;
+    }
+
+    @Test
+    public void testLoginWhenAllowedKeepsBodyReadable() throws Exception {
+        // Arrange
+        String body = "{\"username\": \"userA\", \"password\": \"Password123\"}";
+        MockHttpServletRequest request = createRequest("/api/v1/auth/login", "10.0.0.1", body);
+
+        // Act
+        MockFilterChain chain = doFilter(request, new MockHttpServletResponse());
+
+        // Assert that the request went through, and that the controller can still read the body
+        assertNotNull(chain.getRequest());
+        assertEquals(body, new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        verifyNoInteractions(resolver);
+    }
+
+    @Test
+    public void testLoginWhenUsernameLimited() throws Exception {
+        // Arrange, the same username from different IPs
+        String body = "{\"username\": \" UserA \", \"password\": \"Password123\"}";
+        doFilter(createRequest("/api/v1/auth/login", "10.0.0.1", body), new MockHttpServletResponse());
+        doFilter(createRequest("/api/v1/auth/login", "10.0.0.2", body), new MockHttpServletResponse());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        MockFilterChain chain = doFilter(createRequest("/api/v1/auth/login", "10.0.0.3", "{\"username\": \"usera\"}"), response);
+
+        // Assert
+        assertNull(chain.getRequest());
+        assertNotNull(response.getHeader(HttpHeaders.RETRY_AFTER));
+        ArgumentCaptor<Exception> exceptionCaptor = ArgumentCaptor.forClass(Exception.class);
+        verify(resolver).resolveException(any(), any(), isNull(), exceptionCaptor.capture());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, ((ServiceException) exceptionCaptor.getValue()).getHttpStatus());
+        assertEquals(1, meterRegistry.get("auth.ratelimit.rejected").tag("limitedBy", "username").counter().count());
+    }
+
+    @Test
+    public void testRegisterWhenIpLimited() throws Exception {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            doFilter(createRequest("/api/v1/auth/register", "10.0.0.1", "{}"), new MockHttpServletResponse());
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        MockFilterChain chain = doFilter(createRequest("/api/v1/auth/register", "10.0.0.1", "{}"), response);
+
+        // Assert
+        assertNull(chain.getRequest());
+        assertEquals(1, meterRegistry.get("auth.ratelimit.rejected").tag("limitedBy", "ip").counter().count());
+    }
+
+    @Test
+    public void testOtherEndpointsAreNotLimited() throws Exception {
+        // Act
+        for (int i = 0; i < 5; i++) {
+            MockFilterChain chain = doFilter(createRequest("/api/v1/tasks", "10.0.0.1", "{}"), new MockHttpServletResponse());
+
+            // Assert
+            assertNotNull(chain.getRequest());
+        }
+        verifyNoInteractions(resolver);
+    }
+}
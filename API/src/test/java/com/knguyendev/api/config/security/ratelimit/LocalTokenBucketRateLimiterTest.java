@@ -0,0 +1,87 @@
+package com.knguyendev.api.config.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LocalTokenBucketRateLimiter class
+ */
+public class LocalTokenBucketRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final LocalTokenBucketRateLimiter rateLimiter = new LocalTokenBucketRateLimiter(100, Duration.ofMinutes(1), now::get);
+
+    @Test
+    public void testAllowsBurstUpToCapacity() {
+        // Act and Assert
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.tryAcquire("key", 3, Duration.ofSeconds(3)).allowed());
+        }
+        RateLimitDecision decision = rateLimiter.tryAcquire("key", 3, Duration.ofSeconds(3));
+        assertFalse(decision.allowed());
+        assertEquals(Duration.ofSeconds(1), decision.retryAfter());
+    }
+
+    @Test
+    public void testRefillsOverTime() {
+        // Arrange, empty the bucket
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("key", 3, Duration.ofSeconds(3));
+        }
+
+        // Act, one token is refilled every second
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        // Assert
+        assertTrue(rateLimiter.tryAcquire("key", 3, Duration.ofSeconds(3)).allowed());
+        assertFalse(rateLimiter.tryAcquire("key", 3, Duration.ofSeconds(3)).allowed());
+    }
+
+    @Test
+    public void testKeysHaveSeparateBuckets() {
+        // Arrange
+        rateLimiter.tryAcquire("keyA", 1, Duration.ofMinutes(1));
+
+        // Act and Assert
+        assertFalse(rateLimiter.tryAcquire("keyA", 1, Duration.ofMinutes(1)).allowed());
+        assertTrue(rateLimiter.tryAcquire("keyB", 1, Duration.ofMinutes(1)).allowed());
+    }
+
+    @Test
+    public void testConcurrentRequestsNeverExceedCapacity() throws Exception {
+        // Arrange
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+
+        // Act, many threads race for the 50 tokens of a single bucket
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 20; j++) {
+                        if (rateLimiter.tryAcquire("key", 50, Duration.ofMinutes(1)).allowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(50, allowed.get());
+    }
+}
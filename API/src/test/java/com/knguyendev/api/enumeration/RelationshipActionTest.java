@@ -0,0 +1,74 @@
+package com.knguyendev.api.enumeration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static com.knguyendev.api.enumeration.UserRelationshipStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the transitions that each RelationshipAction allows
+ */
+public class RelationshipActionTest {
+
+    @Test
+    public void testRequestOnlyCreatesRelationships() {
+        RelationshipAction.Transitions asFirstUser = RelationshipAction.REQUEST.getTransitions(true);
+        RelationshipAction.Transitions asSecondUser = RelationshipAction.REQUEST.getTransitions(false);
+
+        assertEquals(PENDING_FIRST_SECOND, asFirstUser.getInsertStatus());
+        assertEquals(PENDING_SECOND_FIRST, asSecondUser.getInsertStatus());
+        for (UserRelationshipStatus status : UserRelationshipStatus.values()) {
+            assertFalse(asFirstUser.isAllowedFrom(status));
+            assertFalse(asSecondUser.isAllowedFrom(status));
+        }
+    }
+
+    @Test
+    public void testAcceptOnlyFromRequestSentByOtherUser() {
+        RelationshipAction.Transitions asFirstUser = RelationshipAction.ACCEPT.getTransitions(true);
+        RelationshipAction.Transitions asSecondUser = RelationshipAction.ACCEPT.getTransitions(false);
+
+        assertEquals(Map.of(PENDING_SECOND_FIRST, FRIENDS), asFirstUser.getUpdates());
+        assertEquals(Map.of(PENDING_FIRST_SECOND, FRIENDS), asSecondUser.getUpdates());
+        assertFalse(asFirstUser.isAllowedFrom(null));
+        assertFalse(asFirstUser.isAllowedFrom(PENDING_FIRST_SECOND));
+    }
+
+    @Test
+    public void testDeclineAndUnfriendDeleteRelationships() {
+        assertEquals(Set.of(PENDING_FIRST_SECOND, PENDING_SECOND_FIRST), RelationshipAction.DECLINE.getTransitions(true).getDeletes());
+        assertEquals(Set.of(PENDING_FIRST_SECOND, PENDING_SECOND_FIRST), RelationshipAction.DECLINE.getTransitions(false).getDeletes());
+        assertEquals(Set.of(FRIENDS), RelationshipAction.UNFRIEND.getTransitions(false).getDeletes());
+        assertTrue(RelationshipAction.UNFRIEND.getTransitions(false).getUpdates().isEmpty());
+    }
+
+    @Test
+    public void testBlockAsSecondUser() {
+        RelationshipAction.Transitions transitions = RelationshipAction.BLOCK.getTransitions(false);
+
+        assertEquals(BLOCK_SECOND_FIRST, transitions.getInsertStatus());
+        assertEquals(BLOCK_SECOND_FIRST, transitions.getUpdates().get(FRIENDS));
+        assertEquals(BLOCK_SECOND_FIRST, transitions.getUpdates().get(PENDING_FIRST_SECOND));
+        // The other user had already blocked them, so now they've blocked each other
+        assertEquals(BLOCK_BOTH, transitions.getUpdates().get(BLOCK_FIRST_SECOND));
+        // They can't block someone they've already blocked
+        assertFalse(transitions.isAllowedFrom(BLOCK_SECOND_FIRST));
+        assertFalse(transitions.isAllowedFrom(BLOCK_BOTH));
+    }
+
+    @Test
+    public void testUnblockAsFirstUser() {
+        RelationshipAction.Transitions transitions = RelationshipAction.UNBLOCK.getTransitions(true);
+
+        assertNull(transitions.getInsertStatus());
+        assertEquals(Set.of(BLOCK_FIRST_SECOND), transitions.getDeletes());
+        assertEquals(Map.of(BLOCK_BOTH, BLOCK_SECOND_FIRST), transitions.getUpdates());
+        // They can't unblock someone they haven't blocked
+        assertFalse(transitions.isAllowedFrom(null));
+        assertFalse(transitions.isAllowedFrom(BLOCK_SECOND_FIRST));
+        assertFalse(transitions.isAllowedFrom(FRIENDS));
+    }
+}
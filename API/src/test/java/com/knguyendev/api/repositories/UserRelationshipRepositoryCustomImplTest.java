@@ -0,0 +1,44 @@
+package com.knguyendev.api.repositories;
+
+import com.knguyendev.api.enumeration.RelationshipAction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the statements built for each relationship action. Running them is covered by 'UserRelationshipRepositoryIT'.
+ */
+public class UserRelationshipRepositoryCustomImplTest {
+
+    @Test
+    public void testRequestInsertsOrDoesNothing() {
+        String sql = UserRelationshipRepositoryCustomImpl.buildSql(RelationshipAction.REQUEST.getTransitions(true));
+        assertTrue(sql.startsWith("INSERT INTO UserRelationship"));
+        assertTrue(sql.contains("'PENDING_FIRST_SECOND'"));
+        assertTrue(sql.contains("DO NOTHING"));
+    }
+
+    @Test
+    public void testBlockInsertsOrUpdatesAllowedStatuses() {
+        String sql = UserRelationshipRepositoryCustomImpl.buildSql(RelationshipAction.BLOCK.getTransitions(false));
+        assertTrue(sql.startsWith("INSERT INTO UserRelationship"));
+        assertTrue(sql.contains("DO UPDATE SET status = CASE UserRelationship.status"));
+        assertTrue(sql.contains("WHEN 'BLOCK_FIRST_SECOND' THEN 'BLOCK_BOTH'"));
+        assertFalse(sql.contains("WHEN 'BLOCK_SECOND_FIRST'"));
+    }
+
+    @Test
+    public void testUnblockUpdatesOrDeletesInOneStatement() {
+        String sql = UserRelationshipRepositoryCustomImpl.buildSql(RelationshipAction.UNBLOCK.getTransitions(true));
+        assertTrue(sql.startsWith("WITH updated AS (UPDATE"));
+        assertTrue(sql.contains("deleted AS (DELETE FROM UserRelationship"));
+        assertTrue(sql.contains("WHEN 'BLOCK_BOTH' THEN 'BLOCK_SECOND_FIRST'"));
+    }
+
+    @Test
+    public void testUnfriendOnlyDeletes() {
+        String sql = UserRelationshipRepositoryCustomImpl.buildSql(RelationshipAction.UNFRIEND.getTransitions(true));
+        assertTrue(sql.startsWith("DELETE FROM UserRelationship"));
+        assertTrue(sql.endsWith("status IN ('FRIENDS') RETURNING status"));
+    }
+}
@@ -2,13 +2,21 @@ package com.knguyendev.api.repositories;
 
 
 import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.UserRelationship.RelationshipChange;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
+import com.knguyendev.api.enumeration.RelationshipAction;
+import com.knguyendev.api.enumeration.RelationshipFilter;
 import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,11 +31,34 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class UserRelationshipRepositoryIT {
     private final UserRelationshipRepository underTest;
     private final UserRepository userRepository;
+    private final Statistics statistics;
 
     @Autowired
-    public UserRelationshipRepositoryIT(UserRepository userRepository, UserRelationshipRepository underTest) {
+    public UserRelationshipRepositoryIT(UserRepository userRepository, UserRelationshipRepository underTest, EntityManagerFactory entityManagerFactory) {
         this.userRepository = userRepository;
         this.underTest = underTest;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Saves userA, with a 'FRIENDS' relationship to each of 'friendCount' other users.
+     * @return userA
+     */
+    private UserEntity saveUserWithFriends(int friendCount) {
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        for (int i = 0; i < friendCount; i++) {
+            UserEntity friend = TestUtil.createSavedUserB();
+            friend.setId(null);
+            friend.setUsername("friend" + i);
+            friend.setEmail("friend" + i + "@gmail.com");
+            friend = userRepository.save(friend);
+            underTest.save(UserRelationshipEntity.builder()
+                    .firstUser(userA)
+                    .secondUser(friend)
+                    .status(UserRelationshipStatus.FRIENDS)
+                    .build());
+        }
+        return userA;
     }
 
     @Test
@@ -232,4 +263,145 @@ public class UserRelationshipRepositoryIT {
         List<UserRelationshipEntity> relationships = underTest.findByUserId(userA.getId());
         assertThat(relationships.size()).isEqualTo(0);
     }
+
+    @Test
+    public void testFindByUserIdUsesOneQuery() {
+        // Arrange
+        UserEntity userA = saveUserWithFriends(1000);
+        statistics.clear();
+
+        // Act
+        List<UserRelationshipEntity> relationships = underTest.findByUserId(userA.getId());
+
+        // Assert; the users are fetched in the same query rather than with a select each
+        assertThat(relationships.size()).isEqualTo(1000);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindRowPageByUserIdUsesOneQuery() {
+        // Arrange
+        UserEntity userA = saveUserWithFriends(1000);
+        statistics.clear();
+
+        // Act
+        List<UserRelationshipRow> rows = underTest.findRowPageByUserId(userA.getId(),
+                RelationshipFilter.FRIENDS.getStatusesAsFirstUser(), RelationshipFilter.FRIENDS.getStatusesAsSecondUser(),
+                0L, Limit.of(1001));
+
+        // Assert
+        assertThat(rows.size()).isEqualTo(1000);
+        assertThat(rows).allMatch(row -> row.getFirstUserId().equals(userA.getId()) && row.getStatus() == UserRelationshipStatus.FRIENDS);
+        assertThat(rows).extracting(UserRelationshipRow::getSecondUsername).contains("friend0", "friend999");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindRowPageByUserIdFiltersAndPages() {
+        // Arrange; userB has sent userA a request, userA sent userC and userD requests
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        UserEntity userB = userRepository.save(TestUtil.createSavedUserB());
+        UserEntity userC = userRepository.save(TestUtil.createSavedUserC());
+        UserEntity userD = userRepository.save(TestUtil.createSavedUserD());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userB).status(UserRelationshipStatus.PENDING_SECOND_FIRST).build());
+        UserRelationshipEntity relationshipAC = underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userC).status(UserRelationshipStatus.PENDING_FIRST_SECOND).build());
+        UserRelationshipEntity relationshipAD = underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userD).status(UserRelationshipStatus.PENDING_FIRST_SECOND).build());
+        RelationshipFilter outgoing = RelationshipFilter.OUTGOING;
+
+        // Act
+        List<UserRelationshipRow> firstPage = underTest.findRowPageByUserId(userA.getId(), outgoing.getStatusesAsFirstUser(), outgoing.getStatusesAsSecondUser(), 0L, Limit.of(1));
+        List<UserRelationshipRow> secondPage = underTest.findRowPageByUserId(userA.getId(), outgoing.getStatusesAsFirstUser(), outgoing.getStatusesAsSecondUser(), firstPage.get(0).getId(), Limit.of(1));
+
+        // Assert
+        assertThat(firstPage).extracting(UserRelationshipRow::getId).containsExactly(relationshipAC.getId());
+        assertThat(secondPage).extracting(UserRelationshipRow::getId).containsExactly(relationshipAD.getId());
+    }
+
+    @Test
+    public void testCountByUserIdCountsIncomingRequests() {
+        // Arrange; userA and userC have sent userB requests, and userB has sent userD one
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        UserEntity userB = userRepository.save(TestUtil.createSavedUserB());
+        UserEntity userC = userRepository.save(TestUtil.createSavedUserC());
+        UserEntity userD = userRepository.save(TestUtil.createSavedUserD());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userB).status(UserRelationshipStatus.PENDING_FIRST_SECOND).build());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userB).secondUser(userC).status(UserRelationshipStatus.PENDING_SECOND_FIRST).build());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userB).secondUser(userD).status(UserRelationshipStatus.PENDING_FIRST_SECOND).build());
+
+        // Act
+        long count = underTest.countByUserId(userB.getId(), RelationshipFilter.INCOMING.getStatusesAsFirstUser(), RelationshipFilter.INCOMING.getStatusesAsSecondUser());
+
+        // Assert
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    public void testApplyActionCreatesOnlyOneFriendRequest() {
+        // Arrange
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        UserEntity userB = userRepository.save(TestUtil.createSavedUserB());
+
+        // Act; the second request is rejected instead of violating the unique constraint
+        Optional<UserRelationshipStatus> first = underTest.applyAction(RelationshipAction.REQUEST, userA.getId(), userB.getId(), true);
+        Optional<UserRelationshipStatus> second = underTest.applyAction(RelationshipAction.REQUEST, userA.getId(), userB.getId(), false);
+
+        // Assert
+        assertThat(first).contains(UserRelationshipStatus.PENDING_FIRST_SECOND);
+        assertThat(second).isEmpty();
+        assertThat(underTest.findByFirstUserIdAndSecondUserId(userA.getId(), userB.getId()))
+                .map(UserRelationshipEntity::getStatus)
+                .contains(UserRelationshipStatus.PENDING_FIRST_SECOND);
+    }
+
+    @Test
+    public void testApplyActionDoesNotCreateRelationshipWithMissingUser() {
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+
+        Optional<UserRelationshipStatus> result = underTest.applyAction(RelationshipAction.BLOCK, userA.getId(), userA.getId() + 1000, true);
+
+        assertThat(result).isEmpty();
+        assertThat(underTest.count()).isZero();
+    }
+
+    @Test
+    public void testApplyActionBlocksAndUnblocks() {
+        // Arrange; userA and userB are friends
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        UserEntity userB = userRepository.save(TestUtil.createSavedUserB());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userB).status(UserRelationshipStatus.FRIENDS).build());
+
+        // Act and Assert; both users block each other, then they unblock each other one at a time
+        assertThat(underTest.applyAction(RelationshipAction.BLOCK, userA.getId(), userB.getId(), true)).contains(UserRelationshipStatus.BLOCK_FIRST_SECOND);
+        assertThat(underTest.applyAction(RelationshipAction.BLOCK, userA.getId(), userB.getId(), true)).isEmpty();
+        assertThat(underTest.applyAction(RelationshipAction.BLOCK, userA.getId(), userB.getId(), false)).contains(UserRelationshipStatus.BLOCK_BOTH);
+        assertThat(underTest.applyAction(RelationshipAction.UNBLOCK, userA.getId(), userB.getId(), true)).contains(UserRelationshipStatus.BLOCK_SECOND_FIRST);
+        assertThat(underTest.applyAction(RelationshipAction.UNBLOCK, userA.getId(), userB.getId(), true)).isEmpty();
+        assertThat(underTest.applyAction(RelationshipAction.UNBLOCK, userA.getId(), userB.getId(), false)).contains(UserRelationshipStatus.BLOCK_SECOND_FIRST);
+        assertThat(underTest.findByFirstUserIdAndSecondUserId(userA.getId(), userB.getId())).isEmpty();
+    }
+
+    @Test
+    public void testApplyChangesOnlyAppliesExpectedStatuses() {
+        // Arrange; userA is friends with userB, and has blocked userC
+        UserEntity userA = userRepository.save(TestUtil.createSavedUserA());
+        UserEntity userB = userRepository.save(TestUtil.createSavedUserB());
+        UserEntity userC = userRepository.save(TestUtil.createSavedUserC());
+        UserEntity userD = userRepository.save(TestUtil.createSavedUserD());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userB).status(UserRelationshipStatus.FRIENDS).build());
+        underTest.save(UserRelationshipEntity.builder().firstUser(userA).secondUser(userC).status(UserRelationshipStatus.BLOCK_FIRST_SECOND).build());
+
+        // Act; the change to userC expects a status it doesn't have, so it isn't applied
+        boolean[] applied = underTest.applyChanges(List.of(
+                new RelationshipChange(userA.getId(), userB.getId(), UserRelationshipStatus.FRIENDS, UserRelationshipStatus.BLOCK_FIRST_SECOND),
+                new RelationshipChange(userA.getId(), userC.getId(), UserRelationshipStatus.FRIENDS, UserRelationshipStatus.BLOCK_FIRST_SECOND),
+                new RelationshipChange(userA.getId(), userD.getId(), null, UserRelationshipStatus.PENDING_FIRST_SECOND),
+                new RelationshipChange(userA.getId(), userD.getId(), null, UserRelationshipStatus.BLOCK_FIRST_SECOND)
+        ));
+
+        // Assert; only the first insert of the same relationship is applied
+        assertThat(applied).containsExactly(true, false, true, false);
+        assertThat(underTest.findStatusesWithUsers(userA.getId(), List.of(userB.getId(), userC.getId(), userD.getId())))
+                .extracting(row -> row[2])
+                .containsExactlyInAnyOrder(UserRelationshipStatus.BLOCK_FIRST_SECOND, UserRelationshipStatus.BLOCK_FIRST_SECOND, UserRelationshipStatus.PENDING_FIRST_SECOND);
+    }
 }
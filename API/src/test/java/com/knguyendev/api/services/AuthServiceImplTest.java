@@ -2,6 +2,9 @@ package com.knguyendev.api.services;
 
 
 import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.User.UserDTO;
+import com.knguyendev.api.domain.dto.User.UserDetailsImpl;
+import com.knguyendev.api.domain.dto.User.UserLoginDTO;
 import com.knguyendev.api.domain.dto.User.UserRegistrationDTO;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.enumeration.UserRole;
@@ -9,22 +12,28 @@ import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.UserMapper;
 import com.knguyendev.api.repositories.UserRepository;
 import com.knguyendev.api.services.impl.AuthServiceImpl;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextHolderStrategy;
 import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.context.SecurityContextRepository;
-import org.springframework.session.data.redis.RedisIndexedSessionRepository;
+import com.knguyendev.api.config.security.NearCacheSessionRepository;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,13 +52,66 @@ public class AuthServiceImplTest {
     @Mock
     private AuthenticationManager authManager;
     @Mock
-    private RedisIndexedSessionRepository redisIndexedSessionRepository;
+    private NearCacheSessionRepository<?> sessionRepository;
     @Mock
     private SessionRegistry sessionRegistry;
     @Mock
     private SecurityContextRepository securityContextRepository;
     @Mock
     private SecurityContextHolderStrategy securityContextHolderStrategy;
+    @Mock
+    private PasswordUpgradeService passwordUpgradeService;
+    @Mock
+    private AvailabilityService availabilityService;
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Simulates the AuthenticationManager accepting the user's credentials, and returns the login DTO that was used.
+     */
+    private UserLoginDTO simulateSuccessfulLogin(UserEntity user) {
+        UserLoginDTO loginDTO = UserLoginDTO.builder()
+                .username(user.getUsername())
+                .password("P$ssword_123")
+                .build();
+        UserDetailsImpl userDetails = new UserDetailsImpl(user);
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities()));
+        when(userMapper.toDTO(user)).thenReturn(TestUtil.createUserDTOA());
+        return loginDTO;
+    }
+
+    @Test
+    public void testLoginUserUpgradesStaleHash() {
+        // Arrange, simulate the user's hash being made with an older encoder
+        UserEntity userA = TestUtil.createSavedUserA();
+        UserLoginDTO loginDTO = simulateSuccessfulLogin(userA);
+        when(passwordEncoder.upgradeEncoding(userA.getPassword())).thenReturn(true);
+
+        // Act
+        UserDTO result = authService.loginUser(loginDTO, new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        // Assert and verify
+        assertEquals(TestUtil.createUserDTOA(), result);
+        verify(passwordUpgradeService, times(1)).upgrade(userA.getId(), userA.getPassword(), loginDTO.getPassword());
+    }
+
+    @Test
+    public void testLoginUserKeepsCurrentHash() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        UserLoginDTO loginDTO = simulateSuccessfulLogin(userA);
+        when(passwordEncoder.upgradeEncoding(userA.getPassword())).thenReturn(false);
+
+        // Act
+        authService.loginUser(loginDTO, new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        // Verify
+        verify(passwordUpgradeService, never()).upgrade(any(), any(), any());
+    }
 
     @Test
     public void testRegisterUserWhenUsernameTaken() {
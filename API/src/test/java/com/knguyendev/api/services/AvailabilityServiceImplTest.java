@@ -0,0 +1,180 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.User.AvailabilityDTO;
+import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.impl.AvailabilityServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the AvailabilityServiceImpl class
+ */
+@ExtendWith(MockitoExtension.class)
+public class AvailabilityServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @InjectMocks
+    private AvailabilityServiceImpl availabilityService;
+
+    private UserEntity userA;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(availabilityService, "expectedUsers", 1000L);
+        ReflectionTestUtils.setField(availabilityService, "falsePositiveRate", 0.01);
+        // Usernames and emails are stored normalized
+        userA = TestUtil.createSavedUserA();
+        userA.setUsername(userA.getUsername().toLowerCase());
+        userA.setEmail(userA.getEmail().toLowerCase());
+    }
+
+    private void rebuildWithUserA() {
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(userA.getUsername()));
+        when(userRepository.streamAllEmails()).thenReturn(Stream.of(userA.getEmail()));
+        availabilityService.rebuild();
+    }
+
+    @Test
+    public void testAvailableNamesDontQueryDatabase() {
+        // Arrange
+        rebuildWithUserA();
+
+        // Act
+        AvailabilityDTO result = availabilityService.checkAvailability("someone_new", "someone_new@gmail.com");
+
+        // Assert
+        assertTrue(result.getUsername());
+        assertTrue(result.getEmail());
+        verify(userRepository, never()).findByUsername(anyString());
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    public void testTakenNamesAreConfirmedWithDatabase() {
+        // Arrange
+        rebuildWithUserA();
+        when(userRepository.findByUsername(userA.getUsername())).thenReturn(Optional.of(userA));
+
+        // Act; the check is case-insensitive
+        AvailabilityDTO result = availabilityService.checkAvailability(userA.getUsername().toUpperCase(), null);
+
+        // Assert
+        assertFalse(result.getUsername());
+        assertNull(result.getEmail());
+        verify(userRepository).findByUsername(userA.getUsername());
+    }
+
+    @Test
+    public void testFilterFalsePositiveIsCorrectedByDatabase() {
+        // Arrange; the user was purged since the filters were built
+        rebuildWithUserA();
+        when(userRepository.findByEmail(userA.getEmail())).thenReturn(Optional.empty());
+
+        // Act
+        AvailabilityDTO result = availabilityService.checkAvailability(null, userA.getEmail());
+
+        // Assert
+        assertTrue(result.getEmail());
+        assertNull(result.getUsername());
+    }
+
+    @Test
+    public void testMarkTakenAddsToFilters() {
+        // Arrange
+        rebuildWithUserA();
+        when(userRepository.findByUsername("new_user")).thenReturn(Optional.of(userA));
+
+        // Act
+        availabilityService.markTaken("new_user", "new_user@gmail.com");
+        AvailabilityDTO result = availabilityService.checkAvailability("new_user", null);
+
+        // Assert
+        assertFalse(result.getUsername());
+        verify(userRepository).findByUsername("new_user");
+    }
+
+    @Test
+    public void testMarkTakenIsPublishedToOtherInstances() {
+        // Act
+        availabilityService.markTaken("New_User", "New_User@gmail.com");
+
+        // Assert
+        verify(redisTemplate).convertAndSend(AvailabilityServiceImpl.TAKEN_CHANNEL, "username:new_user");
+        verify(redisTemplate).convertAndSend(AvailabilityServiceImpl.TAKEN_CHANNEL, "email:new_user@gmail.com");
+    }
+
+    @Test
+    public void testNameTakenOnOtherInstanceIsAddedToFilters() {
+        // Arrange
+        ArgumentCaptor<MessageListener> listenerCaptor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listenerCaptor.capture(), any(Topic.class));
+        rebuildWithUserA();
+        when(userRepository.findByUsername("new_user")).thenReturn(Optional.of(userA));
+
+        // Act; another instance registered 'new_user'
+        listenerCaptor.getValue().onMessage(new DefaultMessage(
+                AvailabilityServiceImpl.TAKEN_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "username:new_user".getBytes(StandardCharsets.UTF_8)), null);
+        AvailabilityDTO result = availabilityService.checkAvailability("new_user", null);
+
+        // Assert that the filter no longer says it's available, so the db was asked
+        assertFalse(result.getUsername());
+        verify(userRepository).findByUsername("new_user");
+    }
+
+    @Test
+    public void testMarkTakenWhenRedisIsDown() {
+        // Arrange
+        rebuildWithUserA();
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        when(userRepository.findByUsername("new_user")).thenReturn(Optional.of(userA));
+
+        // Act
+        availabilityService.markTaken("new_user", null);
+
+        // Assert that this instance's filters were still updated
+        assertFalse(availabilityService.checkAvailability("new_user", null).getUsername());
+    }
+
+    @Test
+    public void testChecksDatabaseBeforeFiltersAreBuilt() {
+        // Arrange
+        when(userRepository.findByUsername("someone_new")).thenReturn(Optional.empty());
+
+        // Act
+        AvailabilityDTO result = availabilityService.checkAvailability("someone_new", null);
+
+        // Assert
+        assertTrue(result.getUsername());
+        verify(userRepository).findByUsername("someone_new");
+    }
+}
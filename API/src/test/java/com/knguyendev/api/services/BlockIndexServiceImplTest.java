@@ -0,0 +1,116 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.enumeration.UserRelationshipStatus;
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import com.knguyendev.api.services.impl.BlockIndexServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the BlockIndexServiceImpl class, with the relationships served from an in-memory list instead of the
+ * database
+ */
+@ExtendWith(MockitoExtension.class)
+public class BlockIndexServiceImplTest {
+
+    @Mock
+    private UserRelationshipRepository userRelationshipRepository;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private BlockIndexServiceImpl blockIndexService;
+    private final List<Object[]> relationships = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        blockIndexService = new BlockIndexServiceImpl(userRelationshipRepository, redisTemplate, listenerContainer, 1000, Duration.ofMinutes(10));
+        lenient().when(userRelationshipRepository.findBlocksByUserId(anyLong())).thenAnswer(invocation -> {
+            Long userId = invocation.getArgument(0);
+            return relationships.stream()
+                    .filter(relationship -> relationship[0].equals(userId) || relationship[1].equals(userId))
+                    .toList();
+        });
+    }
+
+    @Test
+    public void testHasBlockedFromEitherSideOfTheRelationship() {
+        // User 1 blocked user 2, user 4 blocked user 3, and users 1 and 5 blocked each other
+        relationships.add(new Object[]{1L, 2L, UserRelationshipStatus.BLOCK_FIRST_SECOND});
+        relationships.add(new Object[]{3L, 4L, UserRelationshipStatus.BLOCK_SECOND_FIRST});
+        relationships.add(new Object[]{1L, 5L, UserRelationshipStatus.BLOCK_BOTH});
+
+        assertTrue(blockIndexService.hasBlocked(1L, 2L));
+        assertFalse(blockIndexService.hasBlocked(2L, 1L));
+        assertTrue(blockIndexService.hasBlocked(4L, 3L));
+        assertFalse(blockIndexService.hasBlocked(3L, 4L));
+        assertTrue(blockIndexService.hasBlocked(5L, 1L));
+        assertTrue(blockIndexService.isBlockedEitherWay(2L, 1L));
+        assertFalse(blockIndexService.isBlockedEitherWay(2L, 3L));
+        assertEquals(1, blockIndexService.countBlockers(1L));
+        assertEquals(2, blockIndexService.countBlockers(2L) + blockIndexService.countBlockers(5L));
+    }
+
+    @Test
+    public void testUsersAreLoadedOnceUntilInvalidated() {
+        relationships.add(new Object[]{1L, 2L, UserRelationshipStatus.BLOCK_FIRST_SECOND});
+
+        assertTrue(blockIndexService.hasBlocked(1L, 2L));
+        assertEquals(0, blockIndexService.countBlockers(1L));
+        verify(userRelationshipRepository, times(1)).findBlocksByUserId(1L);
+
+        // User 1 unblocks user 2
+        relationships.clear();
+        assertTrue(blockIndexService.hasBlocked(1L, 2L));
+        blockIndexService.invalidate(2L, 1L);
+
+        assertFalse(blockIndexService.hasBlocked(1L, 2L));
+        verify(userRelationshipRepository, times(2)).findBlocksByUserId(1L);
+    }
+
+    @Test
+    public void testInvalidationIsPublishedToOtherInstances() {
+        // Act
+        blockIndexService.invalidate(2L, 1L);
+
+        // Assert
+        verify(redisTemplate).convertAndSend(BlockIndexServiceImpl.INVALIDATE_CHANNEL, "2:1");
+    }
+
+    @Test
+    public void testInvalidationFromOtherInstanceIsApplied() {
+        // Arrange
+        ArgumentCaptor<MessageListener> listenerCaptor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listenerCaptor.capture(), any(Topic.class));
+        assertFalse(blockIndexService.hasBlocked(1L, 2L));
+
+        // Act; user 1 blocks user 2 through another instance
+        relationships.add(new Object[]{1L, 2L, UserRelationshipStatus.BLOCK_FIRST_SECOND});
+        listenerCaptor.getValue().onMessage(new DefaultMessage(
+                BlockIndexServiceImpl.INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "1:2".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert that the block is enforced here right away
+        assertTrue(blockIndexService.hasBlocked(1L, 2L));
+        verify(userRelationshipRepository, times(2)).findBlocksByUserId(1L);
+    }
+}
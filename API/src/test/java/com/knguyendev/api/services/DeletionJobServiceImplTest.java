@@ -0,0 +1,213 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.domain.dto.DeletionJob.DeletionJobDTO;
+import com.knguyendev.api.domain.entities.DeletionJobEntity;
+import com.knguyendev.api.enumeration.DeletionJobStatus;
+import com.knguyendev.api.enumeration.DeletionTargetType;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.mappers.DeletionJobMapper;
+import com.knguyendev.api.repositories.DeletionJobRepository;
+import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskRepository;
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.impl.DeletionJobServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class) // allows us to mock in our tests
+public class DeletionJobServiceImplTest {
+
+    @InjectMocks
+    private DeletionJobServiceImpl deletionJobService;
+
+    @Mock
+    private DeletionJobRepository deletionJobRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private TaskListRepository taskListRepository;
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private UserRelationshipRepository userRelationshipRepository;
+    @Mock
+    private DeletionJobMapper deletionJobMapper;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        // Use tiny chunks and no pauses so that we can check the chunking logic quickly
+        ReflectionTestUtils.setField(deletionJobService, "chunkSize", 2);
+        ReflectionTestUtils.setField(deletionJobService, "pauseMillis", 0L);
+        ReflectionTestUtils.setField(deletionJobService, "taskRetention", Duration.ofDays(7));
+        ReflectionTestUtils.setField(deletionJobService, "leaseTimeout", Duration.ofMinutes(5));
+    }
+
+    private DeletionJobEntity createJob(Long id, DeletionTargetType targetType, Long targetId, DeletionJobStatus status) {
+        return DeletionJobEntity.builder()
+                .id(id)
+                .targetType(targetType)
+                .targetId(targetId)
+                .status(status)
+                .rowsDeleted(0L)
+                .createdAt(ZonedDateTime.now())
+                .updatedAt(ZonedDateTime.now())
+                .build();
+    }
+
+    @Test
+    public void testEnqueue() {
+        // Arrange
+        DeletionJobDTO expectedDTO = DeletionJobDTO.builder().id(1L).build();
+        when(deletionJobRepository.save(any(DeletionJobEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(deletionJobMapper.toDTO(any(DeletionJobEntity.class))).thenReturn(expectedDTO);
+
+        // Act
+        DeletionJobDTO resultDTO = deletionJobService.enqueue(DeletionTargetType.USER, 5L);
+
+        // Assert that a pending job with no progress was saved
+        ArgumentCaptor<DeletionJobEntity> captor = ArgumentCaptor.forClass(DeletionJobEntity.class);
+        verify(deletionJobRepository).save(captor.capture());
+        DeletionJobEntity savedJob = captor.getValue();
+        assertEquals(DeletionTargetType.USER, savedJob.getTargetType());
+        assertEquals(5L, savedJob.getTargetId());
+        assertEquals(DeletionJobStatus.PENDING, savedJob.getStatus());
+        assertEquals(0L, savedJob.getRowsDeleted());
+        assertEquals(expectedDTO, resultDTO);
+    }
+
+    @Test
+    public void testProcessPendingJobsPurgesUserInChunks() {
+        // Arrange
+        Long userId = 5L;
+        DeletionJobEntity job = createJob(1L, DeletionTargetType.USER, userId, DeletionJobStatus.PENDING);
+        when(deletionJobRepository.findByStatusIn(List.of(DeletionJobStatus.PENDING, DeletionJobStatus.RUNNING))).thenReturn(List.of(job));
+
+        // Simulate 5 tasks being deleted in chunks of 2, then everything else fitting in a single chunk
+        when(taskRepository.purgeChunkByUserId(userId, 2)).thenReturn(2, 2, 1);
+        when(taskListRepository.purgeChunkByUserId(userId, 2)).thenReturn(1);
+        when(userRelationshipRepository.purgeChunkByUserId(userId, 2)).thenReturn(0);
+        when(userRepository.purgeById(userId)).thenReturn(1);
+        when(deletionJobRepository.claim(eq(1L), any(ZonedDateTime.class), any(ZonedDateTime.class))).thenReturn(1);
+
+        // Act
+        deletionJobService.processPendingJobs();
+
+        // Assert that the job was claimed, and every chunk was run, with its progress recorded, before it was completed
+        verify(deletionJobRepository).claim(eq(1L), any(ZonedDateTime.class), any(ZonedDateTime.class));
+        verify(taskRepository, times(3)).purgeChunkByUserId(userId, 2);
+        verify(taskListRepository, times(1)).purgeChunkByUserId(userId, 2);
+        verify(userRelationshipRepository, times(1)).purgeChunkByUserId(userId, 2);
+        verify(userRepository, times(1)).purgeById(userId);
+        verify(deletionJobRepository, times(2)).incrementRowsDeleted(eq(1L), eq(2L), any(ZonedDateTime.class));
+        verify(deletionJobRepository, times(3)).incrementRowsDeleted(eq(1L), eq(1L), any(ZonedDateTime.class));
+        verify(deletionJobRepository).markCompleted(eq(1L), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void testProcessPendingJobsResumesRunningTaskListJob() {
+        // Arrange, a job that was interrupted while it was running
+        Long taskListId = 3L;
+        DeletionJobEntity job = createJob(2L, DeletionTargetType.TASK_LIST, taskListId, DeletionJobStatus.RUNNING);
+        when(deletionJobRepository.findByStatusIn(List.of(DeletionJobStatus.PENDING, DeletionJobStatus.RUNNING))).thenReturn(List.of(job));
+        when(taskRepository.purgeChunkByTaskListId(taskListId, 2)).thenReturn(1);
+        when(taskListRepository.purgeById(taskListId)).thenReturn(1);
+        when(deletionJobRepository.claim(eq(2L), any(ZonedDateTime.class), any(ZonedDateTime.class))).thenReturn(1);
+
+        // Act
+        deletionJobService.processPendingJobs();
+
+        // Assert, the job could only be claimed if it had made no progress for the lease timeout
+        ArgumentCaptor<ZonedDateTime> nowCaptor = ArgumentCaptor.forClass(ZonedDateTime.class);
+        ArgumentCaptor<ZonedDateTime> staleBeforeCaptor = ArgumentCaptor.forClass(ZonedDateTime.class);
+        verify(deletionJobRepository).claim(eq(2L), nowCaptor.capture(), staleBeforeCaptor.capture());
+        assertEquals(nowCaptor.getValue().minusMinutes(5), staleBeforeCaptor.getValue());
+        verify(deletionJobRepository, never()).updateStatus(anyLong(), any(DeletionJobStatus.class), any(ZonedDateTime.class));
+        verify(taskRepository, times(1)).purgeChunkByTaskListId(taskListId, 2);
+        verify(taskListRepository, times(1)).purgeById(taskListId);
+        verify(userRepository, never()).purgeById(anyLong());
+        verify(deletionJobRepository).markCompleted(eq(2L), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void testProcessPendingJobsReleasesFailedJobForRetry() {
+        // Arrange
+        Long taskListId = 3L;
+        DeletionJobEntity job = createJob(2L, DeletionTargetType.TASK_LIST, taskListId, DeletionJobStatus.RUNNING);
+        when(deletionJobRepository.findByStatusIn(List.of(DeletionJobStatus.PENDING, DeletionJobStatus.RUNNING))).thenReturn(List.of(job));
+        when(deletionJobRepository.claim(eq(2L), any(ZonedDateTime.class), any(ZonedDateTime.class))).thenReturn(1);
+        when(taskRepository.purgeChunkByTaskListId(taskListId, 2)).thenThrow(new RuntimeException("Lock timeout"));
+
+        // Act
+        deletionJobService.processPendingJobs();
+
+        // Assert that the job wasn't completed, and was released so it's picked up again on the next run
+        verify(taskListRepository, never()).purgeById(anyLong());
+        verify(deletionJobRepository, never()).markCompleted(anyLong(), any(ZonedDateTime.class));
+        verify(deletionJobRepository).updateStatus(eq(2L), eq(DeletionJobStatus.PENDING), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void testProcessPendingJobsSkipsJobClaimedByAnotherInstance() {
+        // Arrange
+        DeletionJobEntity job = createJob(1L, DeletionTargetType.USER, 5L, DeletionJobStatus.PENDING);
+        when(deletionJobRepository.findByStatusIn(List.of(DeletionJobStatus.PENDING, DeletionJobStatus.RUNNING))).thenReturn(List.of(job));
+        when(deletionJobRepository.claim(eq(1L), any(ZonedDateTime.class), any(ZonedDateTime.class))).thenReturn(0);
+
+        // Act
+        deletionJobService.processPendingJobs();
+
+        // Assert that nothing was purged, and the other instance's claim was left alone
+        verifyNoInteractions(taskRepository, taskListRepository, userRelationshipRepository, userRepository);
+        verify(deletionJobRepository, never()).updateStatus(anyLong(), any(DeletionJobStatus.class), any(ZonedDateTime.class));
+        verify(deletionJobRepository, never()).markCompleted(anyLong(), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void testFindByIdWhenNotFound() {
+        // Arrange
+        when(deletionJobRepository.findById(1L)).thenReturn(Optional.empty());
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> deletionJobService.findById(1L));
+
+        // Assert
+        assertEquals("Deletion job with id '1' wasn't found!", exception.getMessage());
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    @Test
+    public void testPurgeDeletedTasksInChunks() {
+        // Arrange, simulate 5 expired tombstones being purged in chunks of 2
+        ArgumentCaptor<ZonedDateTime> cutoffCaptor = ArgumentCaptor.forClass(ZonedDateTime.class);
+        when(taskRepository.purgeTombstonesChunk(cutoffCaptor.capture(), eq(2))).thenReturn(2, 2, 1);
+
+        // Act
+        int purged = deletionJobService.purgeDeletedTasks();
+
+        // Assert that we stopped after the partial chunk, and only purged tombstones older than the retention period
+        assertEquals(5, purged);
+        verify(taskRepository, times(3)).purgeTombstonesChunk(any(ZonedDateTime.class), eq(2));
+        assertThat(cutoffCaptor.getValue()).isBefore(ZonedDateTime.now().minusDays(6));
+    }
+}
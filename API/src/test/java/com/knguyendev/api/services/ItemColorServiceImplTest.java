@@ -4,13 +4,18 @@ package com.knguyendev.api.services;
 import com.knguyendev.api.TestUtil;
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorCreateDTO;
 import com.knguyendev.api.domain.dto.ItemColor.ItemColorDTO;
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorSnapshot;
 import com.knguyendev.api.domain.entities.ItemColorEntity;
+import com.knguyendev.api.domain.entities.TaskListEntity;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.ItemColorMapper;
 import com.knguyendev.api.repositories.ItemColorRepository;
 import com.knguyendev.api.services.impl.ItemColorServiceImpl;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -19,8 +24,7 @@ import org.springframework.http.HttpStatus;
 import java.util.List;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -70,6 +74,12 @@ public class ItemColorServiceImplTest {
     @Mock
     private ItemColorRepository itemColorRepository;
 
+    // Deleting a color evicts the cached task lists, whose color the database resets
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private EntityManagerFactory entityManagerFactory;
+    @Mock
+    private TaskListSnapshotCache taskListSnapshotCache;
+
     // Test for creating a new item color successfully
     @Test
     public void testCreateWhenSuccess() {
@@ -153,13 +163,15 @@ public class ItemColorServiceImplTest {
         when(itemColorMapper.toDTO(itemColorA)).thenReturn(itemColorDTOA);
         when(itemColorMapper.toDTO(itemColorB)).thenReturn(itemColorDTOB);
 
-        // Act
+        // Act; the second call should be served from the snapshot
         List<ItemColorDTO> result = itemColorService.findAll();
+        List<ItemColorDTO> secondResult = itemColorService.findAll();
 
         // Assert
         assertEquals(2, result.size());
         assertEquals(itemColorDTOA, result.get(0));
         assertEquals(itemColorDTOB, result.get(1));
+        assertSame(result, secondResult);
 
         // Verify
         verify(itemColorRepository, times(1)).findAll();
@@ -167,6 +179,68 @@ public class ItemColorServiceImplTest {
         verify(itemColorMapper, times(1)).toDTO(itemColorB);
     }
 
+    @Test
+    public void testSnapshotIsRebuiltAfterCreate() {
+        // Arrange; at first there's only item color A, then item color B is created
+        ItemColorEntity itemColorA = TestUtil.createSavedItemColorA();
+        ItemColorEntity itemColorB = TestUtil.createSavedItemColorB();
+        ItemColorCreateDTO createDTOB = TestUtil.createItemColorCreateDTOB();
+        ItemColorEntity unsavedItemColorB = TestUtil.createUnsavedItemColorB();
+        when(itemColorRepository.findAll()).thenReturn(List.of(itemColorA), List.of(itemColorA, itemColorB));
+        when(itemColorMapper.toDTO(itemColorA)).thenReturn(TestUtil.createItemColorDTOA());
+        when(itemColorMapper.toDTO(itemColorB)).thenReturn(TestUtil.createItemColorDTOB());
+        when(itemColorRepository.findByNameOrHexCode(createDTOB.getName(), createDTOB.getHexCode())).thenReturn(Optional.empty());
+        when(itemColorMapper.toEntity(createDTOB)).thenReturn(unsavedItemColorB);
+        when(itemColorRepository.save(unsavedItemColorB)).thenReturn(itemColorB);
+
+        // Act
+        ItemColorSnapshot before = itemColorService.getSnapshot();
+        itemColorService.create(createDTOB);
+        ItemColorSnapshot after = itemColorService.getSnapshot();
+
+        // Assert; the ETag changes along with the colors, and is the same for the same colors
+        assertEquals(1, before.getItemColors().size());
+        assertEquals(2, after.getItemColors().size());
+        assertNotEquals(before.getETag(), after.getETag());
+        assertEquals(after.getETag(), ItemColorSnapshot.of(List.of(TestUtil.createItemColorDTOB(), TestUtil.createItemColorDTOA())).getETag());
+        verify(itemColorRepository, times(2)).findAll();
+    }
+
+    @Test
+    public void testRefreshSnapshotPicksUpChangesFromOtherInstances() {
+        // Arrange; another instance creates item color B after this one loaded the palette
+        ItemColorEntity itemColorA = TestUtil.createSavedItemColorA();
+        ItemColorEntity itemColorB = TestUtil.createSavedItemColorB();
+        when(itemColorRepository.findAll()).thenReturn(List.of(itemColorA), List.of(itemColorA, itemColorB));
+        when(itemColorMapper.toDTO(itemColorA)).thenReturn(TestUtil.createItemColorDTOA());
+        when(itemColorMapper.toDTO(itemColorB)).thenReturn(TestUtil.createItemColorDTOB());
+
+        // Act
+        itemColorService.getSnapshot();
+        itemColorService.refreshSnapshot();
+
+        // Assert; task list snapshots built with the old palette are invalidated too
+        assertEquals(2, itemColorService.getSnapshot().getItemColors().size());
+        verify(taskListSnapshotCache, times(1)).invalidateAll();
+    }
+
+    @Test
+    public void testRefreshSnapshotWhenUnchanged() {
+        // Arrange
+        ItemColorEntity itemColorA = TestUtil.createSavedItemColorA();
+        when(itemColorRepository.findAll()).thenReturn(List.of(itemColorA));
+        when(itemColorMapper.toDTO(itemColorA)).thenReturn(TestUtil.createItemColorDTOA());
+
+        // Act; the first refresh is skipped since nothing has been loaded yet
+        itemColorService.refreshSnapshot();
+        itemColorService.getSnapshot();
+        itemColorService.refreshSnapshot();
+
+        // Assert
+        verify(itemColorRepository, times(2)).findAll();
+        verifyNoInteractions(taskListSnapshotCache);
+    }
+
     @Test
     public void testFindByIdWhenSuccess() {
         // Arrange
@@ -370,6 +444,7 @@ public class ItemColorServiceImplTest {
         // Verify
         verify(itemColorRepository, times(1)).findById(itemColorA.getId());
         verify(itemColorRepository, times(1)).deleteById(itemColorA.getId());
+        verify(entityManagerFactory.getCache(), times(1)).evict(TaskListEntity.class);
         verify(itemColorMapper, times(1)).toDTO(itemColorA);
     }
 }
@@ -0,0 +1,71 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.exception.ServiceUnavailableException;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.impl.PasswordUpgradeServiceImpl;
+import com.knguyendev.api.utils.UserEntityCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class) // allows us to mock in our tests
+public class PasswordUpgradeServiceImplTest {
+
+    @InjectMocks
+    private PasswordUpgradeServiceImpl passwordUpgradeService;
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private UserEntityCache userEntityCache;
+
+    @Test
+    public void testUpgradeWhenSuccess() {
+        // Arrange
+        when(passwordEncoder.encode("Password123")).thenReturn("{bcrypt12}newHash");
+        when(userRepository.updatePasswordIfUnchanged(1L, "oldHash", "{bcrypt12}newHash")).thenReturn(1);
+
+        // Act
+        passwordUpgradeService.upgrade(1L, "oldHash", "Password123");
+
+        // Verify
+        verify(userRepository, times(1)).updatePasswordIfUnchanged(1L, "oldHash", "{bcrypt12}newHash");
+        verify(userEntityCache, times(1)).evict(1L);
+    }
+
+    @Test
+    public void testUpgradeWhenPasswordChangedSinceLogin() {
+        // Arrange, simulate the conditional update matching nothing
+        when(passwordEncoder.encode("Password123")).thenReturn("{bcrypt12}newHash");
+        when(userRepository.updatePasswordIfUnchanged(1L, "oldHash", "{bcrypt12}newHash")).thenReturn(0);
+
+        // Act
+        passwordUpgradeService.upgrade(1L, "oldHash", "Password123");
+
+        // Verify
+        verify(userEntityCache, never()).evict(anyLong());
+    }
+
+    @Test
+    public void testUpgradeWhenHashingBusy() {
+        // Arrange
+        when(passwordEncoder.encode("Password123")).thenThrow(new ServiceUnavailableException("Busy", Duration.ofSeconds(2)));
+
+        // Act, no exception should escape since the upgrade is retried on the next login
+        passwordUpgradeService.upgrade(1L, "oldHash", "Password123");
+
+        // Verify
+        verify(userRepository, never()).updatePasswordIfUnchanged(anyLong(), any(), any());
+    }
+}
@@ -1,28 +1,41 @@
 package com.knguyendev.api.services;
 
 import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListDTO;
 import com.knguyendev.api.domain.dto.TaskList.TaskListRequest;
 import com.knguyendev.api.domain.entities.TaskListEntity;
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.enumeration.DeletionTargetType;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.TaskListMapper;
 import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskRepository;
 import com.knguyendev.api.services.impl.TaskListServiceImpl;
 import com.knguyendev.api.utils.AuthUtils;
 import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.TaskListLocks;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -33,17 +46,37 @@ public class TaskListServiceImplTest {
     @Mock
     private TaskListRepository taskListRepository;
     @Mock
+    private TaskRepository taskRepository;
+    @Mock
     private TaskListMapper taskListMapper;
     @Mock
     private AuthUtils authUtils;
     @Mock
     private ServiceUtils serviceUtils;
+    @Mock
+    private DeletionJobService deletionJobService;
+    @Mock
+    private TaskListSnapshotCache taskListSnapshotCache;
+    @Mock
+    private TaskListLocks taskListLocks;
+
+    /**
+     * The locks run the change right away, as if it had the task list to itself.
+     */
+    @BeforeEach
+    void setUpLocks() {
+        lenient().when(taskListLocks.callLocked(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(taskListLocks).runLocked(anyLong(), any());
+    }
 
     @Test
     void testCreateTaskList_Success() {
         // Arrange
         Long authUserId = 1L;
-        TaskListRequest request = new TaskListRequest("New Task List");
+        TaskListRequest request = new TaskListRequest("New Task List", null);
 
         TaskListEntity oldTaskList = TestUtil.createTaskList(null, authUserId, "New Task List", false);
         TaskListEntity newTaskList = TestUtil.createTaskList(1L, authUserId, "New Task List", false);
@@ -72,7 +105,7 @@ public class TaskListServiceImplTest {
         Long taskListId = 1L;
         Long userId = 1L;
         Long authUserId = 1L;
-        TaskListRequest request = new TaskListRequest("Updated Task List");
+        TaskListRequest request = new TaskListRequest("Updated Task List", null);
         TaskListEntity existingTaskList = TestUtil.createTaskList(taskListId, userId, "Old Name", false);
         TaskListEntity updatedTaskList = TestUtil.createTaskList(taskListId, userId, request.getName(), false);
         TaskListDTO taskListDTO = TestUtil.createTaskListDTO(taskListId, userId, "Updated Name", false);
@@ -98,7 +131,7 @@ public class TaskListServiceImplTest {
         // Arrange
         Long id = 1L;
         Long authUserId = 1L;
-        TaskListRequest request = new TaskListRequest("Updated Task List");
+        TaskListRequest request = new TaskListRequest("Updated Task List", null);
         TaskListEntity existingTaskList = TestUtil.createTaskList(id, authUserId, "Existing task list", true);
         TaskListEntity updatedTaskList = TestUtil.createTaskList(id, authUserId, request.getName(), true);
 
@@ -120,7 +153,7 @@ public class TaskListServiceImplTest {
     void testUpdateWhenTaskListNotFound() {
         // Arrange
         Long id = 1L;
-        TaskListRequest request = new TaskListRequest("Updated Task List");
+        TaskListRequest request = new TaskListRequest("Updated Task List", null);
 
         // Simulate
         when(taskListRepository.findById(id)).thenReturn(Optional.empty());
@@ -140,7 +173,7 @@ public class TaskListServiceImplTest {
         Long id = 1L;
         Long authUserId = 1L;
         Long otherUserId = 2L;
-        TaskListRequest request = new TaskListRequest("Updated Task List");
+        TaskListRequest request = new TaskListRequest("Updated Task List", null);
         TaskListEntity defaultTaskList = TestUtil.createTaskList(id, otherUserId, "Updated task list", true);
 
         // Simulate
@@ -167,8 +200,30 @@ public class TaskListServiceImplTest {
 
         taskListService.delete(id);
 
+        // The task list should only be marked as deleted, with the purge left to a background job
+        assertNotNull(taskList.getDeletedAt());
         verify(taskListRepository).findById(id);
-        verify(taskListRepository).deleteById(id);
+        verify(taskListRepository).save(taskList);
+        verify(taskListRepository, never()).deleteById(id);
+        verify(deletionJobService).enqueue(DeletionTargetType.TASK_LIST, id);
+    }
+
+    @Test
+    void testDeleteTaskList_AlreadyDeleted_Failure() {
+        // Arrange
+        Long id = 1L;
+        TaskListEntity taskList = TestUtil.createTaskList(id, 1L, "TaskList", false);
+        taskList.setDeletedAt(ZonedDateTime.now());
+
+        // Simulate a task list that's waiting to be purged
+        when(taskListRepository.findById(id)).thenReturn(Optional.of(taskList));
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> taskListService.delete(id));
+
+        // Assert and verify
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+        verify(deletionJobService, never()).enqueue(any(DeletionTargetType.class), anyLong());
     }
 
     @Test
@@ -256,4 +311,54 @@ public class TaskListServiceImplTest {
         verify(authUtils).getAuthUserId();
         verify(taskListRepository).findByUserId(authUserId);
     }
+
+    @Test
+    void testFindUserTaskLists_WithFields() {
+        // Arrange
+        Long authUserId = 1L;
+        when(authUtils.getAuthUserId()).thenReturn(authUserId);
+
+        // The ids and pointers are read even though they weren't picked, in the order the fields are declared
+        when(taskListRepository.findFieldsByUserId(eq(authUserId), argThat(fields -> fields.selectList().equals("tl.id, tl.name"))))
+                .thenReturn(List.of(new Object[]{1L, "Groceries"}, new Object[]{2L, "Homework"}));
+        when(taskRepository.findFieldsByUserId(eq(authUserId), argThat(fields -> fields.selectList().equals("t.id, t.taskListId, t.prevTaskId, t.nextTaskId, t.title"))))
+                .thenReturn(List.of(
+                        new Object[]{12L, 1L, 11L, null, "Eggs"},
+                        new Object[]{11L, 1L, null, 12L, "Milk"}));
+
+        // Act
+        List<Map<String, Object>> result = taskListService.findUserTaskLists(false, "name,tasks.title");
+
+        // Assert, the tasks are in order and only have the picked fields; like the full response, a task list without
+        // tasks has null 'tasks'
+        Map<String, Object> homework = new HashMap<>();
+        homework.put("name", "Homework");
+        homework.put("tasks", null);
+        assertEquals(List.of(
+                Map.of("name", "Groceries", "tasks", List.of(Map.of("title", "Milk"), Map.of("title", "Eggs"))),
+                homework
+        ), result);
+        verify(taskListRepository, never()).findByUserId(any());
+        verifyNoInteractions(taskListSnapshotCache);
+    }
+
+    @Test
+    public void testFindPage() {
+        // Arrange
+        TaskListEntity taskListA = TestUtil.createTaskList(4L, 1L, "Groceries", false);
+        TaskListEntity taskListB = TestUtil.createTaskList(7L, 2L, "Homework", false);
+        TaskListDTO taskListDTOA = TestUtil.createTaskListDTO(4L, 1L, "Groceries", false);
+        TaskListDTO taskListDTOB = TestUtil.createTaskListDTO(7L, 2L, "Homework", false);
+        ReflectionTestUtils.setField(taskListService, "maxPageSize", 10);
+        when(taskListRepository.findPage(3L, Limit.of(2))).thenReturn(List.of(taskListA, taskListB));
+        when(taskListMapper.toDTO(taskListA)).thenReturn(taskListDTOA);
+        when(taskListMapper.toDTO(taskListB)).thenReturn(taskListDTOB);
+
+        // Act
+        KeysetPageDTO<TaskListDTO> result = taskListService.findPage(3L, 1);
+
+        // Assert
+        assertEquals(List.of(taskListDTOA), result.getItems());
+        assertEquals(4L, result.getNextCursor());
+    }
 }
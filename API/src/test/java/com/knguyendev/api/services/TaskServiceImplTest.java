@@ -1,7 +1,10 @@
 package com.knguyendev.api.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.knguyendev.api.domain.dto.Task.TaskCreateRequest;
 import com.knguyendev.api.domain.dto.Task.TaskDTO;
+import com.knguyendev.api.domain.dto.Task.TaskTombstoneDTO;
 import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
 import com.knguyendev.api.domain.entities.TaskEntity;
 import com.knguyendev.api.domain.entities.TaskListEntity;
@@ -10,11 +13,20 @@ import com.knguyendev.api.mappers.TaskMapper;
 import com.knguyendev.api.repositories.TaskListRepository;
 import com.knguyendev.api.repositories.TaskRepository;
 import com.knguyendev.api.services.impl.TaskServiceImpl;
+import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.JsonMergePatch;
+import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.TaskListLocks;
+import com.knguyendev.api.utils.TaskListSnapshotCache;
+import com.knguyendev.api.utils.TaskWriteBehindBuffer;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 
@@ -26,8 +38,11 @@ import static org.mockito.Mockito.*;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @ExtendWith(MockitoExtension.class) // allows us to mock in our tests
 public class TaskServiceImplTest {
@@ -39,6 +54,32 @@ public class TaskServiceImplTest {
     private TaskRepository taskRepository;
     @Mock
     private TaskMapper taskMapper;
+    @Mock
+    private AuthUtils authUtils;
+    @Mock
+    private ServiceUtils serviceUtils;
+    @Mock
+    private TaskListSnapshotCache taskListSnapshotCache;
+    @Mock
+    private TaskListLocks taskListLocks;
+    @Mock
+    private TaskWriteBehindBuffer taskWriteBehindBuffer;
+    @Spy
+    private JsonMergePatch jsonMergePatch = new JsonMergePatch(objectMapper, Validation.buildDefaultValidatorFactory().getValidator());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    /**
+     * The locks run the change right away, as if it had the task list to itself.
+     */
+    @BeforeEach
+    void setUpLocks() {
+        lenient().when(taskListLocks.callLocked(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(taskListLocks).runLocked(anyLong(), any());
+    }
 
     @Test
     void testGetLastSubTask() {
@@ -79,6 +120,7 @@ public class TaskServiceImplTest {
                 .dueDate(ZonedDateTime.now(ZoneId.of("UTC")))
                 .build();
         // Simulate idea of only one task
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(task.getId())).thenReturn(
                 List.of(task)
         );
@@ -103,6 +145,7 @@ public class TaskServiceImplTest {
         taskA.setNextTaskId(taskB.getId());
         taskB.setPrevTaskId(taskA.getId());
         // simulate
+        when(taskRepository.findTaskListIdById(taskA.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(taskA.getId())).thenReturn(
                 List.of(taskA, taskB)
         );
@@ -131,6 +174,7 @@ public class TaskServiceImplTest {
         // Assume it's not a subtask
         task.setParentTaskId(null);
         // Simulate getting the target task and its parent (prevTask)
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(task.getId())).thenReturn(
                 List.of(prevTask, task)
         );
@@ -156,6 +200,7 @@ public class TaskServiceImplTest {
         task.setPrevTaskId(prevTask.getId());
 
         // Simulate getting the target task and its parent (prevTask)
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(task.getId())).thenReturn(
                 List.of(prevTask, task)
         );
@@ -180,6 +225,7 @@ public class TaskServiceImplTest {
         task.setPrevTaskId(parentTask.getId());
         task.setParentTaskId(parentTask.getId());
         // Simulate
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(task.getId())).thenReturn(
                 List.of(parentTask, task)
         );
@@ -218,6 +264,7 @@ public class TaskServiceImplTest {
         nextTask.setParentTaskId(parentTask.getId());
 
         // Simulate
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskPrevNext(task.getId())).thenReturn(
                 List.of(parentTask, task, nextTask)
         );
@@ -260,22 +307,20 @@ public class TaskServiceImplTest {
                 .dueDate(ZonedDateTime.now(ZoneId.of("UTC")))
                 .build();
 
-        TaskUpdateRequest taskUpdateRequest = TaskUpdateRequest.builder()
-                .title(task.getTitle())
-                .description(task.getDescription())
-                .isComplete(task.isComplete())
-                .isAllDay(task.isAllDay())
-                .dueDate(task.getDueDate())
-                .build();
+        // The patch sets fields to the values they already have
+        ObjectNode patch = objectMapper.createObjectNode()
+                .put("title", task.getTitle())
+                .put("complete", task.isComplete());
 
         // Simulate getting the task, things should stay the same.
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
         when(taskMapper.toDTO(task)).thenReturn(new TaskDTO());
 
         // Act
-        taskService.updateById(task.getId(), taskUpdateRequest);
+        taskService.updateById(task.getId(), patch);
 
-        // Assert, the save function shouldn't have been called
+        // Assert, nothing should have been written
+        verify(taskRepository, never()).updateContentById(anyLong(), anyMap());
         verify(taskRepository, never()).save(task);
     }
 
@@ -293,23 +338,161 @@ public class TaskServiceImplTest {
                 .dueDate(ZonedDateTime.now(ZoneId.of("UTC")))
                 .build();
 
+        ZonedDateTime dueDate = task.getDueDate();
+
+        // The title has changed, so we expect the function to update things
+        ObjectNode patch = objectMapper.createObjectNode().put("title", "Updated Title");
+
+        // Simulate
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskRepository.updateContentById(eq(1L), anyMap())).thenReturn(1);
+        when(taskMapper.toDTO(task)).thenReturn(new TaskDTO());
+
+        // Act
+        taskService.updateById(task.getId(), patch);
+
+        // Assert, only the title was written, and fields that weren't in the patch kept their values
+        verify(taskRepository).updateContentById(1L, Map.of("title", "Updated Title"));
+        verify(taskRepository, never()).save(any(TaskEntity.class));
+        assertThat(task.getTitle()).isEqualTo("Updated Title");
+        assertThat(task.getDescription()).isEqualTo("My Description");
+        assertThat(task.getDueDate()).isEqualTo(dueDate);
+    }
+
+    @Test
+    void testUpdateById_WhenPatchClearsField() {
+        // Arrange
+        TaskEntity task = TaskEntity.builder()
+                .id(1L)
+                .taskListId(1L)
+                .title("My Title")
+                .description("My Description")
+                .build();
+
+        // A null in a merge patch removes the value
+        ObjectNode patch = objectMapper.createObjectNode().putNull("description");
+
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskRepository.updateContentById(eq(1L), anyMap())).thenReturn(1);
+        when(taskMapper.toDTO(task)).thenReturn(new TaskDTO());
+
+        // Act
+        taskService.updateById(task.getId(), patch);
+
+        // Assert
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("description", null);
+        verify(taskRepository).updateContentById(1L, changes);
+        assertThat(task.getTitle()).isEqualTo("My Title");
+        assertThat(task.getDescription()).isNull();
+    }
+
+    @Test
+    void testUpdateById_WhenPatchInvalid() {
+        // Arrange
+        TaskEntity task = TaskEntity.builder()
+                .id(1L)
+                .taskListId(1L)
+                .title("My Title")
+                .build();
+
+        // The title is required, so it can't be removed
+        ObjectNode patch = objectMapper.createObjectNode().putNull("title");
+
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> taskService.updateById(task.getId(), patch));
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertThat(task.getTitle()).isEqualTo("My Title");
+        verify(taskRepository, never()).updateContentById(anyLong(), anyMap());
+    }
+
+    @Test
+    void testUpdateById_DoesntOverwriteConcurrentMove() {
+        // Arrange, the task is read while it's after task 2
+        TaskEntity task = TaskEntity.builder()
+                .id(1L)
+                .taskListId(1L)
+                .prevTaskId(2L)
+                .title("My Title")
+                .build();
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskMapper.toDTO(task)).thenReturn(new TaskDTO());
+
+        // Another request moves the task after task 3 before the update is written
+        Map<String, Long> storedPointers = new HashMap<>(Map.of("prevTaskId", 2L));
+        doAnswer(invocation -> {
+            storedPointers.put("prevTaskId", 3L);
+            return null;
+        }).when(serviceUtils).checkItemColorExists(any());
+        when(taskRepository.updateContentById(eq(1L), anyMap())).thenAnswer(invocation -> {
+            Map<String, Object> changes = invocation.getArgument(1);
+            changes.keySet().forEach(attribute -> storedPointers.computeIfPresent(attribute, (k, v) -> (Long) changes.get(attribute)));
+            return 1;
+        });
+
+        // Act
+        taskService.updateById(task.getId(), objectMapper.createObjectNode().put("title", "Updated Title"));
+
+        // Assert, only the title was written, so the move is kept
+        verify(taskRepository).updateContentById(1L, Map.of("title", "Updated Title"));
+        verify(taskRepository, never()).save(any(TaskEntity.class));
+        assertEquals(3L, storedPointers.get("prevTaskId"));
+    }
+
+    @Test
+    void testUpdateById_WhenDeletedConcurrently() {
+        // Arrange, the task is deleted after it's read
+        TaskEntity task = TaskEntity.builder()
+                .id(1L)
+                .taskListId(1L)
+                .title("My Title")
+                .build();
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskRepository.updateContentById(eq(1L), anyMap())).thenReturn(0);
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> taskService.updateById(task.getId(), objectMapper.createObjectNode().put("title", "Updated Title")));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    @Test
+    void testUpdateById_WhenChangedWithWriteBehind() {
+        // Arrange
+        TaskEntity task = TaskEntity.builder()
+                .id(1L)
+                .taskListId(1L)
+                .title("My Title")
+                .description("My Description")
+                .build();
+
         TaskUpdateRequest taskUpdateRequest = TaskUpdateRequest.builder()
-                .title("Updated Title") // The title has changed, so we expect the function to update things
+                .title("Updated Title")
                 .description(task.getDescription())
-                .isComplete(task.isComplete())
-                .isAllDay(task.isAllDay())
-                .dueDate(task.getDueDate())
                 .build();
 
-        // Simulate
         when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+        when(taskWriteBehindBuffer.isEnabled()).thenReturn(true);
         when(taskMapper.toDTO(task)).thenReturn(new TaskDTO());
+        // The task is queued as it was before the update, so the buffer can tell which fields changed
+        doAnswer(invocation -> {
+            assertThat(invocation.<TaskEntity>getArgument(0).getTitle()).isEqualTo("My Title");
+            return null;
+        }).when(taskWriteBehindBuffer).enqueue(task, taskUpdateRequest);
 
         // Act
-        taskService.updateById(task.getId(), taskUpdateRequest);
+        taskService.updateById(task.getId(), objectMapper.createObjectNode().put("title", "Updated Title"));
 
-        // Assert, the save function should have been called
-        verify(taskRepository).save(task);
+        // Assert, the update is queued instead of saved, and the response already has the new title
+        verify(taskWriteBehindBuffer).enqueue(task, taskUpdateRequest);
+        verify(taskRepository, never()).updateContentById(anyLong(), anyMap());
+        assertThat(task.getTitle()).isEqualTo("Updated Title");
     }
 
     @Test
@@ -329,6 +512,7 @@ public class TaskServiceImplTest {
         task.setNextTaskId(nextTask.getId());
         nextTask.setPrevTaskId(task.getId());
         // Simulate finding the task and prev task, then simulate finding no subtasks
+        when(taskRepository.findTaskListIdById(task.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskAndSubtasksById(task.getId())).thenReturn(
                 List.of(prevTask, task, nextTask)
         );
@@ -339,7 +523,7 @@ public class TaskServiceImplTest {
         taskService.deleteById(task.getId());
         // Assert and verify
         verify(taskRepository).saveAll(List.of(prevTask, nextTask));
-        verify(taskRepository).deleteById(task.getId());
+        verify(taskRepository).tombstoneTaskAndSubTasksById(eq(task.getId()), any(ZonedDateTime.class));
     }
 
     @Test
@@ -368,6 +552,7 @@ public class TaskServiceImplTest {
         taskA.setParentTaskId(parentTask.getId());
         taskB.setPrevTaskId(taskA.getId());
         // Simulate
+        when(taskRepository.findTaskListIdById(parentTask.getId())).thenReturn(Optional.of(1L));
         when(taskRepository.findTaskAndSubtasksById(parentTask.getId())).thenReturn(
                 List.of(parentTask, taskA)
         );
@@ -378,7 +563,7 @@ public class TaskServiceImplTest {
         taskService.deleteById(parentTask.getId());
         // Assert and verify
         verify(taskRepository).saveAll(List.of(prevParentTask, taskB));
-        verify(taskRepository).deleteTaskAndSubTasksById(parentTask.getId());
+        verify(taskRepository).tombstoneTaskAndSubTasksById(eq(parentTask.getId()), any(ZonedDateTime.class));
     }
 
     @Test
@@ -507,4 +692,26 @@ public class TaskServiceImplTest {
 //    void testCreateTask_WhenPrevTaskIsSubTask() {}
 //    @Test
 //    void testCreateTask_WhenPrevTaskIsBaseTask() {}
+
+    @Test
+    void testFindDeletedSince() {
+        // Arrange
+        Long authUserId = 1L;
+        ZonedDateTime since = ZonedDateTime.now(ZoneId.of("UTC")).minusHours(1);
+        TaskEntity tombstone = TaskEntity.builder()
+                .id(2L)
+                .taskListId(3L)
+                .deletedAt(since.plusMinutes(5))
+                .build();
+        TaskTombstoneDTO tombstoneDTO = new TaskTombstoneDTO(tombstone.getId(), tombstone.getTaskListId(), tombstone.getDeletedAt());
+        when(authUtils.getAuthUserId()).thenReturn(authUserId);
+        when(taskRepository.findTombstonesByUserIdSince(authUserId, since)).thenReturn(List.of(tombstone));
+        when(taskMapper.toTombstoneDTO(tombstone)).thenReturn(tombstoneDTO);
+
+        // Act
+        List<TaskTombstoneDTO> result = taskService.findDeletedSince(since);
+
+        // Assert
+        assertThat(result).containsExactly(tombstoneDTO);
+    }
 }
@@ -1,25 +1,38 @@
 package com.knguyendev.api.services;
 
 import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.RelationshipChange;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipBatchResultDTO;
 import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipDTO;
+import com.knguyendev.api.domain.dto.UserRelationship.UserRelationshipRow;
 import com.knguyendev.api.domain.entities.UserEntity;
 import com.knguyendev.api.domain.entities.UserRelationshipEntity;
+import com.knguyendev.api.enumeration.RelationshipAction;
+import com.knguyendev.api.enumeration.RelationshipFilter;
 import com.knguyendev.api.enumeration.UserRelationshipStatus;
 import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.mappers.UserMapper;
 import com.knguyendev.api.mappers.UserRelationshipMapper;
 import com.knguyendev.api.repositories.UserRelationshipRepository;
 import com.knguyendev.api.repositories.UserRepository;
 import com.knguyendev.api.services.impl.UserRelationshipServiceImpl;
 import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.FriendGraph;
+import com.knguyendev.api.utils.UserEntityCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -41,6 +54,32 @@ public class UserRelationshipServiceImplTest {
     private AuthUtils authUtils;
     @Mock
     private UserRelationshipMapper userRelationshipMapper;
+    @Mock
+    private UserMapper userMapper;
+    @Mock
+    private FriendGraph friendGraph;
+    @Mock
+    private UserEntityCache userEntityCache;
+    @Mock
+    private BlockIndexService blockIndexService;
+
+    /**
+     * Simulates an action being applied to the relationship, and the users being read for the returned DTO.
+     * @return The DTO the service should return
+     */
+    private UserRelationshipDTO stubAppliedAction(RelationshipAction action, UserEntity firstUser, UserEntity secondUser, boolean authUserIsFirstUser, UserRelationshipStatus status) {
+        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
+                .firstUser(firstUser)
+                .secondUser(secondUser)
+                .status(status)
+                .build();
+        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(relationship);
+        when(userRelationshipRepository.applyAction(action, firstUser.getId(), secondUser.getId(), authUserIsFirstUser)).thenReturn(Optional.of(status));
+        when(userEntityCache.findById(firstUser.getId())).thenReturn(Optional.of(firstUser));
+        when(userEntityCache.findById(secondUser.getId())).thenReturn(Optional.of(secondUser));
+        when(userRelationshipMapper.toDTO(relationship)).thenReturn(expectedDTO);
+        return expectedDTO;
+    }
 
     @Test
     public void testRequestFriendshipWhenPendingFirstSecond_AuthUserIsFirstUser() {
@@ -204,44 +243,40 @@ public class UserRelationshipServiceImplTest {
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.PENDING_FIRST_SECOND)
-                .build();
 
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(relationship);
-
-        // Simulate
+        // Simulating the friend request being created, which only happens when there wasn't a relationship
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-
-        // Simulating idea that we didn't find a user relationship
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.empty());
-        when(userRepository.findByIds(List.of(authUser.getId(), targetUser.getId()))).thenReturn(
-                List.of(authUser, targetUser)
-        );
-        // Simulate saving UserRelationship into the database; verifies an unsaved user entity was passed in
-        when(userRelationshipRepository.save(any(UserRelationshipEntity.class))).thenReturn(
-                relationship
-        );
-        when(userRelationshipMapper.toDTO(relationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.REQUEST, authUser, targetUser, true, UserRelationshipStatus.PENDING_FIRST_SECOND);
 
         // Act
         UserRelationshipDTO resultDTO = userRelationshipService.requestFriendship(targetUser.getId());
 
-        // Assert
+        // Assert; the relationship is never loaded when the request succeeds
         assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRepository, times(1)).findByIds(List.of(authUser.getId(), targetUser.getId()));
-        verify(userRelationshipRepository, times(1)).save(any(UserRelationshipEntity.class));
-        verify(userRelationshipMapper, times(1)).toDTO(relationship);
+        verify(userRelationshipRepository, never()).findByFirstUserIdAndSecondUserId(any(), any());
+        verify(userRelationshipRepository, never()).save(any(UserRelationshipEntity.class));
+    }
+
+    @Test
+    public void testRequestFriendshipWhenTargetUserNotFound() {
+        // Arrange
+        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity targetUser = TestUtil.createSavedUserB();
+        authUser.setId(1L);
+        targetUser.setId(2L);
+
+        // Simulating the friend request not being created, without there being a relationship
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(authUser.getId(), targetUser.getId())).thenReturn(Optional.empty());
+        when(userEntityCache.findById(targetUser.getId())).thenReturn(Optional.empty());
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.requestFriendship(targetUser.getId()));
+
+        // Assert
+        assertEquals("User with ID '" + targetUser.getId() + "' wasn't found!", exception.getMessage());
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+        verify(userRelationshipRepository, times(1)).applyAction(RelationshipAction.REQUEST, authUser.getId(), targetUser.getId(), true);
     }
 
     @Test
@@ -598,30 +633,23 @@ public class UserRelationshipServiceImplTest {
     }
 
     @Test
-    public void testDeleteFriendRequestWhenNoRelationship() {
+    public void testAcceptFriendRequest_AuthUserIsFirstUser() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        // Simulate
+        // Simulate the friend request that the target user sent being accepted
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.empty());
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.ACCEPT, authUser, targetUser, true, UserRelationshipStatus.FRIENDS);
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.deleteFriendRequest(targetUser.getId()));
+        UserRelationshipDTO resultDTO = userRelationshipService.acceptFriendRequest(targetUser.getId());
 
-        // Assert & Verify
-        assertEquals("A pending friend request wasn't found!", exception.getMessage());
-        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        // Assert
+        assertEquals(expectedDTO, resultDTO);
+        verify(friendGraph, times(1)).addFriendship(authUser.getId(), targetUser.getId());
     }
 
     @Test
@@ -632,20 +660,8 @@ public class UserRelationshipServiceImplTest {
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-            .id(1L)
-            .firstUser(authUser)
-            .secondUser(targetUser)
-            .status(UserRelationshipStatus.FRIENDS)
-            .build();
-
-
-        // Simulate the idea that a relationship exists, but it's not a pending friendship
+        // Simulate nothing being deleted, since there isn't a pending friend request
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
 
         // Act
         ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.deleteFriendRequest(targetUser.getId()));
@@ -653,37 +669,27 @@ public class UserRelationshipServiceImplTest {
         // Assert & Verify
         assertEquals("A pending friend request wasn't found!", exception.getMessage());
         assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        verify(userRelationshipRepository, times(1)).applyAction(RelationshipAction.DECLINE, authUser.getId(), targetUser.getId(), true);
+        verify(userRelationshipRepository, never()).findByFirstUserIdAndSecondUserId(any(), any());
     }
 
     @Test
-    public void testDeleteFriendshipWhenNoRelationship() {
+    public void testDeleteFriendRequest_AuthUserIsSecondUser() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(1L);
-        targetUser.setId(2L);
+        authUser.setId(2L);
+        targetUser.setId(1L);
 
-        // Simulate getting no relationship from query
+        // Simulate the pending friend request that the target user sent being deleted
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.empty());
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.DECLINE, targetUser, authUser, false, UserRelationshipStatus.PENDING_FIRST_SECOND);
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.deleteFriendship(targetUser.getId()));
+        UserRelationshipDTO resultDTO = userRelationshipService.deleteFriendRequest(targetUser.getId());
 
-        // Assert & Verify
-        assertEquals("Friendship being deleted wasn't found!", exception.getMessage());
-        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        // Assert
+        assertEquals(expectedDTO, resultDTO);
     }
 
     @Test
@@ -693,18 +699,9 @@ public class UserRelationshipServiceImplTest {
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.PENDING_FIRST_SECOND)
-                .build();
 
-        // Simulate getting a relationship that doesn't have the friendship status
+        // Simulate nothing being deleted, since the users aren't friends
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
 
         // Act
         ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.deleteFriendship(targetUser.getId()));
@@ -712,103 +709,75 @@ public class UserRelationshipServiceImplTest {
         // Assert & Verify
         assertEquals("Friendship being deleted wasn't found!", exception.getMessage());
         assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        verify(userRelationshipRepository, times(1)).applyAction(RelationshipAction.UNFRIEND, authUser.getId(), targetUser.getId(), true);
+        verifyNoInteractions(friendGraph);
     }
 
     @Test
-    public void testBlockUserWhenNoRelationship() {
+    public void testDeleteFriendship() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        UserRelationshipEntity unsavedRelationship = UserRelationshipEntity.builder()
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
-        // Auth. user is blocking the target user in this relationship
-        UserRelationshipEntity savedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
+        // Simulate the friendship being deleted
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.UNFRIEND, authUser, targetUser, true, UserRelationshipStatus.FRIENDS);
+
+        // Act
+        UserRelationshipDTO resultDTO = userRelationshipService.deleteFriendship(targetUser.getId());
+
+        // Assert
+        assertEquals(expectedDTO, resultDTO);
+        verify(friendGraph, times(1)).removeFriendship(authUser.getId(), targetUser.getId());
+    }
 
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(savedRelationship);
+    @Test
+    public void testBlockUserWhenNoRelationship() {
+        // Arrange
+        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity targetUser = TestUtil.createSavedUserB();
+        authUser.setId(1L);
+        targetUser.setId(2L);
 
-        // Simulate: Simulating that there wasn't an existing user relationship
+        // Simulate: Auth. user is blocking the target user in the relationship that gets created
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.empty());
-        when(userRepository.findByIds(List.of(authUser.getId(), targetUser.getId()))).thenReturn(List.of(authUser, targetUser));
-        when(userRelationshipRepository.save(unsavedRelationship)).thenReturn(savedRelationship);
-        when(userRelationshipMapper.toDTO(savedRelationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.BLOCK, authUser, targetUser, true, UserRelationshipStatus.BLOCK_FIRST_SECOND);
 
         // Act
         UserRelationshipDTO resultDTO = userRelationshipService.blockUser(targetUser.getId());
 
         // Assert and Verify
         assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRepository, times(1)).findByIds(List.of(authUser.getId(), targetUser.getId()));
-        verify(userRelationshipRepository, times(1)).save(unsavedRelationship);
-        verify(userRelationshipMapper, times(1)).toDTO(savedRelationship);
+        verify(friendGraph, times(1)).removeFriendship(authUser.getId(), targetUser.getId());
+        verify(userRelationshipRepository, never()).findByFirstUserIdAndSecondUserId(any(), any());
     }
 
     @Test
-    public void testBlockUserWhenNonBlockedRelationship() {
+    public void testBlockUserWhenChangedByConcurrentRequest() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        // Auth. user is blocking the target user in this relationship
-        UserRelationshipEntity unsavedRelationship = UserRelationshipEntity.builder()
+        // Simulate: The block wasn't applied, but the users are friends, which can be blocked. So another request must have changed it.
+        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
                 .id(1L)
                 .firstUser(authUser)
                 .secondUser(targetUser)
                 .status(UserRelationshipStatus.FRIENDS)
                 .build();
-        UserRelationshipEntity savedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
-
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(savedRelationship);
-
-        // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(unsavedRelationship));
-        when(userRelationshipRepository.save(unsavedRelationship)).thenReturn(savedRelationship);
-        when(userRelationshipMapper.toDTO(savedRelationship)).thenReturn(expectedDTO);
+        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(authUser.getId(), targetUser.getId())).thenReturn(Optional.of(relationship));
 
         // Act
-        UserRelationshipDTO resultDTO = userRelationshipService.blockUser(targetUser.getId());
+        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.blockUser(targetUser.getId()));
 
-        // Assert and Verify
-        assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).save(unsavedRelationship);
-        verify(userRelationshipMapper, times(1)).toDTO(savedRelationship);
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        verifyNoInteractions(friendGraph);
     }
 
     @Test
@@ -854,42 +823,15 @@ public class UserRelationshipServiceImplTest {
         authUser.setId(2L);
         targetUser.setId(1L);
 
-        // Auth. user is blocking the target user in this relationship
-        UserRelationshipEntity unsavedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(targetUser)
-                .secondUser(authUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
-
-        UserRelationshipEntity savedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(targetUser)
-                .secondUser(authUser)
-                .status(UserRelationshipStatus.BLOCK_BOTH)
-                .build();
-
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(savedRelationship);
-
-        // Simulate
+        // Simulate: The target user had already blocked the auth. user, so now they've blocked each other
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        )).thenReturn(Optional.of(unsavedRelationship));
-        when(userRelationshipRepository.save(unsavedRelationship)).thenReturn(savedRelationship);
-        when(userRelationshipMapper.toDTO(savedRelationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.BLOCK, targetUser, authUser, false, UserRelationshipStatus.BLOCK_BOTH);
 
+        // Act
         UserRelationshipDTO resultDTO = userRelationshipService.blockUser(targetUser.getId());
 
-        // Assert and Verify
+        // Assert
         assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).save(unsavedRelationship);
-        verify(userRelationshipMapper, times(1)).toDTO(savedRelationship);
     }
 
     @Test
@@ -900,42 +842,15 @@ public class UserRelationshipServiceImplTest {
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        // Auth. user is blocking the target user in this relationship
-        UserRelationshipEntity unsavedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_SECOND_FIRST)
-                .build();
-
-        UserRelationshipEntity savedRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_BOTH)
-                .build();
-
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(savedRelationship);
-
-        // Simulate
+        // Simulate: The target user had already blocked the auth. user, so now they've blocked each other
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(unsavedRelationship));
-        when(userRelationshipRepository.save(unsavedRelationship)).thenReturn(savedRelationship);
-        when(userRelationshipMapper.toDTO(savedRelationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.BLOCK, authUser, targetUser, true, UserRelationshipStatus.BLOCK_BOTH);
 
+        // Act
         UserRelationshipDTO resultDTO = userRelationshipService.blockUser(targetUser.getId());
 
-        // Assert and verify
+        // Assert
         assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).save(unsavedRelationship);
-        verify(userRelationshipMapper, times(1)).toDTO(savedRelationship);
     }
 
     @Test
@@ -1011,264 +926,228 @@ public class UserRelationshipServiceImplTest {
 
     // Then the test cases for unblocking
     @Test
-    public void testUnblockUserWhenNoRelationship() {
+    public void testUnblockUserWhenNotBlockedByAuthUser() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(1L);
-        targetUser.setId(2L);
+        authUser.setId(2L);
+        targetUser.setId(1L);
 
-        // Simulate
+        // Simulate nothing being changed, since the auth. user hasn't blocked the target user
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.empty());
 
         // Act
         ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.unblockUser(targetUser.getId()));
 
-        // Assert and Verify
+        // Assert & Verify
         assertEquals("You haven't blocked this user, so you can't unblock them!", exception.getMessage());
         assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        verify(userRelationshipRepository, times(1)).applyAction(RelationshipAction.UNBLOCK, targetUser.getId(), authUser.getId(), false);
     }
 
     @Test
-    public void testUnblockUserWhenNotBlockedStatus() {
+    public void testUnblockUserWhenBlockBoth() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.PENDING_SECOND_FIRST)
-                .build();
-
-        // Simulate
+        // Simulate: Only the target user has the auth. user blocked now
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.UNBLOCK, authUser, targetUser, true, UserRelationshipStatus.BLOCK_SECOND_FIRST);
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.unblockUser(targetUser.getId()));
+        UserRelationshipDTO resultDTO = userRelationshipService.unblockUser(targetUser.getId());
 
-        // Assert and Verify
-        assertEquals("You haven't blocked this user, so you can't unblock them!", exception.getMessage());
-        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        // Assert
+        assertEquals(expectedDTO, resultDTO);
+        verify(blockIndexService).invalidate(authUser.getId(), targetUser.getId());
     }
 
     @Test
-    public void testUnblockUserWhenBlockBoth() {
+    public void testUnblockUserWhenBlockFirstSecond_AuthUserIsFirstUser() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
         authUser.setId(1L);
         targetUser.setId(2L);
 
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_BOTH)
-                .build();
-
-        UserRelationshipEntity newRelationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                // Auth user is doing the unblocking, so the relationship should now be the other user blocking the auth. user
-                .status(UserRelationshipStatus.BLOCK_SECOND_FIRST)
-                .build();
-
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(newRelationship);
-
-        // Simulate
+        // Simulate: The relationship is deleted, and its status from before is returned
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
-        when(userRelationshipRepository.save(relationship)).thenReturn(newRelationship);
-        when(userRelationshipMapper.toDTO(newRelationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.UNBLOCK, authUser, targetUser, true, UserRelationshipStatus.BLOCK_FIRST_SECOND);
 
         // Act
         UserRelationshipDTO resultDTO = userRelationshipService.unblockUser(targetUser.getId());
 
-        // Assert and verify
+        // Assert
         assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).save(relationship);
-        verify(userRelationshipMapper, times(1)).toDTO(newRelationship);
     }
 
     @Test
-    public void testUnblockUserWhenBlockFirstSecond_AuthUserIsFirstUser() {
+    public void testUnblockUserWhenBlockSecondFirst_AuthUserIsSecondUser() {
         // Arrange
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(1L);
-        targetUser.setId(2L);
-
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
-
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(relationship);
+        authUser.setId(2L);
+        targetUser.setId(1L);
 
-        // Simulate
+        // Simulate: The relationship is deleted, and its status from before is returned
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
-        when(userRelationshipMapper.toDTO(relationship)).thenReturn(expectedDTO);
+        UserRelationshipDTO expectedDTO = stubAppliedAction(RelationshipAction.UNBLOCK, targetUser, authUser, false, UserRelationshipStatus.BLOCK_SECOND_FIRST);
 
         // Act
         UserRelationshipDTO resultDTO = userRelationshipService.unblockUser(targetUser.getId());
 
-        // Assert and Verify
-        assertEquals(expectedDTO,resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).delete(
-                relationship
-        );
-        verify(userRelationshipMapper, times(1)).toDTO(
-                relationship
-        );
+        // Assert
+        assertEquals(expectedDTO, resultDTO);
     }
 
     @Test
-    public void testUnblockUserWhenBlockFirstSecond_AuthUserIsSecondUser() {
-        // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
-        UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(2L);
-        targetUser.setId(1L);
-
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(targetUser)
-                .secondUser(authUser)
-                .status(UserRelationshipStatus.BLOCK_FIRST_SECOND)
-                .build();
-
-        // Simulate
-        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        )).thenReturn(Optional.of(relationship));
+    public void testGetAuthUserRelationshipsIncoming() {
+        // Arrange; two rows come back for a page of one, so there's a next page
+        Long authUserId = 1L;
+        UserRelationshipRow rowA = new UserRelationshipRow();
+        rowA.setId(10L);
+        UserRelationshipRow rowB = new UserRelationshipRow();
+        rowB.setId(12L);
+        UserRelationshipDTO dtoA = UserRelationshipDTO.builder().status(UserRelationshipStatus.PENDING_SECOND_FIRST).build();
+        ReflectionTestUtils.setField(userRelationshipService, "maxPageSize", 10);
+        when(authUtils.getAuthUserId()).thenReturn(authUserId);
+        when(userRelationshipRepository.findRowPageByUserId(
+                authUserId,
+                List.of(UserRelationshipStatus.PENDING_SECOND_FIRST),
+                List.of(UserRelationshipStatus.PENDING_FIRST_SECOND),
+                0L,
+                Limit.of(2)
+        )).thenReturn(List.of(rowA, rowB));
+        when(userRelationshipMapper.toDTO(rowA)).thenReturn(dtoA);
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.unblockUser(targetUser.getId()));
+        KeysetPageDTO<UserRelationshipDTO> result = userRelationshipService.getAuthUserRelationships(RelationshipFilter.INCOMING, null, 1);
 
         // Assert and Verify
-        assertEquals("You haven't blocked this user, so you can't unblock them!", exception.getMessage());
-        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        );
+        assertEquals(List.of(dtoA), result.getItems());
+        assertEquals(10L, result.getNextCursor());
+        verify(userRelationshipMapper, never()).toDTO(rowB);
     }
 
     @Test
-    public void testUnblockUserWhenBlockSecondFirst_AuthUserIsFirstUser() {
-        // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
-        UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(1L);
-        targetUser.setId(2L);
+    public void testGetAuthUserRelationshipsRejectsSizeOverMaximum() {
+        ReflectionTestUtils.setField(userRelationshipService, "maxPageSize", 10);
+        ServiceException ex = assertThrows(ServiceException.class, () -> userRelationshipService.getAuthUserRelationships(null, null, 0));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(userRelationshipRepository);
+    }
 
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(authUser)
-                .secondUser(targetUser)
-                .status(UserRelationshipStatus.BLOCK_SECOND_FIRST)
-                .build();
+    @Test
+    public void testCountIncomingRequests() {
+        // Arrange
+        Long authUserId = 1L;
+        when(authUtils.getAuthUserId()).thenReturn(authUserId);
+        when(userRelationshipRepository.countByUserId(
+                authUserId,
+                List.of(UserRelationshipStatus.PENDING_SECOND_FIRST),
+                List.of(UserRelationshipStatus.PENDING_FIRST_SECOND)
+        )).thenReturn(3L);
+
+        // Act and Assert
+        assertEquals(3L, userRelationshipService.countIncomingRequests());
+    }
 
-        // Simulate
+    @Test
+    public void testGetFriendSuggestions() {
+        // Arrange; userC is suggested, and users the auth. user already has a relationship with are excluded
+        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity userC = TestUtil.createSavedUserC();
+        UserSummaryDTO summaryC = UserSummaryDTO.builder().id(userC.getId()).username(userC.getUsername()).build();
+        ReflectionTestUtils.setField(userRelationshipService, "maxPageSize", 10);
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        )).thenReturn(Optional.of(relationship));
+        when(userRelationshipRepository.findRelatedUserIds(authUser.getId())).thenReturn(List.of(5L));
+        when(friendGraph.suggestFriendIds(authUser.getId(), Set.of(5L), 3)).thenReturn(List.of(userC.getId()));
+        when(userRepository.findByIds(List.of(userC.getId()))).thenReturn(List.of(userC));
+        when(userMapper.toSummaryDTO(userC)).thenReturn(summaryC);
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.unblockUser(targetUser.getId()));
+        List<UserSummaryDTO> result = userRelationshipService.getFriendSuggestions(3);
 
-        // Assert and Verify
-        assertEquals("You haven't blocked this user, so you can't unblock them!", exception.getMessage());
-        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                authUser.getId(),
-                targetUser.getId()
-        );
+        // Assert
+        assertEquals(List.of(summaryC), result);
     }
 
     @Test
-    public void testUnblockUserWhenBlockSecondFirst_AuthUserIsSecondUser() {
-        // Arrange
+    public void testGetMutualFriendsWhenBlockedByTarget() {
+        // Arrange; the target user has blocked the auth. user
         UserEntity authUser = TestUtil.createSavedUserA();
         UserEntity targetUser = TestUtil.createSavedUserB();
-        authUser.setId(2L);
-        targetUser.setId(1L);
+        ReflectionTestUtils.setField(userRelationshipService, "maxPageSize", 10);
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(blockIndexService.hasBlocked(targetUser.getId(), authUser.getId())).thenReturn(true);
 
-        // Simulate relationship where auth user is receiving a friend request
-        UserRelationshipEntity relationship = UserRelationshipEntity.builder()
-                .id(1L)
-                .firstUser(targetUser)
-                .secondUser(authUser)
-                .status(UserRelationshipStatus.BLOCK_SECOND_FIRST)
-                .build();
+        // Act and Assert
+        ServiceException ex = assertThrows(ServiceException.class, () -> userRelationshipService.getMutualFriends(targetUser.getId(), 5));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getHttpStatus());
+        verifyNoInteractions(friendGraph, userRelationshipRepository);
+    }
 
-        UserRelationshipDTO expectedDTO = TestUtil.createRelationshipDTO(relationship);
+    @Test
+    public void testBlockUsersBatch() {
+        // Arrange; the auth. user is friends with userB and has already blocked userC. User 99 doesn't exist.
+        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity userB = TestUtil.createSavedUserB();
+        UserEntity userC = TestUtil.createSavedUserC();
+        ReflectionTestUtils.setField(userRelationshipService, "maxBatchSize", 10);
+        List<Long> distinctIds = List.of(userB.getId(), userC.getId(), authUser.getId(), 99L);
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(userRepository.findByIds(distinctIds)).thenReturn(List.of(authUser, userB, userC));
+        when(userRelationshipRepository.findStatusesWithUsers(authUser.getId(), distinctIds)).thenReturn(List.of(
+                new Object[]{authUser.getId(), userB.getId(), UserRelationshipStatus.FRIENDS},
+                new Object[]{authUser.getId(), userC.getId(), UserRelationshipStatus.BLOCK_FIRST_SECOND}
+        ));
+        RelationshipChange expectedChange = new RelationshipChange(authUser.getId(), userB.getId(), UserRelationshipStatus.FRIENDS, UserRelationshipStatus.BLOCK_FIRST_SECOND);
+        when(userRelationshipRepository.applyChanges(List.of(expectedChange))).thenReturn(new boolean[]{true});
+
+        // Act; userB is given twice, but only blocked once
+        List<UserRelationshipBatchResultDTO> results = userRelationshipService.blockUsers(
+                List.of(userB.getId(), userC.getId(), authUser.getId(), 99L, userB.getId()));
 
-        // Simulate
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals(UserRelationshipStatus.BLOCK_FIRST_SECOND, results.get(0).getStatus());
+        assertEquals("You already have this user blocked!", results.get(1).getMessage());
+        assertEquals(HttpStatus.BAD_REQUEST, results.get(2).getHttpStatus());
+        assertEquals(HttpStatus.NOT_FOUND, results.get(3).getHttpStatus());
+        verify(friendGraph, times(1)).removeFriendship(authUser.getId(), userB.getId());
+        verify(blockIndexService, times(1)).invalidate(authUser.getId(), userB.getId());
+        verifyNoMoreInteractions(blockIndexService);
+    }
+
+    @Test
+    public void testRequestFriendshipsBatchReportsConcurrentChanges() {
+        // Arrange; there's no relationship with userB when it's read, but one is created before the batch is written
+        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity userB = TestUtil.createSavedUserB();
+        ReflectionTestUtils.setField(userRelationshipService, "maxBatchSize", 10);
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(userRelationshipRepository.findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        )).thenReturn(Optional.of(relationship));
-        when(userRelationshipMapper.toDTO(relationship)).thenReturn(expectedDTO);
+        when(userRepository.findByIds(List.of(userB.getId()))).thenReturn(List.of(userB));
+        when(userRelationshipRepository.applyChanges(List.of(new RelationshipChange(authUser.getId(), userB.getId(), null, UserRelationshipStatus.PENDING_FIRST_SECOND))))
+                .thenReturn(new boolean[]{false});
 
         // Act
-        UserRelationshipDTO resultDTO = userRelationshipService.unblockUser(targetUser.getId());
+        List<UserRelationshipBatchResultDTO> results = userRelationshipService.requestFriendships(List.of(userB.getId()));
 
-        // Assert and Verify
-        assertEquals(expectedDTO, resultDTO);
-        verify(userRelationshipRepository, times(1)).findByFirstUserIdAndSecondUserId(
-                targetUser.getId(),
-                authUser.getId()
-        );
-        verify(userRelationshipRepository, times(1)).delete(relationship);
-        verify(userRelationshipMapper, times(1)).toDTO(relationship);
+        // Assert
+        assertEquals(1, results.size());
+        assertEquals(HttpStatus.CONFLICT, results.get(0).getHttpStatus());
+    }
+
+    @Test
+    public void testRequestFriendshipsRejectsTooManyUsers() {
+        ReflectionTestUtils.setField(userRelationshipService, "maxBatchSize", 2);
+
+        ServiceException exception = assertThrows(ServiceException.class, () -> userRelationshipService.requestFriendships(List.of(2L, 3L, 4L)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        verifyNoInteractions(userRelationshipRepository);
     }
 }
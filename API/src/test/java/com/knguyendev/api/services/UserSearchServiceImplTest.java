@@ -0,0 +1,116 @@
+package com.knguyendev.api.services;
+
+import com.knguyendev.api.domain.dto.User.UserSummaryDTO;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.impl.UserSearchServiceImpl;
+import com.knguyendev.api.utils.AuthUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the UserSearchServiceImpl class
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserSearchServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private BlockIndexService blockIndexService;
+    @Mock
+    private AuthUtils authUtils;
+
+    private UserSearchServiceImpl userSearchService;
+
+    private static final Long AUTH_USER_ID = 1L;
+
+    @BeforeEach
+    public void setUp() {
+        userSearchService = new UserSearchServiceImpl(userRepository, blockIndexService, authUtils,
+                3, 3, 10, 100, Duration.ofMinutes(1));
+    }
+
+    private static List<UserSummaryDTO> createUsers(String prefix, long firstId, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> UserSummaryDTO.builder().id(firstId + i).username(prefix + i).firstName("First").lastName("Last").build())
+                .toList();
+    }
+
+    @Test
+    public void testSearchExcludesSelfAndBlockers() {
+        // Arrange; users 1 to 5 match, the searcher is user 1 and user 2 has blocked them
+        when(authUtils.getAuthUserId()).thenReturn(AUTH_USER_ID);
+        when(blockIndexService.countBlockers(AUTH_USER_ID)).thenReturn(1);
+        when(blockIndexService.hasBlocked(2L, AUTH_USER_ID)).thenReturn(true);
+        when(userRepository.findSummariesByUsernamePrefix("knguyen", "knguyeo", 5)).thenReturn(createUsers("knguyen", 1L, 5));
+
+        // Act
+        List<UserSummaryDTO> result = userSearchService.searchByUsernamePrefix("KNguyen", null);
+
+        // Assert
+        assertEquals(List.of(3L, 4L, 5L), result.stream().map(UserSummaryDTO::getId).toList());
+    }
+
+    @Test
+    public void testHotPrefixIsCached() {
+        // Arrange
+        when(authUtils.getAuthUserId()).thenReturn(AUTH_USER_ID);
+        when(userRepository.findSummariesByUsernamePrefix("ab", "ac", 10)).thenReturn(createUsers("ab", 10L, 10));
+
+        // Act
+        List<UserSummaryDTO> first = userSearchService.searchByUsernamePrefix("ab", null);
+        List<UserSummaryDTO> second = userSearchService.searchByUsernamePrefix("ab", 2);
+
+        // Assert
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+        verify(userRepository, times(1)).findSummariesByUsernamePrefix(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void testSearchFallsBackToDatabaseWhenCachedCandidatesRunOut() {
+        // Arrange; user 1 has been blocked by many users, more than the cached candidates can cover
+        List<Long> blockerIds = createIds(100L, 10);
+        when(authUtils.getAuthUserId()).thenReturn(AUTH_USER_ID);
+        when(blockIndexService.countBlockers(AUTH_USER_ID)).thenReturn(blockerIds.size());
+        when(blockIndexService.hasBlocked(anyLong(), eq(AUTH_USER_ID))).thenAnswer(invocation -> blockerIds.contains(invocation.<Long>getArgument(0)));
+        when(userRepository.findSummariesByUsernamePrefix("ab", "ac", 10)).thenReturn(createUsers("ab", 100L, 10));
+        when(userRepository.findSummariesByUsernamePrefix("ab", "ac", 14)).thenReturn(createUsers("ab", 100L, 14));
+
+        // Act
+        List<UserSummaryDTO> result = userSearchService.searchByUsernamePrefix("ab", null);
+
+        // Assert
+        assertEquals(List.of(110L, 111L, 112L), result.stream().map(UserSummaryDTO::getId).toList());
+    }
+
+    @Test
+    public void testSearchRejectsInvalidPrefix() {
+        ServiceException ex = assertThrows(ServiceException.class, () -> userSearchService.searchByUsernamePrefix("a%", null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testSearchRejectsLimitOverMaximum() {
+        ServiceException ex = assertThrows(ServiceException.class, () -> userSearchService.searchByUsernamePrefix("ab", 4));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    private static List<Long> createIds(long firstId, int count) {
+        return IntStream.range(0, count).mapToObj(i -> firstId + i).toList();
+    }
+}
@@ -1,34 +1,47 @@
 package com.knguyendev.api.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.dto.KeysetPageDTO;
 import com.knguyendev.api.domain.dto.User.ChangePasswordDTO;
 import com.knguyendev.api.domain.dto.User.UserDTO;
 import com.knguyendev.api.domain.dto.User.UserDeleteDTO;
+import com.knguyendev.api.domain.dto.User.UserFilterDTO;
 import com.knguyendev.api.domain.dto.User.UserProfileUpdateDTO;
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.enumeration.DeletionTargetType;
 import com.knguyendev.api.enumeration.UserRole;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.mappers.UserMapper;
-import com.knguyendev.api.repositories.TaskListRepository;
-import com.knguyendev.api.repositories.UserRelationshipRepository;
 import com.knguyendev.api.repositories.UserRepository;
 import com.knguyendev.api.services.impl.UserServiceImpl;
 import com.knguyendev.api.utils.AuthUtils;
+import com.knguyendev.api.utils.JsonMergePatch;
 import com.knguyendev.api.utils.ServiceUtils;
+import com.knguyendev.api.utils.UserEntityCache;
+import jakarta.persistence.EntityManager;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -42,9 +55,7 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    TaskListRepository taskListRepository;
-    @Mock
-    UserRelationshipRepository userRelationshipRepository;
+    private DeletionJobService deletionJobService;
 
     @Mock
     private UserMapper userMapper;
@@ -57,10 +68,20 @@ public class UserServiceImplTest {
     @Mock
     private ServiceUtils serviceUtils;
     @Mock
+    private UserEntityCache userEntityCache;
+    @Mock
+    private AvailabilityService availabilityService;
+    @Spy
+    private JsonMergePatch jsonMergePatch = new JsonMergePatch(objectMapper, Validation.buildDefaultValidatorFactory().getValidator());
+    @Mock
+    private EntityManager entityManager;
+    @Mock
     private HttpServletRequest request;
     @Mock
     private HttpServletResponse response;
 
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @Test
     public void testFindById() {
         // Arrange
@@ -81,30 +102,73 @@ public class UserServiceImplTest {
     }
 
     @Test
-    public void testFindAll() {
+    public void testFindPage() {
         // Arrange
         UserEntity userA = TestUtil.createSavedUserA();
         UserEntity userB = TestUtil.createSavedUserB();
         UserDTO userDTOA = TestUtil.createUserDTOA();
         UserDTO userDTOB = TestUtil.createUserDTOB();
-        List<UserEntity> users = List.of(userA, userB);
+        UserFilterDTO filter = UserFilterDTO.builder().role(UserRole.USER).build();
+        ReflectionTestUtils.setField(userService, "maxPageSize", 10);
 
-        // Simulate finding and mapping
-        when(userRepository.findAll()).thenReturn(users);
+        // Simulate finding and mapping; one more user than the page size is asked for
+        when(userRepository.findPageByFilter(0L, UserRole.USER, null, null, null, Limit.of(2))).thenReturn(List.of(userA, userB));
         when(userMapper.toDTO(userA)).thenReturn(userDTOA);
         when(userMapper.toDTO(userB)).thenReturn(userDTOB);
 
         // Act
-        List<UserDTO> result = userService.findAll();
+        KeysetPageDTO<UserDTO> result = userService.findPage(filter, null, 1);
 
-        // Assert and verify
-        assertEquals(users.size(), result.size());
-        assertEquals(userDTOA, result.get(0));
-        assertEquals(userDTOB, result.get(1));
+        // Assert; the extra user means there's a next page, which starts after the last user of this one
+        assertEquals(List.of(userDTOA), result.getItems());
+        assertEquals(userDTOA.getId(), result.getNextCursor());
+    }
 
-        verify(userRepository, times(1)).findAll();
-        verify(userMapper, times(1)).toDTO(userA);
-        verify(userMapper, times(1)).toDTO(userB);
+    @Test
+    public void testFindPageLastPage() {
+        // Arrange
+        UserEntity userB = TestUtil.createSavedUserB();
+        UserDTO userDTOB = TestUtil.createUserDTOB();
+        ReflectionTestUtils.setField(userService, "maxPageSize", 10);
+        when(userRepository.findPageByFilter(5L, null, null, null, null, Limit.of(3))).thenReturn(List.of(userB));
+        when(userMapper.toDTO(userB)).thenReturn(userDTOB);
+
+        // Act
+        KeysetPageDTO<UserDTO> result = userService.findPage(new UserFilterDTO(), 5L, 2);
+
+        // Assert
+        assertEquals(List.of(userDTOB), result.getItems());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    public void testFindPageRejectsSizeOverMaximum() {
+        ReflectionTestUtils.setField(userService, "maxPageSize", 10);
+        ServiceException ex = assertThrows(ServiceException.class, () -> userService.findPage(new UserFilterDTO(), null, 11));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testExportUsers() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        UserEntity userB = TestUtil.createSavedUserB();
+        UserDTO userDTOA = TestUtil.createUserDTOA();
+        UserDTO userDTOB = TestUtil.createUserDTOB();
+        ReflectionTestUtils.setField(userService, "entityManager", entityManager);
+        when(userRepository.streamByFilter(null, true, null, null)).thenReturn(Stream.of(userA, userB));
+        when(userMapper.toDTO(userA)).thenReturn(userDTOA);
+        when(userMapper.toDTO(userB)).thenReturn(userDTOB);
+
+        // Act
+        List<UserDTO> exported = new ArrayList<>();
+        userService.exportUsers(UserFilterDTO.builder().isVerified(true).build(), exported::add);
+
+        // Assert; every user is detached once exported so they don't pile up in the persistence context
+        assertEquals(List.of(userDTOA, userDTOB), exported);
+        verify(entityManager).detach(userA);
+        verify(entityManager).detach(userB);
     }
 
     @Test
@@ -128,21 +192,31 @@ public class UserServiceImplTest {
         verify(userMapper, times(1)).toDTO(userA);
     }
 
+    /**
+     * Lowercases a user's username and email, the way they're stored after registration, since the profile patch is
+     * normalized before it's compared to the user.
+     */
+    private static UserEntity createNormalizedUser(UserEntity user) {
+        user.setUsername(user.getUsername().toLowerCase());
+        user.setEmail(user.getEmail().toLowerCase());
+        return user;
+    }
+
     @Test
     public void testUpdateAccountProfileWhenSuccess() {
         // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
 
         UserProfileUpdateDTO updateDTO = UserProfileUpdateDTO.builder()
-                .username("NewUsername")
-                .email("NewEmail")
+                .username("newusername")
+                .email("new.email@example.com")
                 .firstName("NewFirstName")
                 .lastName("NewLastName")
                 .biography("NewBiography")
                 .build();
 
         // Create the 'updatedUser', which is just the authenticated user with the information from the updateDTO
-        UserEntity updatedUser = TestUtil.createSavedUserA();
+        UserEntity updatedUser = createNormalizedUser(TestUtil.createSavedUserA());
         updatedUser.setUsername(updateDTO.getUsername());
         updatedUser.setEmail(updateDTO.getEmail());
         updatedUser.setFirstName(updateDTO.getFirstName());
@@ -164,14 +238,14 @@ public class UserServiceImplTest {
 
         // Simulate no conflict when finding and updating the user
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(userRepository.findByUsername(updateDTO.getUsername())).thenReturn(Optional.empty());
         when(userRepository.findByEmail(updateDTO.getEmail())).thenReturn(Optional.empty());
         when(userRepository.save(authUser)).thenReturn(updatedUser);
         when(userMapper.toDTO(updatedUser)).thenReturn(expectedDTO);
 
         // Act
-        UserDTO resultDTO = userService.updateAccountProfile(updateDTO);
+        UserDTO resultDTO = userService.updateAccountProfile(objectMapper.valueToTree(updateDTO));
 
         // Assert and verify
         assertEquals(resultDTO, expectedDTO);
@@ -181,13 +255,14 @@ public class UserServiceImplTest {
         verify(userRepository, times(1)).findByEmail(updateDTO.getEmail());
 
         verify(userRepository, times(1)).save(updatedUser);
+        verify(userEntityCache, times(1)).evict(authUser.getId());
         verify(userMapper, times(1)).toDTO(updatedUser);
     }
 
     @Test
     public void testUpdateAccountProfileWhenNoChange() {
         // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
         UserDTO expectedDTO = TestUtil.createUserDTOA();
 
         // Give updateDTO the same info as the authenticated user
@@ -201,11 +276,11 @@ public class UserServiceImplTest {
 
         // Simulate no conflict when finding and updating the user
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(userMapper.toDTO(authUser)).thenReturn(expectedDTO);
 
         // Act
-        UserDTO resultDTO = userService.updateAccountProfile(updateDTO);
+        UserDTO resultDTO = userService.updateAccountProfile(objectMapper.valueToTree(updateDTO));
 
         // Assert and Verify
         assertEquals(resultDTO, expectedDTO);
@@ -218,8 +293,8 @@ public class UserServiceImplTest {
     @Test
     public void testUpdateAccountProfileWhenConflictingUsername() {
         // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
-        UserEntity existingUser = TestUtil.createSavedUserB();
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
+        UserEntity existingUser = createNormalizedUser(TestUtil.createSavedUserB());
 
         // Give updateDTO the new username
         UserProfileUpdateDTO updateDTO = UserProfileUpdateDTO.builder()
@@ -232,11 +307,11 @@ public class UserServiceImplTest {
 
         // Simulate a situation where we find a taken username
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(userRepository.findByUsername(updateDTO.getUsername())).thenReturn(Optional.of(existingUser));
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userService.updateAccountProfile(updateDTO));
+        ServiceException exception = assertThrows(ServiceException.class, () -> userService.updateAccountProfile(objectMapper.valueToTree(updateDTO)));
 
         // Assert and verify
         assertEquals("Username '" + updateDTO.getUsername() + "' is already taken!", exception.getMessage());
@@ -250,8 +325,8 @@ public class UserServiceImplTest {
     @Test
     public void testUpdateAccountProfileWhenConflictingEmail() {
         // Arrange
-        UserEntity authUser = TestUtil.createSavedUserA();
-        UserEntity existingUser = TestUtil.createSavedUserB();
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
+        UserEntity existingUser = createNormalizedUser(TestUtil.createSavedUserB());
 
         // Give updateDTO the new email
         UserProfileUpdateDTO updateDTO = UserProfileUpdateDTO.builder()
@@ -264,11 +339,11 @@ public class UserServiceImplTest {
 
         // Simulate a situation where we find a taken email
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(userRepository.findByEmail(updateDTO.getEmail())).thenReturn(Optional.of(existingUser));
 
         // Act
-        ServiceException exception = assertThrows(ServiceException.class, () -> userService.updateAccountProfile(updateDTO));
+        ServiceException exception = assertThrows(ServiceException.class, () -> userService.updateAccountProfile(objectMapper.valueToTree(updateDTO)));
 
         // Assert and verify
         assertEquals("Email '" + updateDTO.getEmail() + "' is already in use!", exception.getMessage());
@@ -280,6 +355,47 @@ public class UserServiceImplTest {
         verify(userMapper, never()).toDTO(any(UserEntity.class));
     }
 
+    @Test
+    public void testUpdateAccountProfileWhenPartialPatch() {
+        // Arrange
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
+        String username = authUser.getUsername();
+        String email = authUser.getEmail();
+        UserDTO expectedDTO = TestUtil.createUserDTOA();
+
+        // Only the biography is in the patch
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
+        when(userMapper.toDTO(authUser)).thenReturn(expectedDTO);
+
+        // Act
+        userService.updateAccountProfile(objectMapper.createObjectNode().put("biography", "NewBiography"));
+
+        // Assert, the other fields kept their values, so there was no need to check for a taken username or email
+        assertEquals("NewBiography", authUser.getBiography());
+        assertEquals(username, authUser.getUsername());
+        assertEquals(email, authUser.getEmail());
+        verify(userRepository, never()).findByUsername(any(String.class));
+        verify(userRepository, never()).findByEmail(any(String.class));
+        verify(userRepository, times(1)).save(authUser);
+    }
+
+    @Test
+    public void testUpdateAccountProfileWhenPatchRemovesRequiredField() {
+        // Arrange
+        UserEntity authUser = createNormalizedUser(TestUtil.createSavedUserA());
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> userService.updateAccountProfile(objectMapper.createObjectNode().putNull("email")));
+
+        // Assert and verify
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        verify(userRepository, never()).save(any(UserEntity.class));
+    }
+
     @Test
     public void testDeleteAccountWhenAdminRole() {
         UserEntity authUser = TestUtil.createSavedUserA();
@@ -293,7 +409,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
 
         // Act & Assert
         ServiceException exception = assertThrows(ServiceException.class, () -> userService.deleteAccount(request, response, deleteDTO));
@@ -320,7 +436,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
 
         // Act & Assert
         ServiceException exception = assertThrows(ServiceException.class, () -> userService.deleteAccount(request, response, deleteDTO));
@@ -345,7 +461,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(passwordEncoder.matches(deleteDTO.getPassword(), deleteDTO.getConfirmPassword())).thenReturn(false);
 
         // Act & Assert
@@ -373,7 +489,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(passwordEncoder.matches(deleteDTO.getPassword(), deleteDTO.getConfirmPassword())).thenReturn(true);
 
 
@@ -384,9 +500,11 @@ public class UserServiceImplTest {
 
         // Assert and Verify
         assertEquals(expectedDTO, resultDTO);
-        verify(userRepository, times(1)).deleteById(authUser.getId());
-        verify(taskListRepository, times(1)).deleteByUserId(authUser.getId());
-        verify(userRelationshipRepository, times(1)).deleteByUserId(authUser.getId());
+        assertNotNull(authUser.getDeletedAt());
+        verify(userRepository, times(1)).save(authUser);
+        verify(userRepository, never()).deleteById(anyLong());
+        verify(userEntityCache, times(1)).evict(authUser.getId());
+        verify(deletionJobService, times(1)).enqueue(DeletionTargetType.USER, authUser.getId());
 
         verify(logoutService, times(1)).logout(any(HttpServletRequest.class), any(HttpServletResponse.class));
         verify(passwordEncoder, times(1)).matches(deleteDTO.getPassword(), deleteDTO.getConfirmPassword());
@@ -413,7 +531,7 @@ public class UserServiceImplTest {
         // Assert and verify
         assertEquals("You can't delete your own account!", exception.getMessage());
         assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
-        verify(serviceUtils, never()).getUserById(anyLong());
+        verify(serviceUtils, never()).getUserForUpdate(anyLong());
         verify(userRepository, never()).deleteById(anyLong());
         verify(userMapper, never()).toDTO(any(UserEntity.class));
     }
@@ -429,7 +547,7 @@ public class UserServiceImplTest {
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
 
         // Simulate the idea of returning the super admin
-        when(serviceUtils.getUserById(superAdmin.getId())).thenReturn(superAdmin);
+        when(serviceUtils.getUserForUpdate(superAdmin.getId())).thenReturn(superAdmin);
 
         // Act
         ServiceException exception = assertThrows(ServiceException.class, () -> {
@@ -439,7 +557,7 @@ public class UserServiceImplTest {
         // Assert and verify
         assertEquals("User is a 'Super Admin'. They cannot be deleted!", exception.getMessage());
         assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
-        verify(serviceUtils, times(1)).getUserById(superAdmin.getId());
+        verify(serviceUtils, times(1)).getUserForUpdate(superAdmin.getId());
         verify(userRepository, never()).deleteById(anyLong());
         verify(userMapper, never()).toDTO(any(UserEntity.class));
     }
@@ -454,7 +572,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(admin.getId())).thenReturn(admin);
+        when(serviceUtils.getUserForUpdate(admin.getId())).thenReturn(admin);
         when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
 
         // Act
@@ -465,7 +583,7 @@ public class UserServiceImplTest {
         // Assert and verify
         assertEquals("You must be a 'Super Admin' to be able to delete another admin!", exception.getMessage());
         assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
-        verify(serviceUtils, times(1)).getUserById(admin.getId());
+        verify(serviceUtils, times(1)).getUserForUpdate(admin.getId());
         verify(serviceUtils, times(1)).getUserById(authUser.getId());
         verify(userRepository, never()).deleteById(anyLong());
         verify(userMapper, never()).toDTO(any(UserEntity.class));
@@ -484,18 +602,17 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(targetUser.getId())).thenReturn(targetUser);
+        when(serviceUtils.getUserForUpdate(targetUser.getId())).thenReturn(targetUser);
         when(userMapper.toDTO(targetUser)).thenReturn(expectedDTO);
 
         // Act
         UserDTO resultDTO = userService.deleteById(targetUser.getId());
 
         assertEquals(expectedDTO, resultDTO);
-        verify(serviceUtils, times(1)).getUserById(targetUser.getId());
-        verify(taskListRepository, times(1)).deleteByUserId(targetUser.getId());
-        verify(userRelationshipRepository, times(1)).deleteByUserId(targetUser.getId());
-
-        verify(userRepository, times(1)).deleteById(targetUser.getId());
+        verify(serviceUtils, times(1)).getUserForUpdate(targetUser.getId());
+        assertNotNull(targetUser.getDeletedAt());
+        verify(userRepository, times(1)).save(targetUser);
+        verify(deletionJobService, times(1)).enqueue(DeletionTargetType.USER, targetUser.getId());
         verify(userMapper, times(1)).toDTO(targetUser);
     }
 
@@ -516,7 +633,7 @@ public class UserServiceImplTest {
         assertEquals("Your new password needs to be different from your current one!", exception.getMessage());
         assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
         verify(authUtils, never()).getAuthUserId();
-        verify(serviceUtils, never()).getUserById(anyLong());
+        verify(serviceUtils, never()).getUserForUpdate(anyLong());
         verify(passwordEncoder, never()).matches(anyString(), anyString());
         verify(userRepository, never()).save(any(UserEntity.class));
         verify(logoutService, never()).logout(any(HttpServletRequest.class), any(HttpServletResponse.class));
@@ -537,7 +654,7 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         when(passwordEncoder.matches(passwordDTO.getPassword(), authUser.getPassword()))
                 .thenReturn(false);
 
@@ -550,7 +667,7 @@ public class UserServiceImplTest {
 
         // Verify that the correct functions were called
         verify(authUtils, times(1)).getAuthUserId();
-        verify(serviceUtils, times(1)).getUserById(authUser.getId());
+        verify(serviceUtils, times(1)).getUserForUpdate(authUser.getId());
         verify(passwordEncoder, times(1)).matches(passwordDTO.getPassword(), authUser.getPassword());
 
         verify(userRepository, never()).save(authUser);
@@ -574,10 +691,13 @@ public class UserServiceImplTest {
 
         // Simulate
         when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
-        when(serviceUtils.getUserById(authUser.getId())).thenReturn(authUser);
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
         // Simulate a good password
-        when(passwordEncoder.matches(passwordDTO.getPassword(), authUser.getPassword()))
+        String currentHash = authUser.getPassword();
+        when(passwordEncoder.matches(passwordDTO.getPassword(), currentHash))
                 .thenReturn(true);
+        when(passwordEncoder.encode(newPassword)).thenReturn("NewHash");
+        when(userRepository.updatePasswordIfUnchanged(authUser.getId(), currentHash, "NewHash")).thenReturn(1);
         when(userMapper.toDTO(authUser)).thenReturn(expectedDTO);
 
         // Act
@@ -590,9 +710,40 @@ public class UserServiceImplTest {
         // Assert and verify
         assertEquals(expectedDTO, resultDTO);
         verify(authUtils, times(1)).getAuthUserId();
-        verify(serviceUtils, times(1)).getUserById(authUser.getId());
-        verify(userRepository, times(1)).save(authUser);
+        verify(serviceUtils, times(1)).getUserForUpdate(authUser.getId());
+        verify(userRepository, times(1)).updatePasswordIfUnchanged(authUser.getId(), currentHash, "NewHash");
+        verify(userRepository, never()).save(any(UserEntity.class));
+        verify(userEntityCache, times(1)).evict(authUser.getId());
         verify(logoutService, times(1)).logout(any(HttpServletRequest.class), any(HttpServletResponse.class));
         verify(userMapper, times(1)).toDTO(authUser);
     }
+
+    @Test
+    public void testChangePasswordWhenChangedConcurrently() {
+        // Arrange
+        UserEntity authUser = TestUtil.createSavedUserA();
+        String currentPassword = "CurrentPassword123";
+        String newPassword = "NewPassword123";
+        ChangePasswordDTO passwordDTO = ChangePasswordDTO.builder()
+                .password(currentPassword)
+                .newPassword(newPassword)
+                .confirmNewPassword(newPassword)
+                .build();
+
+        // Simulate another request changing the hash between reading the user and writing the new hash
+        String currentHash = authUser.getPassword();
+        when(authUtils.getAuthUserId()).thenReturn(authUser.getId());
+        when(serviceUtils.getUserForUpdate(authUser.getId())).thenReturn(authUser);
+        when(passwordEncoder.matches(passwordDTO.getPassword(), currentHash)).thenReturn(true);
+        when(passwordEncoder.encode(newPassword)).thenReturn("NewHash");
+        when(userRepository.updatePasswordIfUnchanged(authUser.getId(), currentHash, "NewHash")).thenReturn(0);
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> userService.changePassword(request, response, passwordDTO));
+
+        // Assert and verify; the user stays logged in and nothing is evicted
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        verify(userEntityCache, never()).evict(anyLong());
+        verify(logoutService, never()).logout(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
 }
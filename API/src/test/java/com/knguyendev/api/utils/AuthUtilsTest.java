@@ -42,7 +42,7 @@ public class AuthUtilsTest {
 
         // Simulate the idea of having an authenticated user
         when(authentication.getPrincipal()).thenReturn(userDetails);
-        when(userDetails.getUser()).thenReturn(userA);
+        when(userDetails.getId()).thenReturn(userA.getId());
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
         // Act
@@ -0,0 +1,48 @@
+package com.knguyendev.api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BloomFilter class
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testAddedItemsAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+    }
+
+    @Test
+    public void testEmptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        assertFalse(filter.mightContain("knguyen"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    public void testFalsePositiveRateIsNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i);
+        }
+
+        int falsePositives = 0;
+        int checks = 100_000;
+        for (int i = 0; i < checks; i++) {
+            if (filter.mightContain("other" + i + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+
+        // Allow some slack over the 1% it was sized for
+        assertTrue(falsePositives < checks * 0.02, "False positive rate was " + (double) falsePositives / checks);
+    }
+}
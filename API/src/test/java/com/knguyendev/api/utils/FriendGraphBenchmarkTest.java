@@ -0,0 +1,82 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark for the FriendGraph. It builds a random graph of 100,000 users with 50 friends each on average, and reports
+ * how long mutual friend and friend suggestion lookups take once the graph is loaded.
+ * <p>
+ * It's slow, so it only runs when asked for:
+ * <pre>
+ *     mvn test -Dtest=FriendGraphBenchmarkTest -Dbenchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FriendGraphBenchmarkTest {
+
+    private static final int USER_COUNT = 100_000;
+    private static final int AVERAGE_FRIENDS = 50;
+    private static final int LOOKUPS = 10_000;
+
+    @Test
+    public void benchmarkFriendGraph() {
+        Random random = new Random(42);
+        Map<Long, Set<Long>> adjacency = new HashMap<>();
+        for (long i = 1; i <= USER_COUNT; i++) {
+            adjacency.put(i, new HashSet<>());
+        }
+        for (long edges = 0; edges < (long) USER_COUNT * AVERAGE_FRIENDS / 2; ) {
+            long a = 1 + random.nextInt(USER_COUNT);
+            long b = 1 + random.nextInt(USER_COUNT);
+            if (a != b && adjacency.get(a).add(b)) {
+                adjacency.get(b).add(a);
+                edges++;
+            }
+        }
+
+        UserRelationshipRepository repository = mock(UserRelationshipRepository.class);
+        when(repository.findFriendIdPairs(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> userIds = invocation.getArgument(0);
+            List<Object[]> pairs = new ArrayList<>();
+            for (Long userId : userIds) {
+                for (Long friendId : adjacency.get(userId)) {
+                    pairs.add(new Object[]{userId, friendId});
+                }
+            }
+            return pairs;
+        });
+        FriendGraph friendGraph = new FriendGraph(repository, USER_COUNT, Duration.ofHours(1));
+
+        // Load every user so that only the lookups are timed
+        for (long i = 1; i <= USER_COUNT; i++) {
+            friendGraph.getFriendIds(i);
+        }
+
+        long start = System.nanoTime();
+        long mutualCount = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            mutualCount += friendGraph.getMutualFriendIds(1L + random.nextInt(USER_COUNT), 1L + random.nextInt(USER_COUNT)).length;
+        }
+        double mutualMicros = (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+
+        start = System.nanoTime();
+        long suggestionCount = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            suggestionCount += friendGraph.suggestFriendIds(1L + random.nextInt(USER_COUNT), Set.of(), 10).size();
+        }
+        double suggestionMicros = (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+
+        System.out.printf("Friend graph benchmark (%d users, %d friends on average)%n", USER_COUNT, AVERAGE_FRIENDS);
+        System.out.printf("%-12s %12.1f us/lookup (%d found)%n", "mutual", mutualMicros, mutualCount);
+        System.out.printf("%-12s %12.1f us/lookup (%d found)%n", "suggestions", suggestionMicros, suggestionCount);
+    }
+}
@@ -0,0 +1,114 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.repositories.UserRelationshipRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the FriendGraph class, with the friendships served from an in-memory list instead of the database
+ */
+@ExtendWith(MockitoExtension.class)
+public class FriendGraphTest {
+
+    @Mock
+    private UserRelationshipRepository userRelationshipRepository;
+
+    private FriendGraph friendGraph;
+    private final List<long[]> friendships = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        friendGraph = new FriendGraph(userRelationshipRepository, 1000, Duration.ofMinutes(10));
+        lenient().when(userRelationshipRepository.findFriendIdPairs(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> userIds = invocation.getArgument(0);
+            List<Object[]> pairs = new ArrayList<>();
+            for (long[] friendship : friendships) {
+                if (userIds.contains(friendship[0]) || userIds.contains(friendship[1])) {
+                    pairs.add(new Object[]{friendship[0], friendship[1]});
+                }
+            }
+            return pairs;
+        });
+    }
+
+    private void addFriendships(long userId, long... friendIds) {
+        for (long friendId : friendIds) {
+            friendships.add(new long[]{Math.min(userId, friendId), Math.max(userId, friendId)});
+        }
+    }
+
+    @Test
+    public void testGetFriendIdsIsSortedAndLoadedOnce() {
+        addFriendships(1L, 5L, 3L, 2L);
+
+        assertArrayEquals(new long[]{2L, 3L, 5L}, friendGraph.getFriendIds(1L));
+        assertArrayEquals(new long[]{2L, 3L, 5L}, friendGraph.getFriendIds(1L));
+        verify(userRelationshipRepository, times(1)).findFriendIdPairs(anyCollection());
+    }
+
+    @Test
+    public void testGetMutualFriendIds() {
+        addFriendships(1L, 2L, 3L, 4L);
+        addFriendships(10L, 3L, 4L, 5L);
+
+        assertArrayEquals(new long[]{3L, 4L}, friendGraph.getMutualFriendIds(1L, 10L));
+        assertArrayEquals(new long[0], friendGraph.getMutualFriendIds(1L, 99L));
+    }
+
+    @Test
+    public void testSuggestFriendIdsRanksByMutualFriends() {
+        // User 1 is friends with 2, 3 and 4. User 7 is friends with all three of them, user 6 with two and user 5 with one.
+        addFriendships(1L, 2L, 3L, 4L);
+        addFriendships(7L, 2L, 3L, 4L);
+        addFriendships(6L, 2L, 3L);
+        addFriendships(5L, 4L);
+        addFriendships(8L, 3L);
+
+        assertEquals(List.of(7L, 6L, 5L, 8L), friendGraph.suggestFriendIds(1L, Set.of(), 10));
+        assertEquals(List.of(7L, 6L), friendGraph.suggestFriendIds(1L, Set.of(), 2));
+    }
+
+    @Test
+    public void testSuggestFriendIdsSkipsFriendsAndExcludedUsers() {
+        // Users 2 and 3 are friends with each other, so they'd otherwise suggest each other back to user 1
+        addFriendships(1L, 2L, 3L);
+        addFriendships(2L, 3L, 4L, 5L);
+
+        assertEquals(List.of(5L), friendGraph.suggestFriendIds(1L, Set.of(4L), 10));
+        assertEquals(List.of(), friendGraph.suggestFriendIds(99L, Set.of(), 10));
+    }
+
+    @Test
+    public void testAddAndRemoveFriendshipUpdateLoadedUsers() {
+        addFriendships(1L, 2L);
+        addFriendships(3L, 4L);
+        friendGraph.getFriendIds(1L);
+        friendGraph.getFriendIds(3L);
+
+        friendGraph.addFriendship(1L, 3L);
+        assertArrayEquals(new long[]{2L, 3L}, friendGraph.getFriendIds(1L));
+        assertArrayEquals(new long[]{1L, 4L}, friendGraph.getFriendIds(3L));
+
+        friendGraph.removeFriendship(2L, 1L);
+        assertArrayEquals(new long[]{3L}, friendGraph.getFriendIds(1L));
+
+        // Only users 1 and 3 were loaded; the updates don't go back to the database
+        verify(userRelationshipRepository, times(2)).findFriendIdPairs(anyCollection());
+    }
+
+    @Test
+    public void testIntersect() {
+        assertArrayEquals(new long[]{2L, 8L}, FriendGraph.intersect(new long[]{1L, 2L, 5L, 8L}, new long[]{2L, 3L, 8L, 9L}));
+        assertArrayEquals(new long[0], FriendGraph.intersect(new long[]{1L}, new long[0]));
+    }
+}
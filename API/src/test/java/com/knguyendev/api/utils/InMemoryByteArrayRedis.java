@@ -0,0 +1,72 @@
+package com.knguyendev.api.utils;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * In-memory stand-in for a RedisTemplate with raw byte values, for tests that can't connect to Redis. It supports the
+ * value operations that are used on such templates (MGET, SET with an expiry, and INCR, which stores decimal strings like
+ * Redis does), and can be made unreachable to test what happens when Redis is down.
+ */
+public class InMemoryByteArrayRedis {
+    private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+    private final RedisTemplate<String, byte[]> template;
+    private volatile boolean unreachable;
+
+    @SuppressWarnings("unchecked")
+    public InMemoryByteArrayRedis() {
+        ValueOperations<String, byte[]> operations = mock(ValueOperations.class);
+        when(operations.multiGet(anyCollection())).thenAnswer(invocation -> {
+            checkReachable();
+            List<byte[]> result = new ArrayList<>();
+            for (String key : (Collection<String>) invocation.getArgument(0)) {
+                result.add(values.get(key));
+            }
+            return result;
+        });
+        doAnswer(invocation -> {
+            checkReachable();
+            values.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(operations).set(anyString(), any(byte[].class), any(Duration.class));
+        when(operations.increment(anyString())).thenAnswer(invocation -> {
+            checkReachable();
+            byte[] value = values.merge(invocation.getArgument(0), "1".getBytes(StandardCharsets.US_ASCII), (current, one) ->
+                    String.valueOf(Long.parseLong(new String(current, StandardCharsets.US_ASCII)) + 1).getBytes(StandardCharsets.US_ASCII));
+            return Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+        });
+
+        template = mock(RedisTemplate.class);
+        when(template.opsForValue()).thenReturn(operations);
+    }
+
+    private void checkReachable() {
+        if (unreachable) {
+            throw new RedisConnectionFailureException("Unable to connect to Redis");
+        }
+    }
+
+    public RedisTemplate<String, byte[]> getTemplate() {
+        return template;
+    }
+
+    public byte[] getStored(String key) {
+        return values.get(key);
+    }
+
+    public void setUnreachable(boolean unreachable) {
+        this.unreachable = unreachable;
+    }
+}
@@ -0,0 +1,59 @@
+package com.knguyendev.api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LongHashSet class
+ */
+public class LongHashSetTest {
+
+    @Test
+    public void testAddAndContains() {
+        LongHashSet set = new LongHashSet(0);
+
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(5L));
+        assertFalse(set.add(5L));
+        assertTrue(set.add(-7L));
+        assertTrue(set.contains(5L));
+        assertTrue(set.contains(-7L));
+        assertFalse(set.contains(6L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testZeroIsAValue() {
+        LongHashSet set = new LongHashSet(4);
+
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testGrowsPastExpectedSize() {
+        // Compare against a HashSet, with sequential ids (like database ids) and random ones
+        LongHashSet set = new LongHashSet(2);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (long id = 1; id <= 5000; id++) {
+            long randomId = random.nextLong();
+            assertEquals(expected.add(id), set.add(id));
+            assertEquals(expected.add(randomId), set.add(randomId));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (Long id : expected) {
+            assertTrue(set.contains(id));
+        }
+        assertFalse(set.contains(5001L));
+    }
+}
@@ -2,8 +2,10 @@ package com.knguyendev.api.utils;
 
 import com.knguyendev.api.TestUtil;
 import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.domain.dto.ItemColor.ItemColorSnapshot;
 import com.knguyendev.api.exception.ServiceException;
 import com.knguyendev.api.repositories.UserRepository;
+import com.knguyendev.api.services.ItemColorService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -11,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,9 +26,15 @@ public class ServiceUtilsTest {
     @InjectMocks
     private ServiceUtils serviceUtils;
 
+    @Mock
+    private UserEntityCache userEntityCache;
+
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ItemColorService itemColorService;
+
 
     @Test
     public void testGetUserByIdWhenFound() {
@@ -33,7 +42,7 @@ public class ServiceUtilsTest {
         UserEntity userA = TestUtil.createSavedUserA();
 
         // Simulate finding a user
-        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+        when(userEntityCache.findById(userA.getId())).thenReturn(Optional.of(userA));
 
         // Act
         UserEntity result = serviceUtils.getUserById(userA.getId());
@@ -42,7 +51,7 @@ public class ServiceUtilsTest {
         assertEquals(result, userA);
 
         // Verify
-        verify(userRepository, times(1)).findById(userA.getId());
+        verify(userEntityCache, times(1)).findById(userA.getId());
     }
 
     @Test
@@ -51,7 +60,7 @@ public class ServiceUtilsTest {
         UserEntity userA = TestUtil.createSavedUserA();
 
         // Simulate finding a user
-        when(userRepository.findById(userA.getId())).thenReturn(Optional.empty());
+        when(userEntityCache.findById(userA.getId())).thenReturn(Optional.empty());
 
         // Act
         ServiceException exception = assertThrows(ServiceException.class, () -> serviceUtils.getUserById(userA.getId()));
@@ -59,6 +68,80 @@ public class ServiceUtilsTest {
         // Assert
         assertEquals("User with ID '" + userA.getId() + "' not found!", exception.getMessage());
         assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
-        verify(userRepository, times(1)).findById(userA.getId());
+        verify(userEntityCache, times(1)).findById(userA.getId());
+    }
+
+    @Test
+    public void testGetUserByIdWhenDeleted() {
+        // Arrange, simulate a user that was deleted and is waiting to be purged
+        UserEntity userA = TestUtil.createSavedUserA();
+        userA.setDeletedAt(userA.getCreatedAt());
+        when(userEntityCache.findById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> serviceUtils.getUserById(userA.getId()));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    @Test
+    public void testGetUserForUpdateSkipsCache() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        when(userRepository.findFreshById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act
+        UserEntity result = serviceUtils.getUserForUpdate(userA.getId());
+
+        // Assert; the user is always read from the db, since a cached copy may be stale
+        assertEquals(userA, result);
+        verify(userRepository, times(1)).findFreshById(userA.getId());
+        verify(userRepository, never()).findById(anyLong());
+        verifyNoInteractions(userEntityCache);
+    }
+
+    @Test
+    public void testGetUserForUpdateIgnoresStaleCachedUser() {
+        // Arrange; the caches still hold the user, but another server instance has deleted them and changed their password
+        UserEntity cachedUser = TestUtil.createSavedUserA();
+        UserEntity storedUser = TestUtil.createSavedUserA();
+        storedUser.setPassword("newHash");
+        storedUser.setDeletedAt(storedUser.getCreatedAt());
+        lenient().when(userEntityCache.findById(cachedUser.getId())).thenReturn(Optional.of(cachedUser));
+        lenient().when(userRepository.findById(cachedUser.getId())).thenReturn(Optional.of(cachedUser));
+        when(userRepository.findFreshById(cachedUser.getId())).thenReturn(Optional.of(storedUser));
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> serviceUtils.getUserForUpdate(cachedUser.getId()));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    @Test
+    public void testGetUserForUpdateWhenDeleted() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        userA.setDeletedAt(userA.getCreatedAt());
+        when(userRepository.findFreshById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act
+        ServiceException exception = assertThrows(ServiceException.class, () -> serviceUtils.getUserForUpdate(userA.getId()));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    @Test
+    public void testCheckItemColorExists() {
+        // Arrange; the palette only has item color A
+        when(itemColorService.getSnapshot()).thenReturn(ItemColorSnapshot.of(List.of(TestUtil.createItemColorDTOA())));
+
+        // Act and Assert; the default color (null) and colors in the palette are allowed
+        serviceUtils.checkItemColorExists(null);
+        serviceUtils.checkItemColorExists(TestUtil.createItemColorDTOA().getId());
+        ServiceException exception = assertThrows(ServiceException.class, () -> serviceUtils.checkItemColorExists(999L));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
     }
 }
@@ -0,0 +1,100 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.repositories.TaskListRepositoryCustom;
+import com.knguyendev.api.repositories.UserRelationshipRepositoryCustom;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SparseFieldset class, using the fields of the resources that support it
+ */
+public class SparseFieldsetTest {
+
+    @Test
+    public void testOnlyPickedFieldsAreSelected() {
+        // Act, the fields are in the order they're declared rather than the order they're picked in
+        SparseFieldset fields = TaskListRepositoryCustom.FIELDS.parse("taskCount, name,id");
+
+        // Assert
+        assertEquals("tl.id, tl.name, (SELECT COUNT(t) FROM TaskEntity t WHERE t.taskListId = tl.id)", fields.selectList());
+        assertEquals(Map.of("id", 1L, "name", "Groceries", "taskCount", 3L), fields.toMap(new Object[]{1L, "Groceries", 3L}));
+        assertNull(fields.getNested("tasks"));
+    }
+
+    @Test
+    public void testExtraFieldsAreReadButNotReturned() {
+        // Arrange
+        SparseFieldset fields = TaskListRepositoryCustom.FIELDS.parse("name").withAlso("id");
+        Object[] row = {1L, "Groceries"};
+
+        // Act and Assert
+        assertEquals("tl.id, tl.name", fields.selectList());
+        assertEquals(1L, fields.get(row, "id"));
+        assertEquals(Map.of("name", "Groceries"), fields.toMap(row));
+    }
+
+    @Test
+    public void testNestedResourceFields() {
+        // Act
+        SparseFieldset fields = TaskListRepositoryCustom.FIELDS.parse("name,tasks.title,tasks.complete");
+        SparseFieldset allTaskFields = TaskListRepositoryCustom.FIELDS.parse("tasks.title,tasks").getNested("tasks");
+
+        // Assert
+        assertEquals("tl.name", fields.selectList());
+        assertEquals("t.title, t.isComplete", fields.getNested("tasks").selectList());
+        assertTrue(allTaskFields.contains("description"));
+    }
+
+    @Test
+    public void testNestedObjectFields() {
+        // Arrange, picking 'firstUser' picks all of its fields
+        SparseFieldset fields = UserRelationshipRepositoryCustom.FIELDS.parse("status,firstUser,secondUser.username").withAlso("id");
+        Object[] row = new Object[12];
+        row[0] = 7L;
+        row[1] = 1L;
+        row[2] = "first";
+        row[10] = "second";
+
+        // Act
+        Map<String, Object> relationship = fields.toMap(row);
+
+        // Assert, the internal id isn't returned and the users are nested objects
+        assertEquals(List.of("firstUser", "secondUser", "status"), List.copyOf(relationship.keySet()));
+        assertEquals(9, ((Map<?, ?>) relationship.get("firstUser")).size());
+        assertEquals("first", ((Map<?, ?>) relationship.get("firstUser")).get("username"));
+        assertEquals(Map.of("username", "second"), relationship.get("secondUser"));
+        assertEquals(7L, fields.get(row, "id"));
+    }
+
+    @Test
+    public void testRetainPicksFieldsFromFullObject() {
+        // Arrange
+        SparseFieldset fields = UserRelationshipRepositoryCustom.FIELDS.parse("secondUser.username,status");
+        Map<String, Object> full = Map.of(
+                "firstUser", Map.of("username", "first"),
+                "secondUser", Map.of("username", "second", "email", "second@example.com"),
+                "status", "FRIENDS");
+
+        // Act and Assert
+        assertEquals(Map.of("secondUser", Map.of("username", "second"), "status", "FRIENDS"), fields.retain(full));
+    }
+
+    @Test
+    public void testUnknownAndInternalFieldsAreRejected() {
+        ServiceException unknown = assertThrows(ServiceException.class, () -> TaskListRepositoryCustom.FIELDS.parse("id,password"));
+        assertEquals(HttpStatus.BAD_REQUEST, unknown.getHttpStatus());
+        assertTrue(unknown.getMessage().startsWith("Unknown field 'password' for a task list!"));
+
+        assertThrows(ServiceException.class, () -> TaskListRepositoryCustom.FIELDS.parse("tasks.password"));
+        assertThrows(ServiceException.class, () -> UserRelationshipRepositoryCustom.FIELDS.parse("id"));
+
+        ServiceException empty = assertThrows(ServiceException.class, () -> TaskListRepositoryCustom.FIELDS.parse(" , "));
+        assertEquals("At least one field of a task list has to be picked!", empty.getMessage());
+    }
+}
@@ -0,0 +1,180 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.domain.entities.TaskListEntity;
+import com.knguyendev.api.exception.ServiceException;
+import com.knguyendev.api.exception.ServiceUnavailableException;
+import com.knguyendev.api.repositories.TaskListRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TaskListLocks class. The transaction manager is a mock, so each change "runs in a transaction"
+ * without a database, and a change that's still running is simulated by blocking it on a latch.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TaskListLocksTest {
+
+    @Mock
+    private TaskListRepository taskListRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TaskListLocks taskListLocks;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        taskListLocks = new TaskListLocks(taskListRepository, transactionManager, meterRegistry, 1024,
+                Duration.ofMillis(100), Duration.ofSeconds(1), Duration.ofSeconds(2));
+        lenient().when(taskListRepository.findByIdForUpdate(anyLong()))
+                .thenAnswer(invocation -> Optional.of(TaskListEntity.builder().id(invocation.getArgument(0)).build()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    /**
+     * Runs a change to a task list on another thread, which keeps its locks until 'release' is counted down.
+     */
+    private CompletableFuture<Void> changeInOtherThread(Long taskListId, CountDownLatch started, CountDownLatch release) {
+        return CompletableFuture.runAsync(() -> taskListLocks.runLocked(taskListId, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    @Test
+    public void testLockInsideTransactionIsRejected() {
+        // Arrange, the caller already holds a connection
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        // Act and Assert
+        assertThrows(IllegalStateException.class, () -> taskListLocks.runLocked(1L, () -> {}));
+        verifyNoInteractions(taskListRepository, transactionManager);
+    }
+
+    @Test
+    public void testChangeRunsInTransactionAfterRowIsLocked() {
+        // Act
+        String result = taskListLocks.callLocked(1L, () -> {
+            verify(taskListRepository).findByIdForUpdate(1L);
+            return "changed";
+        });
+
+        // Assert, the row lock's wait is bounded before the row is locked
+        assertEquals("changed", result);
+        InOrder inOrder = inOrder(transactionManager, taskListRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(taskListRepository).setLocalLockTimeout("2000");
+        inOrder.verify(taskListRepository).findByIdForUpdate(1L);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testSameTaskListWaitsUntilChangeEnds() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> otherChange = changeInOtherThread(1L, started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act and Assert, the change is rejected without starting a transaction of its own
+        assertThrows(ServiceUnavailableException.class, () -> taskListLocks.runLocked(1L, () -> fail("Ran without the lock")));
+        verify(transactionManager, times(1)).getTransaction(any());
+        assertEquals(1, meterRegistry.counter("taskLists.lock.contended").count());
+        assertEquals(1, meterRegistry.counter("taskLists.lock.timedOut").count());
+
+        // Once the other change ends, it can run
+        release.countDown();
+        otherChange.get(5, TimeUnit.SECONDS);
+        assertEquals("changed", taskListLocks.callLocked(1L, () -> "changed"));
+    }
+
+    @Test
+    public void testDifferentTaskListsDontWait() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> otherChange = changeInOtherThread(1L, started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        taskListLocks.runLocked(2L, () -> {});
+
+        // Assert
+        assertEquals(0, meterRegistry.counter("taskLists.lock.contended").count());
+        release.countDown();
+        otherChange.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRowLockTimeoutIsRejected() {
+        // Arrange, another instance holds the row for longer than the timeout
+        when(taskListRepository.findByIdForUpdate(1L)).thenThrow(new PessimisticLockingFailureException("lock timeout"));
+
+        // Act and Assert
+        assertThrows(ServiceUnavailableException.class, () -> taskListLocks.runLocked(1L, () -> fail("Ran without the lock")));
+        verify(transactionManager).rollback(any());
+        assertEquals(1, meterRegistry.counter("taskLists.lock.timedOut").count());
+
+        // The local lock was released as well
+        reset(taskListRepository);
+        when(taskListRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(TaskListEntity.builder().id(1L).build()));
+        taskListLocks.runLocked(1L, () -> {});
+        assertEquals(0, meterRegistry.counter("taskLists.lock.contended").count());
+    }
+
+    @Test
+    public void testTaskListWaitingToBePurgedIsRejected() {
+        // Arrange, the task list was deleted and its deletion job may already be purging its tasks
+        when(taskListRepository.findByIdForUpdate(1L))
+                .thenReturn(Optional.of(TaskListEntity.builder().id(1L).deletedAt(ZonedDateTime.now()).build()));
+
+        // Act, e.g. creating a task after an existing one, which doesn't look up the task list itself
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> taskListLocks.runLocked(1L, () -> fail("Changed a deleted task list")));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    public void testMissingTaskListIsRejected() {
+        // Arrange
+        when(taskListRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
+
+        // Act and Assert
+        ServiceException exception = assertThrows(ServiceException.class,
+                () -> taskListLocks.runLocked(1L, () -> fail("Changed a missing task list")));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+}
@@ -0,0 +1,152 @@
+package com.knguyendev.api.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TaskListSnapshotCache class, using an in-memory stand-in for Redis.
+ */
+public class TaskListSnapshotCacheTest {
+    private InMemoryByteArrayRedis redis;
+    private TaskListSnapshotCache taskListSnapshotCache;
+
+    // What the loader returns, and how many times it was called
+    private List<String> taskLists;
+    private AtomicInteger loads;
+    private Supplier<List<String>> loader;
+
+    @BeforeEach
+    public void setUp() {
+        redis = new InMemoryByteArrayRedis();
+        taskListSnapshotCache = new TaskListSnapshotCache(redis.getTemplate(), new ObjectMapper(), new SimpleMeterRegistry(), Duration.ofMinutes(10));
+        taskLists = List.of("Personal");
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return taskLists;
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static String json(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSnapshotIsStoredAndServedWithoutLoading() {
+        // Act
+        byte[] first = taskListSnapshotCache.get(1L, loader);
+        byte[] second = taskListSnapshotCache.get(1L, loader);
+
+        // Assert
+        assertEquals("[\"Personal\"]", json(first));
+        assertEquals("[\"Personal\"]", json(second));
+        assertEquals(1, loads.get());
+        assertNotNull(redis.getStored("taskLists:snapshot:1"));
+    }
+
+    @Test
+    public void testInvalidateOnlyRebuildsThatUsersSnapshot() {
+        // Arrange
+        taskListSnapshotCache.get(1L, loader);
+        taskListSnapshotCache.get(2L, loader);
+        taskLists = List.of("Personal", "Work");
+
+        // Act
+        taskListSnapshotCache.invalidate(1L);
+
+        // Assert
+        assertEquals("[\"Personal\",\"Work\"]", json(taskListSnapshotCache.get(1L, loader)));
+        assertEquals("[\"Personal\"]", json(taskListSnapshotCache.get(2L, loader)));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidateAllRebuildsEverySnapshot() {
+        // Arrange
+        taskListSnapshotCache.get(1L, loader);
+        taskListSnapshotCache.get(2L, loader);
+        taskLists = List.of("Personal", "Work");
+
+        // Act
+        taskListSnapshotCache.invalidateAll();
+
+        // Assert
+        assertEquals("[\"Personal\",\"Work\"]", json(taskListSnapshotCache.get(1L, loader)));
+        assertEquals("[\"Personal\",\"Work\"]", json(taskListSnapshotCache.get(2L, loader)));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testInvalidateInsideTransactionWaitsForCommit() {
+        // Arrange
+        taskListSnapshotCache.get(1L, loader);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act, the change isn't committed yet so the current snapshot is still the right one
+        taskListSnapshotCache.invalidate(1L);
+        taskListSnapshotCache.get(1L, loader);
+        assertEquals(1, loads.get());
+
+        taskLists = List.of("Personal", "Work");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Assert
+        assertEquals("[\"Personal\",\"Work\"]", json(taskListSnapshotCache.get(1L, loader)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testSnapshotBuiltDuringChangeIsNotServed() {
+        // Arrange, a change is committed while the snapshot is being loaded, so the loaded data may be outdated
+        Supplier<List<String>> racingLoader = () -> {
+            loads.incrementAndGet();
+            List<String> loaded = taskLists;
+            taskLists = List.of("Personal", "Work");
+            taskListSnapshotCache.invalidate(1L);
+            return loaded;
+        };
+
+        // Act
+        assertEquals("[\"Personal\"]", json(taskListSnapshotCache.get(1L, racingLoader)));
+
+        // Assert
+        assertEquals("[\"Personal\",\"Work\"]", json(taskListSnapshotCache.get(1L, loader)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testUnreachableRedisFallsBackToLoading() {
+        // Arrange
+        redis.setUnreachable(true);
+
+        // Act
+        byte[] first = taskListSnapshotCache.get(1L, loader);
+        taskListSnapshotCache.invalidate(1L);
+        byte[] second = taskListSnapshotCache.get(1L, loader);
+
+        // Assert
+        assertEquals("[\"Personal\"]", json(first));
+        assertEquals("[\"Personal\"]", json(second));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,214 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.domain.dto.Task.TaskUpdateRequest;
+import com.knguyendev.api.domain.entities.TaskEntity;
+import com.knguyendev.api.domain.entities.TaskListEntity;
+import com.knguyendev.api.repositories.TaskListRepository;
+import com.knguyendev.api.repositories.TaskRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the TaskWriteBehindBuffer class
+ */
+@ExtendWith(MockitoExtension.class)
+public class TaskWriteBehindBufferTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private TaskListRepository taskListRepository;
+    @Mock
+    private TaskListSnapshotCache taskListSnapshotCache;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TaskWriteBehindBuffer createBuffer(Duration window, Duration retryBackoff, Duration retryBudget) {
+        return new TaskWriteBehindBuffer(taskRepository, taskListRepository, taskListSnapshotCache, transactionManager,
+                meterRegistry, true, window, retryBackoff, retryBudget);
+    }
+
+    private TaskWriteBehindBuffer createBuffer(Duration window) {
+        return createBuffer(window, Duration.ZERO, Duration.ofMinutes(1));
+    }
+
+    private static TaskEntity createTask() {
+        return TaskEntity.builder()
+                .id(1L)
+                .taskListId(10L)
+                .title("My Title")
+                .description("My Description")
+                .build();
+    }
+
+    private static TaskUpdateRequest createContent(String title) {
+        return TaskUpdateRequest.builder()
+                .title(title)
+                .description("My Description")
+                .isStarred(true)
+                .build();
+    }
+
+    @Test
+    public void testBurstOfUpdatesIsWrittenOnce() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO);
+        TaskEntity task = createTask();
+        TaskListEntity taskList = TaskListEntity.builder().id(10L).userId(5L).build();
+        when(taskListRepository.findById(10L)).thenReturn(Optional.of(taskList));
+
+        // Act, simulate an autosave after every word
+        String title = "";
+        for (String word : "Buy milk and eggs on the way home today".split(" ")) {
+            title = (title + " " + word).trim();
+            buffer.enqueue(task, createContent(title));
+        }
+        buffer.flushDue();
+
+        // Assert, only the fields that changed were written, with their latest values, and the snapshot of the task list's
+        // owner was invalidated
+        verify(taskRepository, times(1)).updateContentById(anyLong(), anyMap());
+        verify(taskRepository).updateContentById(1L, Map.of("title", "Buy milk and eggs on the way home today", "isStarred", true));
+        verify(taskListSnapshotCache).invalidate(5L);
+        assertEquals(8, meterRegistry.counter("tasks.writeBehind.coalesced").count());
+
+        // Nothing is left to write
+        buffer.flushDue();
+        verifyNoMoreInteractions(taskRepository);
+    }
+
+    @Test
+    public void testOnlyChangedFieldsAreWritten() {
+        // Arrange, one update changes the title and the next one the description
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO);
+        TaskEntity task = createTask();
+        buffer.enqueue(task, TaskUpdateRequest.builder().title("Updated Title").description("My Description").build());
+        task.setTitle("Updated Title");
+        buffer.enqueue(task, TaskUpdateRequest.builder().title("Updated Title").description("Updated Description").build());
+
+        // Act
+        buffer.flushDue();
+
+        // Assert, fields neither update changed aren't written, so another instance's changes to them are kept
+        verify(taskRepository).updateContentById(1L, Map.of("title", "Updated Title", "description", "Updated Description"));
+    }
+
+    @Test
+    public void testUpdatesWaitForWindowUntilShutdown() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ofHours(1));
+        buffer.enqueue(createTask(), createContent("Updated Title"));
+
+        // Act and Assert, the update isn't due yet
+        buffer.flushDue();
+        verifyNoInteractions(taskRepository);
+
+        // Shutting down writes it anyway, and later updates are saved right away instead of queued
+        buffer.close();
+        verify(taskRepository).updateContentById(eq(1L), argThat(changes -> "Updated Title".equals(changes.get("title"))));
+        assertFalse(buffer.isEnabled());
+    }
+
+    @Test
+    public void testPendingUpdateIsApplied() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ofHours(1));
+        buffer.enqueue(createTask(), createContent("Updated Title"));
+        TaskEntity task = createTask();
+
+        // Act
+        buffer.applyPending(task);
+
+        // Assert
+        assertEquals("Updated Title", task.getTitle());
+        assertEquals("My Description", task.getDescription());
+        assertTrue(task.isStarred());
+        assertEquals(10L, task.getTaskListId());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO);
+        when(taskRepository.updateContentById(anyLong(), anyMap()))
+                .thenThrow(new QueryTimeoutException("Timed out"))
+                .thenReturn(1);
+        buffer.enqueue(createTask(), createContent("Updated Title"));
+
+        // Act
+        buffer.flushDue();
+        buffer.flushDue();
+
+        // Assert
+        verify(taskRepository, times(2)).updateContentById(eq(1L), argThat(changes -> "Updated Title".equals(changes.get("title"))));
+        assertEquals(1, meterRegistry.counter("tasks.writeBehind.failed").count());
+        assertEquals(1, meterRegistry.counter("tasks.writeBehind.flushed").count());
+    }
+
+    @Test
+    public void testFailedWriteBacksOff() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO, Duration.ofHours(1), Duration.ofHours(2));
+        when(taskRepository.updateContentById(anyLong(), anyMap())).thenThrow(new QueryTimeoutException("Timed out"));
+        buffer.enqueue(createTask(), createContent("Updated Title"));
+
+        // Act
+        buffer.flushDue();
+        buffer.flushDue();
+
+        // Assert, the retry waits for the backoff, and the update is still pending
+        verify(taskRepository, times(1)).updateContentById(anyLong(), anyMap());
+        assertTrue(buffer.hasPending(1L));
+    }
+
+    @Test
+    public void testFailedWriteIsDroppedAfterBudget() {
+        // Arrange
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+        when(taskRepository.updateContentById(anyLong(), anyMap())).thenThrow(new QueryTimeoutException("Timed out"));
+        buffer.enqueue(createTask(), createContent("Updated Title"));
+
+        // Act
+        buffer.flushDue();
+
+        // Assert
+        assertFalse(buffer.hasPending(1L));
+        assertEquals(1, meterRegistry.counter("tasks.writeBehind.dropped").count());
+    }
+
+    @Test
+    public void testFailedWriteKeepsChangesQueuedInTheMeantime() {
+        // Arrange, another update of the description is queued while the title is being written
+        TaskWriteBehindBuffer buffer = createBuffer(Duration.ZERO);
+        TaskEntity task = createTask();
+        when(taskRepository.updateContentById(anyLong(), anyMap()))
+                .thenAnswer(invocation -> {
+                    buffer.enqueue(task, TaskUpdateRequest.builder().title("My Title").description("Updated Description").build());
+                    throw new QueryTimeoutException("Timed out");
+                })
+                .thenReturn(1);
+        buffer.enqueue(task, TaskUpdateRequest.builder().title("Updated Title").description("My Description").build());
+
+        // Act
+        buffer.flushDue();
+        buffer.flushDue();
+
+        // Assert, the retry writes both changes
+        verify(taskRepository).updateContentById(1L, Map.of("title", "Updated Title", "description", "Updated Description"));
+    }
+}
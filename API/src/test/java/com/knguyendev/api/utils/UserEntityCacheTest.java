@@ -0,0 +1,132 @@
+package com.knguyendev.api.utils;
+
+import com.knguyendev.api.TestUtil;
+import com.knguyendev.api.domain.entities.UserEntity;
+import com.knguyendev.api.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the UserEntityCache class
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserEntityCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserEntityCache userEntityCache;
+
+    @BeforeEach
+    public void setUp() {
+        userEntityCache = new UserEntityCache(userRepository, 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testFindByIdOnlyQueriesDatabaseOnce() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act
+        UserEntity first = userEntityCache.findById(userA.getId()).orElseThrow();
+        UserEntity second = userEntityCache.findById(userA.getId()).orElseThrow();
+
+        // Assert
+        assertEquals(userA.getUsername(), first.getUsername());
+        assertEquals(userA.getUsername(), second.getUsername());
+        verify(userRepository, times(1)).findById(userA.getId());
+    }
+
+    @Test
+    public void testFindByIdReturnsCopies() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        String username = userA.getUsername();
+        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act, modify the user we got back without saving it
+        userEntityCache.findById(userA.getId()).orElseThrow().setUsername("changedUsername");
+        UserEntity result = userEntityCache.findById(userA.getId()).orElseThrow();
+
+        // Assert that the cached user wasn't changed
+        assertEquals(username, result.getUsername());
+    }
+
+    @Test
+    public void testFindByIdMemoizesWithinRequest() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        // Act
+        userEntityCache.findById(userA.getId());
+
+        // Assert that the user is remembered for the rest of the request
+        assertNotNull(RequestContextHolder.currentRequestAttributes().getAttribute(
+                UserEntityCache.class.getName() + "." + userA.getId(),
+                ServletRequestAttributes.SCOPE_REQUEST
+        ));
+    }
+
+    @Test
+    public void testEvictReloadsUser() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        userEntityCache.findById(userA.getId());
+
+        // Act
+        userEntityCache.evict(userA.getId());
+        userEntityCache.findById(userA.getId());
+
+        // Assert
+        verify(userRepository, times(2)).findById(userA.getId());
+    }
+
+    @Test
+    public void testFindByIdDoesNotCacheDeletedUser() {
+        // Arrange
+        UserEntity userA = TestUtil.createSavedUserA();
+        userA.setDeletedAt(userA.getCreatedAt());
+        when(userRepository.findById(userA.getId())).thenReturn(Optional.of(userA));
+
+        // Act
+        userEntityCache.findById(userA.getId());
+        Optional<UserEntity> result = userEntityCache.findById(userA.getId());
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertNotNull(result.get().getDeletedAt());
+        verify(userRepository, times(2)).findById(userA.getId());
+    }
+
+    @Test
+    public void testFindByIdWhenNotFound() {
+        // Arrange
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        // Act and Assert
+        assertTrue(userEntityCache.findById(1L).isEmpty());
+    }
+}